@@ -0,0 +1,90 @@
+package benchmarks;
+
+import model.*;
+import org.openjdk.jmh.annotations.*;
+
+import store.ColumnStore;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the off-heap ColumnStore holding board messages: point reads,
+ * time range scans and priority counts. The setup also prints the used heap
+ * after a full GC and how much filling the store added to it, next to the
+ * store's off-heap bytes: the heap must not grow with the number of messages.
+ * The largest size needs -XX:MaxDirectMemorySize above its off-heap bytes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx2g", "-XX:MaxDirectMemorySize=4g" })
+@State(Scope.Benchmark)
+public class ColumnStoreBenchmark {
+    /** Number of board messages in the store. */
+    @Param({ "100000", "2000000" })
+    public int size;
+
+    private ColumnStore store;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long before = usedHeap(memory);
+        store = new ColumnStore();
+        ArrayList<Message> batch = new ArrayList<>(10_000);
+        for (int i = 0; i < size; i++) {
+            batch.add(newBoard(i));
+            if (batch.size() == 10_000) {
+                store.addAll(batch);
+                batch.clear();
+            }
+        }
+        store.addAll(batch);
+        long after = usedHeap(memory);
+        System.out.printf("%n%,d board messages: heap used %.1f MB (%+.1f MB for the store), off heap %.1f MB%n",
+                size, after / 1e6, (after - before) / 1e6, store.getOffHeapBytes() / 1e6);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        store.close();
+    }
+
+    /** Builds the i-th board message: ID i + 1, sent at second i. */
+    static BoardMessage newBoard(int i) {
+        String content = StoreBenchmark.WORDS[i % StoreBenchmark.WORDS.length] + " token" + i;
+        return new BoardMessage(i + 1, "Sender" + (i % 1000), content, i * 1000L,
+                Priority.values()[i % 3], new ArrayList<>());
+    }
+
+    /** Gets the used heap after a full GC. */
+    private static long usedHeap(MemoryMXBean memory) {
+        for (int i = 0; i < 3; i++) {
+            memory.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    @Benchmark
+    public Message getById() {
+        return store.get(1 + ThreadLocalRandom.current().nextInt(size));
+    }
+
+    @Benchmark
+    public List<Message> getBetweenOneMinute() {
+        long from = ThreadLocalRandom.current().nextInt(size) * 1000L;
+        return store.getBetween(from, from + 59_999);
+    }
+
+    @Benchmark
+    public EnumMap<Priority, Long> countByPriority() {
+        return store.countByPriority();
+    }
+}
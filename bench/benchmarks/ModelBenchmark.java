@@ -0,0 +1,139 @@
+package benchmarks;
+
+import model.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the per-message hot paths of the model classes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ModelBenchmark {
+    /** Number of reactions of the board message. */
+    @Param({ "10", "1000" })
+    public int reactions;
+
+    private BoardMessage board;
+    private EmailMessage email;
+    private ReactionMessage reaction;
+    private ArrayList<String> oneWord;
+    private ArrayList<String> manyWords;
+    private File file;
+    private File sameFile;
+    private File extraAttachment;
+
+    @Setup
+    public void setup() throws ReactionException {
+        ArrayList<ReactionMessage> list = new ArrayList<>();
+        for (int i = 0; i < reactions; i++) {
+            list.add(new ReactionMessage("User" + i, "Reaction number " + i, ReactionMessage.ReactionType.LIKE));
+        }
+        board = new BoardMessage("Alice", "Weekly report submission deadline is on Sunday evening",
+                Priority.URGENT, list);
+        ArrayList<File> attachments = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            attachments.add(new File("Document" + i, "pdf"));
+        }
+        email = new EmailMessage("Shany", "Here are the documents for review.", "Documents Review", attachments);
+        reaction = new ReactionMessage("Frank", "Interesting perspective.", ReactionMessage.ReactionType.LAUGH);
+        oneWord = new ArrayList<>(List.of("Sunday"));
+        manyWords = new ArrayList<>(List.of("party", "meeting", "review", "urgent", "picture", "idea", "sunday",
+                "budget"));
+        file = new File("Presentation1", "ppt");
+        sameFile = new File("PRESENTATION1", "PPT");
+        extraAttachment = new File("Extra", "zip");
+    }
+
+    @Benchmark
+    public boolean findOneWord() {
+        return board.find(oneWord);
+    }
+
+    @Benchmark
+    public boolean findManyWords() {
+        return board.find(manyWords);
+    }
+
+    @Benchmark
+    public String previewBoard() {
+        return board.generatePreview();
+    }
+
+    @Benchmark
+    public String previewEmail() {
+        return email.generatePreview();
+    }
+
+    @Benchmark
+    public String previewReaction() {
+        return reaction.generatePreview();
+    }
+
+    @Benchmark
+    public String toStringBoard() {
+        return board.toString();
+    }
+
+    @Benchmark
+    public String toStringEmail() {
+        return email.toString();
+    }
+
+    @Benchmark
+    public String toStringReaction() {
+        return reaction.toString();
+    }
+
+    @Benchmark
+    public Object getReactions() {
+        return board.getReactions();
+    }
+
+    @Benchmark
+    public Object getReactionsView() {
+        return board.getReactionsView();
+    }
+
+    @Benchmark
+    public void addReaction(Blackhole bh) {
+        // Fresh board per call so the list does not grow without bound.
+        BoardMessage target = new BoardMessage("Bob", "Board", Priority.REGULAR);
+        target.addReaction(reaction);
+        bh.consume(target);
+    }
+
+    @Benchmark
+    public Object getAttachments() {
+        return email.getAttachments();
+    }
+
+    @Benchmark
+    public Object getAttachmentsView() {
+        return email.getAttachmentsView();
+    }
+
+    @Benchmark
+    public void addRemoveAttachment() throws AttachmentException {
+        email.addAttachment(extraAttachment);
+        email.removeAttachment(extraAttachment);
+    }
+
+    @Benchmark
+    public int fileHashCode() {
+        return file.hashCode();
+    }
+
+    @Benchmark
+    public boolean fileEquals() {
+        return file.equals(sameFile);
+    }
+}
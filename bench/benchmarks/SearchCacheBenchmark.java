@@ -0,0 +1,63 @@
+package benchmarks;
+
+import model.Message;
+import model.ReactionException;
+import org.openjdk.jmh.annotations.*;
+
+import store.MessageStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the store's search cache: a search answered from the cache,
+ * and the cost its invalidation adds to every change, when each cached query
+ * is matched against the changed message under the write lock. The cached
+ * queries look for rare tokens the added message does not hold, so they all
+ * stay cached and are all checked at every change (the worst case).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class SearchCacheBenchmark {
+    /** Number of messages in the store. */
+    @Param({ "10000", "1000000" })
+    public int size;
+
+    /** Number of cached searches (the cache holds at most 256). */
+    @Param({ "0", "16", "256" })
+    public int cachedQueries;
+
+    private MessageStore store;
+    private ArrayList<String> commonQuery;
+
+    @Setup(Level.Trial)
+    public void setup() throws ReactionException {
+        store = new MessageStore();
+        for (int i = 0; i < size; i++) {
+            store.add(StoreBenchmark.newMessage(i));
+        }
+        commonQuery = new ArrayList<>(List.of("report"));
+        for (int k = 0; k < cachedQueries; k++) {
+            String token = "token" + (long) k * size / Math.max(1, cachedQueries);
+            // One and two word queries, so both matching modes are checked.
+            store.searchAny(new ArrayList<>((k % 2 == 0) ? List.of(token) : List.of(token, "zz" + k)));
+        }
+    }
+
+    @Benchmark
+    public int searchCommonWordCached() {
+        return store.searchAny(commonQuery).size();
+    }
+
+    @Benchmark
+    public long addThenDelete() throws ReactionException {
+        Message message = StoreBenchmark.newMessage(size);
+        store.add(message);
+        return store.remove(message.getId()).getId();
+    }
+}
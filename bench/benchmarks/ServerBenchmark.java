@@ -0,0 +1,100 @@
+package benchmarks;
+
+import model.BoardMessage;
+import model.Message;
+import model.Priority;
+import org.openjdk.jmh.annotations.*;
+
+import server.MessageServer;
+import store.MessageStore;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request throughput of the HTTP/JSON server on the loopback interface, with
+ * many concurrent clients each keeping its connection alive. Covers a point
+ * read, a search and an add.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true") // as set by Main --serve
+@Threads(16)
+public class ServerBenchmark {
+    /** Number of messages in the store. */
+    private static final int SIZE = 10_000;
+
+    /** The server and the ids of its messages. */
+    @State(Scope.Benchmark)
+    public static class Server {
+        MessageServer server;
+        long[] ids;
+        String base;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            MessageStore store = new MessageStore();
+            ArrayList<Message> messages = new ArrayList<>(SIZE);
+            ids = new long[SIZE];
+            for (int i = 0; i < SIZE; i++) {
+                BoardMessage message = new BoardMessage("Sender" + (i % 100),
+                        "Board message number " + i + " about topic" + (i % 50), Priority.REGULAR);
+                messages.add(message);
+                ids[i] = message.getId();
+            }
+            store.addAll(messages);
+            server = MessageServer.start(store, new InetSocketAddress("127.0.0.1", 0), 32);
+            base = "http://127.0.0.1:" + server.getPort();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            server.close();
+        }
+    }
+
+    /** One keep-alive client per benchmark thread. */
+    @State(Scope.Thread)
+    public static class Client {
+        HttpClient http;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        }
+    }
+
+    @Benchmark
+    public int getMessage(Server server, Client client) throws Exception {
+        long id = server.ids[ThreadLocalRandom.current().nextInt(SIZE)];
+        return send(client, HttpRequest.newBuilder(URI.create(server.base + "/messages/" + id)).build());
+    }
+
+    @Benchmark
+    public int search(Server server, Client client) throws Exception {
+        int topic = ThreadLocalRandom.current().nextInt(50);
+        return send(client, HttpRequest.newBuilder(
+                URI.create(server.base + "/search?q=topic" + topic + "&limit=20")).build());
+    }
+
+    @Benchmark
+    public int addMessage(Server server, Client client) throws Exception {
+        String body = "{\"type\":\"board\",\"sender\":\"Bench\",\"content\":\"Posted over http\",\"priority\":\"regular\"}";
+        return send(client, HttpRequest.newBuilder(URI.create(server.base + "/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build());
+    }
+
+    private static int send(Client client, HttpRequest request) throws Exception {
+        HttpResponse<byte[]> response = client.http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        return response.body().length;
+    }
+}
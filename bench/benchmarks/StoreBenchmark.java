@@ -0,0 +1,83 @@
+package benchmarks;
+
+import model.*;
+import org.openjdk.jmh.annotations.*;
+
+import store.MessageStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the store level operations (add, delete, search) at growing
+ * store sizes. The store has no search cache, so every search runs the query;
+ * cached searches are measured by SearchCacheBenchmark. The largest size
+ * needs a big heap, e.g. -jvmArgs -Xmx16g.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class StoreBenchmark {
+    /** Number of messages in the store. */
+    @Param({ "10000", "100000", "1000000", "10000000" })
+    public int size;
+
+    static final String[] WORDS = { "meeting", "report", "deadline", "party", "review", "picture",
+            "idea", "perspective", "budget", "sunday", "urgent", "launch" };
+
+    private MessageStore store;
+    private ArrayList<String> rareQuery;
+    private ArrayList<String> commonQuery;
+    private ArrayList<String> manyWordQuery;
+
+    @Setup(Level.Trial)
+    public void setup() throws ReactionException {
+        store = new MessageStore(0, 0);
+        for (int i = 0; i < size; i++) {
+            store.add(newMessage(i));
+        }
+        rareQuery = new ArrayList<>(List.of("token" + (size / 2)));
+        commonQuery = new ArrayList<>(List.of("report"));
+        manyWordQuery = new ArrayList<>(List.of(WORDS));
+    }
+
+    static Message newMessage(int i) throws ReactionException {
+        String content = WORDS[i % WORDS.length] + " " + WORDS[(i * 7) % WORDS.length] + " token" + i;
+        return switch (i % 3) {
+            case 0 -> new BoardMessage("Sender" + (i % 1000), content, Priority.values()[i % 3]);
+            case 1 -> new EmailMessage("Sender" + (i % 1000), content, "Subject " + i);
+            default -> new ReactionMessage("Sender" + (i % 1000), content, ReactionMessage.ReactionType.LIKE);
+        };
+    }
+
+    @Benchmark
+    public long addThenDelete() throws ReactionException {
+        Message message = newMessage(size);
+        store.add(message);
+        return store.remove(message.getId()).getId();
+    }
+
+    @Benchmark
+    public int searchRareWord() {
+        return store.searchAny(rareQuery).size();
+    }
+
+    @Benchmark
+    public int searchCommonWord() {
+        return store.searchAny(commonQuery).size();
+    }
+
+    @Benchmark
+    public int searchManyWords() {
+        return store.searchAny(manyWordQuery).size();
+    }
+
+    @Benchmark
+    public int listDigital() {
+        return store.getDigitalMessages().size();
+    }
+}
@@ -0,0 +1,69 @@
+package benchmarks;
+
+import model.EmailMessage;
+import org.openjdk.jmh.annotations.*;
+
+import transport.DigitalSender;
+import transport.LoopbackSmtpTransport;
+import transport.SendPolicy;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Email delivery throughput through the DigitalSender and the loopback SMTP
+ * stand-in, for several batch sizes and in flight limits. Every operation
+ * sends a whole burst of emails and waits until all of them are delivered.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransportBenchmark {
+    /** Number of emails per operation. */
+    private static final int BURST = 10_000;
+
+    /** Simulated round trip of a batch, in microseconds. */
+    @Param({ "0", "500" })
+    public long roundTripMicros;
+
+    /** Maximal number of messages per batch. */
+    @Param({ "1", "64" })
+    public int batchSize;
+
+    /** Maximal number of batches in flight. */
+    @Param({ "1", "16" })
+    public int inFlight;
+
+    private ArrayList<EmailMessage> emails;
+    private DigitalSender sender;
+    private LoopbackSmtpTransport smtp;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        emails = new ArrayList<>(BURST);
+        for (int i = 0; i < BURST; i++) {
+            emails.add(new EmailMessage("Sender" + (i % 100), "Quarterly report draft number " + i,
+                    "Report " + i));
+        }
+        sender = new DigitalSender();
+        smtp = new LoopbackSmtpTransport(roundTripMicros, 0);
+        sender.register(smtp, new SendPolicy(batchSize, 1, inFlight, 3, 1, 10));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sender.close();
+    }
+
+    @Benchmark
+    public int sendBurst() {
+        CompletableFuture<Void> done = sender.sendAll(emails);
+        sender.flush();
+        done.join();
+        return smtp.drainMailbox().size();
+    }
+}
@@ -1,16 +1,58 @@
+import cli.CommandRunner;
 import model.*;
+import persistence.MessageLog;
+import render.MessageRenderer;
+import render.RenderCache;
+import server.MessageServer;
+import store.MessageStore;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Scanner;
 import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Main
+ * Runs the interactive menu, or with "--batch [file]" the non-interactive
+ * command mode reading JSON commands from the file or from stdin (see
+ * cli.CommandRunner), or with "--serve [port]" the HTTP/JSON API (see
+ * server.MessageServer).
  */
 public class Main {
+    /** Directory of the durable message log. */
+    private static final Path LOG_DIR = Path.of("message-log");
+    /** Minutes between two background compactions of the log. */
+    private static final long COMPACT_MINUTES = 10;
+    /** Size of the log segments above which the log is compacted on exit. */
+    private static final long COMPACT_BYTES = 16L << 20;
+    /** Cache of the printed message texts. */
+    private static final RenderCache RENDERED = new RenderCache();
+    /** Buffered renderer for the message listings. */
+    private static final MessageRenderer RENDERER = new MessageRenderer(System.out, RENDERED);
+
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            System.exit(runBatch(args.length > 1 ? args[1] : "-"));
+        }
+        if (args.length > 0 && args[0].equals("--serve")) {
+            System.exit(runServer(args.length > 1 ? args[1] : "8080"));
+        }
         Scanner scanner = new Scanner(System.in);
-        ArrayList<Message> messages = new ArrayList<>();
+        MessageStore messages = new MessageStore();
+        messages.addListener(RENDERED); // Drops the cached text of changed messages
         int choice = 0;
-        defaultObjects(messages); // Adds default messages
+        MessageLog log = openLog(messages); // Restores the logged messages
+        if (messages.isEmpty()) {
+            defaultObjects(messages); // Adds default messages
+        }
         while (choice != 7) {
             showMenu(); // Shows the menu fot the program
             choice = getUserChoice(scanner); // Gets user choice
@@ -25,13 +67,118 @@ public class Main {
             }
         }
         scanner.close();
+        closeLog(log);
+    }
+
+    /**
+     * Runs the command mode on the logged store, without prompts or default
+     * messages.
+     * 
+     * @param source The command file, or "-" for stdin.
+     * @return The exit status: 0 if every command succeeded, 1 if some failed and
+     *         2 if the commands could not be read.
+     */
+    private static int runBatch(String source) {
+        MessageStore messages = new MessageStore();
+        MessageLog log = openLog(messages);
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        int status;
+        try (BufferedReader in = source.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Path.of(source), StandardCharsets.UTF_8)) {
+            status = (new CommandRunner(messages).run(in, out) == 0) ? 0 : 1;
+        } catch (IOException e) {
+            System.err.println("Could not run the commands: " + e.getMessage());
+            status = 2;
+        }
+        closeLog(log);
+        return status;
     }
 
     /**
-     * Adds default messages to the list.
+     * Serves the logged store over HTTP until the process is stopped.
+     * 
+     * @param port The port to listen on.
+     * @return The exit status: 2 if the server could not be started, otherwise
+     *         it does not return.
+     */
+    private static int runServer(String port) {
+        // Sends small responses at once instead of waiting for delayed ACKs
+        // (read when the first HTTP server is created).
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        MessageStore messages = new MessageStore();
+        MessageLog log = openLog(messages);
+        MessageServer server;
+        try {
+            server = MessageServer.start(messages, Integer.parseInt(port));
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Could not start the server: " + e.getMessage());
+            closeLog(log);
+            return 2;
+        }
+        System.out.println("Serving " + messages.size() + " messages on port " + server.getPort());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            closeLog(log);
+        }));
+        while (true) {
+            try {
+                Thread.sleep(Long.MAX_VALUE);
+            } catch (InterruptedException e) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Opens the message log, replays it into the store and compacts it
+     * periodically, so restarts stay fast however long the program runs.
+     * If the log cannot be opened the program keeps running in memory only.
+     * 
+     * @param messages Store to restore the messages into.
+     * @return The open log, or null if it could not be opened.
+     */
+    private static MessageLog openLog(MessageStore messages) {
+        try {
+            MessageLog log = MessageLog.open(LOG_DIR, messages);
+            log.compactEvery(COMPACT_MINUTES, TimeUnit.MINUTES);
+            return log;
+        } catch (IOException e) {
+            System.out.println("Could not open the message log (" + e.getMessage()
+                    + "), messages will not be saved.");
+            return null;
+        }
+    }
+
+    /**
+     * Flushes and closes the message log, first compacting it if its segments
+     * grew large.
+     * 
+     * @param log The log to close (may be null).
+     */
+    private static void closeLog(MessageLog log) {
+        if (log == null) {
+            return;
+        }
+        try {
+            log.compactIfLarger(COMPACT_BYTES);
+        } catch (IOException e) {
+            System.out.println("Could not compact the message log: " + e.getMessage());
+        }
+        try {
+            log.close();
+        } catch (IOException e) {
+            System.out.println("Could not save the last messages: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Adds default messages to the store.
      * Includes board messages, email messages, and reaction messages.
      */
-    private static void defaultObjects(ArrayList<Message> messages) {
+    private static void defaultObjects(MessageStore messages) {
         try {
             /* Boarder Messages: */
             messages.add(new BoardMessage("Alice", "Meeting at 10 AM", Priority.URGENT));
@@ -91,28 +238,55 @@ public class Main {
      */
     private static int getUserChoice(Scanner scanner) {
         while (true) {
-            try {
-                int choice = Integer.parseInt(scanner.nextLine());
-                if (choice < 1 || choice > 7) {
-                    throw new IllegalArgumentException("Choice must be between 1-7!");
-                }
-                return choice;
-            } catch (NumberFormatException e) {
+            long choice = parseChoice(scanner.nextLine());
+            if (choice >= 1 && choice <= 7) {
+                return (int) choice;
+            }
+            if (choice == Long.MIN_VALUE) {
                 System.out.print("Choice must be between 1-7!\nTry again: ");
-            } catch (IllegalArgumentException e) {
-                System.out.print(e.getMessage() + "\nPlease try again: ");
+            } else {
+                System.out.print("Choice must be between 1-7!\nPlease try again: ");
             }
         }
     }
 
+    /**
+     * Parses a menu choice with the rules of Integer.parseInt, without using
+     * exceptions for invalid input.
+     * 
+     * @param line The input line.
+     * @return The number, or Long.MIN_VALUE if the line is not an int.
+     */
+    private static long parseChoice(String line) {
+        int start = (!line.isEmpty() && (line.charAt(0) == '-' || line.charAt(0) == '+')) ? 1 : 0;
+        if (start == line.length()) {
+            return Long.MIN_VALUE;
+        }
+        long value = 0;
+        for (int i = start; i < line.length(); i++) {
+            int digit = Character.digit(line.charAt(i), 10);
+            if (digit < 0) {
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE + 1L) {
+                return Long.MIN_VALUE;
+            }
+        }
+        if (line.charAt(0) == '-') {
+            value = -value;
+        }
+        return (value > Integer.MAX_VALUE) ? Long.MIN_VALUE : value;
+    }
+
     /**
      * Allows the user to add a new message of a specific type
      * (Board/Email/Reaction).
      * 
      * @param scanner  Scanner object for user input.
-     * @param messages List of messages to which the new message will be added.
+     * @param messages Store of messages to which the new message will be added.
      */
-    private static void addMessage(Scanner scanner, ArrayList<Message> messages) {
+    private static void addMessage(Scanner scanner, MessageStore messages) {
         String str = """
                 ####  ADD NEW MESSAGE  ####
                 (1) Board Message.
@@ -268,20 +442,13 @@ public class Main {
      * Adds a ReactionMessage to an existing BoardMessage.
      * 
      * @param scanner  Scanner object for user input.
-     * @param messages List of messages to search for the target BoardMessage.
+     * @param messages Store of messages to search for the target BoardMessage.
      */
-    private static void addReactionMessage(Scanner scanner, ArrayList<Message> messages) {
+    private static void addReactionMessage(Scanner scanner, MessageStore messages) {
         System.out.println("#### ADD REACTION MESSAGE ####");
 
         // 1) Early-guard: no boards
-        boolean anyBoard = false;
-        for (Message m : messages) {
-            if (m instanceof BoardMessage) {
-                anyBoard = true;
-                break;
-            }
-        }
-        if (!anyBoard) {
+        if (!messages.hasBoardMessages()) {
             System.out.println("There are no board messages to react on.");
             return;
         }
@@ -299,13 +466,8 @@ public class Main {
                 continue;
             }
             try {
-                int messageId = Integer.parseInt(raw);
-                for (Message message : messages) {
-                    if (message instanceof BoardMessage && message.getId() == messageId) {
-                        boardMessage = (BoardMessage) message;
-                        break;
-                    }
-                }
+                long messageId = Long.parseLong(raw);
+                boardMessage = messages.getBoard(messageId);
                 if (boardMessage == null) {
                     System.out.println("No board message found with Id " + messageId + ". Please try again.");
                 }
@@ -338,7 +500,7 @@ public class Main {
         // 6) Create & attach reaction
         try {
             ReactionMessage reaction = new ReactionMessage(data[0], data[1], reactionType);
-            boardMessage.addReaction(reaction);
+            messages.addReaction(boardMessage.getId(), reaction);
             System.out.println("Reaction added successfully.");
         } catch (IllegalArgumentException | ReactionException e) {
             System.out.println(e.getMessage() + "\nPlease try again!");
@@ -348,17 +510,15 @@ public class Main {
     /**
      * Prints all messages in the system.
      * 
-     * @param messages List of messages to print.
+     * @param messages Store of messages to print.
      */
-    private static void printAllMessages(ArrayList<Message> messages) {
+    private static void printAllMessages(MessageStore messages) {
         System.out.println("#### PRINT ALL MESSAGES ####");
         if (messages.isEmpty()) {
             System.out.println("No messages to display.");
             return;
         } else {
-            for (Message message : messages) {
-                System.out.println("Message Type: " + message.getMessageType() + "\n" + message);
-            }
+            render(messages.getAll(), false);
         }
     }
 
@@ -366,9 +526,9 @@ public class Main {
      * Deletes a specific message by its ID.
      * 
      * @param scanner  Scanner object for user input.
-     * @param messages List of messages to search and delete from.
+     * @param messages Store of messages to search and delete from.
      */
-    private static void deleteMessage(Scanner scanner, ArrayList<Message> messages) {
+    private static void deleteMessage(Scanner scanner, MessageStore messages) {
         System.out.println("#### DELETE MESSAGE ####");
         if (messages.isEmpty()) {
             System.out.println("No messages to delete.");
@@ -378,8 +538,8 @@ public class Main {
         while (true) {
             try {
                 System.out.print("Please enter the message Id you want to delete: ");
-                int messageId = Integer.parseInt(scanner.nextLine());
-                boolean removed = messages.removeIf(m -> m.getId() == messageId);
+                long messageId = Long.parseLong(scanner.nextLine());
+                boolean removed = messages.remove(messageId) != null;
                 if (removed) {
                     System.out.println("Message deleted successfully.");
                     return;
@@ -395,28 +555,24 @@ public class Main {
     /**
      * Prints all messages that implement the IDigital interface.
      * 
-     * @param messages List of messages to print.
+     * @param messages Store of messages to print.
      */
-    private static void printDigitalMessages(ArrayList<Message> messages) {
+    private static void printDigitalMessages(MessageStore messages) {
         System.out.println("#### PRINT DIGITAL MESSAGES ####");
         if (messages.isEmpty()) {
             System.out.println("No messages to display.");
             return;
         }
-        for (Message message : messages) {
-            if (message instanceof IDigital) {
-                System.out.println("Message Type: " + message.getMessageType() + "\n" + message);
-            }
-        }
+        render(messages.getDigitalMessages(), false);
     }
 
     /**
      * counts and searches for messages containing a specific word.
      * 
      * @param scanner  Scanner object for user input.
-     * @param messages List of messages to search from.
+     * @param messages Store of messages to search from.
      */
-    private static void searchMessagesByWords(Scanner scanner, ArrayList<Message> messages) {
+    private static void searchMessagesByWords(Scanner scanner, MessageStore messages) {
         System.out.println("#### SEARCH MESSAGES BY WORDS ####");
         System.out.print("Enter word(s) (comma separated): ");
         String line = scanner.nextLine();
@@ -433,31 +589,22 @@ public class Main {
             return;
         }
 
-        int count = 0;
-        for (Message message : messages) {
-            if (message.find(words)) {
-                count++;
-            }
-        }
+        int count = messages.searchAny(words).size();
         System.out.println("Number of messages containing any of " + words + ": " + count);
     }
 
     /**
      * Prints all messages of type BoardMessage.
      * 
-     * @param messages List of messages to filter and print.
+     * @param messages Store of messages to filter and print.
      */
-    private static void printAllBoardMessages(ArrayList<Message> messages) {
+    private static void printAllBoardMessages(MessageStore messages) {
         System.out.println("#### PRINT BOARD MESSAGES ####");
         if (messages.isEmpty()) {
             System.out.println("No messages to display.");
             return;
         }
-        for (Message message : messages) {
-            if (message instanceof BoardMessage) {
-                System.out.println("Message Type: " + message.getMessageType() + "\n" + message);
-            }
-        }
+        render(messages.getBoardMessages(), false);
     }
 
     /**
@@ -465,14 +612,31 @@ public class Main {
      * 
      * @param messages
      */
-    private static void printPreviews(ArrayList<Message> messages) {
+    private static void printPreviews(MessageStore messages) {
         System.out.println("#### PRINT PREVIEWS ####");
         if (messages.isEmpty()) {
             System.out.println("No messages to display.");
             return;
         }
-        for (Message message : messages) {
-            System.out.println(message.generatePreview());
+        render(messages.getAll(), true);
+    }
+
+    /**
+     * Writes a list of messages (or their previews) through the buffered renderer.
+     * 
+     * @param list     The messages to write.
+     * @param previews True to write previews instead of full messages.
+     */
+    private static void render(ArrayList<Message> list, boolean previews) {
+        try {
+            if (previews) {
+                RENDERER.writePreviews(list);
+            } else {
+                RENDERER.writeMessages(list);
+            }
+            RENDERER.flush();
+        } catch (IOException e) {
+            System.out.println("Could not print the messages: " + e.getMessage());
         }
     }
 
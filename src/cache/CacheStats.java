@@ -0,0 +1,89 @@
+package cache;
+
+import java.util.Locale;
+
+/**
+ * Counters of a cache at one instant: hits, misses, evictions and
+ * invalidations since it was created, and its current size.
+ */
+public class CacheStats {
+    /** Number of lookups that found their key. */
+    private final long hits;
+    /** Number of lookups that did not find their key. */
+    private final long misses;
+    /** Number of entries dropped to respect the bounds. */
+    private final long evictions;
+    /** Number of entries dropped because they became stale. */
+    private final long invalidations;
+    /** Number of cached entries. */
+    private final int entries;
+    /** Total weight of the cached values, in approximate bytes. */
+    private final long weight;
+
+    /**
+     * Constructs the counters of a cache.
+     *
+     * @param hits          Number of lookups that found their key.
+     * @param misses        Number of lookups that did not find their key.
+     * @param evictions     Number of entries dropped to respect the bounds.
+     * @param invalidations Number of entries dropped because they became stale.
+     * @param entries       Number of cached entries.
+     * @param weight        Total weight of the cached values.
+     */
+    public CacheStats(long hits, long misses, long evictions, long invalidations, int entries, long weight) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.invalidations = invalidations;
+        this.entries = entries;
+        this.weight = weight;
+    }
+
+    /** @return the number of lookups that found their key. */
+    public long getHits() {
+        return hits;
+    }
+
+    /** @return the number of lookups that did not find their key. */
+    public long getMisses() {
+        return misses;
+    }
+
+    /** @return the fraction of the lookups that were hits (0 before any lookup). */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return (lookups == 0) ? 0 : (double) hits / lookups;
+    }
+
+    /** @return the number of entries dropped to respect the bounds. */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /** @return the number of entries dropped because they became stale. */
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    /** @return the number of cached entries. */
+    public int getEntries() {
+        return entries;
+    }
+
+    /** @return the total weight of the cached values. */
+    public long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Returns the counters as "hits=..., misses=..., hit rate=...%, ...".
+     *
+     * @return The counters.
+     */
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "hits=%d, misses=%d, hit rate=%.1f%%, evictions=%d, invalidations=%d, entries=%d, bytes=%d",
+                hits, misses, 100 * getHitRate(), evictions, invalidations, entries, weight);
+    }
+}
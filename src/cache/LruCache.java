@@ -0,0 +1,287 @@
+package cache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Thread-safe least recently used cache bounded both by its number of entries
+ * and by the total weight (approximate size in bytes) of its values.
+ * Adding an entry evicts the least recently used ones until both bounds hold;
+ * a value heavier than the whole weight bound is not cached at all.
+ * Hits, misses, evictions and invalidations are counted (see getStats).
+ * A value loaded by get(key, loader) is not cached if an invalidation that
+ * ran while it was being computed matches it, so a load racing with a change
+ * never leaves the old result behind, while loads racing with unrelated
+ * changes are still cached.
+ *
+ * @param <K> Type of the keys.
+ * @param <V> Type of the values.
+ */
+public class LruCache<K, V> {
+    /** Maximal number of invalidations kept for the loads in flight. */
+    private static final int MAX_RECENT = 1024;
+
+    /** The entries, least recently used first. */
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /** Maximal number of entries. */
+    private final int maxEntries;
+    /** Maximal total weight of the values. */
+    private final long maxWeight;
+    /** Weight of a value. */
+    private final ToLongFunction<? super V> weigher;
+    /** Total weight of the cached values. */
+    private long weight;
+    /** Number of invalidation calls so far. */
+    private long epoch;
+    /** Number of loads in flight. */
+    private int loads;
+    /**
+     * Conditions of the invalidations numbered recentBase to epoch - 1, kept
+     * while loads are in flight to be checked against their values.
+     */
+    private final ArrayList<BiPredicate<? super K, ? super V>> recent = new ArrayList<>();
+    /** Number of the first invalidation in recent. */
+    private long recentBase;
+    /** Number of lookups that found their key. */
+    private long hits;
+    /** Number of lookups that did not find their key. */
+    private long misses;
+    /** Number of entries dropped to respect the bounds. */
+    private long evictions;
+    /** Number of entries dropped by invalidate, invalidateIf and clear. */
+    private long invalidations;
+
+    /**
+     * Constructs an empty cache.
+     *
+     * @param maxEntries Maximal number of entries (0 disables the cache).
+     * @param maxWeight  Maximal total weight of the values.
+     * @param weigher    Weight of a value, e.g. its approximate size in bytes.
+     * @throws IllegalArgumentException If a bound is negative or the weigher is
+     *                                  null.
+     */
+    public LruCache(int maxEntries, long maxWeight, ToLongFunction<? super V> weigher) {
+        if (maxEntries < 0 || maxWeight < 0) {
+            throw new IllegalArgumentException("Cache bounds cannot be negative");
+        }
+        if (weigher == null) {
+            throw new IllegalArgumentException("Weigher cannot be null");
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    // ======= Lookups ======= //
+
+    /**
+     * Gets the value of a key, counting a hit or a miss.
+     *
+     * @param key The key.
+     * @return The cached value, or null if the key is not cached.
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    /**
+     * Gets the value of a key, computing and caching it on a miss. The loader
+     * runs outside the cache lock, so concurrent misses on the same key may
+     * each compute the value.
+     *
+     * @param key    The key.
+     * @param loader Computes the value of a missing key (null is not cached).
+     * @return The cached or computed value.
+     * @throws IllegalArgumentException If the loader is null.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        if (loader == null) {
+            throw new IllegalArgumentException("Loader cannot be null");
+        }
+        long start;
+        synchronized (this) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null) {
+                hits++;
+                return entry.value;
+            }
+            misses++;
+            start = epoch;
+            loads++;
+        }
+        V value = null;
+        try {
+            value = loader.apply(key);
+        } finally {
+            synchronized (this) {
+                if (value != null && !invalidatedSince(start, key, value)) {
+                    store(key, value);
+                }
+                if (--loads == 0) {
+                    recent.clear();
+                    recentBase = epoch;
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Checks if an invalidation since a load started matches its value, or may
+     * have (its condition was no longer kept). Caller must hold the lock.
+     */
+    private boolean invalidatedSince(long start, K key, V value) {
+        if (start < recentBase) {
+            return true;
+        }
+        for (int i = (int) (start - recentBase); i < recent.size(); i++) {
+            if (recent.get(i).test(key, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Counts an invalidation and keeps its condition for the loads in flight.
+     * Caller must hold the lock.
+     */
+    private void invalidated(BiPredicate<? super K, ? super V> condition) {
+        if (loads == 0 || recent.size() == MAX_RECENT) {
+            // No load to check it against, or too many kept: the loads in flight
+            // (if any) are then not cached.
+            recent.clear();
+            recentBase = epoch + 1;
+        } else {
+            recent.add(condition);
+        }
+        epoch++;
+    }
+
+    /**
+     * Caches a value, replacing the one of the same key.
+     *
+     * @param key   The key.
+     * @param value The value.
+     * @throws IllegalArgumentException If the value is null.
+     */
+    public synchronized void put(K key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+        store(key, value);
+    }
+
+    /** Adds an entry and evicts down to the bounds. Caller must hold the lock. */
+    private void store(K key, V value) {
+        long valueWeight = weigher.applyAsLong(value);
+        Entry<V> old = entries.remove(key);
+        if (old != null) {
+            weight -= old.weight;
+        }
+        if (maxEntries == 0 || valueWeight > maxWeight) {
+            return;
+        }
+        entries.put(key, new Entry<>(value, valueWeight));
+        weight += valueWeight;
+        Iterator<Entry<V>> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries || weight > maxWeight) {
+            weight -= eldest.next().weight;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    // ======= Invalidation ======= //
+
+    /**
+     * Drops the entry of a key.
+     *
+     * @param key The key.
+     * @return Whether an entry was dropped.
+     */
+    public synchronized boolean invalidate(K key) {
+        invalidated((k, v) -> Objects.equals(k, key));
+        Entry<V> old = entries.remove(key);
+        if (old == null) {
+            return false;
+        }
+        weight -= old.weight;
+        invalidations++;
+        return true;
+    }
+
+    /**
+     * Drops every entry matching a condition.
+     *
+     * @param condition Tested on every key and value.
+     * @return The number of entries dropped.
+     * @throws IllegalArgumentException If the condition is null.
+     */
+    public synchronized int invalidateIf(BiPredicate<? super K, ? super V> condition) {
+        if (condition == null) {
+            throw new IllegalArgumentException("Condition cannot be null");
+        }
+        invalidated(condition);
+        int dropped = 0;
+        Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<K, Entry<V>> entry = it.next();
+            if (condition.test(entry.getKey(), entry.getValue().value)) {
+                weight -= entry.getValue().weight;
+                it.remove();
+                dropped++;
+            }
+        }
+        invalidations += dropped;
+        return dropped;
+    }
+
+    /** Drops every entry. */
+    public synchronized void clear() {
+        invalidated((k, v) -> true);
+        invalidations += entries.size();
+        entries.clear();
+        weight = 0;
+    }
+
+    // ======= Metrics ======= //
+
+    /** @return the number of cached entries. */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /** @return the total weight of the cached values. */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /** @return the current counters of the cache. */
+    public synchronized CacheStats getStats() {
+        return new CacheStats(hits, misses, evictions, invalidations, entries.size(), weight);
+    }
+
+    /** A cached value and its weight. */
+    private static final class Entry<V> {
+        private final V value;
+        private final long weight;
+
+        private Entry(V value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package cli;
+
+import ingest.RowMapper;
+import json.Json;
+import json.MessageJson;
+import model.BoardMessage;
+import model.Message;
+import model.Priority;
+import model.ReactionException;
+import model.ReactionMessage;
+import store.MessageStore;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Non-interactive command mode: runs a script of commands against a store and
+ * writes machine-readable results.
+ * Every input line is a JSON object with an "op" field; blank lines and lines
+ * starting with '#' are skipped. For every command one JSON result line is
+ * written, carrying the input line number, "ok" and either the result fields
+ * or an "error". A summary line ends the output.
+ * Commands:
+ * <ul>
+ * <li>add: the message fields of the ingest (type, sender, content, ...),
+ * returns its id.</li>
+ * <li>delete: id, returns whether it existed.</li>
+ * <li>get: id, returns the message.</li>
+ * <li>search: words (list), optional mode "any" (default) or "all", returns
+ * the matching ids.</li>
+ * <li>list: optional type, sender, priority and limit, returns the
+ * messages.</li>
+ * <li>react: board id, sender, content and reaction, returns the reaction
+ * id.</li>
+ * </ul>
+ * Commands are run in batches of the lines already available: consecutive
+ * adds are inserted with a single bulk insert and the output is flushed once
+ * per batch, so a piped script is not slowed down by per-line round trips.
+ * An add succeeds only once its bulk insert did, and a failed bulk insert
+ * fails every add of it. Whatever a command throws only fails that command:
+ * the rest of the script still runs and the summary is always written.
+ */
+public class CommandRunner {
+    /** Maximal number of commands run in one batch. */
+    public static final int MAX_BATCH = 1024;
+
+    /** The store the commands run against. */
+    private final MessageStore store;
+    /** Number of commands run. */
+    private long commands;
+    /** Number of commands that failed. */
+    private long failed;
+
+    /**
+     * Constructs a runner.
+     *
+     * @param store The store the commands run against.
+     * @throws IllegalArgumentException If the store is null.
+     */
+    public CommandRunner(MessageStore store) {
+        if (store == null) {
+            throw new IllegalArgumentException("Store cannot be null");
+        }
+        this.store = store;
+    }
+
+    // ======= Running ======= //
+
+    /**
+     * Runs all the commands of an input and writes their results, then a summary
+     * line.
+     *
+     * @param in  The commands, one per line.
+     * @param out Where the results go, one per line.
+     * @return The number of commands that failed.
+     * @throws IOException If reading or writing fails.
+     */
+    public long run(BufferedReader in, Writer out) throws IOException {
+        ArrayList<Command> batch = new ArrayList<>();
+        long lineNumber = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                batch.add(new Command(lineNumber, trimmed));
+            }
+            // Keep reading while more input is already buffered, up to a batch.
+            if (batch.size() >= MAX_BATCH || (!batch.isEmpty() && !in.ready())) {
+                runBatch(batch, out);
+                batch.clear();
+            }
+        }
+        runBatch(batch, out);
+        LinkedHashMap<String, Object> summary = new LinkedHashMap<>();
+        summary.put("summary", true);
+        summary.put("commands", commands);
+        summary.put("ok", commands - failed);
+        summary.put("failed", failed);
+        Json.write(summary, out);
+        out.write('\n');
+        out.flush();
+        return failed;
+    }
+
+    /** A command line and its number. */
+    private record Command(long line, String text) {
+    }
+
+    /** Runs a batch of commands and flushes their results. */
+    private void runBatch(List<Command> batch, Writer out) throws IOException {
+        Adds adds = new Adds();
+        ArrayList<LinkedHashMap<String, Object>> results = new ArrayList<>(batch.size());
+        for (Command command : batch) {
+            commands++;
+            LinkedHashMap<String, Object> result = new LinkedHashMap<>();
+            result.put("line", command.line());
+            try {
+                Map<String, Object> fields = Json.parseObject(command.text());
+                String op = string(fields, "op");
+                result.put("op", op);
+                if (op.equals("add")) {
+                    // Queued for the bulk insert, which runs before any other command.
+                    Message message = RowMapper.toMessage(fields);
+                    result.put("ok", true);
+                    result.put("id", message.getId());
+                    adds.messages.add(message);
+                    adds.results.add(result);
+                } else {
+                    flushAdds(adds);
+                    result.put("ok", true);
+                    execute(op, fields, result);
+                }
+            } catch (RuntimeException | ReactionException e) {
+                fail(result, e);
+            }
+            results.add(result);
+        }
+        flushAdds(adds);
+        for (LinkedHashMap<String, Object> result : results) {
+            Json.write(result, out);
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    /** The adds queued for a bulk insert, with their results. */
+    private static class Adds {
+        final ArrayList<Message> messages = new ArrayList<>();
+        final ArrayList<LinkedHashMap<String, Object>> results = new ArrayList<>();
+    }
+
+    /** Inserts the queued adds in one bulk insert, failing all of them if it fails. */
+    private void flushAdds(Adds adds) {
+        if (adds.messages.isEmpty()) {
+            return;
+        }
+        try {
+            store.addAll(adds.messages);
+        } catch (RuntimeException e) {
+            for (LinkedHashMap<String, Object> result : adds.results) {
+                result.remove("id");
+                fail(result, e);
+            }
+        } finally {
+            adds.messages.clear();
+            adds.results.clear();
+        }
+    }
+
+    /** Marks the result of a command as failed. */
+    private void fail(Map<String, Object> result, Exception e) {
+        failed++;
+        result.put("ok", false);
+        // Validation errors explain themselves; anything else is named too.
+        boolean expected = e instanceof IllegalArgumentException || e instanceof ReactionException;
+        result.put("error", (expected && e.getMessage() != null) ? e.getMessage() : e.toString());
+    }
+
+    // ======= Commands ======= //
+
+    /** Runs a command other than add, adding its result fields. */
+    private void execute(String op, Map<String, Object> fields, Map<String, Object> result)
+            throws ReactionException {
+        switch (op) {
+            case "delete" -> result.put("deleted", store.remove(number(fields, "id")) != null);
+            case "get" -> {
+                Message message = store.get(number(fields, "id"));
+                if (message == null) {
+                    throw new IllegalArgumentException("No message with id " + number(fields, "id"));
+                }
+                result.put("message", MessageJson.toMap(message));
+            }
+            case "search" -> {
+                ArrayList<String> words = words(fields.get("words"));
+                String mode = (fields.get("mode") == null) ? "any" : string(fields, "mode");
+                ArrayList<Message> found = switch (mode) {
+                    case "any" -> store.searchAny(words);
+                    case "all" -> store.searchAll(words);
+                    default -> throw new IllegalArgumentException("Unknown search mode: " + mode);
+                };
+                ArrayList<Object> ids = new ArrayList<>(found.size());
+                for (Message message : found) {
+                    ids.add(message.getId());
+                }
+                result.put("count", ids.size());
+                result.put("ids", ids);
+            }
+            case "list" -> {
+                List<Message> messages = list(fields);
+                result.put("count", messages.size());
+                result.put("messages", MessageJson.toList(messages));
+            }
+            case "react" -> {
+                String type = string(fields, "reaction");
+                ReactionMessage reaction;
+                try {
+                    reaction = new ReactionMessage(string(fields, "sender"), string(fields, "content"),
+                            ReactionMessage.ReactionType.valueOf(type.trim().toUpperCase(Locale.ROOT)));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Invalid reaction: " + e.getMessage());
+                }
+                BoardMessage board = store.addReaction(number(fields, "board"), reaction);
+                if (board == null) {
+                    throw new IllegalArgumentException("No board message with id " + number(fields, "board"));
+                }
+                result.put("id", reaction.getId());
+                result.put("reactions", board.getTotalReactions());
+            }
+            default -> throw new IllegalArgumentException("Unknown op: " + op);
+        }
+    }
+
+    /** Gets the messages selected by the optional type, sender and priority filters. */
+    private List<Message> list(Map<String, Object> fields) {
+        List<Message> messages;
+        if (fields.get("sender") != null) {
+            messages = store.getBySender(string(fields, "sender"));
+        } else if (fields.get("priority") != null) {
+            String priority = string(fields, "priority").trim().toUpperCase(Locale.ROOT);
+            try {
+                messages = store.getByPriority(Priority.valueOf(priority));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown priority: " + priority);
+            }
+        } else {
+            messages = store.getAll();
+        }
+        if (fields.get("type") != null) {
+            String type = string(fields, "type");
+            ArrayList<Message> ofType = new ArrayList<>();
+            for (Message message : messages) {
+                if (message.getMessageType().equalsIgnoreCase(type)) {
+                    ofType.add(message);
+                }
+            }
+            messages = ofType;
+        }
+        if (fields.get("limit") != null) {
+            long limit = number(fields, "limit");
+            if (limit < 0) {
+                throw new IllegalArgumentException("Limit cannot be negative");
+            }
+            messages = messages.subList(0, (int) Math.min(limit, messages.size()));
+        }
+        return messages;
+    }
+
+    private static String string(Map<String, Object> fields, String name) {
+        if (!(fields.get(name) instanceof String value)) {
+            throw new IllegalArgumentException("Missing or invalid field: " + name);
+        }
+        return value;
+    }
+
+    private static long number(Map<String, Object> fields, String name) {
+        if (!(fields.get(name) instanceof Long value)) {
+            throw new IllegalArgumentException("Missing or invalid field: " + name);
+        }
+        return value;
+    }
+
+    private static ArrayList<String> words(Object value) {
+        if (!(value instanceof List<?> list)) {
+            throw new IllegalArgumentException("Missing or invalid field: words");
+        }
+        ArrayList<String> words = new ArrayList<>(list.size());
+        for (Object word : list) {
+            if (!(word instanceof String s)) {
+                throw new IllegalArgumentException("Words must be strings");
+            }
+            words.add(s);
+        }
+        return words;
+    }
+
+    // ======= Statistics ======= //
+
+    /** @return the number of commands run so far. */
+    public long getCommandCount() {
+        return commands;
+    }
+
+    /** @return the number of commands that failed so far. */
+    public long getFailedCount() {
+        return failed;
+    }
+}
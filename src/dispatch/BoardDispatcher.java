@@ -0,0 +1,244 @@
+package dispatch;
+
+import model.BoardMessage;
+import model.Priority;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivery pipeline for board messages.
+ * Submitted messages go through a PriorityDispatchQueue and are delivered by
+ * a fixed set of worker threads calling a DeliveryHandler. The time from
+ * submission to the end of the delivery is recorded per priority, so the
+ * p50/p99 latency of each priority can be read at any time.
+ * Closing the dispatcher stops accepting messages, delivers what is still
+ * queued and stops the workers.
+ */
+public class BoardDispatcher implements Closeable {
+    /** How often idle workers check for shutdown, in milliseconds. */
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    /** The queue of the messages waiting for delivery. */
+    private final PriorityDispatchQueue queue;
+    /** The delivery of a single message. */
+    private final DeliveryHandler handler;
+    /** Submission to delivery latency of every priority. */
+    private final EnumMap<Priority, LatencyHistogram> latencies = new EnumMap<>(Priority.class);
+    /** The worker threads. */
+    private final ArrayList<Thread> workers = new ArrayList<>();
+    /** Number of delivered messages. */
+    private final AtomicLong delivered = new AtomicLong();
+    /** Number of deliveries that threw. */
+    private final AtomicLong failed = new AtomicLong();
+    /** Number of submits between their open check and the end of their put. */
+    private final AtomicInteger submitting = new AtomicInteger();
+    /** Set once the dispatcher is closed. */
+    private volatile boolean closed;
+
+    // ======= Constructors ======= //
+
+    /**
+     * Constructs a dispatcher with a default queue and starts its workers.
+     *
+     * @param handler The delivery of a single message.
+     * @param workers Number of worker threads.
+     * @throws IllegalArgumentException If the handler is null or workers is not
+     *                                  positive.
+     */
+    public BoardDispatcher(DeliveryHandler handler, int workers) {
+        this(new PriorityDispatchQueue(), handler, workers);
+    }
+
+    /**
+     * Constructs a dispatcher over the given queue and starts its workers.
+     *
+     * @param queue   The queue of the messages waiting for delivery.
+     * @param handler The delivery of a single message.
+     * @param workers Number of worker threads.
+     * @throws IllegalArgumentException If the queue or handler is null or workers
+     *                                  is not positive.
+     */
+    public BoardDispatcher(PriorityDispatchQueue queue, DeliveryHandler handler, int workers) {
+        if (queue == null || handler == null) {
+            throw new IllegalArgumentException("Queue and handler cannot be null");
+        }
+        if (workers < 1) {
+            throw new IllegalArgumentException("Number of workers must be positive");
+        }
+        this.queue = queue;
+        this.handler = handler;
+        for (Priority priority : Priority.values()) {
+            latencies.put(priority, new LatencyHistogram());
+        }
+        for (int i = 0; i < workers; i++) {
+            Thread worker = new Thread(this::work, "board-dispatcher-" + i);
+            worker.setDaemon(true);
+            this.workers.add(worker);
+            worker.start();
+        }
+    }
+
+    // ======= Submitting ======= //
+
+    /**
+     * Submits a message for delivery, waiting while the queue is full.
+     *
+     * @param message The message to deliver.
+     * @throws IllegalArgumentException If the message is null.
+     * @throws IllegalStateException    If the dispatcher is closed.
+     * @throws InterruptedException     If interrupted while waiting.
+     */
+    public void submit(BoardMessage message) throws InterruptedException {
+        submitting.incrementAndGet();
+        try {
+            checkOpen();
+            queue.put(message);
+        } finally {
+            submitting.decrementAndGet();
+        }
+    }
+
+    /**
+     * Submits a message for delivery, waiting at most the given time while the
+     * queue is full.
+     *
+     * @param message The message to deliver.
+     * @param timeout How long to wait.
+     * @param unit    The unit of the timeout.
+     * @return True if the message was queued, false if the queue stayed full.
+     * @throws IllegalArgumentException If the message is null.
+     * @throws IllegalStateException    If the dispatcher is closed.
+     * @throws InterruptedException     If interrupted while waiting.
+     */
+    public boolean trySubmit(BoardMessage message, long timeout, TimeUnit unit) throws InterruptedException {
+        submitting.incrementAndGet();
+        try {
+            checkOpen();
+            return queue.offer(message, timeout, unit);
+        } finally {
+            submitting.decrementAndGet();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Dispatcher is closed");
+        }
+    }
+
+    // ======= Workers ======= //
+
+    /**
+     * Worker loop: delivers until closed, with no submit in flight and the queue
+     * empty. A submit counts itself before its open check, so once closed is seen
+     * and no submit is counted, every accepted message is already queued.
+     */
+    private void work() {
+        try {
+            while (true) {
+                PriorityDispatchQueue.Entry entry = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (entry == null) {
+                    if (closed && submitting.get() == 0 && queue.size() == 0) {
+                        return;
+                    }
+                    continue;
+                }
+                try {
+                    handler.deliver(entry.message());
+                    delivered.incrementAndGet();
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                }
+                long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - entry.queuedAt());
+                latencies.get(entry.priority()).record(micros);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops accepting messages, waits for the queued ones to be delivered and
+     * stops the workers.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        boolean interrupted = false;
+        for (Thread worker : workers) {
+            while (worker.isAlive()) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ======= Statistics ======= //
+
+    /**
+     * Gets a latency percentile of a priority.
+     *
+     * @param priority   The priority.
+     * @param percentile The percentile, between 0 and 100.
+     * @return The latency from submission to delivery, in microseconds.
+     * @throws IllegalArgumentException If the priority is null or the percentile
+     *                                  is out of range.
+     */
+    public long getLatencyMicros(Priority priority, double percentile) {
+        if (priority == null) {
+            throw new IllegalArgumentException("Priority cannot be null");
+        }
+        return latencies.get(priority).getPercentile(percentile);
+    }
+
+    /**
+     * Gets the p50 and p99 latency of every priority.
+     *
+     * @return The latency summary of every priority.
+     */
+    public EnumMap<Priority, LatencySummary> getLatencySummary() {
+        EnumMap<Priority, LatencySummary> result = new EnumMap<>(Priority.class);
+        for (Priority priority : Priority.values()) {
+            LatencyHistogram histogram = latencies.get(priority);
+            result.put(priority, new LatencySummary(histogram.getCount(),
+                    histogram.getPercentile(50), histogram.getPercentile(99)));
+        }
+        return result;
+    }
+
+    /** @return the number of delivered messages. */
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    /** @return the number of deliveries that threw. */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /** @return the queue of the messages waiting for delivery. */
+    public PriorityDispatchQueue getQueue() {
+        return queue;
+    }
+
+    /**
+     * Latency summary of a priority.
+     *
+     * @param count     Number of messages handled.
+     * @param p50Micros  Median latency, in microseconds.
+     * @param p99Micros  99th percentile latency, in microseconds.
+     */
+    public record LatencySummary(long count, long p50Micros, long p99Micros) {
+    }
+}
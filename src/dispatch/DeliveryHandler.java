@@ -0,0 +1,20 @@
+package dispatch;
+
+import model.BoardMessage;
+
+/**
+ * Delivers a board message taken from the dispatch queue.
+ * Called from the dispatcher worker threads, so implementations must be
+ * thread-safe.
+ */
+@FunctionalInterface
+public interface DeliveryHandler {
+    /**
+     * Delivers a board message.
+     *
+     * @param message The message to deliver.
+     * @throws Exception If the delivery failed; the dispatcher counts the failure
+     *                   and moves on to the next message.
+     */
+    public void deliver(BoardMessage message) throws Exception;
+}
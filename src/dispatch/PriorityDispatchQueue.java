@@ -0,0 +1,328 @@
+package dispatch;
+
+import model.BoardMessage;
+import model.Priority;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded, multi-level queue of board messages keyed on their Priority.
+ * Every priority has its own FIFO level. Levels are drained by smooth weighted
+ * round robin, so under load each priority gets a share of the takes
+ * proportional to its weight and an URGENT post never waits behind the
+ * REGULAR backlog. A level whose oldest message has waited longer than the
+ * maximal wait gets an extra take out of turn, at most one per round (as many
+ * takes as the sum of the weights), so low priority posts catch up faster
+ * while an overdue backlog never takes more than one take in a round from the
+ * higher priorities.
+ * The total number of queued messages is bounded: put blocks and offer gives
+ * up while the queue is full, which pushes back on the producers.
+ */
+public class PriorityDispatchQueue {
+    /** Default maximal number of queued messages. */
+    public static final int DEFAULT_CAPACITY = 1024;
+    /** Default maximal wait before a message is served out of turn, in milliseconds. */
+    public static final long DEFAULT_MAX_WAIT_MILLIS = 500;
+
+    /** The queued messages of every priority, oldest first. */
+    private final EnumMap<Priority, ArrayDeque<Entry>> levels = new EnumMap<>(Priority.class);
+    /** Draining weight of every priority. */
+    private final EnumMap<Priority, Integer> weights;
+    /** Current round robin credit of every priority. */
+    private final EnumMap<Priority, Integer> credits = new EnumMap<>(Priority.class);
+    /** Maximal number of queued messages. */
+    private final int capacity;
+    /** Maximal wait before a message is served out of turn, in nanoseconds. */
+    private final long maxWaitNanos;
+    /** Number of weighted takes between two takes out of turn (sum of the weights). */
+    private final int round;
+    /** Lock guarding the levels and the credits. */
+    private final ReentrantLock lock = new ReentrantLock();
+    /** Signalled when a message is queued. */
+    private final Condition notEmpty = lock.newCondition();
+    /** Signalled when a message is taken. */
+    private final Condition notFull = lock.newCondition();
+    /** Number of queued messages. */
+    private int size;
+    /** Number of messages served out of turn because they waited too long. */
+    private long promoted;
+    /** Number of weighted takes since the last take out of turn. */
+    private int sincePromotion;
+
+    // ======= Constructors ======= //
+
+    /**
+     * Constructs a queue with the default capacity, maximal wait and weights
+     * (URGENT 8, SPECIAL 2, REGULAR 1).
+     */
+    public PriorityDispatchQueue() {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_WAIT_MILLIS, defaultWeights());
+    }
+
+    /**
+     * Constructs a queue.
+     *
+     * @param capacity      Maximal number of queued messages.
+     * @param maxWaitMillis Maximal wait before a message is served out of turn,
+     *                      in milliseconds.
+     * @param weights       Draining weight of every priority.
+     * @throws IllegalArgumentException If the capacity or the maximal wait is not
+     *                                  positive, or a priority has no positive
+     *                                  weight.
+     */
+    public PriorityDispatchQueue(int capacity, long maxWaitMillis, Map<Priority, Integer> weights) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        if (maxWaitMillis < 1) {
+            throw new IllegalArgumentException("Maximal wait must be positive");
+        }
+        if (weights == null) {
+            throw new IllegalArgumentException("Weights cannot be null");
+        }
+        this.weights = new EnumMap<>(Priority.class);
+        int sum = 0;
+        for (Priority priority : Priority.values()) {
+            Integer weight = weights.get(priority);
+            if (weight == null || weight < 1) {
+                throw new IllegalArgumentException("Priority " + priority + " needs a positive weight");
+            }
+            this.weights.put(priority, weight);
+            levels.put(priority, new ArrayDeque<>());
+            credits.put(priority, 0);
+            sum += weight;
+        }
+        this.round = sum;
+        this.sincePromotion = sum;
+        this.capacity = capacity;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    }
+
+    /** @return the default draining weights. */
+    public static EnumMap<Priority, Integer> defaultWeights() {
+        EnumMap<Priority, Integer> weights = new EnumMap<>(Priority.class);
+        weights.put(Priority.URGENT, 8);
+        weights.put(Priority.SPECIAL, 2);
+        weights.put(Priority.REGULAR, 1);
+        return weights;
+    }
+
+    // ======= Producing ======= //
+
+    /**
+     * Queues a message, waiting while the queue is full.
+     *
+     * @param message The message to queue.
+     * @throws IllegalArgumentException If the message is null.
+     * @throws InterruptedException     If interrupted while waiting.
+     */
+    public void put(BoardMessage message) throws InterruptedException {
+        Entry entry = entryOf(message);
+        lock.lockInterruptibly();
+        try {
+            while (size == capacity) {
+                notFull.await();
+            }
+            enqueue(entry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues a message, waiting at most the given time while the queue is full.
+     *
+     * @param message The message to queue.
+     * @param timeout How long to wait.
+     * @param unit    The unit of the timeout.
+     * @return True if the message was queued, false if the queue stayed full.
+     * @throws IllegalArgumentException If the message is null.
+     * @throws InterruptedException     If interrupted while waiting.
+     */
+    public boolean offer(BoardMessage message, long timeout, TimeUnit unit) throws InterruptedException {
+        Entry entry = entryOf(message);
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (size == capacity) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueue(entry);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Wraps a message with its queueing time. */
+    private static Entry entryOf(BoardMessage message) {
+        if (message == null) {
+            throw new IllegalArgumentException("Message cannot be null");
+        }
+        return new Entry(message, message.getPriority(), System.nanoTime());
+    }
+
+    /** Adds an entry to its level. Caller must hold the lock. */
+    private void enqueue(Entry entry) {
+        levels.get(entry.priority()).addLast(entry);
+        size++;
+        notEmpty.signal();
+    }
+
+    // ======= Consuming ======= //
+
+    /**
+     * Takes the next message to deliver, waiting while the queue is empty.
+     *
+     * @return The next entry.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public Entry take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the next message to deliver, waiting at most the given time while the
+     * queue is empty.
+     *
+     * @param timeout How long to wait.
+     * @param unit    The unit of the timeout.
+     * @return The next entry, or null if the queue stayed empty.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public Entry poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the next entry: the oldest overdue head if any level has one and
+     * no take out of turn happened for a round, otherwise the head of the level
+     * picked by smooth weighted round robin over the non empty levels. Caller
+     * must hold the lock and the queue must not be empty.
+     */
+    private Entry dequeue() {
+        Priority overdue = null;
+        if (sincePromotion >= round) {
+            long now = System.nanoTime();
+            long oldest = Long.MAX_VALUE;
+            for (Map.Entry<Priority, ArrayDeque<Entry>> level : levels.entrySet()) {
+                Entry head = level.getValue().peekFirst();
+                if (head != null && now - head.queuedAt() > maxWaitNanos && head.queuedAt() < oldest) {
+                    overdue = level.getKey();
+                    oldest = head.queuedAt();
+                }
+            }
+        }
+        Priority chosen;
+        if (overdue != null) {
+            chosen = overdue;
+            promoted++;
+            sincePromotion = 0;
+        } else {
+            sincePromotion++;
+            chosen = null;
+            int total = 0;
+            for (Priority priority : Priority.values()) {
+                if (levels.get(priority).isEmpty()) {
+                    continue;
+                }
+                int weight = weights.get(priority);
+                int credit = credits.get(priority) + weight;
+                credits.put(priority, credit);
+                total += weight;
+                if (chosen == null || credit > credits.get(chosen)) {
+                    chosen = priority;
+                }
+            }
+            credits.put(chosen, credits.get(chosen) - total);
+        }
+        Entry entry = levels.get(chosen).pollFirst();
+        if (levels.get(chosen).isEmpty()) {
+            credits.put(chosen, 0);
+        }
+        size--;
+        notFull.signal();
+        return entry;
+    }
+
+    // ======= Queries ======= //
+
+    /** @return the number of queued messages. */
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of queued messages of a priority.
+     *
+     * @param priority The priority.
+     * @return The number of queued messages of this priority.
+     */
+    public int size(Priority priority) {
+        lock.lock();
+        try {
+            ArrayDeque<Entry> level = levels.get(priority);
+            return (level == null) ? 0 : level.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return the maximal number of queued messages. */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /** @return the number of messages served out of turn because they waited too long. */
+    public long getPromotedCount() {
+        lock.lock();
+        try {
+            return promoted;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A queued message.
+     *
+     * @param message  The board message.
+     * @param priority The priority it was queued with.
+     * @param queuedAt When it was queued (System.nanoTime).
+     */
+    public record Entry(BoardMessage message, Priority priority, long queuedAt) {
+    }
+}
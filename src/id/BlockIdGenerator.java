@@ -0,0 +1,64 @@
+package id;
+
+/**
+ * Hands out IDs from blocks pre-allocated per thread.
+ * Every thread reserves a block of IDs from the shared sequence and then
+ * generates IDs from it without any synchronization, so the shared counter is
+ * touched once per block instead of once per ID.
+ * IDs stay unique but are only increasing within a single thread.
+ */
+public class BlockIdGenerator implements IdGenerator {
+    /** The shared sequence the blocks are reserved from. */
+    private final SequenceIdGenerator sequence;
+    /** The number of IDs in each block. */
+    private final int blockSize;
+    /** The current block of each thread: {next id, end id (exclusive)}. */
+    private final ThreadLocal<long[]> block = ThreadLocal.withInitial(() -> new long[2]);
+    /** Lowest ID that may still be handed out (blocks below it are dropped). */
+    private volatile long floor;
+
+    /**
+     * Constructs a block generator over a shared sequence.
+     * 
+     * @param sequence  The sequence to reserve the blocks from.
+     * @param blockSize The number of IDs reserved at once by each thread.
+     * @throws IllegalArgumentException If the sequence is null or the block size
+     *                                  is not positive.
+     */
+    public BlockIdGenerator(SequenceIdGenerator sequence, int blockSize) {
+        if (sequence == null) {
+            throw new IllegalArgumentException("Sequence cannot be null");
+        }
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be positive");
+        }
+        this.sequence = sequence;
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public long nextId() {
+        long[] range = block.get();
+        if (range[0] == range[1] || range[0] < floor) {
+            range[0] = sequence.reserve(blockSize);
+            range[1] = range[0] + blockSize;
+        }
+        return range[0]++;
+    }
+
+    /**
+     * Moves the shared sequence forward, and makes every thread drop the rest of
+     * a block reserved below the given value.
+     * 
+     * @param id The lowest value the following IDs may have.
+     */
+    @Override
+    public void advanceTo(long id) {
+        sequence.advanceTo(id);
+        synchronized (this) {
+            if (id > floor) {
+                floor = id;
+            }
+        }
+    }
+}
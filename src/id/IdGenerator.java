@@ -0,0 +1,43 @@
+package id;
+
+/**
+ * Interface for the strategies generating unique message IDs.
+ * Implementations must be thread-safe, since messages may be created by
+ * several threads at the same time.
+ */
+public interface IdGenerator {
+    /**
+     * Generates the next unique ID.
+     * 
+     * @return A new positive 64-bit ID.
+     */
+    public long nextId();
+
+    /**
+     * Generates several unique IDs at once. Implementations may reserve them
+     * in a single operation.
+     * 
+     * @param count The number of IDs to generate.
+     * @return The new IDs.
+     * @throws IllegalArgumentException If count is negative.
+     */
+    public default long[] nextIds(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Number of ids cannot be negative");
+        }
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = nextId();
+        }
+        return ids;
+    }
+
+    /**
+     * Moves the generator forward so every ID generated afterwards is at least
+     * the given value. Used after restoring messages whose IDs were generated
+     * earlier (e.g. by a previous run), so they are never handed out again.
+     * 
+     * @param id The lowest value the following IDs may have.
+     */
+    public void advanceTo(long id);
+}
@@ -0,0 +1,41 @@
+package id;
+
+/**
+ * Holds the ID generator used by every new message.
+ * Defaults to a plain atomic sequence starting at 1; deployments may switch
+ * to a block or snowflake generator at startup, before messages are created.
+ */
+public final class IdGenerators {
+    /** The generator used by new messages. */
+    private static volatile IdGenerator current = new SequenceIdGenerator();
+
+    private IdGenerators() {
+    }
+
+    /**
+     * Generates the next message ID with the current generator.
+     * 
+     * @return A new unique ID.
+     */
+    public static long next() {
+        return current.nextId();
+    }
+
+    /** @return the current generator. */
+    public static IdGenerator get() {
+        return current;
+    }
+
+    /**
+     * Replaces the current generator.
+     * 
+     * @param generator The generator to use from now on.
+     * @throws IllegalArgumentException If generator is null.
+     */
+    public static void set(IdGenerator generator) {
+        if (generator == null) {
+            throw new IllegalArgumentException("Id generator cannot be null");
+        }
+        current = generator;
+    }
+}
@@ -0,0 +1,74 @@
+package id;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates IDs from a single atomic 64-bit counter.
+ * Each call costs one atomic increment; under heavy contention wrap it with a
+ * BlockIdGenerator so threads only touch the counter once per block.
+ */
+public class SequenceIdGenerator implements IdGenerator {
+    /** The next ID to hand out. */
+    private final AtomicLong next;
+
+    /** Constructs a sequence starting at 1. */
+    public SequenceIdGenerator() {
+        this(1);
+    }
+
+    /**
+     * Constructs a sequence starting at the given value.
+     * 
+     * @param start The first ID to hand out.
+     * @throws IllegalArgumentException If start is not positive.
+     */
+    public SequenceIdGenerator(long start) {
+        if (start < 1) {
+            throw new IllegalArgumentException("Start id must be positive");
+        }
+        next = new AtomicLong(start);
+    }
+
+    @Override
+    public long nextId() {
+        return next.getAndIncrement();
+    }
+
+    @Override
+    public long[] nextIds(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Number of ids cannot be negative");
+        }
+        long[] ids = new long[count];
+        long first = (count == 0) ? 0 : reserve(count);
+        for (int i = 0; i < count; i++) {
+            ids[i] = first + i;
+        }
+        return ids;
+    }
+
+    /**
+     * Reserves a block of consecutive IDs with a single atomic operation.
+     * 
+     * @param size The number of IDs to reserve.
+     * @return The first ID of the reserved block.
+     * @throws IllegalArgumentException If size is not positive.
+     */
+    public long reserve(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Block size must be positive");
+        }
+        return next.getAndAdd(size);
+    }
+
+    /**
+     * Moves the sequence forward so the next ID is at least the given value.
+     * Used after restoring messages whose IDs were generated earlier.
+     * 
+     * @param id The lowest value the next ID may have.
+     */
+    @Override
+    public void advanceTo(long id) {
+        next.accumulateAndGet(id, Math::max);
+    }
+}
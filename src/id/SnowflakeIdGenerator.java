@@ -0,0 +1,89 @@
+package id;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates node partitioned, time ordered IDs for multi-instance deployments.
+ * Each ID is made of 41 bits of milliseconds since a custom epoch, 10 bits of
+ * node ID and 12 bits of per-millisecond sequence, so up to 1024 nodes can
+ * generate IDs independently without ever colliding.
+ * The timestamp and sequence are packed in one atomic long and updated with
+ * compare-and-set, so no lock is taken.
+ */
+public class SnowflakeIdGenerator implements IdGenerator {
+    /** Custom epoch (2024-01-01T00:00:00Z) the timestamps are counted from. */
+    public static final long EPOCH = 1704067200000L;
+    /** Number of bits holding the node ID. */
+    private static final int NODE_BITS = 10;
+    /** Number of bits holding the per-millisecond sequence. */
+    private static final int SEQUENCE_BITS = 12;
+    /** Highest node ID. */
+    public static final int MAX_NODE = (1 << NODE_BITS) - 1;
+    /** Mask of the sequence bits. */
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    /** The node ID of this generator. */
+    private final int nodeId;
+    /** Last used state: (timestamp << SEQUENCE_BITS) | sequence. */
+    private final AtomicLong state = new AtomicLong();
+
+    /**
+     * Constructs a generator for the given node.
+     * 
+     * @param nodeId The node ID, between 0 and MAX_NODE.
+     * @throws IllegalArgumentException If the node ID is out of range.
+     */
+    public SnowflakeIdGenerator(int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE) {
+            throw new IllegalArgumentException("Node id must be between 0-" + MAX_NODE);
+        }
+        this.nodeId = nodeId;
+    }
+
+    /** @return the node ID of this generator. */
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public long nextId() {
+        while (true) {
+            long prev = state.get();
+            long prevTime = prev >>> SEQUENCE_BITS;
+            long now = System.currentTimeMillis() - EPOCH;
+            long next;
+            if (now > prevTime) {
+                next = now << SEQUENCE_BITS;
+            } else if ((prev & SEQUENCE_MASK) < SEQUENCE_MASK) {
+                // Same millisecond (or clock moved back): keep the last time, bump the sequence.
+                next = prev + 1;
+            } else {
+                // Sequence exhausted for this millisecond: borrow the next one.
+                next = (prevTime + 1) << SEQUENCE_BITS;
+            }
+            if (state.compareAndSet(prev, next)) {
+                long time = next >>> SEQUENCE_BITS;
+                return (time << (NODE_BITS + SEQUENCE_BITS))
+                        | ((long) nodeId << SEQUENCE_BITS)
+                        | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    /**
+     * Moves the generator past the millisecond of the ID before the given one,
+     * so the following IDs are greater than every ID generated up to it by any
+     * node.
+     * 
+     * @param id The lowest value the following IDs may have.
+     */
+    @Override
+    public void advanceTo(long id) {
+        if (id <= 1) {
+            return;
+        }
+        long time = (id - 1) >>> (NODE_BITS + SEQUENCE_BITS);
+        // A full sequence makes the next ID borrow the following millisecond.
+        state.accumulateAndGet((time << SEQUENCE_BITS) | SEQUENCE_MASK, Math::max);
+    }
+}
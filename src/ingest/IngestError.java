@@ -0,0 +1,11 @@
+package ingest;
+
+/**
+ * A row that could not be ingested.
+ *
+ * @param line   The line number of the row in the file, starting at 1.
+ * @param reason Why the row was rejected.
+ * @param row    The text of the row (shortened when very long).
+ */
+public record IngestError(long line, String reason, String row) {
+}
@@ -0,0 +1,34 @@
+package ingest;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/** Formats of the files the MessageIngester can load. */
+public enum IngestFormat {
+    /**
+     * Comma separated values with a header row naming the columns (RFC 4180).
+     * Fields may be quoted with '"' (doubled to escape), and quoted fields may
+     * span lines.
+     */
+    CSV,
+    /** Newline delimited JSON: one message object per line. */
+    NDJSON;
+
+    /**
+     * Guesses the format of a file from its extension (.csv, .ndjson, .jsonl).
+     *
+     * @param file The file.
+     * @return The format.
+     * @throws IllegalArgumentException If the extension is not recognized.
+     */
+    public static IngestFormat of(Path file) {
+        String name = String.valueOf(file.getFileName()).toLowerCase(Locale.ROOT);
+        if (name.endsWith(".csv")) {
+            return CSV;
+        }
+        if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+            return NDJSON;
+        }
+        throw new IllegalArgumentException("Unknown ingest file type: " + file);
+    }
+}
@@ -0,0 +1,18 @@
+package ingest;
+
+/**
+ * Receives the progress of an ingest, after every chunk inserted in the store.
+ * Called from the thread running the ingest.
+ */
+@FunctionalInterface
+public interface IngestProgress {
+    /**
+     * Reports the progress of an ingest.
+     *
+     * @param bytesDone  Bytes of the file processed so far.
+     * @param totalBytes Size of the file.
+     * @param inserted   Messages inserted so far.
+     * @param failed     Rows rejected so far.
+     */
+    public void onProgress(long bytesDone, long totalBytes, long inserted, long failed);
+}
@@ -0,0 +1,77 @@
+package ingest;
+
+import java.util.List;
+
+/**
+ * Outcome of an ingest: how many rows were read, inserted and rejected, and
+ * the first rejected rows.
+ */
+public class IngestReport {
+    /** Number of non blank rows read. */
+    private final long rows;
+    /** Number of messages inserted in the store. */
+    private final long inserted;
+    /** Number of rejected rows. */
+    private final long failed;
+    /** The first rejected rows, in file order. */
+    private final List<IngestError> errors;
+    /** Size of the file, in bytes. */
+    private final long bytes;
+    /** Duration of the ingest, in milliseconds. */
+    private final long elapsedMillis;
+
+    /**
+     * Constructs a report.
+     *
+     * @param rows          Number of non blank rows read.
+     * @param inserted      Number of messages inserted in the store.
+     * @param failed        Number of rejected rows.
+     * @param errors        The first rejected rows, in file order.
+     * @param bytes         Size of the file, in bytes.
+     * @param elapsedMillis Duration of the ingest, in milliseconds.
+     */
+    public IngestReport(long rows, long inserted, long failed, List<IngestError> errors, long bytes,
+            long elapsedMillis) {
+        this.rows = rows;
+        this.inserted = inserted;
+        this.failed = failed;
+        this.errors = List.copyOf(errors);
+        this.bytes = bytes;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /** @return the number of non blank rows read. */
+    public long getRows() {
+        return rows;
+    }
+
+    /** @return the number of messages inserted in the store. */
+    public long getInserted() {
+        return inserted;
+    }
+
+    /** @return the number of rejected rows. */
+    public long getFailed() {
+        return failed;
+    }
+
+    /** @return the first rejected rows, in file order (read-only). */
+    public List<IngestError> getErrors() {
+        return errors;
+    }
+
+    /** @return the size of the file, in bytes. */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /** @return the duration of the ingest, in milliseconds. */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "Ingested " + inserted + " of " + rows + " rows (" + failed + " rejected) in " + elapsedMillis + " ms";
+    }
+}
@@ -0,0 +1,478 @@
+package ingest;
+
+import id.IdGenerators;
+import json.Json;
+import model.Message;
+import model.ReactionException;
+import store.MessageStore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Bulk loader of messages from CSV or NDJSON files.
+ * The file is memory-mapped in chunks of about chunkBytes, each ending on a
+ * record boundary: a line feed, outside a quoted field for CSV, so quoted CSV
+ * fields may span lines (RFC 4180). The reading thread counts the records of
+ * every chunk and reserves their IDs in file order, then a pool parses and validates the
+ * chunks in parallel (see RowMapper for the row fields). Parsed chunks are
+ * inserted into the store in file order with one bulk insert each, so
+ * message IDs and store order follow the file. Only a bounded window of
+ * chunks is in flight, so memory does not grow with the file size.
+ * Rejected rows do not stop the ingest: they are counted and the first
+ * maxErrors of them are kept in the report with their line number.
+ */
+public class MessageIngester {
+    /** Default size of a parsing chunk, in bytes. */
+    public static final int DEFAULT_CHUNK_BYTES = 4 << 20;
+    /** Default number of rejected rows kept in the report. */
+    public static final int DEFAULT_MAX_ERRORS = 1000;
+    /** Longest row text kept in an IngestError. */
+    private static final int MAX_ROW_TEXT = 200;
+    /** The UTF-8 byte order mark. */
+    private static final byte[] BOM = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+
+    /** The store the messages are inserted into. */
+    private final MessageStore store;
+    /** Number of parsing threads. */
+    private final int parallelism;
+    /** Target size of a chunk, in bytes. */
+    private final int chunkBytes;
+    /** Number of rejected rows kept in the report. */
+    private final int maxErrors;
+
+    // ======= Constructors ======= //
+
+    /**
+     * Constructs an ingester with one parsing thread per processor and the
+     * default chunk size and error limit.
+     *
+     * @param store The store the messages are inserted into.
+     * @throws IllegalArgumentException If the store is null.
+     */
+    public MessageIngester(MessageStore store) {
+        this(store, Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_BYTES, DEFAULT_MAX_ERRORS);
+    }
+
+    /**
+     * Constructs an ingester.
+     *
+     * @param store       The store the messages are inserted into.
+     * @param parallelism Number of parsing threads.
+     * @param chunkBytes  Target size of a chunk, in bytes.
+     * @param maxErrors   Number of rejected rows kept in the report.
+     * @throws IllegalArgumentException If the store is null, parallelism or
+     *                                  chunkBytes is not positive, or maxErrors
+     *                                  is negative.
+     */
+    public MessageIngester(MessageStore store, int parallelism, int chunkBytes, int maxErrors) {
+        if (store == null) {
+            throw new IllegalArgumentException("Store cannot be null");
+        }
+        if (parallelism < 1 || chunkBytes < 1) {
+            throw new IllegalArgumentException("Parallelism and chunk size must be positive");
+        }
+        if (maxErrors < 0) {
+            throw new IllegalArgumentException("Error limit cannot be negative");
+        }
+        this.store = store;
+        this.parallelism = parallelism;
+        this.chunkBytes = chunkBytes;
+        this.maxErrors = maxErrors;
+    }
+
+    // ======= Ingest ======= //
+
+    /**
+     * Loads a file, guessing its format from the extension.
+     *
+     * @param file The file to load.
+     * @return The report of the ingest.
+     * @throws IOException              If the file cannot be read.
+     * @throws IllegalArgumentException If the extension is not recognized.
+     */
+    public IngestReport ingest(Path file) throws IOException {
+        return ingest(file, IngestFormat.of(file), null);
+    }
+
+    /**
+     * Loads a file.
+     *
+     * @param file     The file to load.
+     * @param format   The format of the file.
+     * @param progress Receives the progress after every chunk (may be null).
+     * @return The report of the ingest.
+     * @throws IOException              If the file cannot be read, or a CSV file
+     *                                  has no header.
+     * @throws IllegalArgumentException If the file or format is null.
+     */
+    public IngestReport ingest(Path file, IngestFormat format, IngestProgress progress) throws IOException {
+        if (file == null || format == null) {
+            throw new IllegalArgumentException("File and format cannot be null");
+        }
+        long started = System.nanoTime();
+        long defaultTimestamp = System.currentTimeMillis();
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "message-ingest");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = startOfData(channel, size);
+            long line = 1;
+            Map<String, Integer> columns = null;
+            if (format == IngestFormat.CSV) {
+                if (position >= size) {
+                    throw new IOException("CSV file has no header row: " + file);
+                }
+                ByteBuffer first = nextChunk(channel, position, size, 1, format);
+                String header = StandardCharsets.UTF_8.decode(first).toString();
+                columns = header(stripEnd(header));
+                position += first.limit();
+                line += countRecords(first, format).lines();
+            }
+            Totals totals = new Totals();
+            ArrayDeque<Future<Chunk>> window = new ArrayDeque<>();
+            while (position < size) {
+                if (window.size() >= 2 * parallelism) {
+                    insert(window.poll(), totals, size, progress);
+                }
+                ByteBuffer bytes = nextChunk(channel, position, size, chunkBytes, format);
+                Counts counts = countRecords(bytes, format);
+                long[] ids = reserveIds(counts.records());
+                long firstLine = line;
+                Map<String, Integer> chunkColumns = columns;
+                window.add(pool.submit(() -> parse(bytes, format, chunkColumns, firstLine, ids, defaultTimestamp)));
+                position += bytes.limit();
+                line += counts.lines();
+            }
+            while (!window.isEmpty()) {
+                insert(window.poll(), totals, size, progress);
+            }
+            long elapsed = (System.nanoTime() - started) / 1_000_000;
+            return new IngestReport(totals.rows, totals.inserted, totals.failed, totals.errors, size, elapsed);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Running totals of an ingest. */
+    private static class Totals {
+        long rows;
+        long inserted;
+        long failed;
+        long bytes;
+        final ArrayList<IngestError> errors = new ArrayList<>();
+    }
+
+    /** Waits for a parsed chunk, inserts it and reports the progress. */
+    private void insert(Future<Chunk> future, Totals totals, long size, IngestProgress progress)
+            throws IOException {
+        Chunk chunk;
+        try {
+            chunk = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Ingest interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to parse a chunk", e.getCause());
+        }
+        store.addAll(chunk.messages);
+        totals.rows += chunk.rows;
+        totals.inserted += chunk.messages.size();
+        totals.failed += chunk.errors.size();
+        totals.bytes += chunk.bytes;
+        for (IngestError error : chunk.errors) {
+            if (totals.errors.size() >= maxErrors) {
+                break;
+            }
+            totals.errors.add(error);
+        }
+        if (progress != null) {
+            progress.onProgress(totals.bytes, size, totals.inserted, totals.failed);
+        }
+    }
+
+    // ======= Chunking ======= //
+
+    /** Gets the position of the first data byte, after an optional byte order mark. */
+    private static long startOfData(FileChannel channel, long size) throws IOException {
+        if (size < BOM.length) {
+            return 0;
+        }
+        ByteBuffer head = channel.map(FileChannel.MapMode.READ_ONLY, 0, BOM.length);
+        for (byte b : BOM) {
+            if (head.get() != b) {
+                return 0;
+            }
+        }
+        return BOM.length;
+    }
+
+    /**
+     * Maps the next chunk: at least target bytes (unless the file ends first),
+     * extended to the end of the record it stops in. The position must be at
+     * the start of a record.
+     */
+    private static ByteBuffer nextChunk(FileChannel channel, long position, long size, int target,
+            IngestFormat format) throws IOException {
+        long lookahead = Math.max(target, 1024);
+        while (true) {
+            long length = Math.min(size - position, (long) target + lookahead);
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Record too long at byte " + position);
+            }
+            MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            int from = (int) Math.min(length, target) - 1;
+            RecordSplitter splitter = new RecordSplitter(format);
+            for (int i = 0; i < length; i++) {
+                if (splitter.endsRecord(region.get(i)) && i >= from) {
+                    return region.slice(0, i + 1);
+                }
+            }
+            if (position + length == size) {
+                return region;
+            }
+            lookahead *= 2;
+        }
+    }
+
+    /**
+     * Counts the records and lines of a chunk (a last record or line without a
+     * line feed counts too).
+     */
+    private static Counts countRecords(ByteBuffer bytes, IngestFormat format) {
+        int records = 0;
+        int lines = 0;
+        int limit = bytes.limit();
+        RecordSplitter splitter = new RecordSplitter(format);
+        boolean ended = true;
+        for (int i = 0; i < limit; i++) {
+            byte b = bytes.get(i);
+            ended = splitter.endsRecord(b);
+            if (ended) {
+                records++;
+            }
+            if (b == '\n') {
+                lines++;
+            }
+        }
+        if (!ended) {
+            records++;
+        }
+        if (limit > 0 && bytes.get(limit - 1) != '\n') {
+            lines++;
+        }
+        return new Counts(records, lines);
+    }
+
+    /** Numbers of records and of lines of a chunk. */
+    private record Counts(int records, int lines) {
+    }
+
+    /**
+     * Finds the ends of the records of a text read one character at a time
+     * (bytes of UTF-8 text work too, as only ASCII characters matter). NDJSON
+     * records end at every line feed. CSV records end at a line feed outside a
+     * quoted field; a field is quoted when it starts with a quote, as in
+     * csvFields.
+     */
+    private static final class RecordSplitter {
+        /** At the start of a CSV field. */
+        private static final int FIELD_START = 0;
+        /** In an unquoted CSV field. */
+        private static final int UNQUOTED = 1;
+        /** In a quoted CSV field. */
+        private static final int QUOTED = 2;
+        /** Just after a quote in a quoted CSV field: its end or half of a doubled quote. */
+        private static final int QUOTE = 3;
+
+        /** True for CSV, false for NDJSON. */
+        private final boolean csv;
+        /** Current CSV state. */
+        private int state = FIELD_START;
+
+        RecordSplitter(IngestFormat format) {
+            this.csv = format == IngestFormat.CSV;
+        }
+
+        /** Reads a character and tells whether it ends a record. */
+        boolean endsRecord(int c) {
+            if (!csv) {
+                return c == '\n';
+            }
+            switch (state) {
+                case QUOTED -> {
+                    if (c == '"') {
+                        state = QUOTE;
+                    }
+                    return false;
+                }
+                case QUOTE -> state = (c == '"') ? QUOTED : UNQUOTED;
+                case FIELD_START -> state = (c == '"') ? QUOTED : UNQUOTED;
+                default -> {
+                }
+            }
+            if (c == ',' && state == UNQUOTED) {
+                state = FIELD_START;
+            } else if (c == '\n' && state == UNQUOTED) {
+                state = FIELD_START;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /** Reserves one ID per line, in order, with a single atomic step when possible. */
+    private static long[] reserveIds(int count) {
+        return IdGenerators.get().nextIds(count);
+    }
+
+    // ======= Parsing ======= //
+
+    /** A parsed chunk. */
+    private static class Chunk {
+        final ArrayList<Message> messages = new ArrayList<>();
+        final ArrayList<IngestError> errors = new ArrayList<>();
+        int rows;
+        long bytes;
+    }
+
+    /** Parses the rows of a chunk. Runs on the pool. */
+    private static Chunk parse(ByteBuffer bytes, IngestFormat format, Map<String, Integer> columns,
+            long firstLine, long[] ids, long defaultTimestamp) {
+        Chunk chunk = new Chunk();
+        chunk.bytes = bytes.limit();
+        String text = StandardCharsets.UTF_8.decode(bytes).toString();
+        RecordSplitter splitter = new RecordSplitter(format);
+        int start = 0;
+        int lines = 0; // line feeds before the current record
+        for (int i = 0; start < text.length(); i++) {
+            int end = start;
+            int rowLines = 0;
+            while (end < text.length() && !splitter.endsRecord(text.charAt(end))) {
+                if (text.charAt(end) == '\n') {
+                    rowLines++;
+                }
+                end++;
+            }
+            String row = stripEnd(text.substring(start, end));
+            long rowLine = firstLine + lines;
+            start = end + 1;
+            lines += rowLines + 1;
+            if (row.isBlank()) {
+                continue;
+            }
+            chunk.rows++;
+            try {
+                Message message;
+                if (format == IngestFormat.CSV) {
+                    List<String> values = csvFields(row);
+                    message = RowMapper.toMessage(ids[i], name -> {
+                        Integer column = columns.get(name);
+                        return (column == null || column >= values.size()) ? null : values.get(column);
+                    }, defaultTimestamp);
+                } else {
+                    Map<String, Object> object = Json.parseObject(row);
+                    message = RowMapper.toMessage(ids[i], object::get, defaultTimestamp);
+                }
+                chunk.messages.add(message);
+            } catch (RuntimeException | ReactionException e) {
+                // Whatever a row throws only rejects that row, never the chunk around it.
+                String reason = (e instanceof IllegalArgumentException || e instanceof ReactionException)
+                        ? e.getMessage() : e.toString();
+                chunk.errors.add(new IngestError(rowLine, reason,
+                        row.length() <= MAX_ROW_TEXT ? row : row.substring(0, MAX_ROW_TEXT) + "..."));
+            }
+        }
+        return chunk;
+    }
+
+    /** Maps the column names of a CSV header (lower case) to their index. */
+    private static Map<String, Integer> header(String row) throws IOException {
+        HashMap<String, Integer> columns = new HashMap<>();
+        List<String> names;
+        try {
+            names = csvFields(row);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid CSV header: " + e.getMessage(), e);
+        }
+        for (int i = 0; i < names.size(); i++) {
+            columns.putIfAbsent(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        if (!columns.containsKey("type")) {
+            throw new IOException("CSV header has no type column");
+        }
+        return columns;
+    }
+
+    /**
+     * Splits a CSV record into its fields. Quoted fields may contain commas,
+     * line breaks and doubled quotes; unquoted fields are taken as they are.
+     *
+     * @throws IllegalArgumentException If a quoted field is not closed.
+     */
+    static List<String> csvFields(String row) {
+        ArrayList<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        int i = 0;
+        while (true) {
+            field.setLength(0);
+            if (i < row.length() && row.charAt(i) == '"') {
+                i++;
+                while (true) {
+                    if (i >= row.length()) {
+                        throw new IllegalArgumentException("Unterminated quoted field");
+                    }
+                    char c = row.charAt(i++);
+                    if (c != '"') {
+                        field.append(c);
+                    } else if (i < row.length() && row.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+                if (i < row.length() && row.charAt(i) != ',') {
+                    throw new IllegalArgumentException("Unexpected character after quoted field");
+                }
+            } else {
+                int comma = row.indexOf(',', i);
+                int end = (comma < 0) ? row.length() : comma;
+                field.append(row, i, end);
+                i = end;
+            }
+            fields.add(field.toString());
+            if (i >= row.length()) {
+                return fields;
+            }
+            i++; // the comma
+        }
+    }
+
+    /** Removes the line terminator left on a row. */
+    private static String stripEnd(String row) {
+        int end = row.length();
+        while (end > 0 && (row.charAt(end - 1) == '\n' || row.charAt(end - 1) == '\r')) {
+            end--;
+        }
+        return row.substring(0, end);
+    }
+}
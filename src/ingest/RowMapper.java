@@ -0,0 +1,165 @@
+package ingest;
+
+import id.IdGenerators;
+import model.BoardMessage;
+import model.EmailMessage;
+import model.File;
+import model.Message;
+import model.Priority;
+import model.ReactionException;
+import model.ReactionMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Turns the fields of an ingested row into a message.
+ * Rows carry a "type" (board, email or reaction), "sender" and "content",
+ * an optional epoch millis "timestamp", and the fields of their type:
+ * "priority" for a board, "subject" and optional "attachments" for an email
+ * and "reaction" for a reaction. Messages are built with their restoring
+ * constructors, so they go through the same validation as any other message.
+ */
+public final class RowMapper {
+    private RowMapper() {
+    }
+
+    /**
+     * Builds a new message from named fields, with a new ID and the current
+     * time when no timestamp is given.
+     *
+     * @param fields The fields of the message.
+     * @return The message.
+     * @throws IllegalArgumentException If the fields are null, or a field is
+     *                                  missing or invalid.
+     * @throws ReactionException        If the reaction type is invalid.
+     */
+    public static Message toMessage(Map<String, ?> fields) throws ReactionException {
+        if (fields == null) {
+            throw new IllegalArgumentException("Fields cannot be null");
+        }
+        return toMessage(IdGenerators.next(), fields::get, System.currentTimeMillis());
+    }
+
+    /**
+     * Builds the message of a row.
+     *
+     * @param id               The ID of the message.
+     * @param field            Gets a field of the row by name (null if missing).
+     * @param defaultTimestamp Timestamp of rows without one.
+     * @return The message.
+     * @throws IllegalArgumentException If a field is missing or invalid.
+     * @throws ReactionException        If the reaction type is invalid.
+     */
+    static Message toMessage(long id, Function<String, Object> field, long defaultTimestamp)
+            throws ReactionException {
+        String type = text(field, "type");
+        if (type == null) {
+            throw new IllegalArgumentException("Missing message type");
+        }
+        String sender = text(field, "sender");
+        String content = text(field, "content");
+        long timestamp = timestamp(field.apply("timestamp"), defaultTimestamp);
+        switch (type.trim().toLowerCase(Locale.ROOT)) {
+            case "board":
+                return new BoardMessage(id, sender, content, timestamp,
+                        constant(Priority.class, text(field, "priority"), "priority"), new ArrayList<>());
+            case "email":
+                return new EmailMessage(id, sender, content, text(field, "subject"), timestamp,
+                        attachments(field.apply("attachments")));
+            case "reaction":
+                return new ReactionMessage(id, sender, content, timestamp,
+                        constant(ReactionMessage.ReactionType.class, text(field, "reaction"), "reaction"));
+            default:
+                throw new IllegalArgumentException("Unknown message type: " + type);
+        }
+    }
+
+    /** Gets a field as text (numbers and booleans converted), or null. */
+    private static String text(Function<String, Object> field, String name) {
+        Object value = field.apply(name);
+        if (value == null || value instanceof String) {
+            return (String) value;
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return value.toString();
+        }
+        throw new IllegalArgumentException("Field " + name + " must be a string");
+    }
+
+    /** Parses an optional timestamp. */
+    private static long timestamp(Object value, long defaultTimestamp) {
+        if (value == null || (value instanceof String s && s.isBlank())) {
+            return defaultTimestamp;
+        }
+        if (value instanceof Long l) {
+            return l;
+        }
+        try {
+            return Long.parseLong(value.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid timestamp: " + value);
+        }
+    }
+
+    /** Parses an enum constant by name, ignoring case. */
+    private static <E extends Enum<E>> E constant(Class<E> type, String name, String field) {
+        if (name == null || name.isBlank()) {
+            return null; // rejected by the message setter
+        }
+        try {
+            return Enum.valueOf(type, name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown " + field + ": " + name);
+        }
+    }
+
+    /**
+     * Parses the attachments of an email: a JSON array of {"name", "type"}
+     * objects or "name.type" strings, or a text of "name.type" entries separated
+     * by ';'.
+     */
+    private static ArrayList<File> attachments(Object value) {
+        ArrayList<File> files = new ArrayList<>();
+        if (value == null) {
+            return files;
+        }
+        if (value instanceof String s) {
+            for (String entry : s.split(";")) {
+                if (!entry.isBlank()) {
+                    files.add(file(entry.trim()));
+                }
+            }
+            return files;
+        }
+        if (!(value instanceof List<?> list)) {
+            throw new IllegalArgumentException("Attachments must be a list");
+        }
+        for (Object item : list) {
+            if (item instanceof String s) {
+                files.add(file(s));
+            } else if (item instanceof Map<?, ?> map) {
+                files.add(new File(stringOrNull(map.get("name")), stringOrNull(map.get("type"))));
+            } else {
+                throw new IllegalArgumentException("Invalid attachment: " + item);
+            }
+        }
+        return files;
+    }
+
+    /** Splits a "name.type" entry at its last dot. */
+    private static File file(String entry) {
+        int dot = entry.lastIndexOf('.');
+        if (dot <= 0 || dot == entry.length() - 1) {
+            throw new IllegalArgumentException("Attachment must look like name.type: " + entry);
+        }
+        return new File(entry.substring(0, dot), entry.substring(dot + 1));
+    }
+
+    private static String stringOrNull(Object value) {
+        return (value == null) ? null : value.toString();
+    }
+}
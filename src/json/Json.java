@@ -0,0 +1,355 @@
+package json;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON reader and writer, enough for the message formats of the
+ * system without an external library.
+ * Parsed values are LinkedHashMap (objects, keys in document order),
+ * ArrayList (arrays), String, Long (integral numbers), Double (other numbers),
+ * Boolean and null. Arrays and objects nest at most MAX_DEPTH deep.
+ */
+public final class Json {
+    /** Deepest nesting of arrays and objects read, so deep input cannot overflow the stack. */
+    public static final int MAX_DEPTH = 512;
+
+    private final CharSequence text;
+    private int pos;
+    /** Number of arrays and objects open at the current position. */
+    private int depth;
+
+    private Json(CharSequence text) {
+        this.text = text;
+    }
+
+    // ======= Reading ======= //
+
+    /**
+     * Parses a JSON document.
+     *
+     * @param text The document.
+     * @return The parsed value.
+     * @throws IllegalArgumentException If the text is null, not valid JSON or
+     *                                  nested deeper than MAX_DEPTH.
+     */
+    public static Object parse(CharSequence text) {
+        if (text == null) {
+            throw new IllegalArgumentException("JSON text cannot be null");
+        }
+        Json reader = new Json(text);
+        reader.skipSpace();
+        Object value = reader.readValue();
+        reader.skipSpace();
+        if (reader.pos != text.length()) {
+            throw reader.error("Unexpected trailing characters");
+        }
+        return value;
+    }
+
+    /**
+     * Parses a JSON document that must be an object.
+     *
+     * @param text The document.
+     * @return The parsed object.
+     * @throws IllegalArgumentException If the text is not a valid JSON object.
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> parseObject(CharSequence text) {
+        if (!(parse(text) instanceof Map<?, ?> object)) {
+            throw new IllegalArgumentException("JSON value is not an object");
+        }
+        return (Map<String, Object>) object;
+    }
+
+    private Object readValue() {
+        if (pos >= text.length()) {
+            throw error("Unexpected end of input");
+        }
+        char c = text.charAt(pos);
+        switch (c) {
+            case '{':
+            case '[':
+                if (++depth > MAX_DEPTH) {
+                    throw error("Nesting deeper than " + MAX_DEPTH);
+                }
+                Object nested = (c == '{') ? readObject() : readArray();
+                depth--;
+                return nested;
+            case '"':
+                return readString();
+            case 't':
+                expect("true");
+                return Boolean.TRUE;
+            case 'f':
+                expect("false");
+                return Boolean.FALSE;
+            case 'n':
+                expect("null");
+                return null;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return readNumber();
+                }
+                throw error("Unexpected character '" + c + "'");
+        }
+    }
+
+    private LinkedHashMap<String, Object> readObject() {
+        LinkedHashMap<String, Object> object = new LinkedHashMap<>();
+        pos++; // '{'
+        skipSpace();
+        if (peek() == '}') {
+            pos++;
+            return object;
+        }
+        while (true) {
+            skipSpace();
+            if (peek() != '"') {
+                throw error("Expected a member name");
+            }
+            String key = readString();
+            skipSpace();
+            if (peek() != ':') {
+                throw error("Expected ':'");
+            }
+            pos++;
+            skipSpace();
+            object.put(key, readValue());
+            skipSpace();
+            char c = peek();
+            pos++;
+            if (c == '}') {
+                return object;
+            }
+            if (c != ',') {
+                throw error("Expected ',' or '}'");
+            }
+        }
+    }
+
+    private ArrayList<Object> readArray() {
+        ArrayList<Object> array = new ArrayList<>();
+        pos++; // '['
+        skipSpace();
+        if (peek() == ']') {
+            pos++;
+            return array;
+        }
+        while (true) {
+            skipSpace();
+            array.add(readValue());
+            skipSpace();
+            char c = peek();
+            pos++;
+            if (c == ']') {
+                return array;
+            }
+            if (c != ',') {
+                throw error("Expected ',' or ']'");
+            }
+        }
+    }
+
+    private String readString() {
+        pos++; // opening quote
+        StringBuilder sb = null;
+        int start = pos;
+        while (true) {
+            if (pos >= text.length()) {
+                throw error("Unterminated string");
+            }
+            char c = text.charAt(pos);
+            if (c == '"') {
+                String s = (sb == null) ? text.subSequence(start, pos).toString()
+                        : sb.append(text, start, pos).toString();
+                pos++;
+                return s;
+            }
+            if (c < ' ') {
+                throw error("Control character in string");
+            }
+            if (c != '\\') {
+                pos++;
+                continue;
+            }
+            if (sb == null) {
+                sb = new StringBuilder();
+            }
+            sb.append(text, start, pos);
+            pos++;
+            if (pos >= text.length()) {
+                throw error("Unterminated escape");
+            }
+            char e = text.charAt(pos++);
+            switch (e) {
+                case '"', '\\', '/' -> sb.append(e);
+                case 'b' -> sb.append('\b');
+                case 'f' -> sb.append('\f');
+                case 'n' -> sb.append('\n');
+                case 'r' -> sb.append('\r');
+                case 't' -> sb.append('\t');
+                case 'u' -> {
+                    if (pos + 4 > text.length()) {
+                        throw error("Truncated unicode escape");
+                    }
+                    try {
+                        sb.append((char) Integer.parseInt(text.subSequence(pos, pos + 4).toString(), 16));
+                    } catch (NumberFormatException ex) {
+                        throw error("Invalid unicode escape");
+                    }
+                    pos += 4;
+                }
+                default -> throw error("Invalid escape '\\" + e + "'");
+            }
+            start = pos;
+        }
+    }
+
+    private Number readNumber() {
+        int start = pos;
+        boolean integral = true;
+        if (peek() == '-') {
+            pos++;
+        }
+        while (pos < text.length()) {
+            char c = text.charAt(pos);
+            if (c >= '0' && c <= '9') {
+                pos++;
+            } else if (c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                integral = false;
+                pos++;
+            } else {
+                break;
+            }
+        }
+        String number = text.subSequence(start, pos).toString();
+        try {
+            return integral ? (Number) Long.parseLong(number) : (Number) Double.parseDouble(number);
+        } catch (NumberFormatException e) {
+            throw error("Invalid number '" + number + "'");
+        }
+    }
+
+    private void expect(String word) {
+        if (pos + word.length() > text.length() || !text.subSequence(pos, pos + word.length()).toString().equals(word)) {
+            throw error("Expected '" + word + "'");
+        }
+        pos += word.length();
+    }
+
+    private char peek() {
+        if (pos >= text.length()) {
+            throw error("Unexpected end of input");
+        }
+        return text.charAt(pos);
+    }
+
+    private void skipSpace() {
+        while (pos < text.length()) {
+            char c = text.charAt(pos);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at offset " + pos);
+    }
+
+    // ======= Writing ======= //
+
+    /**
+     * Writes a value as JSON. Supports the same types parse returns, plus any
+     * other Number, Map with String keys and List.
+     *
+     * @param value The value to write.
+     * @param out   The output to write to.
+     * @throws IOException              If the output fails.
+     * @throws IllegalArgumentException If the value has an unsupported type.
+     */
+    public static void write(Object value, Appendable out) throws IOException {
+        if (value == null) {
+            out.append("null");
+        } else if (value instanceof CharSequence s) {
+            writeString(s, out);
+        } else if (value instanceof Number || value instanceof Boolean) {
+            out.append(value.toString());
+        } else if (value instanceof Map<?, ?> map) {
+            out.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                writeString(String.valueOf(entry.getKey()), out);
+                out.append(':');
+                write(entry.getValue(), out);
+            }
+            out.append('}');
+        } else if (value instanceof List<?> list) {
+            out.append('[');
+            for (int i = 0; i < list.size(); i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                write(list.get(i), out);
+            }
+            out.append(']');
+        } else {
+            throw new IllegalArgumentException("Unsupported JSON value: " + value.getClass().getName());
+        }
+    }
+
+    /**
+     * Writes a value as a JSON string.
+     *
+     * @param value The value.
+     * @return The JSON text.
+     */
+    public static String toJson(Object value) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            write(value, sb);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringBuilder never throws
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes a quoted, escaped JSON string.
+     *
+     * @param s   The string.
+     * @param out The output to write to.
+     * @throws IOException If the output fails.
+     */
+    public static void writeString(CharSequence s, Appendable out) throws IOException {
+        out.append('"');
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= ' ' && c != '"' && c != '\\') {
+                continue;
+            }
+            out.append(s, start, i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> out.append(String.format("\\u%04x", (int) c));
+            }
+            start = i + 1;
+        }
+        out.append(s, start, s.length()).append('"');
+    }
+}
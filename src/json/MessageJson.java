@@ -0,0 +1,75 @@
+package json;
+
+import model.BoardMessage;
+import model.EmailMessage;
+import model.File;
+import model.Message;
+import model.ReactionMessage;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * JSON form of the messages, with the same field names the ingest and the
+ * command mode read: id, type, sender, content and timestamp, then
+ * priority and reaction counts for a board, subject and attachments for an
+ * email, and reaction for a reaction.
+ */
+public final class MessageJson {
+    private MessageJson() {
+    }
+
+    /**
+     * Converts a message to a JSON object.
+     *
+     * @param message The message.
+     * @return The fields of the message, ready for Json.write.
+     * @throws IllegalArgumentException If the message is null.
+     */
+    public static LinkedHashMap<String, Object> toMap(Message message) {
+        if (message == null) {
+            throw new IllegalArgumentException("Message cannot be null");
+        }
+        LinkedHashMap<String, Object> map = new LinkedHashMap<>();
+        map.put("id", message.getId());
+        map.put("type", message.getMessageType().toLowerCase(Locale.ROOT));
+        map.put("sender", message.getSender());
+        map.put("content", message.getContent());
+        map.put("timestamp", message.getTimestamp());
+        if (message instanceof BoardMessage board) {
+            map.put("priority", String.valueOf(board.getPriority()));
+            LinkedHashMap<String, Object> reactions = new LinkedHashMap<>();
+            board.getReactionCounts().forEach((type, count) -> reactions.put(type.name(), count));
+            map.put("reactions", reactions);
+        } else if (message instanceof EmailMessage email) {
+            map.put("subject", email.getSubject());
+            ArrayList<Object> attachments = new ArrayList<>();
+            for (File file : email.getAttachmentsView()) {
+                LinkedHashMap<String, Object> f = new LinkedHashMap<>();
+                f.put("name", file.getFileName());
+                f.put("type", file.getFileType());
+                attachments.add(f);
+            }
+            map.put("attachments", attachments);
+        } else if (message instanceof ReactionMessage reaction) {
+            map.put("reaction", String.valueOf(reaction.getReactionType()));
+        }
+        return map;
+    }
+
+    /**
+     * Converts messages to a list of JSON objects.
+     *
+     * @param messages The messages.
+     * @return The JSON objects, in the same order.
+     */
+    public static ArrayList<Object> toList(List<? extends Message> messages) {
+        ArrayList<Object> list = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            list.add(toMap(message));
+        }
+        return list;
+    }
+}
@@ -1,17 +1,27 @@
 package model;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Represents a board message extending the Message class.
  * Includes a priority and reactions list.
+ * Keeps a striped counter per reaction type, maintained as reactions are added,
+ * so counting reactions never copies or scans the reactions list.
+ * Reactions live in a lock-free ReactionList, so reactions can be added and
+ * read concurrently and read-only views are handed out without copying. The
+ * list and its counters are published together, so setReactions replaces them
+ * in a single write and readers never see one without the other.
  */
 public class BoardMessage extends Message {
     /** The priority of the board message. */
     private Priority priority;
-    /** A list of reactions to the board message. */
-    private ArrayList<ReactionMessage> reactions;
+    /** The reactions to the board message and their counters. */
+    private volatile Reactions reactions;
 
     // ======= Getters and Setters ======= //
 
@@ -39,25 +49,87 @@ public class BoardMessage extends Message {
 
     /**
      * Sets the reactions to the board message.
-     * Initializes an empty list if the provided list is null.
+     * The reactions are copied, so later changes to the given list do not affect
+     * the board. Initializes an empty list if the provided list is null.
      * 
      * @param reactions A list of reactions to set.
+     * @throws IllegalArgumentException if one of the reactions is null.
      */
     public void setReactions(ArrayList<ReactionMessage> reactions) {
-        if (reactions == null) {
-            this.reactions = new ArrayList<>();
-            return;
+        Reactions replacement = new Reactions(new ReactionList(reactions));
+        for (ReactionMessage reaction : replacement.list.snapshot()) {
+            replacement.count(reaction);
         }
-        this.reactions = reactions;
+        this.reactions = replacement;
     }
 
     /**
      * Gets a copy of the reactions list to avoid external mutations.
+     * Prefer getReactionsView, which does not copy.
      * 
      * @return a copy of current reactions list.
      */
     public ArrayList<ReactionMessage> getReactions() {
-        return new ArrayList<>(reactions);
+        return new ArrayList<>(reactions.list.snapshot());
+    }
+
+    /**
+     * Gets a read-only view of the current reactions, without copying them.
+     * Reactions added later are not part of the view.
+     * 
+     * @return The read-only snapshot view.
+     */
+    public List<ReactionMessage> getReactionsView() {
+        return reactions.list.snapshot();
+    }
+
+    /**
+     * Gets a page of the current reactions, without copying them.
+     * 
+     * @param offset Index of the first reaction of the page.
+     * @param limit  Maximal number of reactions in the page.
+     * @return A read-only view of the page.
+     */
+    public List<ReactionMessage> getReactionsPage(int offset, int limit) {
+        return reactions.list.page(offset, limit);
+    }
+
+    /** @return the number of reactions, without copying them. */
+    public int getReactionsSize() {
+        return reactions.list.size();
+    }
+
+    /**
+     * Gets the number of reactions of a given type.
+     * 
+     * @param type The reaction type.
+     * @return The number of reactions of this type.
+     */
+    public long getReactionCount(ReactionMessage.ReactionType type) {
+        return (type == null) ? 0 : reactions.counts[type.ordinal()].sum();
+    }
+
+    /**
+     * Gets the number of reactions of every type.
+     * 
+     * @return A new map from each reaction type to its count.
+     */
+    public EnumMap<ReactionMessage.ReactionType, Long> getReactionCounts() {
+        LongAdder[] current = reactions.counts;
+        EnumMap<ReactionMessage.ReactionType, Long> counts = new EnumMap<>(ReactionMessage.ReactionType.class);
+        for (ReactionMessage.ReactionType type : ReactionMessage.ReactionType.values()) {
+            counts.put(type, current[type.ordinal()].sum());
+        }
+        return counts;
+    }
+
+    /** @return the total number of reactions (of any type). */
+    public long getTotalReactions() {
+        long total = 0;
+        for (LongAdder counter : reactions.counts) {
+            total += counter.sum();
+        }
+        return total;
     }
 
     // ======= Methods & Constructors ======= //
@@ -70,7 +142,7 @@ public class BoardMessage extends Message {
     public BoardMessage() {
         super();
         priority = Priority.REGULAR;
-        reactions = new ArrayList<>();
+        reactions = new Reactions(new ReactionList());
     }
 
     /**
@@ -117,6 +189,25 @@ public class BoardMessage extends Message {
         setReactions(reactions);
     }
 
+    /**
+     * Restoring constructor: rebuilds a persisted board message with its original
+     * ID.
+     *
+     * @param id        The ID the message was created with.
+     * @param sender    The sender of the message.
+     * @param content   The content of the message.
+     * @param timestamp The send instant, in epoch milliseconds.
+     * @param priority  The priority (URGENT/REGULAR/SPECIAL).
+     * @param reactions The list of reactions.
+     * @throws IllegalArgumentException if the ID or any validated field is invalid.
+     */
+    public BoardMessage(long id, String sender, String content, long timestamp,
+            Priority priority, ArrayList<ReactionMessage> reactions) {
+        super(id, sender, content, timestamp);
+        setPriority(priority);
+        setReactions(reactions);
+    }
+
     /**
      * Constructs a BoardMessage with all fields except date, time and priority.
      * Priority defaults to REGULAR.
@@ -132,12 +223,39 @@ public class BoardMessage extends Message {
     }
 
     /**
-     * Adds a new reaction to the board message.
+     * Adds a new reaction to the board message. Safe to call concurrently with
+     * other additions and reads (a reaction added while setReactions runs may
+     * be replaced with the rest).
      * 
      * @param reaction The reaction to add.
+     * @throws IllegalArgumentException if reaction is null.
      */
     public void addReaction(ReactionMessage reaction) {
-        reactions.add(reaction);
+        Reactions current = reactions;
+        current.list.add(reaction);
+        current.count(reaction);
+    }
+
+    /** A reactions list with one counter per reaction type, replaced together. */
+    private static final class Reactions {
+        /** The reactions (append-only). */
+        private final ReactionList list;
+        /** Number of reactions of each type, indexed by ReactionType ordinal. */
+        private final LongAdder[] counts = new LongAdder[ReactionMessage.ReactionType.values().length];
+
+        Reactions(ReactionList list) {
+            this.list = list;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = new LongAdder();
+            }
+        }
+
+        /** Counts a reaction in the counter of its type. */
+        void count(ReactionMessage reaction) {
+            if (reaction.getReactionType() != null) {
+                counts[reaction.getReactionType().ordinal()].increment();
+            }
+        }
     }
 
     /**
@@ -151,37 +269,42 @@ public class BoardMessage extends Message {
     }
 
     /**
-     * Returns a shortened preview: "[Board] {sender}: {first 15 chars of
+     * Renders a shortened preview: "[Board] {sender}: {first 15 chars of
      * content}..."
      */
     @Override
-    public String generatePreview() {
-        String text = (content == null) ? "" : content;
-        String preview = text.length() > 15 ? text.substring(0, 15).trim() + "..." : text;
-        String who = (sender == null) ? "" : sender;
-        return "[Board] " + who + ": " + preview;
+    public void appendPreview(StringBuilder sb) {
+        sb.append("[Board] ");
+        if (sender != null) {
+            sb.append(sender);
+        }
+        sb.append(": ");
+        appendShortened(sb, content);
     }
 
     /**
-     * Returns a string representation of the board message. Includes priority,
+     * Writes the text representation of the board message. Includes priority,
      * sender, content and reactions.
      * If there are no reactions adds the string: "No Reactions Found."
      * 
-     * @return The string representation of the board message.
+     * @param out The output to write to.
+     * @throws IOException If the output fails.
      */
     @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("Priority:").append(getPriority()).append("\n");
-        sb.append(super.toString()).append("\n");
-        if (reactions.isEmpty()) {
-            sb.append("Reactions: No Reactions Found\n");
+    public void appendTo(Appendable out) throws IOException {
+        out.append("Priority:").append(String.valueOf(getPriority())).append("\n");
+        super.appendTo(out);
+        out.append("\n");
+        List<ReactionMessage> current = reactions.list.snapshot();
+        if (current.isEmpty()) {
+            out.append("Reactions: No Reactions Found\n");
         } else {
-            sb.append("Reactions:\n");
-            for (ReactionMessage reaction : reactions) {
-                sb.append("- ").append(reaction.toString()).append("\n");
+            out.append("Reactions:\n");
+            for (ReactionMessage reaction : current) {
+                out.append("- ");
+                reaction.appendTo(out);
+                out.append("\n");
             }
         }
-        return sb.toString();
     }
 }
@@ -1,7 +1,9 @@
 package model;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 /**
  * Represents an email message extending the Message class.
@@ -10,12 +12,14 @@ import java.util.Date;
  * Includes a subject and a list of file attachments.
  * Implements IDigital per assignment and returns the required string in
  * printCommunicationMethod().
+ * Attachments are kept as an immutable list of files shared through the
+ * FilePool, so equal attachments and attachment lists are stored once.
  */
 public class EmailMessage extends Message implements IDigital {
     /** The subject of the email. */
     private String subject;
-    /** A list of files attached to the email. */
-    private ArrayList<File> attachments;
+    /** The files attached to the email (immutable, shared through the FilePool). */
+    private List<File> attachments;
 
     // ======= Getters and Setters ======= //
     /**
@@ -38,11 +42,12 @@ public class EmailMessage extends Message implements IDigital {
             throw new IllegalArgumentException("Subject cannot be null or blank");
         }
         this.subject = subject.trim();
+        invalidatePreview();
     }
 
     /**
      * Gets a copy of the attachments list (defensive copy to avoid external
-     * mutation).
+     * mutation). Prefer getAttachmentsView, which does not copy.
      *
      * @return A new ArrayList containing the attachments.
      */
@@ -50,17 +55,25 @@ public class EmailMessage extends Message implements IDigital {
         return new ArrayList<>(attachments);
     }
 
+    /**
+     * Gets the attachments as a shared read-only list, without copying.
+     *
+     * @return The immutable list of attachments.
+     */
+    public List<File> getAttachmentsView() {
+        return attachments;
+    }
+
     /**
      * Sets the list of attachments. If null is provided, initializes an empty list.
+     * The files are interned in the FilePool, so later changes to the given list
+     * do not affect the email.
      *
      * @param attachments The list of attachments to set.
+     * @throws IllegalArgumentException If one of the attachments is null.
      */
     public void setAttachments(ArrayList<File> attachments) {
-        if (attachments == null) {
-            this.attachments = new ArrayList<>();
-        } else {
-            this.attachments = new ArrayList<>(attachments);
-        }
+        this.attachments = FilePool.internList(attachments);
     }
 
     // ======= Methods & Constructors ======= //
@@ -71,7 +84,7 @@ public class EmailMessage extends Message implements IDigital {
      */
     public EmailMessage() {
         super();
-        this.attachments = new ArrayList<>();
+        this.attachments = List.of();
     }
 
     /**
@@ -121,6 +134,24 @@ public class EmailMessage extends Message implements IDigital {
         setAttachments(attachments);
     }
 
+    /**
+     * Restoring constructor: rebuilds a persisted email with its original ID.
+     *
+     * @param id          The ID the message was created with.
+     * @param sender      The name of the sender.
+     * @param content     The content of the email.
+     * @param subject     The subject of the email.
+     * @param timestamp   The send instant, in epoch milliseconds.
+     * @param attachments The list of file attachments.
+     * @throws IllegalArgumentException If the ID or any validated field is invalid.
+     */
+    public EmailMessage(long id, String sender, String content, String subject, long timestamp,
+            ArrayList<File> attachments) {
+        super(id, sender, content, timestamp);
+        setSubject(subject);
+        setAttachments(attachments);
+    }
+
     // ======= Attachments Management ======= //
     /**
      * Adds a file to the list of attachments.
@@ -132,7 +163,9 @@ public class EmailMessage extends Message implements IDigital {
         if (file == null) {
             throw new IllegalArgumentException("Attachment cannot be null");
         }
-        this.attachments.add(file);
+        ArrayList<File> updated = new ArrayList<>(attachments);
+        updated.add(file);
+        this.attachments = FilePool.internList(updated);
     }
 
     /**
@@ -146,12 +179,12 @@ public class EmailMessage extends Message implements IDigital {
         if (file == null) {
             throw new AttachmentException("Attachment cannot be null");
         }
-        int before = this.attachments.size();
-        this.attachments.removeIf(att -> att != null && att.equals(file));
-        int removed = before - this.attachments.size();
-        if (removed == 0) {
+        ArrayList<File> updated = new ArrayList<>(attachments);
+        updated.removeIf(att -> att.equals(file));
+        if (updated.size() == attachments.size()) {
             throw new AttachmentException("Attachment does not exist!");
         }
+        this.attachments = FilePool.internList(updated);
     }
 
     /**
@@ -175,34 +208,42 @@ public class EmailMessage extends Message implements IDigital {
     }
 
     /**
-     * Returns a concise preview in the format:
+     * Renders a concise preview in the format:
      * [Email] Subject: {subject} | From: {sender}
      */
     @Override
-    public String generatePreview() {
-        String subj = (subject == null || subject.isBlank()) ? "" : subject.trim();
-        String who = (sender == null) ? "" : sender;
-        return "[Email] Subject: " + subj + " | From: " + who;
+    public void appendPreview(StringBuilder sb) {
+        sb.append("[Email] Subject: ");
+        if (subject != null) {
+            sb.append(subject); // already trimmed by setSubject
+        }
+        sb.append(" | From: ");
+        if (sender != null) {
+            sb.append(sender);
+        }
     }
 
     /**
-     * Returns a string representation of the email including its subject, sender,
+     * Writes the text representation of the email including its subject, sender,
      * content and list of file attachments.
      * 
-     * @return The string representation of the email.
+     * @param out The output to write to.
+     * @throws IOException If the output fails.
      */
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("subject:").append(getSubject()).append("\n");
-        sb.append(super.toString()).append("\n");
+    @Override
+    public void appendTo(Appendable out) throws IOException {
+        out.append("subject:").append(getSubject()).append("\n");
+        super.appendTo(out);
+        out.append("\n");
         if (attachments.isEmpty()) {
-            sb.append("Attachment List: None.\n");
+            out.append("Attachment List: None.\n");
         } else {
-            sb.append("Attachment List:\n");
+            out.append("Attachment List:\n");
             for (File file : attachments) {
-                sb.append("- ").append(file).append("\n");
+                out.append("- ");
+                file.appendTo(out);
+                out.append("\n");
             }
         }
-        return sb.toString();
     }
 }
@@ -1,14 +1,22 @@
 package model;
 
+import java.io.IOException;
+
 /**
  * Represents a file with a name and type.
  * Can be used to attach files to messages.
+ * The case-insensitive hash code is computed once and cached. Files handed out
+ * by the FilePool are shared between messages and cannot be changed.
  */
 public class File {
     /** The name of the file. */
     private String fileName;
     /** The type of the file. */
     private String fileType;
+    /** Cached case-insensitive hash code (0 until computed). */
+    private int hash;
+    /** True if the file is shared through the FilePool (setters are disabled). */
+    private boolean shared;
 
     // ======= Getters and Setters ======= //
     /**
@@ -35,12 +43,15 @@ public class File {
      * 
      * @param fileName The name to set for the file.
      * @throws IllegalArgumentException If the name is null or empty.
+     * @throws IllegalStateException    If the file is shared by the FilePool.
      */
     public void setFileName(String fileName) {
+        checkNotShared();
         if (fileName == null || fileName.isBlank()) {
             throw new IllegalArgumentException("File name cannot be null or blank");
         }
         this.fileName = fileName.trim();
+        this.hash = 0;
     }
 
     /**
@@ -49,12 +60,31 @@ public class File {
      * 
      * @param fileType The type to set for the file.
      * @throws IllegalArgumentException If the type is null or empty.
+     * @throws IllegalStateException    If the file is shared by the FilePool.
      */
     public void setFileType(String fileType) {
+        checkNotShared();
         if (fileType == null || fileType.isBlank()) {
             throw new IllegalArgumentException("File type cannot be null or blank");
         }
         this.fileType = fileType.trim();
+        this.hash = 0;
+    }
+
+    /** @return true if the file is shared through the FilePool. */
+    public boolean isShared() {
+        return shared;
+    }
+
+    /** Marks the file as shared; called by the FilePool before handing it out. */
+    void markShared() {
+        shared = true;
+    }
+
+    private void checkNotShared() {
+        if (shared) {
+            throw new IllegalStateException("Shared file cannot be changed");
+        }
     }
 
     // ======= Constructors ======= //
@@ -87,6 +117,17 @@ public class File {
         return "File {name='" + fileName + "', type='" + fileType + "'}";
     }
 
+    /**
+     * Writes the string representation of the file (same text as toString) to an
+     * output.
+     * 
+     * @param out The output to write to.
+     * @throws IOException If the output fails.
+     */
+    public void appendTo(Appendable out) throws IOException {
+        out.append("File {name='").append(fileName).append("', type='").append(fileType).append("'}");
+    }
+
     /**
      * Compares this File object with another object.
      * Two File objects are considered equal if both their file names and file types
@@ -98,28 +139,83 @@ public class File {
      */
     @Override
     public boolean equals(Object o) {
+        if (this == o)
+            return true;
         if (!(o instanceof File f))
             return false;
         if (this.fileName == null || this.fileType == null
                 || f.fileName == null || f.fileType == null) {
             return false;
         }
-        return this.fileName.equalsIgnoreCase(f.fileName)
-                && this.fileType.equalsIgnoreCase(f.fileType);
+        return hashCode() == f.hashCode()
+                && foldedEquals(this.fileName, f.fileName)
+                && foldedEquals(this.fileType, f.fileType);
     }
 
     /**
      * Generates a hash code for this File object based on its file name and file
      * type.
-     * The hash code is computed using lowercase versions of the name and type to
-     * maintain consistency with the equals method.
+     * Every character goes through {@link #foldCase(char)}, like in equals. The hash is
+     * computed without allocating and cached until the name or type changes.
      * 
      * @return The hash code value for this File.
      */
     @Override
     public int hashCode() {
-        String n = (fileName == null) ? "" : fileName.toLowerCase();
-        String t = (fileType == null) ? "" : fileType.toLowerCase();
-        return java.util.Objects.hash(n, t);
+        int h = hash;
+        if (h == 0) {
+            h = 31 * foldedHash(fileName) + foldedHash(fileType);
+            if (h == 0) {
+                h = 1; // keep 0 for "not computed"
+            }
+            hash = h;
+        }
+        return h;
+    }
+
+    /** Case-insensitive hash of a string (0 for null). */
+    private static int foldedHash(String s) {
+        if (s == null) {
+            return 0;
+        }
+        int h = 0;
+        for (int i = 0; i < s.length(); i++) {
+            h = 31 * h + foldCase(s.charAt(i));
+        }
+        return h;
+    }
+
+    /** True if both strings have the same length and fold to the same characters. */
+    private static boolean foldedEquals(String a, String b) {
+        if (a.length() != b.length()) {
+            return false;
+        }
+        for (int i = 0; i < a.length(); i++) {
+            if (foldCase(a.charAt(i)) != foldCase(b.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Case folds a file name or type the way equals and hashCode compare them.
+     * Indexes keyed by file type must use this rather than toLowerCase, which
+     * keeps characters like the dotless i apart from their ASCII letter.
+     *
+     * @param s The string to fold.
+     * @return The folded string.
+     */
+    public static String foldCase(String s) {
+        char[] folded = new char[s.length()];
+        for (int i = 0; i < folded.length; i++) {
+            folded[i] = foldCase(s.charAt(i));
+        }
+        return new String(folded);
+    }
+
+    /** Folds one character: upper case first, then lower case, as equalsIgnoreCase does. */
+    private static char foldCase(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
     }
 }
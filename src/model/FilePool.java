@@ -0,0 +1,185 @@
+package model;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Canonicalizing pool of attachment files and attachment lists.
+ * Files with exactly the same name and type are stored once and shared by
+ * every email carrying them; shared files cannot be changed. Attachment lists
+ * are kept as immutable lists, and lists of the same shared files are shared
+ * too, so thousands of emails with the same attachments hold a single list.
+ * The pool only holds its entries weakly: a file or list no email uses any
+ * more is dropped once it is garbage collected.
+ */
+public final class FilePool {
+    /** The canonical files, by exact name and type. */
+    private static final WeakPool<FileKey, File> FILES = new WeakPool<>();
+    /** The canonical immutable attachment lists, by the identity of their files. */
+    private static final WeakPool<ListKey, List<File>> LISTS = new WeakPool<>();
+
+    private FilePool() {
+    }
+
+    /**
+     * Gets the canonical shared file with the same name and type (case
+     * included) as the given one.
+     *
+     * @param file The file to intern.
+     * @return The shared file.
+     * @throws IllegalArgumentException If file is null or has no name or type.
+     */
+    public static File intern(File file) {
+        if (file == null) {
+            throw new IllegalArgumentException("Attachment cannot be null");
+        }
+        if (file.getFileName() == null || file.getFileType() == null) {
+            throw new IllegalArgumentException("Attachment must have a name and a type");
+        }
+        return FILES.intern(new FileKey(file.getFileName(), file.getFileType()), () -> {
+            File copy = file.isShared() ? file : new File(file.getFileName(), file.getFileType());
+            copy.markShared();
+            return copy;
+        });
+    }
+
+    /**
+     * Gets the canonical shared file with the given name and type.
+     *
+     * @param fileName The name of the file.
+     * @param fileType The type of the file.
+     * @return The shared file.
+     * @throws IllegalArgumentException If the name or type is invalid.
+     */
+    public static File intern(String fileName, String fileType) {
+        return intern(new File(fileName, fileType));
+    }
+
+    /**
+     * Gets the canonical immutable list holding the interned files of the given
+     * collection, in the same order.
+     *
+     * @param files The files (may be null for an empty list).
+     * @return The shared immutable list.
+     * @throws IllegalArgumentException If one of the files is null.
+     */
+    public static List<File> internList(Collection<File> files) {
+        if (files == null || files.isEmpty()) {
+            return List.of();
+        }
+        File[] interned = new File[files.size()];
+        int i = 0;
+        for (File file : files) {
+            interned[i++] = intern(file);
+        }
+        return LISTS.intern(new ListKey(interned), () -> List.of(interned));
+    }
+
+    /** @return the number of distinct files in the pool. */
+    public static int size() {
+        return FILES.size();
+    }
+
+    /** @return the number of distinct attachment lists in the pool. */
+    public static int listCount() {
+        return LISTS.size();
+    }
+
+    /** Exact (case-sensitive) name and type of a file. */
+    private record FileKey(String name, String type) {
+    }
+
+    /** Files of a list, compared by identity (they are canonical). */
+    private static final class ListKey {
+        /** The interned files, in order. */
+        private final File[] files;
+        /** Hash code of the file identities. */
+        private final int hash;
+
+        ListKey(File[] files) {
+            this.files = files;
+            int h = 1;
+            for (File file : files) {
+                h = 31 * h + System.identityHashCode(file);
+            }
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof ListKey key) || key.hash != hash || key.files.length != files.length) {
+                return false;
+            }
+            for (int i = 0; i < files.length; i++) {
+                if (key.files[i] != files[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Concurrent interning map holding its values weakly. The entries of
+     * collected values are removed on the next access.
+     */
+    private static final class WeakPool<K, V> {
+        /** The entries by key. */
+        private final ConcurrentHashMap<K, Entry<K, V>> entries = new ConcurrentHashMap<>();
+        /** Entries whose value was collected. */
+        private final ReferenceQueue<V> collected = new ReferenceQueue<>();
+
+        /** Gets the value of a key, storing the supplied one if there is none. */
+        V intern(K key, Supplier<V> supplier) {
+            expunge();
+            while (true) {
+                Entry<K, V> entry = entries.get(key);
+                V value = (entry == null) ? null : entry.get();
+                if (value != null) {
+                    return value;
+                }
+                V created = supplier.get();
+                Entry<K, V> fresh = new Entry<>(key, created, collected);
+                if ((entry == null) ? entries.putIfAbsent(key, fresh) == null : entries.replace(key, entry, fresh)) {
+                    return created;
+                }
+            }
+        }
+
+        /** @return the number of live entries. */
+        int size() {
+            expunge();
+            return entries.size();
+        }
+
+        /** Removes the entries whose value was collected. */
+        private void expunge() {
+            for (Reference<? extends V> ref = collected.poll(); ref != null; ref = collected.poll()) {
+                Entry<?, ?> entry = (Entry<?, ?>) ref;
+                entries.remove(entry.key, entry);
+            }
+        }
+
+        /** Weak reference to a value, remembering its key. */
+        private static final class Entry<K, V> extends WeakReference<V> {
+            /** The key of the value. */
+            private final K key;
+
+            Entry(K key, V value, ReferenceQueue<V> queue) {
+                super(value, queue);
+                this.key = key;
+            }
+        }
+    }
+}
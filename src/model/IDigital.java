@@ -3,12 +3,25 @@ package model;
 /**
  * Interface representing digital communication methods.
  * Classes implementing this interface must have a method that returns the digital communication.
+ * Digital messages are sent by the transport named by getTransportName (see
+ * transport.DigitalSender).
  */
 public interface IDigital {
+    /** Name of the email transport. */
+    public static final String SMTP = "smtp";
+
     /**
      * Prints the communication method for a digital message.
      * @return A string describing the communication method.
      */
     public String printCommunicationMethod();
+
+    /**
+     * Gets the name of the transport sending this message. Email by default.
+     * @return The transport name.
+     */
+    public default String getTransportName() {
+        return SMTP;
+    }
 }
 
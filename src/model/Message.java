@@ -1,26 +1,35 @@
 package model;
 
+import id.IdGenerators;
+import search.MultiPatternMatcher;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Date;
 
 /**
  * Represents an abstract base class for messages in the system.
- * Each message has a sender, content, date ,time, and a unique ID.
+ * Each message has a sender, content, send timestamp, and a unique ID.
+ * The send date and time are the same instant, kept as a single epoch
+ * timestamp in milliseconds.
  * Subclasses must implement the abstract getMessageType method.
  */
 public abstract class Message {
-    /** The sender of the message. */
+    /** The sender of the message (the canonical name of SenderDictionary). */
     protected String sender;
+    /** The SenderDictionary code of the sender. */
+    private int senderCode;
     /** The content of the message. */
     protected String content;
-    /** The date the message was sent. */
-    protected Date sendDate;
-    /** The time the message was sent. */
-    protected Date sendTime;
-    /** Unique id for the message. */
-    private int id;
-    /** Static counter for generating unique IDs for each message. */
-    private static int nextId = 1;
+    /** The instant the message was sent, in epoch milliseconds. */
+    protected long timestamp;
+    /** Unique id for the message, generated by the current IdGenerator. */
+    private final long id;
+    /** Number of content characters shown in a preview. */
+    protected static final int PREVIEW_LENGTH = 15;
+    /** The preview, built on first use and cleared when a shown field changes. */
+    private volatile String preview;
 
     // ======= Getters and Setters ======= //
     /**
@@ -33,7 +42,9 @@ public abstract class Message {
         if (sender == null || sender.isBlank()) {
             throw new IllegalArgumentException("Senders name cannot be empty");
         }
-        this.sender = sender.trim();
+        this.senderCode = SenderDictionary.encode(sender.trim());
+        this.sender = SenderDictionary.decode(senderCode);
+        invalidatePreview();
     }
 
     /**
@@ -45,6 +56,15 @@ public abstract class Message {
         return sender;
     }
 
+    /**
+     * Gets the SenderDictionary code of the sender.
+     * 
+     * @return The sender's code.
+     */
+    public int getSenderCode() {
+        return senderCode;
+    }
+
     /**
      * Sets the content of the message.
      * 
@@ -56,6 +76,7 @@ public abstract class Message {
             throw new IllegalArgumentException("Message content cannot be empty");
         }
         this.content = content.trim();
+        invalidatePreview();
     }
 
     /**
@@ -67,13 +88,22 @@ public abstract class Message {
         return content;
     }
 
+    /**
+     * Gets the instant the message was sent.
+     * 
+     * @return The send timestamp, in epoch milliseconds.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
     /**
      * Gets the date the message was sent.
      * 
-     * @return The date the message was sent.
+     * @return A new Date holding the send instant.
      */
     public Date getSendDate() {
-        return sendDate;
+        return new Date(timestamp);
     }
 
     /**
@@ -86,16 +116,16 @@ public abstract class Message {
         if (sendDate == null) {
             throw new IllegalArgumentException("sendDate cannot be null");
         }
-        this.sendDate = sendDate;
+        this.timestamp = sendDate.getTime();
     }
 
     /**
      * Gets the time the message was sent.
      * 
-     * @return The time the message was sent.
+     * @return A new Date holding the send instant.
      */
     public Date getSendTime() {
-        return sendTime;
+        return new Date(timestamp);
     }
 
     /**
@@ -108,11 +138,11 @@ public abstract class Message {
         if (sendTime == null) {
             throw new IllegalArgumentException("sendTime cannot be null");
         }
-        this.sendTime = sendTime;
+        this.timestamp = sendTime.getTime();
     }
 
     /** @return unique message ID. */
-    public int getId() {
+    public long getId() {
         return id;
     }
 
@@ -120,14 +150,15 @@ public abstract class Message {
 
     /** Default constructor: initializes id and current date, time. */
     public Message() {
-        id = nextId++;
-        sendDate = new Date();
-        sendTime = new Date();
+        id = IdGenerators.next();
+        timestamp = System.currentTimeMillis();
     }
 
     /**
      * Constructs a new Message obj with a sender, content, date and time.
      * The message is automatically assigned to a unique ID.
+     * Date and time are expected to be the same instant; the time is the one
+     * kept.
      * 
      * @param sender   The name of the sender.
      * @param content  The content of the message.
@@ -136,13 +167,34 @@ public abstract class Message {
      * @throws IllegalAccessException If the sender or content is invalid.
      */
     public Message(String sender, String content, Date sendDate, Date sendTime) {
-        this.id = nextId++;
+        this.id = IdGenerators.next();
         setSender(sender);
         setContent(content);
         setSendDate(sendDate);
         setSendTime(sendTime);
     }
 
+    /**
+     * Constructs a Message with an existing ID, used when restoring a message that
+     * was persisted earlier. No new ID is generated.
+     * 
+     * @param id        The ID the message was created with.
+     * @param sender    The name of the sender.
+     * @param content   The content of the message.
+     * @param timestamp The send instant, in epoch milliseconds.
+     * @throws IllegalArgumentException If the ID is not positive or any field is
+     *                                  invalid.
+     */
+    protected Message(long id, String sender, String content, long timestamp) {
+        if (id < 1) {
+            throw new IllegalArgumentException("Message id must be positive");
+        }
+        this.id = id;
+        setSender(sender);
+        setContent(content);
+        this.timestamp = timestamp;
+    }
+
     /**
      * Constructs a new Message obj with a sender and content.
      * The message is automatically assigned to a unique ID and current date/time.
@@ -175,12 +227,103 @@ public abstract class Message {
         return false;
     }
 
+    /**
+     * Searches the content of the message with a compiled multi-word matcher.
+     * The content is scanned once whatever the number of words, so this is the
+     * preferred form for queries with many words.
+     * 
+     * @param matcher The compiled matcher (see MultiPatternMatcher.compile).
+     * @return True if any of the matcher's words is found in the content.
+     */
+    public boolean find(MultiPatternMatcher matcher) {
+        if (matcher == null || content == null)
+            return false;
+        return matcher.matchesAny(content);
+    }
+
+    /**
+     * Searches the content of the message for all of the provided words.
+     * Blank words are ignored.
+     * 
+     * @param words A list of words to search for.
+     * @return True if every word is found in the content otherwise false.
+     */
+    public boolean findAll(ArrayList<String> words) {
+        if (words == null || words.isEmpty() || content == null)
+            return false;
+        String text = content.toLowerCase();
+        boolean any = false;
+        for (String w : words) {
+            if (w == null || w.isBlank())
+                continue;
+            if (!text.contains(w.toLowerCase()))
+                return false;
+            any = true;
+        }
+        return any;
+    }
+
     /**
      * Returns a short preview string of this message according to its concrete
      * type.
+     * The preview is rendered once and cached, so listing previews repeatedly
+     * does not build new strings.
+     * 
+     * @return The preview of the message.
+     */
+    public String generatePreview() {
+        String p = preview;
+        if (p == null) {
+            StringBuilder sb = new StringBuilder(64);
+            appendPreview(sb);
+            p = sb.toString();
+            preview = p;
+        }
+        return p;
+    }
+
+    /**
+     * Renders the preview of this message into a caller-provided builder,
+     * without creating intermediate strings.
      * Subclasses must implement this method.
+     * 
+     * @param sb The builder to append the preview to.
      */
-    public abstract String generatePreview();
+    public abstract void appendPreview(StringBuilder sb);
+
+    /**
+     * Clears the cached preview. Must be called whenever a field shown in the
+     * preview changes.
+     */
+    protected void invalidatePreview() {
+        preview = null;
+    }
+
+    /**
+     * Appends the first PREVIEW_LENGTH characters of a text, trimmed and followed
+     * by "..." when the text is longer (same result as substring().trim()).
+     * 
+     * @param sb   The builder to append to.
+     * @param text The text to shorten (may be null).
+     */
+    protected static void appendShortened(StringBuilder sb, String text) {
+        if (text == null) {
+            return;
+        }
+        if (text.length() <= PREVIEW_LENGTH) {
+            sb.append(text);
+            return;
+        }
+        int start = 0;
+        int end = PREVIEW_LENGTH;
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        sb.append(text, start, end).append("...");
+    }
 
     /**
      * Gets the type of the message.
@@ -190,18 +333,36 @@ public abstract class Message {
      */
     public abstract String getMessageType();
 
+    /**
+     * Writes the text representation of the message (the same text as toString)
+     * to an output, without building an intermediate string.
+     * Subclasses add their own fields around the base ones.
+     * 
+     * @param out The output to write to.
+     * @throws IOException If the output fails.
+     */
+    public void appendTo(Appendable out) throws IOException {
+        out.append("Message ID: ").append(Long.toString(id))
+                .append("\nSender: ").append(sender)
+                .append("\nContent: ").append(content)
+                .append("\nDate: ").append(TimestampFormat.format(timestamp))
+                .append("\nTime: ").append(TimestampFormat.format(timestamp));
+    }
+
     /**
      * Returns a string representation of the message including its ID, sender,
-     * content, date and time.
+     * content, date and time (and the fields of its concrete type).
      * 
      * @return The string representation of the message.
      */
     @Override
     public String toString() {
-        return "Message ID: " + id
-                + "\nSender: " + sender
-                + "\nContent: " + content
-                + "\nDate: " + sendDate
-                + "\nTime: " + sendTime;
+        StringBuilder sb = new StringBuilder(128);
+        try {
+            appendTo(sb);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringBuilder never throws
+        }
+        return sb.toString();
     }
 }
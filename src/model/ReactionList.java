@@ -0,0 +1,160 @@
+package model;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Append-only container of the reactions of a board message.
+ * Reactions are stored in chunks that double in size, so the list grows
+ * without ever copying what it already holds. Appends are lock-free: each
+ * reaction claims a slot with an atomic counter and fills it, then every
+ * appender helps move the published size over the filled slots, so readers
+ * always see a contiguous prefix and no appender waits for another.
+ * Snapshots are read-only views of the published prefix and cost nothing to
+ * take.
+ */
+public class ReactionList {
+    /** Size of the first chunk; chunk k holds FIRST_CHUNK << k reactions. */
+    private static final int FIRST_CHUNK = 8;
+    /** log2(FIRST_CHUNK). */
+    private static final int FIRST_SHIFT = 3;
+    /** Number of chunks, enough for any int index. */
+    private static final int MAX_CHUNKS = 28;
+
+    /** The chunks, allocated on demand. */
+    private final AtomicReferenceArray<AtomicReferenceArray<ReactionMessage>> chunks =
+            new AtomicReferenceArray<>(MAX_CHUNKS);
+    /** Number of slots claimed by appenders. */
+    private final AtomicInteger claimed = new AtomicInteger();
+    /** Number of slots written and visible to readers (a prefix of claimed). */
+    private final AtomicInteger published = new AtomicInteger();
+
+    /** Constructs an empty list. */
+    public ReactionList() {
+    }
+
+    /**
+     * Constructs a list holding a copy of the given reactions.
+     *
+     * @param reactions The initial reactions (may be null).
+     * @throws IllegalArgumentException If one of the reactions is null.
+     */
+    public ReactionList(Collection<ReactionMessage> reactions) {
+        if (reactions != null) {
+            for (ReactionMessage reaction : reactions) {
+                add(reaction);
+            }
+        }
+    }
+
+    /**
+     * Appends a reaction. Safe to call from several threads at once.
+     *
+     * @param reaction The reaction to append.
+     * @throws IllegalArgumentException If the reaction is null.
+     * @throws IllegalStateException    If the list is full.
+     */
+    public void add(ReactionMessage reaction) {
+        if (reaction == null) {
+            throw new IllegalArgumentException("Reaction cannot be null");
+        }
+        int index = claimed.getAndIncrement();
+        if (index < 0 || index > Integer.MAX_VALUE - FIRST_CHUNK) {
+            throw new IllegalStateException("Reaction list is full");
+        }
+        int chunk = chunkOf(index);
+        AtomicReferenceArray<ReactionMessage> slots = chunks.get(chunk);
+        if (slots == null) {
+            chunks.compareAndSet(chunk, null, new AtomicReferenceArray<>(FIRST_CHUNK << chunk));
+            slots = chunks.get(chunk);
+        }
+        slots.set(offsetOf(index, chunk), reaction);
+        // Move the published size over every filled slot. If an earlier slot is
+        // still empty, its appender will move it over this one once it fills it.
+        int p;
+        while ((p = published.get()) < claimed.get() && peek(p) != null) {
+            published.compareAndSet(p, p + 1);
+        }
+    }
+
+    /** @return the number of published reactions. */
+    public int size() {
+        return published.get();
+    }
+
+    /** @return true if no reaction was published yet. */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Gets a read-only view of the reactions published so far. The view does not
+     * copy anything and does not change when more reactions are appended.
+     *
+     * @return The snapshot view.
+     */
+    public List<ReactionMessage> snapshot() {
+        return new Snapshot(published.get());
+    }
+
+    /**
+     * Gets a page of the reactions published so far.
+     *
+     * @param offset Index of the first reaction of the page.
+     * @param limit  Maximal number of reactions in the page.
+     * @return A read-only view of the page (empty past the end).
+     * @throws IllegalArgumentException If offset or limit is negative.
+     */
+    public List<ReactionMessage> page(int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Offset and limit cannot be negative");
+        }
+        List<ReactionMessage> all = snapshot();
+        int from = Math.min(offset, all.size());
+        int to = (int) Math.min(all.size(), (long) from + limit);
+        return all.subList(from, to);
+    }
+
+    /** Gets the reaction of a slot, or null if it is not filled yet. */
+    private ReactionMessage peek(int index) {
+        int chunk = chunkOf(index);
+        AtomicReferenceArray<ReactionMessage> slots = chunks.get(chunk);
+        return (slots == null) ? null : slots.get(offsetOf(index, chunk));
+    }
+
+    /** Gets the chunk holding an index. */
+    private static int chunkOf(int index) {
+        return (31 - Integer.numberOfLeadingZeros(index + FIRST_CHUNK)) - FIRST_SHIFT;
+    }
+
+    /** Gets the position of an index inside its chunk. */
+    private static int offsetOf(int index, int chunk) {
+        return index + FIRST_CHUNK - (FIRST_CHUNK << chunk);
+    }
+
+    /** Read-only view over a published prefix. */
+    private class Snapshot extends AbstractList<ReactionMessage> implements RandomAccess {
+        private final int size;
+
+        Snapshot(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public ReactionMessage get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return peek(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package model;
 
+import java.io.IOException;
+
 /**
  * Represents a reaction message extending the Message class. indicating a
  * reaction (like, dislike, laugh, or love).
@@ -36,6 +38,7 @@ public class ReactionMessage extends Message {
             throw new ReactionException("Reaction type cannot be null.");
         }
         this.reactionType = reactionType;
+        invalidatePreview();
     }
 
     // ======= Constructors ======= //
@@ -64,6 +67,23 @@ public class ReactionMessage extends Message {
         setReactionType(reactionType);
     }
 
+    /**
+     * Restoring constructor: rebuilds a persisted reaction with its original ID.
+     * 
+     * @param id           The ID the message was created with.
+     * @param sender       The name of the sender.
+     * @param content      The content of the reaction message.
+     * @param timestamp    The send instant, in epoch milliseconds.
+     * @param reactionType The type of the reaction.
+     * @throws IllegalArgumentException If the ID, sender or content is invalid.
+     * @throws ReactionException        If the reaction type is invalid.
+     */
+    public ReactionMessage(long id, String sender, String content, long timestamp,
+            ReactionType reactionType) throws ReactionException {
+        super(id, sender, content, timestamp);
+        setReactionType(reactionType);
+    }
+
     /**
      * Returns the type of the message as "Reaction".
      * 
@@ -75,29 +95,35 @@ public class ReactionMessage extends Message {
     }
 
     /**
-     * Returns a shortened preview in the format:
+     * Renders a shortened preview in the format:
      * [Reaction] {sender}: {REACTION} - {first 15 chars of content}...
      */
     @Override
-    public String generatePreview() {
-        String who = (sender == null) ? "" : sender;
-        String reaction = (reactionType == null) ? "" : reactionType.name();
-        String text = (content == null) ? "" : content;
-        String preview = text.length() > 15 ? text.substring(0, 15).trim() + "..." : text;
-        return "[Reaction] " + who + ": " + reaction + " - " + preview;
+    public void appendPreview(StringBuilder sb) {
+        sb.append("[Reaction] ");
+        if (sender != null) {
+            sb.append(sender);
+        }
+        sb.append(": ");
+        if (reactionType != null) {
+            sb.append(reactionType.name());
+        }
+        sb.append(" - ");
+        appendShortened(sb, content);
     }
 
     /**
-     * Returns a string representation of the reaction message.
+     * Writes the text representation of the reaction message.
      * Includes the sender's name, reaction type and message content.
      * 
-     * @return The string representation of the reaction message.
+     * @param out The output to write to.
+     * @throws IOException If the output fails.
      */
     @Override
-    public String toString() {
-        return "Reaction Message\n" +
-                "Sender: " + getSender() + "\n" +
-                "Reaction: " + getReactionType() + "\n" +
-                "Content: " + getContent() + "\n";
+    public void appendTo(Appendable out) throws IOException {
+        out.append("Reaction Message\n")
+                .append("Sender: ").append(getSender()).append("\n")
+                .append("Reaction: ").append(String.valueOf(getReactionType())).append("\n")
+                .append("Content: ").append(getContent()).append("\n");
     }
 }
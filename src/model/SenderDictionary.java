@@ -0,0 +1,87 @@
+package model;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary of the sender names, encoding every distinct name as a compact
+ * int code (0, 1, 2, ... in order of first use) with a reverse lookup.
+ * Messages keep the canonical name and its code, so a sender's name is held
+ * once however many messages they send, and indexes can key on the code.
+ * Names are never removed. Lookups are lock-free; new names are added under a
+ * lock.
+ */
+public final class SenderDictionary {
+    /** Code of every name. */
+    private static final ConcurrentHashMap<String, Integer> CODES = new ConcurrentHashMap<>();
+    /** Guards the adding of names. */
+    private static final Object LOCK = new Object();
+    /** Name of every code (replaced when it grows). */
+    private static volatile String[] names = new String[256];
+    /** Number of names. */
+    private static int size;
+
+    private SenderDictionary() {
+    }
+
+    /**
+     * Gets the code of a name, adding the name if it is new.
+     *
+     * @param name The sender name (used as is, without trimming).
+     * @return The code of the name.
+     * @throws IllegalArgumentException If the name is null.
+     */
+    public static int encode(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Sender name cannot be null");
+        }
+        Integer code = CODES.get(name);
+        if (code != null) {
+            return code;
+        }
+        synchronized (LOCK) {
+            code = CODES.get(name);
+            if (code != null) {
+                return code;
+            }
+            if (size == names.length) {
+                names = Arrays.copyOf(names, size * 2);
+            }
+            names[size] = name;
+            CODES.put(name, size); // published after the name is stored
+            return size++;
+        }
+    }
+
+    /**
+     * Gets the code of a known name, without adding it.
+     *
+     * @param name The sender name.
+     * @return The code of the name, or -1 if it was never encoded.
+     */
+    public static int find(String name) {
+        Integer code = (name == null) ? null : CODES.get(name);
+        return (code == null) ? -1 : code;
+    }
+
+    /**
+     * Gets the name of a code.
+     *
+     * @param code The code.
+     * @return The canonical name.
+     * @throws IllegalArgumentException If no name has this code.
+     */
+    public static String decode(int code) {
+        String[] current = names;
+        String name = (code >= 0 && code < current.length) ? current[code] : null;
+        if (name == null) {
+            throw new IllegalArgumentException("Unknown sender code: " + code);
+        }
+        return name;
+    }
+
+    /** @return the number of distinct names encoded so far. */
+    public static int size() {
+        return CODES.size();
+    }
+}
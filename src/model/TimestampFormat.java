@@ -0,0 +1,38 @@
+package model;
+
+import java.util.Date;
+
+/**
+ * Formats send timestamps the same way as Date.toString.
+ * Date.toString resolves the time zone and builds a calendar on every call,
+ * while a message prints its date and time from the same instant and listings
+ * are full of messages sent within the same second. The text of the last
+ * formatted second is therefore kept and reused.
+ */
+final class TimestampFormat {
+    /** The last formatted second and its text. */
+    private static volatile Entry last = new Entry(Long.MIN_VALUE, null);
+
+    private TimestampFormat() {
+    }
+
+    /**
+     * Formats an instant as Date.toString would.
+     *
+     * @param timestamp The instant, in epoch milliseconds.
+     * @return The formatted text.
+     */
+    static String format(long timestamp) {
+        long second = Math.floorDiv(timestamp, 1000L);
+        Entry e = last;
+        if (e.second != second) {
+            e = new Entry(second, new Date(timestamp).toString());
+            last = e;
+        }
+        return e.text;
+    }
+
+    /** A formatted second. */
+    private record Entry(long second, String text) {
+    }
+}
@@ -0,0 +1,152 @@
+package persistence;
+
+import model.AttachmentException;
+import model.BoardMessage;
+import model.File;
+import model.Message;
+import model.ReactionMessage;
+import store.MessageStore;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes and decodes the events written to the message log.
+ * Every event starts with an operation byte followed by its data:
+ * CREATE carries a full message, DELETE a varint message ID, REACTION a
+ * varint board ID followed by the added reaction, and ATTACH / DETACH a varint
+ * email ID followed by the added / removed file. Messages are written with a
+ * stateless MessageCodec, so every record can be decoded on its own.
+ */
+final class EventCodec {
+    /** A message was added. */
+    static final byte CREATE = 1;
+    /** A message was deleted. */
+    static final byte DELETE = 2;
+    /** A reaction was added to a board message. */
+    static final byte REACTION = 3;
+    /** An attachment was added to an email message. */
+    static final byte ATTACH = 4;
+    /** An attachment was removed from an email message. */
+    static final byte DETACH = 5;
+
+    /** Largest encoded varint. */
+    private static final int MAX_VARINT = 10;
+
+    /** Per thread codec and its reusable buffer. */
+    private static final ThreadLocal<MessageCodec> CODEC = ThreadLocal.withInitial(MessageCodec::new);
+
+    private EventCodec() {
+    }
+
+    // ======= Encoding ======= //
+
+    /** Encodes a CREATE event. */
+    static byte[] create(Message message) {
+        return withOp(CREATE, -1, CODEC.get().encode(message));
+    }
+
+    /** Encodes a DELETE event. */
+    static byte[] delete(long id) {
+        ByteBuffer out = ByteBuffer.allocate(1 + MAX_VARINT);
+        out.put(DELETE);
+        MessageCodec.writeVarLong(id, out);
+        return toArray(out);
+    }
+
+    /** Encodes a REACTION event. */
+    static byte[] reaction(long boardId, ReactionMessage reaction) {
+        return withOp(REACTION, boardId, CODEC.get().encode(reaction));
+    }
+
+    /** Encodes an ATTACH or DETACH event. */
+    static byte[] attachment(byte op, long emailId, File file) {
+        int chars = file.getFileName().length() + file.getFileType().length();
+        ByteBuffer out = ByteBuffer.allocate(1 + 3 * MAX_VARINT + 3 * chars);
+        out.put(op);
+        MessageCodec.writeVarLong(emailId, out);
+        CODEC.get().writeFile(file, out);
+        return toArray(out);
+    }
+
+    /** Prefixes an encoded message with the operation byte and an optional ID. */
+    private static byte[] withOp(byte op, long id, ByteBuffer message) {
+        ByteBuffer out = ByteBuffer.allocate(1 + MAX_VARINT + message.remaining());
+        out.put(op);
+        if (id >= 0) {
+            MessageCodec.writeVarLong(id, out);
+        }
+        out.put(message);
+        return toArray(out);
+    }
+
+    private static byte[] toArray(ByteBuffer out) {
+        byte[] bytes = new byte[out.position()];
+        out.flip().get(bytes);
+        return bytes;
+    }
+
+    // ======= Decoding ======= //
+
+    /**
+     * Decodes an event and applies it to a store.
+     *
+     * @return The highest message ID carried by the event.
+     */
+    static long apply(byte[] payload, MessageStore store) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(payload);
+        MessageCodec codec = CODEC.get();
+        try {
+            byte op = in.get();
+            switch (op) {
+                case CREATE -> {
+                    Message message = codec.decode(in);
+                    store.add(message);
+                    return maxId(message);
+                }
+                case DELETE -> {
+                    long id = MessageCodec.readVarLong(in);
+                    store.remove(id);
+                    return id;
+                }
+                case REACTION -> {
+                    long boardId = MessageCodec.readVarLong(in);
+                    if (!(codec.decode(in) instanceof ReactionMessage reaction)) {
+                        throw new IOException("Reaction event without a reaction message");
+                    }
+                    store.addReaction(boardId, reaction);
+                    return Math.max(boardId, reaction.getId());
+                }
+                case ATTACH -> {
+                    long emailId = MessageCodec.readVarLong(in);
+                    store.addAttachment(emailId, codec.readFile(in));
+                    return emailId;
+                }
+                case DETACH -> {
+                    long emailId = MessageCodec.readVarLong(in);
+                    try {
+                        store.removeAttachment(emailId, codec.readFile(in));
+                    } catch (AttachmentException e) {
+                        throw new IOException("Detach event for a missing attachment", e);
+                    }
+                    return emailId;
+                }
+                default -> throw new IOException("Unknown log operation: " + op);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated log event", e);
+        }
+    }
+
+    /** Gets the highest ID of a message and its nested reactions. */
+    static long maxId(Message message) {
+        long max = message.getId();
+        if (message instanceof BoardMessage board) {
+            for (ReactionMessage reaction : board.getReactionsView()) {
+                max = Math.max(max, reaction.getId());
+            }
+        }
+        return max;
+    }
+}
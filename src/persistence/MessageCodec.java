@@ -0,0 +1,422 @@
+package persistence;
+
+import model.*;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Compact, versioned binary codec for the model classes.
+ * A message is written as {version, type tag, varint ID, sender, content,
+ * varint send timestamp millis, zigzag varint time delta} followed by the
+ * fields of its concrete type: the Priority ordinal and nested reactions for
+ * a BoardMessage, the subject and File attachments for an EmailMessage and
+ * the ReactionType ordinal for a ReactionMessage. Strings are varint length
+ * prefixed UTF-8, encoded straight into the buffer.
+ * With sender interning enabled each sender is written once per stream and
+ * then referenced by a varint code; the decoder must then read the messages in
+ * the same order they were written. A codec instance is not thread-safe.
+ */
+public class MessageCodec {
+    /** Current format version. */
+    public static final byte VERSION = 1;
+
+    /** Type tag of a BoardMessage. */
+    private static final byte BOARD = 1;
+    /** Type tag of an EmailMessage. */
+    private static final byte EMAIL = 2;
+    /** Type tag of a ReactionMessage. */
+    private static final byte REACTION = 3;
+    /** Initial size of the reusable output buffer. */
+    private static final int INITIAL_BUFFER = 512;
+
+    /** True if senders are interned. */
+    private final boolean internSenders;
+    /** Codes of the senders written so far (encoding side). */
+    private final HashMap<String, Integer> senderCodes = new HashMap<>();
+    /** Senders read so far, by code (decoding side). */
+    private final ArrayList<String> senders = new ArrayList<>();
+    /** Reusable output buffer for encode(Message). */
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER);
+    /** Reusable scratch array for decoding strings from direct buffers. */
+    private byte[] scratch = new byte[64];
+
+    /** Constructs a stateless codec (senders are written in full). */
+    public MessageCodec() {
+        this(false);
+    }
+
+    /**
+     * Constructs a codec.
+     *
+     * @param internSenders True to write each sender once per stream and then
+     *                      refer to it by code.
+     */
+    public MessageCodec(boolean internSenders) {
+        this.internSenders = internSenders;
+    }
+
+    /** Forgets the interned senders, to start a new stream. */
+    public void reset() {
+        senderCodes.clear();
+        senders.clear();
+    }
+
+    // ======= Encoding ======= //
+
+    /**
+     * Encodes a message into the codec's reusable buffer, growing it as needed.
+     * The returned buffer is flipped (ready to read) and is only valid until the
+     * next call.
+     *
+     * @param message The message to encode.
+     * @return The reusable buffer holding the encoded message.
+     */
+    public ByteBuffer encode(Message message) {
+        return encode(message, -1, null);
+    }
+
+    /**
+     * Encodes a message as encode(Message) does, but with only its first
+     * reactions if it is a board, or with the given attachments if it is an
+     * email, as captured at an earlier point in time.
+     *
+     * @param message     The message to encode.
+     * @param reactions   Number of reactions of a board to encode (negative for
+     *                    all of them).
+     * @param attachments Attachments of an email to encode (null for its
+     *                    current ones).
+     * @return The reusable buffer holding the encoded message.
+     */
+    ByteBuffer encode(Message message, int reactions, List<File> attachments) {
+        while (true) {
+            buffer.clear();
+            int knownSenders = senderCodes.size();
+            try {
+                buffer.put(VERSION);
+                writeMessage(message, reactions, attachments, buffer);
+                return buffer.flip();
+            } catch (BufferOverflowException e) {
+                // Forget the senders first seen in the failed attempt, then retry bigger.
+                senderCodes.values().removeIf(code -> code >= knownSenders);
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+            }
+        }
+    }
+
+    /**
+     * Encodes a message into a caller-provided buffer, at its current position.
+     *
+     * @param message The message to encode.
+     * @param out     The buffer to write into.
+     * @throws BufferOverflowException  If the buffer is too small.
+     * @throws IllegalArgumentException If the message type is not supported.
+     */
+    public void encode(Message message, ByteBuffer out) {
+        out.put(VERSION);
+        writeMessage(message, -1, null, out);
+    }
+
+    private void writeMessage(Message message, int reactionCount, List<File> files, ByteBuffer out) {
+        if (message instanceof BoardMessage board) {
+            out.put(BOARD);
+            writeCommon(message, out);
+            writePriority(board.getPriority(), out);
+            List<ReactionMessage> reactions = board.getReactionsView();
+            if (reactionCount >= 0 && reactionCount < reactions.size()) {
+                reactions = reactions.subList(0, reactionCount); // reactions are only appended
+            }
+            writeVarLong(reactions.size(), out);
+            for (ReactionMessage reaction : reactions) {
+                writeMessage(reaction, -1, null, out);
+            }
+        } else if (message instanceof EmailMessage email) {
+            out.put(EMAIL);
+            writeCommon(message, out);
+            writeString(email.getSubject(), out);
+            List<File> attachments = (files == null) ? email.getAttachmentsView() : files;
+            writeVarLong(attachments.size(), out);
+            for (File file : attachments) {
+                writeFile(file, out);
+            }
+        } else if (message instanceof ReactionMessage reaction) {
+            out.put(REACTION);
+            writeCommon(message, out);
+            writeReactionType(reaction.getReactionType(), out);
+        } else {
+            throw new IllegalArgumentException("Unsupported message type: "
+                    + (message == null ? null : message.getMessageType()));
+        }
+    }
+
+    private void writeCommon(Message message, ByteBuffer out) {
+        writeVarLong(message.getId(), out);
+        writeSender(message.getSender(), out);
+        writeString(message.getContent(), out);
+        // Date and time are one instant now; the delta stays in the layout, always
+        // zero, so records written before keep decoding.
+        writeVarLong(message.getTimestamp(), out);
+        writeVarLong(0, out);
+    }
+
+    /**
+     * Encodes a priority as its ordinal.
+     *
+     * @param priority The priority.
+     * @param out      The buffer to write into.
+     */
+    public void writePriority(Priority priority, ByteBuffer out) {
+        out.put((byte) priority.ordinal());
+    }
+
+    /**
+     * Encodes a reaction type as its ordinal.
+     *
+     * @param type The reaction type.
+     * @param out  The buffer to write into.
+     */
+    public void writeReactionType(ReactionMessage.ReactionType type, ByteBuffer out) {
+        out.put((byte) type.ordinal());
+    }
+
+    /**
+     * Encodes a file as its name and type.
+     *
+     * @param file The file.
+     * @param out  The buffer to write into.
+     */
+    public void writeFile(File file, ByteBuffer out) {
+        writeString(file.getFileName(), out);
+        writeString(file.getFileType(), out);
+    }
+
+    private void writeSender(String sender, ByteBuffer out) {
+        if (!internSenders) {
+            writeString(sender, out);
+            return;
+        }
+        Integer code = senderCodes.get(sender);
+        if (code != null) {
+            writeVarLong(code + 1L, out);
+        } else {
+            writeVarLong(0, out); // new sender, literal follows
+            writeString(sender, out);
+            senderCodes.put(sender, senderCodes.size());
+        }
+    }
+
+    /** Writes a varint length followed by the UTF-8 bytes of a string. */
+    private static void writeString(String s, ByteBuffer out) {
+        writeVarLong(utf8Length(s), out);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | (c >> 6)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                out.put((byte) (0xF0 | (cp >> 18)));
+                out.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                out.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (cp & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                out.put((byte) '?'); // lone surrogate, same as String.getBytes
+            } else {
+                out.put((byte) (0xE0 | (c >> 12)));
+                out.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    /** Computes the UTF-8 length of a string without encoding it. */
+    private static int utf8Length(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /** Writes an unsigned LEB128 varint. */
+    static void writeVarLong(long value, ByteBuffer out) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    // ======= Decoding ======= //
+
+    /**
+     * Decodes a message from the buffer's current position.
+     *
+     * @param in The buffer to read from.
+     * @return The decoded message, with its original ID.
+     * @throws IOException If the data is truncated, of an unknown version or
+     *                     invalid.
+     */
+    public Message decode(ByteBuffer in) throws IOException {
+        try {
+            byte version = in.get();
+            if (version != VERSION) {
+                throw new IOException("Unsupported codec version: " + version);
+            }
+            return readMessage(in);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated message data", e);
+        } catch (IllegalArgumentException | ReactionException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Invalid message data: " + e.getMessage(), e);
+        }
+    }
+
+    private Message readMessage(ByteBuffer in) throws IOException, ReactionException {
+        byte type = in.get();
+        long id = readVarLong(in);
+        String sender = readSender(in);
+        String content = readString(in);
+        long date = readVarLong(in);
+        long time = date + unzigzag(readVarLong(in));
+        switch (type) {
+            case BOARD -> {
+                Priority priority = readPriority(in);
+                int count = readCount(in);
+                ArrayList<ReactionMessage> reactions = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    if (!(readMessage(in) instanceof ReactionMessage reaction)) {
+                        throw new IOException("Board reactions must be reaction messages");
+                    }
+                    reactions.add(reaction);
+                }
+                return new BoardMessage(id, sender, content, time, priority, reactions);
+            }
+            case EMAIL -> {
+                String subject = readString(in);
+                int count = readCount(in);
+                ArrayList<File> attachments = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    attachments.add(readFile(in));
+                }
+                return new EmailMessage(id, sender, content, subject, time, attachments);
+            }
+            case REACTION -> {
+                return new ReactionMessage(id, sender, content, time, readReactionType(in));
+            }
+            default -> throw new IOException("Unknown message type tag: " + type);
+        }
+    }
+
+    /**
+     * Decodes a priority.
+     *
+     * @param in The buffer to read from.
+     * @return The priority.
+     */
+    public Priority readPriority(ByteBuffer in) {
+        return Priority.values()[in.get()];
+    }
+
+    /**
+     * Decodes a reaction type.
+     *
+     * @param in The buffer to read from.
+     * @return The reaction type.
+     */
+    public ReactionMessage.ReactionType readReactionType(ByteBuffer in) {
+        return ReactionMessage.ReactionType.values()[in.get()];
+    }
+
+    /**
+     * Decodes a file.
+     *
+     * @param in The buffer to read from.
+     * @return The file.
+     * @throws IOException If the data is invalid.
+     */
+    public File readFile(ByteBuffer in) throws IOException {
+        return new File(readString(in), readString(in));
+    }
+
+    private String readSender(ByteBuffer in) throws IOException {
+        if (!internSenders) {
+            return readString(in);
+        }
+        long code = readVarLong(in);
+        if (code == 0) {
+            String sender = readString(in);
+            senders.add(sender);
+            return sender;
+        }
+        if (code > senders.size()) {
+            throw new IOException("Unknown sender code: " + code);
+        }
+        return senders.get((int) code - 1);
+    }
+
+    private String readString(ByteBuffer in) throws IOException {
+        int length = readCount(in);
+        if (in.hasArray()) {
+            String s = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+            return s;
+        }
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        in.get(scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a length or element count. Every element takes at least one byte,
+     * so a count larger than the bytes left is corrupt data, rejected before it
+     * sizes an allocation.
+     */
+    private static int readCount(ByteBuffer in) throws IOException {
+        long count = readVarLong(in);
+        if (count < 0 || count > in.remaining()) {
+            throw new IOException("Invalid length: " + count);
+        }
+        return (int) count;
+    }
+
+    /** Reads an unsigned LEB128 varint. */
+    static long readVarLong(ByteBuffer in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varint is too long");
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,644 @@
+package persistence;
+
+import id.IdGenerators;
+import model.BoardMessage;
+import model.EmailMessage;
+import model.File;
+import model.Message;
+import model.ReactionMessage;
+import store.MessageStore;
+import store.StoreListener;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Durable, append-only log of the changes made to a MessageStore.
+ * The log is a directory of numbered segment files. Each record is framed as
+ * {length, CRC32, payload} where the payload is a CREATE, DELETE or REACTION
+ * event. Appends are queued and written by a single writer thread which
+ * fsyncs once per batch (group commit), so many appends share one fsync.
+ * A change to the store returns only once its records are fsynced: the thread
+ * that made it waits in afterChange, after the store's lock is released, so
+ * concurrent writers still share their fsyncs.
+ * Opening the log loads the latest snapshot, if any, then replays the
+ * segments written after it into the store; a torn record at the end of the
+ * last segment (crash during a write) is truncated away.
+ * A snapshot (see Snapshot) is a point-in-time image of the store taken at a
+ * segment boundary: once it is written, the segments and snapshots before it
+ * are deleted, which also drops every deleted message from disk. Snapshots
+ * are taken with snapshot, periodically in the background with
+ * compactEvery, or when the segments grew large with compactIfLarger.
+ */
+public class MessageLog implements StoreListener, Closeable {
+    /** Default maximal size of a segment file before rolling to a new one. */
+    public static final long DEFAULT_SEGMENT_BYTES = 64L << 20;
+    /** Size of the {length, CRC32} record header. */
+    private static final int HEADER_BYTES = 8;
+    /** Queued in place of a record to make the writer start a new segment. */
+    private static final byte[] ROLL = new byte[0];
+    /** Names of the segment files. */
+    private static final Pattern SEGMENT_PATTERN = Pattern.compile("segment-(\\d{8})\\.log");
+    /** Names of the snapshot files. */
+    private static final Pattern SNAPSHOT_PATTERN = Pattern.compile("snapshot-(\\d{8})\\.snap");
+
+    /** Directory holding the segment files. */
+    private final Path dir;
+    /** Maximal size of a segment file. */
+    private final long segmentBytes;
+    /** The store whose changes are logged. */
+    private MessageStore store;
+    /** Number of the segment being written. */
+    private int segment;
+    /** Channel of the segment being written. */
+    private FileChannel channel;
+
+    /** Monitor guarding the queue and the counters below. */
+    private final Object monitor = new Object();
+    /** Framed records waiting to be written. */
+    private ArrayList<byte[]> pending = new ArrayList<>();
+    /** Number of records queued so far. */
+    private long queued;
+    /** Number of records written and fsynced so far. */
+    private long durable;
+    /** Value of queued after the last record appended by each thread. */
+    private final ThreadLocal<long[]> appended = ThreadLocal.withInitial(() -> new long[1]);
+    /** True once close was called. */
+    private boolean closed;
+    /** Failure of the writer thread, if any. */
+    private IOException failure;
+    /** The writer thread. */
+    private final Thread writer;
+    /** First segment written after the last roll (set by the writer thread). */
+    private int cutSegment;
+    /** Value of queued when the last snapshot was taken. */
+    private long snapshotQueued = -1;
+    /** Guards the taking of snapshots, one at a time. */
+    private final Object snapshotLock = new Object();
+    /** Runs the periodic compaction, if enabled. */
+    private ScheduledExecutorService compactor;
+    /** Failure of the last background compaction, if any. */
+    private volatile IOException compactionFailure;
+
+    // ======= Opening & Recovery ======= //
+
+    private MessageLog(Path dir, long segmentBytes) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.writer = new Thread(this::writeLoop, "message-log-writer");
+        this.writer.setDaemon(true);
+    }
+
+    /**
+     * Opens the log with the default segment size, replays it into the store and
+     * starts logging the store's changes.
+     *
+     * @param dir   The log directory (created if missing).
+     * @param store The store to rebuild; should be empty.
+     * @return The open log.
+     * @throws IOException If the log cannot be read or is corrupted.
+     */
+    public static MessageLog open(Path dir, MessageStore store) throws IOException {
+        return open(dir, store, DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * Opens the log, replays it into the store and starts logging the store's
+     * changes.
+     *
+     * @param dir          The log directory (created if missing).
+     * @param store        The store to rebuild; should be empty.
+     * @param segmentBytes Maximal size of a segment file (a larger record is
+     *                     written alone in a segment).
+     * @return The open log.
+     * @throws IOException              If the log cannot be read or is corrupted.
+     * @throws IllegalArgumentException If an argument is invalid.
+     */
+    public static MessageLog open(Path dir, MessageStore store, long segmentBytes) throws IOException {
+        if (dir == null || store == null) {
+            throw new IllegalArgumentException("Log directory and store cannot be null");
+        }
+        if (segmentBytes < HEADER_BYTES) {
+            throw new IllegalArgumentException("Segment size is too small");
+        }
+        Files.createDirectories(dir);
+        MessageLog log = new MessageLog(dir, segmentBytes);
+        List<Integer> snapshots = log.listFiles(SNAPSHOT_PATTERN);
+        int from = 0;
+        long maxId = 0;
+        if (!snapshots.isEmpty()) {
+            from = snapshots.get(snapshots.size() - 1);
+            maxId = Snapshot.load(log.snapshotPath(from), store, Runtime.getRuntime().availableProcessors());
+            log.deleteBefore(from); // left over by a crash right after the snapshot
+        }
+        maxId = Math.max(maxId, log.replay(store, from));
+        if (maxId > 0) {
+            IdGenerators.get().advanceTo(maxId + 1);
+        }
+        log.openSegment(Math.max(log.segment, Math.max(from, 1)));
+        log.store = store;
+        store.addListener(log);
+        log.writer.start();
+        return log;
+    }
+
+    /**
+     * Replays the segments numbered from the given one into the store.
+     *
+     * @return The highest message ID seen.
+     */
+    long replay(MessageStore store, int fromSegment) throws IOException {
+        List<Integer> segments = listSegments();
+        long maxId = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            int number = segments.get(i);
+            segment = Math.max(segment, number);
+            if (number < fromSegment) {
+                continue;
+            }
+            boolean last = i == segments.size() - 1;
+            maxId = Math.max(maxId, replaySegment(segmentPath(number), store, last));
+        }
+        return maxId;
+    }
+
+    /** Replays a single segment, truncating a torn tail when it is the last one. */
+    private long replaySegment(Path path, MessageStore store, boolean last) throws IOException {
+        long maxId = 0;
+        long good = 0;
+        long fileSize = Files.size(path);
+        CRC32 crc = new CRC32();
+        try (InputStream raw = Files.newInputStream(path);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(raw, 1 << 16))) {
+            while (true) {
+                int first = in.read();
+                if (first < 0) {
+                    return maxId; // clean end of segment
+                }
+                int length = 0;
+                byte[] payload;
+                try {
+                    length = (first << 24) | (in.readUnsignedByte() << 16)
+                            | (in.readUnsignedByte() << 8) | in.readUnsignedByte();
+                    int checksum = in.readInt();
+                    // A record larger than segmentBytes fills a segment on its own.
+                    if (length <= 0 || length > fileSize - good - HEADER_BYTES) {
+                        throw new IOException("Invalid record length " + length);
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    crc.reset();
+                    crc.update(payload);
+                    if ((int) crc.getValue() != checksum) {
+                        throw new IOException("Checksum mismatch");
+                    }
+                } catch (IOException e) {
+                    if (!last) {
+                        throw new IOException("Corrupted segment " + path + " at offset " + good, e);
+                    }
+                    break; // torn write at the tail of the log
+                }
+                maxId = Math.max(maxId, EventCodec.apply(payload, store));
+                good += HEADER_BYTES + length;
+            }
+        }
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            ch.truncate(good);
+            ch.force(true);
+        }
+        return maxId;
+    }
+
+    /** Lists the segment numbers in ascending order. */
+    List<Integer> listSegments() throws IOException {
+        return listFiles(SEGMENT_PATTERN);
+    }
+
+    /** Lists the numbers of the files matching a pattern in ascending order. */
+    private List<Integer> listFiles(Pattern pattern) throws IOException {
+        ArrayList<Integer> numbers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(p -> pattern.matcher(p.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .forEach(m -> numbers.add(Integer.parseInt(m.group(1))));
+        }
+        numbers.sort(null);
+        return numbers;
+    }
+
+    /** Gets the path of a segment file. */
+    Path segmentPath(int number) {
+        return dir.resolve(String.format("segment-%08d.log", number));
+    }
+
+    /** Gets the path of the snapshot taken before a segment. */
+    Path snapshotPath(int number) {
+        return dir.resolve(String.format("snapshot-%08d.snap", number));
+    }
+
+    /** Opens a segment for appending and makes it the current one. */
+    private void openSegment(int number) throws IOException {
+        if (channel != null) {
+            channel.force(false);
+            channel.close();
+        }
+        segment = number;
+        channel = FileChannel.open(segmentPath(number),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    // ======= Appending ======= //
+
+    @Override
+    public void onAdd(Message message) {
+        append(EventCodec.create(message));
+    }
+
+    @Override
+    public void onRemove(Message message) {
+        append(EventCodec.delete(message.getId()));
+    }
+
+    @Override
+    public void onReaction(BoardMessage board, ReactionMessage reaction) {
+        append(EventCodec.reaction(board.getId(), reaction));
+    }
+
+    @Override
+    public void onAttachmentAdded(EmailMessage email, File file) {
+        append(EventCodec.attachment(EventCodec.ATTACH, email.getId(), file));
+    }
+
+    @Override
+    public void onAttachmentRemoved(EmailMessage email, File file) {
+        append(EventCodec.attachment(EventCodec.DETACH, email.getId(), file));
+    }
+
+    /** Frames an event and queues it for the writer thread. */
+    private void append(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        byte[] record = ByteBuffer.allocate(HEADER_BYTES + payload.length)
+                .putInt(payload.length).putInt((int) crc.getValue()).put(payload).array();
+        synchronized (monitor) {
+            if (failure != null) {
+                throw new IllegalStateException("Message log failed: " + failure.getMessage(), failure);
+            }
+            if (closed) {
+                throw new IllegalStateException("Message log is closed");
+            }
+            pending.add(record);
+            queued++;
+            monitor.notifyAll();
+            appended.get()[0] = queued;
+        }
+    }
+
+    /**
+     * Waits until the records appended by the calling thread are written and
+     * fsynced, so the change that made them is durable when the store returns.
+     *
+     * @throws IllegalStateException If the writer failed or the thread was
+     *                               interrupted (the change is applied in
+     *                               memory but may be lost).
+     */
+    @Override
+    public void afterChange() {
+        long target = appended.get()[0];
+        synchronized (monitor) {
+            if (durable >= target) {
+                return;
+            }
+            try {
+                awaitDurable(target);
+            } catch (IOException e) {
+                throw new IllegalStateException("Message log failed: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Waits until every event queued so far is written and fsynced.
+     *
+     * @throws IOException If the writer failed.
+     */
+    public void sync() throws IOException {
+        synchronized (monitor) {
+            awaitDurable(queued);
+        }
+    }
+
+    /** Waits until the records up to target are written. Caller must hold the monitor. */
+    private void awaitDurable(long target) throws IOException {
+        while (durable < target && failure == null) {
+            try {
+                monitor.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while syncing the log", e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /** Writer thread: writes the queued records in batches, one fsync per batch. */
+    private void writeLoop() {
+        while (true) {
+            ArrayList<byte[]> batch;
+            long upTo;
+            synchronized (monitor) {
+                while (pending.isEmpty() && !closed) {
+                    try {
+                        monitor.wait();
+                    } catch (InterruptedException e) {
+                        // only close stops the writer
+                    }
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+                upTo = queued;
+            }
+            try {
+                writeBatch(batch);
+            } catch (IOException e) {
+                synchronized (monitor) {
+                    failure = e;
+                    monitor.notifyAll();
+                }
+                return;
+            }
+            synchronized (monitor) {
+                durable = upTo;
+                monitor.notifyAll();
+            }
+        }
+    }
+
+    /** Writes a batch of records, rolling segments as needed, then fsyncs. */
+    private void writeBatch(List<byte[]> batch) throws IOException {
+        int total = 0;
+        for (byte[] record : batch) {
+            total += record.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(total);
+        long size = channel.size();
+        for (byte[] record : batch) {
+            if (record == ROLL) {
+                drain(buffer);
+                if (size > 0) {
+                    openSegment(segment + 1);
+                    size = 0;
+                }
+                cutSegment = segment;
+                continue;
+            }
+            if (size > 0 && size + record.length > segmentBytes) {
+                drain(buffer);
+                openSegment(segment + 1);
+                size = 0;
+            }
+            buffer.put(record);
+            size += record.length;
+        }
+        drain(buffer);
+        channel.force(false);
+    }
+
+    /** Writes out the buffered bytes and clears the buffer. */
+    private void drain(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // ======= Snapshots & Compaction ======= //
+
+    /**
+     * Writes a snapshot of the store, then deletes the segments and snapshots it
+     * makes obsolete. The store is locked only while the segment is cut and the
+     * point-in-time image of its messages is captured; the snapshot is encoded,
+     * written and fsynced after the lock is released, while the store keeps
+     * changing (into the new segment).
+     *
+     * @return The snapshot file.
+     * @throws IOException If the snapshot cannot be written (the log stays
+     *                     complete) or the log is closed.
+     */
+    public Path snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            long[] roll = new long[1];
+            Snapshot.Image[] image = new Snapshot.Image[1];
+            IOException[] error = new IOException[1];
+            store.readAll(messages -> {
+                try {
+                    roll[0] = queueRoll();
+                    image[0] = Snapshot.capture(messages);
+                } catch (IOException e) {
+                    error[0] = e;
+                }
+            });
+            if (error[0] != null) {
+                throw error[0];
+            }
+            int cut = awaitRoll(roll[0]);
+            Path temp = dir.resolve(snapshotPath(cut).getFileName() + ".tmp");
+            Snapshot.write(temp, image[0]);
+            Files.move(temp, snapshotPath(cut), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            deleteBefore(cut);
+            return snapshotPath(cut);
+        }
+    }
+
+    /**
+     * Takes a snapshot (see snapshot) if the segments to replay at the next
+     * opening hold more than a number of bytes, so a short-lived process does
+     * not leave an ever-growing log behind.
+     *
+     * @param bytes Size of the segments above which a snapshot is taken.
+     * @return The snapshot file, or null if the segments are small enough.
+     * @throws IllegalArgumentException If bytes is negative.
+     * @throws IOException              If the snapshot cannot be written (the
+     *                                  log stays complete) or the log is closed.
+     */
+    public Path compactIfLarger(long bytes) throws IOException {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Size cannot be negative");
+        }
+        long total = 0;
+        for (int number : listSegments()) {
+            total += Files.size(segmentPath(number));
+        }
+        return (total > bytes) ? snapshot() : null;
+    }
+
+    /**
+     * Takes a snapshot (see snapshot) periodically on a background thread, when
+     * the store changed since the last one. Replaces any previous schedule.
+     *
+     * @param period Time between two snapshots.
+     * @param unit   Unit of the period.
+     * @throws IllegalArgumentException If the period is not positive or the unit
+     *                                  is null.
+     * @throws IllegalStateException    If the log is closed.
+     */
+    public void compactEvery(long period, TimeUnit unit) {
+        if (period <= 0 || unit == null) {
+            throw new IllegalArgumentException("Compaction period must be positive");
+        }
+        synchronized (monitor) {
+            if (closed) {
+                throw new IllegalStateException("Message log is closed");
+            }
+            if (compactor != null) {
+                compactor.shutdown();
+            }
+            compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "message-log-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            compactor.scheduleWithFixedDelay(this::compact, period, period, unit);
+        }
+    }
+
+    /** @return the failure of the last background compaction, or null if it succeeded. */
+    public IOException getCompactionFailure() {
+        return compactionFailure;
+    }
+
+    /** Background compaction step. */
+    private void compact() {
+        synchronized (monitor) {
+            if (queued == snapshotQueued || closed) {
+                return;
+            }
+        }
+        try {
+            snapshot();
+            compactionFailure = null;
+        } catch (IOException e) {
+            compactionFailure = e; // retried at the next period
+        } catch (IllegalStateException e) {
+            // closed meanwhile
+        }
+    }
+
+    /**
+     * Asks the writer to start a new segment after the events queued so far.
+     *
+     * @return The position of the request in the queue, for awaitRoll.
+     */
+    private long queueRoll() throws IOException {
+        synchronized (monitor) {
+            if (closed) {
+                throw new IOException("Message log is closed");
+            }
+            pending.add(ROLL);
+            queued++;
+            monitor.notifyAll();
+            snapshotQueued = queued;
+            return queued;
+        }
+    }
+
+    /**
+     * Waits until the writer started the segment asked for by queueRoll.
+     *
+     * @param roll The value returned by queueRoll.
+     * @return The number of the new segment: every event queued before the
+     *         request is in a lower one.
+     */
+    private int awaitRoll(long roll) throws IOException {
+        synchronized (monitor) {
+            awaitDurable(roll);
+            return cutSegment;
+        }
+    }
+
+    /** Deletes the segments and snapshots numbered below a snapshot, and unfinished snapshots. */
+    private void deleteBefore(int number) throws IOException {
+        for (int old : listSegments()) {
+            if (old < number) {
+                Files.deleteIfExists(segmentPath(old));
+            }
+        }
+        for (int old : listFiles(SNAPSHOT_PATTERN)) {
+            if (old < number) {
+                Files.deleteIfExists(snapshotPath(old));
+            }
+        }
+        List<Path> unfinished;
+        try (Stream<Path> files = Files.list(dir)) {
+            unfinished = files.filter(p -> p.getFileName().toString().endsWith(".snap.tmp")).toList();
+        }
+        for (Path temp : unfinished) {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Flushes the queued events, stops following the store and closes the log.
+     *
+     * @throws IOException If the last writes failed.
+     */
+    @Override
+    public void close() throws IOException {
+        store.removeListener(this);
+        ScheduledExecutorService running;
+        synchronized (monitor) {
+            running = compactor;
+            compactor = null;
+        }
+        if (running != null) {
+            running.shutdown(); // lets a snapshot in progress finish
+            try {
+                running.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (monitor) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            monitor.notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        synchronized (monitor) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package persistence;
+
+import model.BoardMessage;
+import model.EmailMessage;
+import model.File;
+import model.Message;
+import store.MessageStore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/**
+ * Point-in-time image of all the messages of a store, in a compact binary
+ * file read through memory mapping.
+ * The file is a header {magic, version, highest message ID, message count}
+ * followed by blocks framed as {length, CRC32, message count, payload}. The
+ * payload holds the MessageCodec encoding of the messages, with senders
+ * interned per block, so every block decodes on its own: loading maps the
+ * file, decodes the blocks in parallel and bulk-inserts them in file order.
+ * Writing starts from an Image, captured quickly while the store is locked,
+ * so the encoding and the fsync run without the lock.
+ */
+final class Snapshot {
+    /** First bytes of a snapshot file ("MSNP"). */
+    private static final int MAGIC = 0x4D534E50;
+    /** Current file format version. */
+    private static final byte VERSION = 1;
+    /** Size of the file header. */
+    private static final int HEADER_BYTES = 4 + 1 + 8 + 8;
+    /** Size of the block header. */
+    private static final int BLOCK_HEADER_BYTES = 12;
+    /** Payload size after which a block is closed. */
+    private static final int BLOCK_BYTES = 1 << 20;
+    /** Largest region mapped at once. */
+    private static final long MAP_BYTES = 1L << 30;
+
+    private Snapshot() {
+    }
+
+    // ======= Writing ======= //
+
+    /**
+     * Point-in-time image of the messages of a store: the messages with the
+     * number of reactions of every board and the attachments of every email at
+     * capture time. Reactions are only appended and attachment lists are
+     * immutable, so nothing is copied but references.
+     */
+    static final class Image {
+        /** The messages, in store order. */
+        private final Message[] messages;
+        /** Number of reactions of the boards, by message index. */
+        private final int[] reactions;
+        /** Attachments of the emails, by message index (null for other messages). */
+        private final ArrayList<List<File>> attachments;
+
+        private Image(Collection<Message> messages) {
+            this.messages = messages.toArray(new Message[0]);
+            this.reactions = new int[this.messages.length];
+            this.attachments = new ArrayList<>(this.messages.length);
+            for (int i = 0; i < this.messages.length; i++) {
+                Message message = this.messages[i];
+                if (message instanceof BoardMessage board) {
+                    reactions[i] = board.getReactionsSize();
+                }
+                attachments.add((message instanceof EmailMessage email) ? email.getAttachmentsView() : null);
+            }
+        }
+    }
+
+    /**
+     * Captures the image of messages. The messages must not change meanwhile
+     * (the caller holds the store's write lock).
+     *
+     * @param messages The messages, in store order.
+     * @return The image.
+     */
+    static Image capture(Collection<Message> messages) {
+        return new Image(messages);
+    }
+
+    /**
+     * Writes an image to a file and fsyncs it.
+     *
+     * @param file  The file to write (replaced if it exists).
+     * @param image The image of the messages.
+     * @throws IOException If writing fails.
+     */
+    static void write(Path file, Image image) throws IOException {
+        Message[] messages = image.messages;
+        long maxId = 0;
+        for (Message message : messages) {
+            maxId = Math.max(maxId, EventCodec.maxId(message));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                    .putInt(MAGIC).put(VERSION).putLong(maxId).putLong(messages.length);
+            writeFully(channel, header.flip());
+            MessageCodec codec = new MessageCodec(true);
+            ByteBuffer block = ByteBuffer.allocate(BLOCK_HEADER_BYTES + BLOCK_BYTES + (BLOCK_BYTES >> 2));
+            block.position(BLOCK_HEADER_BYTES);
+            int count = 0;
+            for (int i = 0; i < messages.length; i++) {
+                ByteBuffer encoded = codec.encode(messages[i], image.reactions[i], image.attachments.get(i));
+                if (block.remaining() < encoded.remaining()) {
+                    ByteBuffer bigger = ByteBuffer.allocate(2 * block.capacity() + encoded.remaining());
+                    block = bigger.put(block.flip());
+                }
+                block.put(encoded);
+                count++;
+                if (block.position() - BLOCK_HEADER_BYTES >= BLOCK_BYTES) {
+                    writeBlock(channel, block, count);
+                    codec.reset();
+                    count = 0;
+                }
+            }
+            if (count > 0) {
+                writeBlock(channel, block, count);
+            }
+            channel.force(true);
+        }
+    }
+
+    /** Frames the payload of a block, writes it and empties the block. */
+    private static void writeBlock(FileChannel channel, ByteBuffer block, int count) throws IOException {
+        int length = block.position() - BLOCK_HEADER_BYTES;
+        CRC32 crc = new CRC32();
+        crc.update(block.array(), BLOCK_HEADER_BYTES, length);
+        block.putInt(0, length).putInt(4, (int) crc.getValue()).putInt(8, count);
+        writeFully(channel, block.flip());
+        block.clear().position(BLOCK_HEADER_BYTES);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // ======= Loading ======= //
+
+    /**
+     * Loads a snapshot into a store.
+     *
+     * @param file        The snapshot file.
+     * @param store       The store to fill.
+     * @param parallelism Number of decoding threads.
+     * @return The highest message ID of the snapshot.
+     * @throws IOException If the file cannot be read or is corrupted.
+     */
+    static long load(Path file, MessageStore store, int parallelism) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "snapshot-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                throw new IOException("Truncated snapshot " + file);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC || header.get() != VERSION) {
+                throw new IOException("Not a snapshot of a supported version: " + file);
+            }
+            long maxId = header.getLong();
+            long expected = header.getLong();
+            long loaded = 0;
+            long position = HEADER_BYTES;
+            MappedByteBuffer region = null;
+            long regionStart = 0;
+            ArrayDeque<Future<ArrayList<Message>>> window = new ArrayDeque<>();
+            while (position < size) {
+                if (region == null || position + BLOCK_HEADER_BYTES > regionStart + region.capacity()) {
+                    regionStart = position;
+                    region = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_BYTES, size - position));
+                }
+                int length = region.getInt((int) (position - regionStart));
+                if (length < 0 || position + BLOCK_HEADER_BYTES + length > size) {
+                    throw new IOException("Corrupted snapshot " + file + " at offset " + position);
+                }
+                if (position + BLOCK_HEADER_BYTES + length > regionStart + region.capacity()) {
+                    regionStart = position;
+                    region = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                            Math.min(Math.max(MAP_BYTES, BLOCK_HEADER_BYTES + length), size - position));
+                }
+                ByteBuffer block = region.slice((int) (position - regionStart), BLOCK_HEADER_BYTES + length);
+                long offset = position;
+                if (window.size() >= 2 * parallelism) {
+                    loaded += insert(window.poll(), store);
+                }
+                window.add(pool.submit(() -> decodeBlock(block, file, offset)));
+                position += BLOCK_HEADER_BYTES + length;
+            }
+            while (!window.isEmpty()) {
+                loaded += insert(window.poll(), store);
+            }
+            if (loaded != expected) {
+                throw new IOException("Snapshot " + file + " holds " + loaded + " messages instead of " + expected);
+            }
+            return maxId;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Checks and decodes one block. */
+    private static ArrayList<Message> decodeBlock(ByteBuffer block, Path file, long offset) throws IOException {
+        int length = block.getInt();
+        int checksum = block.getInt();
+        int count = block.getInt();
+        CRC32 crc = new CRC32();
+        crc.update(block.duplicate());
+        if ((int) crc.getValue() != checksum || count < 0) {
+            throw new IOException("Corrupted snapshot " + file + " at offset " + offset);
+        }
+        MessageCodec codec = new MessageCodec(true);
+        ArrayList<Message> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            messages.add(codec.decode(block));
+        }
+        if (block.position() != BLOCK_HEADER_BYTES + length) {
+            throw new IOException("Corrupted snapshot " + file + " at offset " + offset);
+        }
+        return messages;
+    }
+
+    /** Waits for a decoded block and inserts it, returning its size. */
+    private static int insert(Future<ArrayList<Message>> future, MessageStore store) throws IOException {
+        ArrayList<Message> messages;
+        try {
+            messages = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Snapshot loading interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Failed to decode a snapshot block", e.getCause());
+        }
+        store.addAll(messages);
+        return messages.size();
+    }
+}
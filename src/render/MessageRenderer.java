@@ -0,0 +1,232 @@
+package render;
+
+import model.Message;
+
+import java.io.BufferedWriter;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Streams messages and previews into a large buffered Writer.
+ * Messages are written with Message.appendTo and previews with
+ * Message.appendPreview into a reusable builder, so listing a large store
+ * costs I/O rather than per-message strings. Supports writing the first N
+ * messages and paging through a list with a Cursor. With a RenderCache the
+ * full text of messages printed before is written from the cache.
+ * Output reaches the underlying stream when the buffer fills or on flush.
+ */
+public class MessageRenderer implements Flushable {
+    /** Default size of the output buffer, in chars. */
+    public static final int DEFAULT_BUFFER = 1 << 16;
+
+    /** The buffered output. */
+    private final Writer out;
+    /** Reusable builder for the previews. */
+    private final StringBuilder line = new StringBuilder(128);
+    /** Cache of the message texts, or null. */
+    private final RenderCache cache;
+
+    /**
+     * Constructs a renderer writing to a stream (e.g. System.out) through a
+     * buffer of the default size, using the default charset.
+     * 
+     * @param stream The stream to write to.
+     */
+    public MessageRenderer(OutputStream stream) {
+        this(stream, null);
+    }
+
+    /**
+     * Constructs a renderer writing to a stream through a buffer of the default
+     * size, using the default charset, and taking message texts from a cache.
+     * 
+     * @param stream The stream to write to.
+     * @param cache  The cache of the message texts (null for none).
+     */
+    public MessageRenderer(OutputStream stream, RenderCache cache) {
+        this(new BufferedWriter(new OutputStreamWriter(stream), DEFAULT_BUFFER), cache);
+    }
+
+    /**
+     * Constructs a renderer writing to a writer. The writer should be buffered.
+     * 
+     * @param out The writer to write to.
+     * @throws IllegalArgumentException If out is null.
+     */
+    public MessageRenderer(Writer out) {
+        this(out, null);
+    }
+
+    /**
+     * Constructs a renderer writing to a writer and taking message texts from a
+     * cache. The writer should be buffered.
+     * 
+     * @param out   The writer to write to.
+     * @param cache The cache of the message texts (null for none).
+     * @throws IllegalArgumentException If out is null.
+     */
+    public MessageRenderer(Writer out, RenderCache cache) {
+        if (out == null) {
+            throw new IllegalArgumentException("Output cannot be null");
+        }
+        this.out = out;
+        this.cache = cache;
+    }
+
+    // ======= Single Messages ======= //
+
+    /**
+     * Writes a message as "Message Type: {type}" followed by its full text.
+     * 
+     * @param message The message to write.
+     * @throws IOException If the output fails.
+     */
+    public void writeMessage(Message message) throws IOException {
+        out.write("Message Type: ");
+        out.write(message.getMessageType());
+        out.write('\n');
+        if (cache != null) {
+            out.write(cache.render(message));
+        } else {
+            message.appendTo(out);
+        }
+        out.write('\n');
+    }
+
+    /**
+     * Writes the preview of a message on its own line.
+     * 
+     * @param message The message to write.
+     * @throws IOException If the output fails.
+     */
+    public void writePreview(Message message) throws IOException {
+        line.setLength(0);
+        message.appendPreview(line);
+        line.append('\n');
+        out.append(line);
+    }
+
+    // ======= Lists ======= //
+
+    /**
+     * Writes all the messages of a list.
+     * 
+     * @param messages The messages to write.
+     * @return The number of messages written.
+     * @throws IOException If the output fails.
+     */
+    public int writeMessages(Iterable<? extends Message> messages) throws IOException {
+        int count = 0;
+        for (Message message : messages) {
+            writeMessage(message);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Writes the previews of all the messages of a list.
+     * 
+     * @param messages The messages to write.
+     * @return The number of previews written.
+     * @throws IOException If the output fails.
+     */
+    public int writePreviews(Iterable<? extends Message> messages) throws IOException {
+        int count = 0;
+        for (Message message : messages) {
+            writePreview(message);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Writes the first messages of a list.
+     * 
+     * @param messages The messages to write.
+     * @param limit    The maximal number of messages to write.
+     * @param previews True to write previews instead of the full messages.
+     * @return The number of messages written.
+     * @throws IOException If the output fails.
+     */
+    public int writeFirst(List<? extends Message> messages, int limit, boolean previews) throws IOException {
+        Cursor cursor = cursor(messages, previews);
+        return cursor.writeNext(limit);
+    }
+
+    /**
+     * Creates a cursor paging through a list of messages.
+     * 
+     * @param messages The messages to page through (not copied).
+     * @param previews True to write previews instead of the full messages.
+     * @return A cursor positioned before the first message.
+     */
+    public Cursor cursor(List<? extends Message> messages, boolean previews) {
+        return new Cursor(messages, previews);
+    }
+
+    /**
+     * Pushes the buffered output to the underlying stream.
+     * 
+     * @throws IOException If the output fails.
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * A position in a list of messages, writing the next page on demand.
+     */
+    public class Cursor {
+        /** The messages paged through. */
+        private final List<? extends Message> messages;
+        /** True to write previews instead of the full messages. */
+        private final boolean previews;
+        /** Index of the next message to write. */
+        private int position;
+
+        private Cursor(List<? extends Message> messages, boolean previews) {
+            this.messages = messages;
+            this.previews = previews;
+        }
+
+        /** @return true if there are messages left to write. */
+        public boolean hasNext() {
+            return position < messages.size();
+        }
+
+        /** @return the index of the next message to write. */
+        public int getPosition() {
+            return position;
+        }
+
+        /**
+         * Writes the next page of messages.
+         * 
+         * @param pageSize The maximal number of messages to write.
+         * @return The number of messages written.
+         * @throws IOException              If the output fails.
+         * @throws IllegalArgumentException If pageSize is negative.
+         */
+        public int writeNext(int pageSize) throws IOException {
+            if (pageSize < 0) {
+                throw new IllegalArgumentException("Page size cannot be negative");
+            }
+            int end = (int) Math.min(messages.size(), (long) position + pageSize);
+            int start = position;
+            for (; position < end; position++) {
+                if (previews) {
+                    writePreview(messages.get(position));
+                } else {
+                    writeMessage(messages.get(position));
+                }
+            }
+            return end - start;
+        }
+    }
+}
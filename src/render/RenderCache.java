@@ -0,0 +1,96 @@
+package render;
+
+import cache.CacheStats;
+import cache.LruCache;
+import model.BoardMessage;
+import model.EmailMessage;
+import model.File;
+import model.Message;
+import model.ReactionMessage;
+import store.StoreListener;
+
+/**
+ * Bounded cache of the full text of messages (the text of toString), so
+ * printing the same messages again does not walk every reaction and
+ * attachment. Entries are kept per message object, least recently used first
+ * out once the entry or byte bound is reached.
+ * Registered as a listener of the store holding the messages, it drops the
+ * text of a board when it gets a reaction, of an email when its attachments
+ * change and of a message when it is removed. Messages must only be changed
+ * through that store while they are cached.
+ */
+public class RenderCache implements StoreListener {
+    /** Default maximal number of cached texts. */
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+    /** Default maximal size of the cached texts, in bytes. */
+    public static final long DEFAULT_MAX_BYTES = 16L << 20;
+
+    /** The texts by message (messages compare by identity). */
+    private final LruCache<Message, String> texts;
+
+    /** Constructs an empty cache with the default bounds. */
+    public RenderCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Constructs an empty cache.
+     *
+     * @param maxEntries Maximal number of cached texts.
+     * @param maxBytes   Maximal size of the cached texts, in bytes.
+     * @throws IllegalArgumentException If a bound is negative.
+     */
+    public RenderCache(int maxEntries, long maxBytes) {
+        this.texts = new LruCache<>(maxEntries, maxBytes, text -> 48 + 2L * text.length());
+    }
+
+    /**
+     * Gets the full text of a message, rendering it on a miss.
+     *
+     * @param message The message.
+     * @return The same text as message.toString().
+     * @throws IllegalArgumentException If the message is null.
+     */
+    public String render(Message message) {
+        if (message == null) {
+            throw new IllegalArgumentException("Message cannot be null");
+        }
+        return texts.get(message, Message::toString);
+    }
+
+    /** @return the hit, miss and eviction counters of the cache. */
+    public CacheStats getStats() {
+        return texts.getStats();
+    }
+
+    // ======= Invalidation ======= //
+
+    /** A new message has no cached text yet (a replaced one ages out). */
+    @Override
+    public void onAdd(Message message) {
+    }
+
+    /** Drops the text of a removed message. */
+    @Override
+    public void onRemove(Message message) {
+        texts.invalidate(message);
+    }
+
+    /** Drops the text of a board, which lists its reactions. */
+    @Override
+    public void onReaction(BoardMessage board, ReactionMessage reaction) {
+        texts.invalidate(board);
+    }
+
+    /** Drops the text of an email, which lists its attachments. */
+    @Override
+    public void onAttachmentAdded(EmailMessage email, File file) {
+        texts.invalidate(email);
+    }
+
+    /** Drops the text of an email, which lists its attachments. */
+    @Override
+    public void onAttachmentRemoved(EmailMessage email, File file) {
+        texts.invalidate(email);
+    }
+}
@@ -0,0 +1,101 @@
+package search;
+
+import model.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A word query prepared once and then matched against many messages.
+ * The words are trimmed of blanks and case folded when the query is compiled,
+ * so matching only folds the message content. Matching follows the same rules
+ * as Message.find (any-of) and Message.findAll (all-of).
+ * Queries with many words are matched with a cached MultiPatternMatcher, which
+ * scans each content once instead of once per word.
+ */
+public class CompiledQuery {
+    /** Number of words from which the multi-pattern matcher is used. */
+    public static final int MULTI_PATTERN_MIN = 4;
+
+    /** The case folded, non blank query words. */
+    private final String[] words;
+    /** True if every word must match, false if any word is enough. */
+    private final boolean all;
+    /** Matcher for queries with many words, or null. */
+    private final MultiPatternMatcher matcher;
+
+    private CompiledQuery(List<String> words, boolean all) {
+        ArrayList<String> folded = new ArrayList<>();
+        if (words != null) {
+            for (String w : words) {
+                if (w != null && !w.isBlank()) {
+                    folded.add(w.toLowerCase());
+                }
+            }
+        }
+        this.words = folded.toArray(new String[0]);
+        this.all = all;
+        this.matcher = (this.words.length >= MULTI_PATTERN_MIN) ? MultiPatternMatcher.compile(folded) : null;
+    }
+
+    /**
+     * Compiles a query matching messages that contain any of the words.
+     * 
+     * @param words The words to search for.
+     * @return The compiled query.
+     */
+    public static CompiledQuery anyOf(List<String> words) {
+        return new CompiledQuery(words, false);
+    }
+
+    /**
+     * Compiles a query matching messages that contain all of the words.
+     * 
+     * @param words The words to search for.
+     * @return The compiled query.
+     */
+    public static CompiledQuery allOf(List<String> words) {
+        return new CompiledQuery(words, true);
+    }
+
+    /** @return true if the query has no usable words (and matches nothing). */
+    public boolean isEmpty() {
+        return words.length == 0;
+    }
+
+    /** @return true if every word must match. */
+    public boolean isAll() {
+        return all;
+    }
+
+    /** @return a copy of the case folded query words. */
+    public String[] getWords() {
+        return words.clone();
+    }
+
+    /**
+     * Checks if the content of a message matches the query.
+     * 
+     * @param message The message to check.
+     * @return True if the message matches, false otherwise.
+     */
+    public boolean matches(Message message) {
+        if (words.length == 0 || message == null || message.getContent() == null) {
+            return false;
+        }
+        if (matcher != null) {
+            return all ? matcher.matchesAll(message.getContent()) : matcher.matchesAny(message.getContent());
+        }
+        String text = message.getContent().toLowerCase();
+        for (String w : words) {
+            boolean found = text.contains(w);
+            if (found && !all) {
+                return true;
+            }
+            if (!found && all) {
+                return false;
+            }
+        }
+        return all;
+    }
+}
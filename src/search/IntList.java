@@ -0,0 +1,194 @@
+package search;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sorted set of non-negative ints in a growable primitive array, used for the
+ * posting lists of the inverted index (document numbers) and for the tokens
+ * of every gram (token numbers). Values arriving in increasing order are
+ * appended; others are inserted in place.
+ * The static and / or build new lists without modifying their inputs, and may
+ * return one of the inputs as is. Not thread-safe.
+ */
+final class IntList {
+    /** The values, sorted, in [0, size). */
+    private int[] values;
+    /** Number of values. */
+    private int size;
+
+    /** Constructs an empty list. */
+    IntList() {
+        this(new int[4], 0);
+    }
+
+    private IntList(int[] values, int size) {
+        this.values = values;
+        this.size = size;
+    }
+
+    // ======= Single Values ======= //
+
+    /**
+     * Adds a value (nothing happens if it is already present).
+     *
+     * @param value The value.
+     */
+    void add(int value) {
+        int at;
+        if (size == 0 || values[size - 1] < value) {
+            at = size;
+        } else if (values[size - 1] == value) {
+            return;
+        } else {
+            at = Arrays.binarySearch(values, 0, size, value);
+            if (at >= 0) {
+                return;
+            }
+            at = -at - 1;
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        System.arraycopy(values, at, values, at + 1, size - at);
+        values[at] = value;
+        size++;
+    }
+
+    /**
+     * Removes a value.
+     *
+     * @param value The value.
+     */
+    void remove(int value) {
+        int at = Arrays.binarySearch(values, 0, size, value);
+        if (at >= 0) {
+            System.arraycopy(values, at + 1, values, at, size - at - 1);
+            size--;
+        }
+    }
+
+    /**
+     * Gets a value by position.
+     *
+     * @param index The position, in [0, size()).
+     * @return The value.
+     */
+    int get(int index) {
+        return values[index];
+    }
+
+    /** @return the number of values. */
+    int size() {
+        return size;
+    }
+
+    /** @return whether the list is empty. */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Replaces every value by its image through an increasing mapping, which
+     * keeps the list sorted.
+     *
+     * @param mapping The new value of every old value.
+     */
+    void remap(int[] mapping) {
+        for (int i = 0; i < size; i++) {
+            values[i] = mapping[values[i]];
+        }
+    }
+
+    // ======= Set Operations ======= //
+
+    /**
+     * Intersects two lists, walking the shorter one and galloping through the
+     * longer one.
+     *
+     * @param a A list.
+     * @param b Another list.
+     * @return The values present in both.
+     */
+    static IntList and(IntList a, IntList b) {
+        if (a.size > b.size) {
+            IntList swap = a;
+            a = b;
+            b = swap;
+        }
+        int[] result = new int[a.size];
+        int n = 0;
+        int from = 0;
+        for (int i = 0; i < a.size && from < b.size; i++) {
+            int value = a.values[i];
+            // Gallop to a range holding the value, then binary search it.
+            int step = 1;
+            int to = from;
+            while (to < b.size && b.values[to] < value) {
+                from = to + 1;
+                to += step;
+                step <<= 1;
+            }
+            int at = Arrays.binarySearch(b.values, from, Math.min(to + 1, b.size), value);
+            if (at >= 0) {
+                result[n++] = value;
+                from = at + 1;
+            } else {
+                from = -at - 1;
+            }
+        }
+        return new IntList(result, n);
+    }
+
+    /**
+     * Unites lists. A single list is returned as is; small unions are merged by
+     * sorting, large ones through a bit set over the value range.
+     *
+     * @param lists    The lists.
+     * @param universe Upper bound (exclusive) of the values.
+     * @return The values present in any list.
+     */
+    static IntList or(List<IntList> lists, int universe) {
+        if (lists.size() == 1) {
+            return lists.get(0);
+        }
+        long total = 0;
+        for (IntList list : lists) {
+            total += list.size;
+        }
+        if (total * 32 < universe) {
+            int[] all = new int[(int) total];
+            int n = 0;
+            for (IntList list : lists) {
+                System.arraycopy(list.values, 0, all, n, list.size);
+                n += list.size;
+            }
+            Arrays.sort(all);
+            int distinct = 0;
+            for (int i = 0; i < n; i++) {
+                if (distinct == 0 || all[distinct - 1] != all[i]) {
+                    all[distinct++] = all[i];
+                }
+            }
+            return new IntList(all, distinct);
+        }
+        long[] bits = new long[(universe >>> 6) + 1];
+        for (IntList list : lists) {
+            for (int i = 0; i < list.size; i++) {
+                bits[list.values[i] >>> 6] |= 1L << list.values[i];
+            }
+        }
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        int[] result = new int[count];
+        int n = 0;
+        for (int w = 0; w < bits.length; w++) {
+            for (long word = bits[w]; word != 0; word &= word - 1) {
+                result[n++] = (w << 6) | Long.numberOfTrailingZeros(word);
+            }
+        }
+        return new IntList(result, n);
+    }
+}
@@ -0,0 +1,607 @@
+package search;
+
+import model.Message;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * Incremental inverted index over message contents.
+ * Every indexed message gets a dense document number, in insertion order (kept
+ * when the message is replaced). Each content is case folded and split into
+ * tokens (runs of letters and digits); every token of the vocabulary keeps a
+ * sorted primitive posting list of the documents containing it, and is itself
+ * listed under each of its 1, 2 and 3 character grams, so a substring of a
+ * token is looked up without walking the vocabulary.
+ * A query intersects or merges the posting lists of its words. When every word
+ * is a plain run of letters and digits the postings are exact; otherwise the
+ * candidates are verified against the content in document order, on several
+ * cores when there are many. Results are identical to Message.find, in
+ * insertion order.
+ */
+public class InvertedIndex {
+    /** Length of the longest grams used to index the vocabulary. */
+    private static final int GRAM = 3;
+    /** Number of tokens of a text above which they are deduplicated with a hash set. */
+    private static final int SMALL_TOKENS = 16;
+
+    /** Message of every document number (null once removed). */
+    private Message[] byDoc = new Message[1024];
+    /** Number of document numbers handed out. */
+    private int docCount;
+    /** Document number of every indexed message ID. */
+    private final HashMap<Long, Integer> docById = new HashMap<>();
+    /** Token number of every token of the vocabulary. */
+    private final TokenTable tokenIds = new TokenTable();
+    /** Token of every token number (null once unused). */
+    private String[] tokens = new String[1024];
+    /** Posting list (document numbers) of every token number. */
+    private IntList[] postings = new IntList[1024];
+    /** Number of token numbers handed out. */
+    private int tokenCount;
+    /** Token numbers freed by tokens that left the vocabulary. */
+    private final IntList freeTokens = new IntList();
+    /** Token numbers by each of the grams of their token (see gramKey). */
+    private final HashMap<Long, IntList> grams = new HashMap<>();
+    /** Scanner verifying large candidate sets. */
+    private final ParallelSearcher searcher = new ParallelSearcher();
+    /** Lock guarding the documents, tokens, postings and grams. */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // ======= Index Maintenance ======= //
+
+    /**
+     * Adds a message to the index, replacing the one with the same ID. A message
+     * without content is not indexed (and unindexes the message it replaces).
+     *
+     * @param message The message to index.
+     */
+    public void add(Message message) {
+        if (message == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            index(message);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds several messages to the index under a single write lock, with the
+     * same rules as add. Null messages are ignored. Large batches are first
+     * tokenized, and their tokens looked up in the vocabulary, on several
+     * cores; only the vocabulary and postings updates run on one thread.
+     *
+     * @param messages The messages to index.
+     */
+    public void addAll(Collection<? extends Message> messages) {
+        Message[] batch = messages.toArray(new Message[0]);
+        String[][] tokenized = new String[batch.length][];
+        int[][] known = new int[batch.length][];
+        lock.writeLock().lock();
+        try {
+            if (batch.length >= ParallelSearcher.DEFAULT_THRESHOLD) {
+                // Nothing changes the maps during this phase, so they are read concurrently.
+                boolean[] replaces = new boolean[1];
+                IntStream.range(0, batch.length).parallel().forEach(i -> {
+                    tokenized[i] = tokensOf(batch[i]);
+                    known[i] = lookUp(tokenized[i]);
+                    if (batch[i] != null && docById.containsKey(batch[i].getId())) {
+                        replaces[0] = true;
+                    }
+                });
+                if (replaces[0]) {
+                    // Unindexing a replaced message may free token numbers looked up above.
+                    Arrays.fill(known, null);
+                }
+            }
+            for (int i = 0; i < batch.length; i++) {
+                if (batch[i] != null) {
+                    index(batch[i], tokenized[i], known[i]);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Gets the distinct tokens of the content of a message (null without content). */
+    private static String[] tokensOf(Message message) {
+        return (message == null || message.getContent() == null) ? null
+                : tokenize(message.getContent().toLowerCase());
+    }
+
+    /** Gets the token numbers of tokens, -1 for the ones not in the vocabulary. */
+    private int[] lookUp(String[] tokens) {
+        if (tokens == null) {
+            return null;
+        }
+        int[] ids = new int[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            ids[i] = tokenIds.get(tokens[i]);
+        }
+        return ids;
+    }
+
+    /** Adds the postings of a message. Caller must hold the write lock. */
+    private void index(Message message) {
+        index(message, null, null);
+    }
+
+    /**
+     * Adds the postings of a message, with its tokens and their token numbers
+     * (see lookUp) when already known. Caller must hold the write lock.
+     */
+    private void index(Message message, String[] tokenized, int[] known) {
+        if (message.getContent() == null) {
+            unindex(message.getId());
+            return;
+        }
+        Integer existing = docById.get(message.getId());
+        int doc;
+        if (existing != null) {
+            doc = existing;
+            unindexPostings(byDoc[doc], doc);
+        } else {
+            doc = docCount++;
+            if (doc == byDoc.length) {
+                byDoc = Arrays.copyOf(byDoc, doc * 2);
+            }
+            docById.put(message.getId(), doc);
+        }
+        byDoc[doc] = message;
+        String[] messageTokens = (tokenized != null) ? tokenized : tokensOf(message);
+        for (int i = 0; i < messageTokens.length; i++) {
+            int id = (known != null) ? known[i] : -1;
+            if (id < 0) {
+                id = tokenIds.get(messageTokens[i]);
+                if (id < 0) {
+                    id = newToken(messageTokens[i]); // may grow postings
+                }
+            }
+            postings[id].add(doc);
+        }
+    }
+
+    /**
+     * Removes a message from the index.
+     *
+     * @param id The ID of the message to remove.
+     */
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            unindex(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Drops a message and its postings. Caller must hold the write lock. */
+    private void unindex(long id) {
+        Integer doc = docById.remove(id);
+        if (doc == null) {
+            return;
+        }
+        unindexPostings(byDoc[doc], doc);
+        byDoc[doc] = null;
+        // Renumber once most document numbers are dead, so arrays follow the live size.
+        if (docCount > 1024 && docCount > 2 * docById.size()) {
+            renumber();
+        }
+    }
+
+    /** Drops the postings of a document. Caller must hold the write lock. */
+    private void unindexPostings(Message message, int doc) {
+        for (String token : tokensOf(message)) {
+            int id = tokenIds.get(token);
+            if (id >= 0) {
+                postings[id].remove(doc);
+                if (postings[id].isEmpty()) {
+                    dropToken(id);
+                }
+            }
+        }
+    }
+
+    /** Adds a token to the vocabulary and its gram lists. Caller must hold the write lock. */
+    private int newToken(String token) {
+        int id;
+        if (!freeTokens.isEmpty()) {
+            id = freeTokens.get(freeTokens.size() - 1);
+            freeTokens.remove(id);
+        } else {
+            id = tokenCount++;
+            if (id == tokens.length) {
+                tokens = Arrays.copyOf(tokens, id * 2);
+                postings = Arrays.copyOf(postings, id * 2);
+            }
+        }
+        tokens[id] = token;
+        postings[id] = new IntList();
+        tokenIds.put(token, id);
+        for (int length = 1; length <= GRAM; length++) {
+            for (int i = 0; i + length <= token.length(); i++) {
+                // Adding a token number again (repeated gram) does nothing.
+                grams.computeIfAbsent(gramKey(token, i, i + length), k -> new IntList()).add(id);
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Gets the key of a gram of at most GRAM characters without building a
+     * substring: its length and characters packed in a long, multiplied by an
+     * odd constant (a bijection) so the hash codes of the keys are spread.
+     */
+    private static Long gramKey(String text, int from, int to) {
+        long key = to - from;
+        for (int i = from; i < to; i++) {
+            key = (key << 16) | text.charAt(i);
+        }
+        return key * 0x9E3779B97F4A7C15L;
+    }
+
+    /** Removes a token without postings from the vocabulary. Caller must hold the write lock. */
+    private void dropToken(int id) {
+        String token = tokens[id];
+        for (int length = 1; length <= GRAM; length++) {
+            for (int i = 0; i + length <= token.length(); i++) {
+                Long gram = gramKey(token, i, i + length);
+                IntList ids = grams.get(gram);
+                if (ids != null) {
+                    ids.remove(id);
+                    if (ids.isEmpty()) {
+                        grams.remove(gram);
+                    }
+                }
+            }
+        }
+        tokenIds.remove(tokens[id]);
+        tokens[id] = null;
+        postings[id] = null;
+        freeTokens.add(id);
+    }
+
+    /**
+     * Gives the live documents consecutive numbers, keeping their order, and
+     * rewrites the posting lists. Caller must hold the write lock.
+     */
+    private void renumber() {
+        int[] mapping = new int[docCount];
+        Message[] live = new Message[Math.max(1024, Integer.highestOneBit(docById.size()) * 2)];
+        int n = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            if (byDoc[doc] != null) {
+                mapping[doc] = n;
+                live[n] = byDoc[doc];
+                docById.put(byDoc[doc].getId(), n);
+                n++;
+            }
+        }
+        for (int id = 0; id < tokenCount; id++) {
+            if (postings[id] != null) {
+                postings[id].remap(mapping);
+            }
+        }
+        byDoc = live;
+        docCount = n;
+    }
+
+    // ======= Queries ======= //
+
+    /**
+     * Finds all the messages whose content contains any of the given words
+     * (same matching rules as Message.find).
+     *
+     * @param words The words to search for.
+     * @return The matching messages, in insertion order.
+     */
+    public ArrayList<Message> findAny(List<String> words) {
+        return query(words, false);
+    }
+
+    /**
+     * Finds all the messages whose content contains every one of the given words
+     * (same matching rules as Message.findAll).
+     *
+     * @param words The words to search for.
+     * @return The matching messages, in insertion order.
+     */
+    public ArrayList<Message> findAll(List<String> words) {
+        return query(words, true);
+    }
+
+    /**
+     * Counts the messages whose content contains any of the given words.
+     *
+     * @param words The words to search for.
+     * @return The number of matching messages.
+     */
+    public int countAny(List<String> words) {
+        return findAny(words).size();
+    }
+
+    /** @return the number of indexed messages. */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Runs an any-of / all-of query: merges (any) or intersects (all) the
+     * candidate documents of the words, then verifies the candidates against
+     * the content in document order.
+     */
+    private ArrayList<Message> query(List<String> words, boolean all) {
+        CompiledQuery query = all ? CompiledQuery.allOf(words) : CompiledQuery.anyOf(words);
+        if (query.isEmpty()) {
+            return new ArrayList<>();
+        }
+        lock.readLock().lock();
+        try {
+            ArrayList<IntList> perWord = new ArrayList<>();
+            boolean exact = true;
+            for (String word : query.getWords()) {
+                IntList docs = candidatesFor(word);
+                if (docs == null) {
+                    // The word has no token characters, so every message is a candidate:
+                    // it restricts nothing in an all-of query and forces a scan otherwise.
+                    if (!all) {
+                        return searcher.search(new DocList(null), query).getMatches();
+                    }
+                    continue;
+                }
+                if (all && docs.isEmpty()) {
+                    return new ArrayList<>();
+                }
+                perWord.add(docs);
+                exact &= isToken(word);
+            }
+            if (perWord.isEmpty()) {
+                return searcher.search(new DocList(null), query).getMatches();
+            }
+            DocList candidates = new DocList(combine(perWord, all));
+            if (exact && perWord.size() == query.getWords().length) {
+                return new ArrayList<>(candidates);
+            }
+            return searcher.search(candidates, query).getMatches();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets a test of whether a message is in the result of queries, with the
+     * same rules query applies to the whole index (candidates from the tokens,
+     * verified against the content unless the words are exact tokens), so a
+     * cache of query results can tell which ones a changed message affects.
+     *
+     * @param message The message to test (may be null).
+     * @return The test, true for the queries whose result holds the message.
+     */
+    public static Predicate<CompiledQuery> probe(Message message) {
+        String[] tokens = tokensOf(message);
+        if (tokens == null) {
+            return query -> false;
+        }
+        return query -> {
+            if (query.isEmpty()) {
+                return false;
+            }
+            boolean all = query.isAll();
+            boolean exact = true;
+            boolean candidate = all;
+            int counted = 0;
+            for (String word : query.getWords()) {
+                String[] fragments = tokenize(word);
+                if (fragments.length == 0) {
+                    if (!all) {
+                        return query.matches(message);
+                    }
+                    continue;
+                }
+                boolean has = hasFragments(tokens, fragments);
+                if (all && !has) {
+                    return false;
+                }
+                candidate = all ? candidate : candidate || has;
+                counted++;
+                exact &= isToken(word);
+            }
+            if (counted == 0) {
+                return query.matches(message);
+            }
+            if (!candidate) {
+                return false;
+            }
+            return (exact && counted == query.getWords().length) || query.matches(message);
+        };
+    }
+
+    /** Checks that every fragment is contained in one of the tokens. */
+    private static boolean hasFragments(String[] tokens, String[] fragments) {
+        for (String fragment : fragments) {
+            boolean found = false;
+            for (int i = 0; i < tokens.length && !found; i++) {
+                found = tokens[i].contains(fragment);
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Intersects (smallest first) or merges lists of documents. Caller must hold the read lock. */
+    private IntList combine(List<IntList> lists, boolean all) {
+        if (!all) {
+            return IntList.or(lists, docCount);
+        }
+        lists.sort(Comparator.comparingInt(IntList::size));
+        IntList result = lists.get(0);
+        for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+            result = IntList.and(result, lists.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Gets the documents that may contain the given (folded) word: the
+     * intersection, over every token of the word, of the postings of all the
+     * vocabulary tokens containing it. Caller must hold the read lock.
+     *
+     * @return The candidate documents (not to be modified), or null if the word
+     *         has no token characters.
+     */
+    private IntList candidatesFor(String word) {
+        String[] fragments = tokenize(word);
+        if (fragments.length == 0) {
+            return null;
+        }
+        ArrayList<IntList> perFragment = new ArrayList<>(fragments.length);
+        for (String fragment : fragments) {
+            IntList ids = tokensContaining(fragment);
+            if (ids.isEmpty()) {
+                return new IntList();
+            }
+            ArrayList<IntList> lists = new ArrayList<>(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                lists.add(postings[ids.get(i)]);
+            }
+            perFragment.add(IntList.or(lists, docCount));
+        }
+        return combine(perFragment, true);
+    }
+
+    /**
+     * Finds the vocabulary tokens containing a fragment: the tokens of the gram
+     * when the fragment is at most a gram long, otherwise the tokens of its
+     * rarest trigram that contain it. Caller must hold the read lock.
+     *
+     * @return The token numbers (not to be modified).
+     */
+    private IntList tokensContaining(String fragment) {
+        if (fragment.length() <= GRAM) {
+            IntList ids = grams.get(gramKey(fragment, 0, fragment.length()));
+            return (ids == null) ? new IntList() : ids;
+        }
+        ArrayList<IntList> lists = new ArrayList<>();
+        for (int i = 0; i + GRAM <= fragment.length(); i++) {
+            IntList ids = grams.get(gramKey(fragment, i, i + GRAM));
+            if (ids == null) {
+                return new IntList();
+            }
+            lists.add(ids);
+        }
+        // Tokens having every trigram, then only those with them in the right order.
+        IntList candidates = combine(lists, true);
+        IntList found = new IntList();
+        for (int i = 0; i < candidates.size(); i++) {
+            if (tokens[candidates.get(i)].contains(fragment)) {
+                found.add(candidates.get(i));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Read-only view of documents as messages, without copying: the listed
+     * documents, or every document number when the list is null (removed ones
+     * are null and never match). Caller must hold the read lock while using it.
+     */
+    private final class DocList extends AbstractList<Message> implements RandomAccess {
+        /** The documents, or null for all of them. */
+        private final IntList docs;
+
+        private DocList(IntList docs) {
+            this.docs = docs;
+        }
+
+        @Override
+        public Message get(int index) {
+            return byDoc[(docs == null) ? index : docs.get(index)];
+        }
+
+        @Override
+        public int size() {
+            return (docs == null) ? docCount : docs.size();
+        }
+    }
+
+    // ======= Tokenizing ======= //
+
+    /**
+     * Splits an already case folded text into its distinct tokens, in order of
+     * first appearance. Short texts are deduplicated by comparison, longer ones
+     * through a hash set.
+     *
+     * @param text The folded text.
+     * @return The distinct runs of letters and digits.
+     */
+    static String[] tokenize(String text) {
+        String[] tokens = new String[8];
+        int count = 0;
+        HashSet<String> seen = null;
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean inToken = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (inToken && start < 0) {
+                start = i;
+            } else if (!inToken && start >= 0) {
+                String token = text.substring(start, i);
+                start = -1;
+                if ((seen != null) ? !seen.add(token) : contains(tokens, count, token)) {
+                    continue;
+                }
+                if (count == tokens.length) {
+                    tokens = Arrays.copyOf(tokens, count * 2);
+                }
+                tokens[count++] = token;
+                if (seen == null && count > SMALL_TOKENS) {
+                    seen = new HashSet<>(Arrays.asList(tokens).subList(0, count));
+                }
+            }
+        }
+        return (count == tokens.length) ? tokens : Arrays.copyOf(tokens, count);
+    }
+
+    /** Checks if one of the first count tokens equals the given one. */
+    private static boolean contains(String[] tokens, int count, String token) {
+        for (int i = 0; i < count; i++) {
+            if (tokens[i].equals(token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if a folded word is a single run of letters and digits, so that a
+     * content contains it exactly when one of its tokens does.
+     */
+    private static boolean isToken(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (!Character.isLetterOrDigit(word.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,284 @@
+package search;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Aho-Corasick automaton matching many words against a text in one pass.
+ * The words and the scanned texts are folded like String.toLowerCase, as in
+ * Message.find and the other search paths. A text is folded char by char while
+ * it is scanned, without a lowercased copy; only a text with a folding that
+ * depends on its context (final sigma) or changes its length (U+0130), with
+ * supplementary characters, or scanned under a Turkish, Azeri or Lithuanian
+ * default locale is folded whole with String.toLowerCase first.
+ * Compiled matchers are immutable and cached by their set of words.
+ */
+public class MultiPatternMatcher {
+    /** Maximal number of compiled matchers kept in the cache. */
+    private static final int CACHE_SIZE = 256;
+    /** Cache of the compiled matchers, by their sorted folded words (LRU). */
+    private static final Map<List<String>, MultiPatternMatcher> CACHE =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<String>, MultiPatternMatcher> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+    /** Number of ASCII characters with a direct transition table at the root. */
+    private static final int ASCII = 128;
+
+    /** The distinct folded words. */
+    private final String[] patterns;
+    /** Sorted transition characters of every state. */
+    private final char[][] labels;
+    /** Target states matching the labels. */
+    private final int[][] targets;
+    /** Direct root transitions for ASCII characters (0 for none). */
+    private final int[] rootNext;
+    /** Failure link of every state. */
+    private final int[] fail;
+    /** Index of the word ending at each state, or -1. */
+    private final int[] word;
+    /** Nearest state on the failure chain ending a word, or -1. */
+    private final int[] dictLink;
+
+    // ======= Construction ======= //
+
+    /**
+     * Gets the compiled matcher for the given words, building it only if it is not
+     * cached yet. Null and blank words are ignored, and the order and case of
+     * the words do not matter.
+     *
+     * @param words The words to match.
+     * @return The compiled matcher.
+     */
+    public static MultiPatternMatcher compile(List<String> words) {
+        TreeSet<String> folded = new TreeSet<>();
+        if (words != null) {
+            for (String w : words) {
+                if (w != null && !w.isBlank()) {
+                    folded.add(fold(w));
+                }
+            }
+        }
+        List<String> key = List.copyOf(folded);
+        synchronized (CACHE) {
+            MultiPatternMatcher cached = CACHE.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        MultiPatternMatcher matcher = new MultiPatternMatcher(key);
+        synchronized (CACHE) {
+            CACHE.putIfAbsent(key, matcher);
+            return CACHE.get(key);
+        }
+    }
+
+    /** Builds the automaton for distinct, already folded words. */
+    private MultiPatternMatcher(List<String> words) {
+        patterns = words.toArray(new String[0]);
+
+        // 1) Build the trie.
+        ArrayList<HashMap<Character, Integer>> trie = new ArrayList<>();
+        ArrayList<Integer> ends = new ArrayList<>();
+        trie.add(new HashMap<>());
+        ends.add(-1);
+        for (int p = 0; p < patterns.length; p++) {
+            int state = 0;
+            for (int i = 0; i < patterns[p].length(); i++) {
+                char c = patterns[p].charAt(i);
+                Integer next = trie.get(state).get(c);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new HashMap<>());
+                    ends.add(-1);
+                    trie.get(state).put(c, next);
+                }
+                state = next;
+            }
+            ends.set(state, p);
+        }
+
+        // 2) Freeze the transitions into sorted arrays.
+        int n = trie.size();
+        labels = new char[n][];
+        targets = new int[n][];
+        word = new int[n];
+        for (int s = 0; s < n; s++) {
+            Character[] keys = trie.get(s).keySet().toArray(new Character[0]);
+            Arrays.sort(keys);
+            labels[s] = new char[keys.length];
+            targets[s] = new int[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                labels[s][i] = keys[i];
+                targets[s][i] = trie.get(s).get(keys[i]);
+            }
+            word[s] = ends.get(s);
+        }
+        rootNext = new int[ASCII];
+        for (int i = 0; i < labels[0].length; i++) {
+            if (labels[0][i] < ASCII) {
+                rootNext[labels[0][i]] = targets[0][i];
+            }
+        }
+
+        // 3) Breadth first failure and dictionary links.
+        fail = new int[n];
+        dictLink = new int[n];
+        Arrays.fill(dictLink, -1);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int t : targets[0]) {
+            queue.add(t);
+        }
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            for (int i = 0; i < labels[s].length; i++) {
+                char c = labels[s][i];
+                int t = targets[s][i];
+                int f = fail[s];
+                while (f != 0 && transition(f, c) < 0) {
+                    f = fail[f];
+                }
+                int ft = transition(f, c);
+                fail[t] = (ft < 0 || ft == t) ? 0 : ft;
+                dictLink[t] = (word[fail[t]] >= 0) ? fail[t] : dictLink[fail[t]];
+                queue.add(t);
+            }
+        }
+    }
+
+    // ======= Matching ======= //
+
+    /** @return the number of distinct words of the matcher. */
+    public int size() {
+        return patterns.length;
+    }
+
+    /**
+     * Checks if the text contains any of the words.
+     *
+     * @param text The text to scan.
+     * @return True if at least one word occurs in the text.
+     */
+    public boolean matchesAny(CharSequence text) {
+        if (text == null || patterns.length == 0) {
+            return false;
+        }
+        return foldsByChar() ? any(text, true) : any(fold(text), false);
+    }
+
+    /** Scans a text for any word, folding its chars if asked to. */
+    private boolean any(CharSequence text, boolean foldChars) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (foldChars) {
+                if (needsStringFolding(c)) {
+                    return any(fold(text), false);
+                }
+                c = Character.toLowerCase(c);
+            }
+            state = step(state, c);
+            if (word[state] >= 0 || dictLink[state] >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the text contains all of the words.
+     *
+     * @param text The text to scan.
+     * @return True if every word occurs in the text.
+     */
+    public boolean matchesAll(CharSequence text) {
+        if (text == null || patterns.length == 0) {
+            return false;
+        }
+        return foldsByChar() ? all(text, true) : all(fold(text), false);
+    }
+
+    /** Scans a text for every word, folding its chars if asked to. */
+    private boolean all(CharSequence text, boolean foldChars) {
+        long[] seen = new long[(patterns.length + 63) >>> 6];
+        int remaining = patterns.length;
+        int state = 0;
+        for (int i = 0; i < text.length() && remaining > 0; i++) {
+            char c = text.charAt(i);
+            if (foldChars) {
+                if (needsStringFolding(c)) {
+                    return all(fold(text), false);
+                }
+                c = Character.toLowerCase(c);
+            }
+            state = step(state, c);
+            for (int s = (word[state] >= 0) ? state : dictLink[state]; s >= 0; s = dictLink[s]) {
+                int p = word[s];
+                long bit = 1L << (p & 63);
+                if ((seen[p >>> 6] & bit) == 0) {
+                    seen[p >>> 6] |= bit;
+                    remaining--;
+                }
+            }
+        }
+        return remaining == 0;
+    }
+
+    /** Follows the automaton from a state on a folded character. */
+    private int step(int state, char c) {
+        while (true) {
+            if (state == 0) {
+                if (c < ASCII) {
+                    return rootNext[c];
+                }
+                int t = transition(0, c);
+                return (t < 0) ? 0 : t;
+            }
+            int t = transition(state, c);
+            if (t >= 0) {
+                return t;
+            }
+            state = fail[state];
+        }
+    }
+
+    /** Gets the direct transition of a state on a character, or -1. */
+    private int transition(int state, char c) {
+        int i = Arrays.binarySearch(labels[state], c);
+        return (i < 0) ? -1 : targets[state][i];
+    }
+
+    /**
+     * Checks if String.toLowerCase folds every char on its own under the default
+     * locale: it has context and locale dependent rules for tr, az and lt.
+     */
+    private static boolean foldsByChar() {
+        String language = Locale.getDefault().getLanguage();
+        return !(language.equals("tr") || language.equals("az") || language.equals("lt"));
+    }
+
+    /**
+     * Checks if String.toLowerCase may fold a char otherwise than
+     * Character.toLowerCase: final sigma, U+0130 and surrogates.
+     */
+    private static boolean needsStringFolding(char c) {
+        return c == '\u03A3' || c == '\u0130' || Character.isSurrogate(c);
+    }
+
+    /**
+     * Folds a word or a text to lower case as Message.find does. String.toLowerCase
+     * returns the string itself when nothing changes.
+     */
+    private static String fold(CharSequence text) {
+        return text.toString().toLowerCase();
+    }
+}
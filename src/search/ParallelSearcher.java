@@ -0,0 +1,122 @@
+package search;
+
+import model.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Scans a list of messages against a compiled query on several cores.
+ * The list is split in fork/join chunks; each chunk collects its matches and
+ * the partial results are concatenated in list order. Lists smaller than the
+ * threshold are scanned on the calling thread, where forking does not pay off.
+ */
+public class ParallelSearcher {
+    /** Default size from which the scan is split across cores. */
+    public static final int DEFAULT_THRESHOLD = 8_192;
+    /** Smallest chunk scanned by a single task. */
+    private static final int MIN_CHUNK = 1_024;
+
+    /** The pool running the chunk tasks. */
+    private final ForkJoinPool pool;
+    /** Size from which the scan runs in parallel. */
+    private final int threshold;
+
+    /** Constructs a searcher on the common pool with the default threshold. */
+    public ParallelSearcher() {
+        this(ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Constructs a searcher.
+     * 
+     * @param pool      The pool running the chunk tasks.
+     * @param threshold Size from which the scan runs in parallel.
+     * @throws IllegalArgumentException If pool is null or threshold is negative.
+     */
+    public ParallelSearcher(ForkJoinPool pool, int threshold) {
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool cannot be null");
+        }
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Threshold cannot be negative");
+        }
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Finds all the messages matching the query, keeping the list order.
+     * 
+     * @param messages The messages to scan.
+     * @param query    The compiled query.
+     * @return The matches and their count.
+     */
+    public SearchResult search(List<Message> messages, CompiledQuery query) {
+        if (messages == null || messages.isEmpty() || query == null || query.isEmpty()) {
+            return new SearchResult(new ArrayList<>());
+        }
+        if (messages.size() < threshold) {
+            return new SearchResult(scan(messages, query, 0, messages.size()));
+        }
+        int chunk = Math.max(MIN_CHUNK, messages.size() / (pool.getParallelism() * 4));
+        return new SearchResult(pool.invoke(new ScanTask(messages, query, 0, messages.size(), chunk)));
+    }
+
+    /**
+     * Counts the messages matching the query.
+     * 
+     * @param messages The messages to scan.
+     * @param query    The compiled query.
+     * @return The number of matching messages.
+     */
+    public int count(List<Message> messages, CompiledQuery query) {
+        return search(messages, query).getCount();
+    }
+
+    /** Sequentially collects the matches in [from, to). */
+    private static ArrayList<Message> scan(List<Message> messages, CompiledQuery query, int from, int to) {
+        ArrayList<Message> result = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            Message m = messages.get(i);
+            if (query.matches(m)) {
+                result.add(m);
+            }
+        }
+        return result;
+    }
+
+    /** Fork/join task scanning a range of the list. */
+    private static class ScanTask extends RecursiveTask<ArrayList<Message>> {
+        private static final long serialVersionUID = 1L;
+        private final List<Message> messages;
+        private final CompiledQuery query;
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        ScanTask(List<Message> messages, CompiledQuery query, int from, int to, int chunk) {
+            this.messages = messages;
+            this.query = query;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected ArrayList<Message> compute() {
+            if (to - from <= chunk) {
+                return scan(messages, query, from, to);
+            }
+            int mid = (from + to) >>> 1;
+            ScanTask left = new ScanTask(messages, query, from, mid, chunk);
+            left.fork();
+            ArrayList<Message> right = new ScanTask(messages, query, mid, to, chunk).compute();
+            ArrayList<Message> result = left.join();
+            result.addAll(right);
+            return result;
+        }
+    }
+}
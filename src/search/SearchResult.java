@@ -0,0 +1,32 @@
+package search;
+
+import model.Message;
+
+import java.util.ArrayList;
+
+/**
+ * The outcome of a search: the matching messages and their count.
+ */
+public class SearchResult {
+    /** The matching messages. */
+    private final ArrayList<Message> matches;
+
+    /**
+     * Constructs a search result.
+     * 
+     * @param matches The matching messages.
+     */
+    public SearchResult(ArrayList<Message> matches) {
+        this.matches = (matches == null) ? new ArrayList<>() : matches;
+    }
+
+    /** @return the number of matching messages. */
+    public int getCount() {
+        return matches.size();
+    }
+
+    /** @return the matching messages (owned by the caller). */
+    public ArrayList<Message> getMatches() {
+        return matches;
+    }
+}
@@ -0,0 +1,130 @@
+package search;
+
+/**
+ * Map from tokens to token numbers, used for the vocabulary of the inverted
+ * index. It uses open addressing with linear probing over an array holding
+ * the hash and number of every slot side by side, so a lookup mostly reads
+ * one cache line instead of a chain of nodes and boxed numbers, and an entry
+ * costs no allocation. The tokens are only read when the hashes match.
+ * Not thread-safe, but concurrent lookups are safe while nothing changes it.
+ */
+final class TokenTable {
+    /** Smallest number of slots. */
+    private static final int MIN_CAPACITY = 1024;
+
+    /** Hash and token number + 1 of every slot (0 for an empty slot). */
+    private int[] slots = new int[2 * MIN_CAPACITY];
+    /** Token of every slot. */
+    private String[] keys = new String[MIN_CAPACITY];
+    /** Number of tokens. */
+    private int size;
+
+    // ======= Lookups ======= //
+
+    /**
+     * Gets the number of a token.
+     *
+     * @param token The token.
+     * @return The token number, or -1 if the token is absent.
+     */
+    int get(String token) {
+        int slot = find(token, hash(token));
+        return (slot < 0) ? -1 : slots[2 * slot + 1] - 1;
+    }
+
+    /** @return the number of tokens. */
+    int size() {
+        return size;
+    }
+
+    /** Finds the slot of a token, or -(empty slot ending its probe) - 1 if absent. */
+    private int find(String token, int hash) {
+        int mask = keys.length - 1;
+        int slot = hash & mask;
+        while (slots[2 * slot + 1] != 0) {
+            if (slots[2 * slot] == hash && keys[slot].equals(token)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -slot - 1;
+    }
+
+    // ======= Changes ======= //
+
+    /**
+     * Maps a token to a number, replacing its previous number.
+     *
+     * @param token The token.
+     * @param id    The token number (non-negative).
+     */
+    void put(String token, int id) {
+        if (2 * (size + 1) > keys.length) {
+            resize(keys.length * 2);
+        }
+        int hash = hash(token);
+        int slot = find(token, hash);
+        if (slot < 0) {
+            slot = -slot - 1;
+            slots[2 * slot] = hash;
+            keys[slot] = token;
+            size++;
+        }
+        slots[2 * slot + 1] = id + 1;
+    }
+
+    /**
+     * Removes a token (nothing happens if it is absent).
+     *
+     * @param token The token.
+     */
+    void remove(String token) {
+        int free = find(token, hash(token));
+        if (free < 0) {
+            return;
+        }
+        // Shift back the following entries of the run that probed past the freed slot.
+        int mask = keys.length - 1;
+        for (int next = (free + 1) & mask; slots[2 * next + 1] != 0; next = (next + 1) & mask) {
+            int home = slots[2 * next] & mask;
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                slots[2 * free] = slots[2 * next];
+                slots[2 * free + 1] = slots[2 * next + 1];
+                keys[free] = keys[next];
+                free = next;
+            }
+        }
+        slots[2 * free + 1] = 0;
+        keys[free] = null;
+        size--;
+        if (keys.length > MIN_CAPACITY && 8 * size < keys.length) {
+            resize(keys.length / 2);
+        }
+    }
+
+    /** Rehashes the tokens into a number of slots (a power of two). */
+    private void resize(int capacity) {
+        int[] oldSlots = slots;
+        String[] oldKeys = keys;
+        slots = new int[2 * capacity];
+        keys = new String[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldSlots[2 * i + 1] != 0) {
+                int slot = oldSlots[2 * i] & mask;
+                while (slots[2 * slot + 1] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[2 * slot] = oldSlots[2 * i];
+                slots[2 * slot + 1] = oldSlots[2 * i + 1];
+                keys[slot] = oldKeys[i];
+            }
+        }
+    }
+
+    /** Spreads the hash code of a token so the low bits pick the slot. */
+    private static int hash(String token) {
+        int h = token.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
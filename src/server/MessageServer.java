@@ -0,0 +1,502 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import ingest.RowMapper;
+import json.Json;
+import json.MessageJson;
+import model.BoardMessage;
+import model.Message;
+import model.Priority;
+import model.ReactionException;
+import model.ReactionMessage;
+import store.MessageStore;
+import store.ReactionStats;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedded HTTP/JSON API over a message store, built on the JDK HTTP server.
+ * Endpoints:
+ * <ul>
+ * <li>POST /messages: adds a message (same fields as the ingest rows), 201
+ * with its id.</li>
+ * <li>GET /messages: lists the messages, filtered by the optional type,
+ * sender, priority and limit query parameters.</li>
+ * <li>GET /messages/{id}: gets a message. DELETE removes it (204).</li>
+ * <li>GET /messages/{id}/preview: gets the preview of a message.</li>
+ * <li>POST /messages/{id}/reactions: adds a reaction (sender, content,
+ * reaction) to a board message, 201 with its id.</li>
+ * <li>GET /search?q=word1,word2[&amp;mode=all]: the matching messages.</li>
+ * <li>GET /previews[?limit=n]: the previews of the messages.</li>
+ * <li>GET /stats/reactions[?by=total|velocity|{reaction}&amp;limit=n]: the
+ * board messages with the most reactions (in total or of one type) or
+ * receiving them the fastest, ten by default.</li>
+ * </ul>
+ * Errors are answered with a status code and a JSON {"error": ...} body;
+ * unexpected failures with 500.
+ * Lists are streamed with chunked encoding as they are written, and every
+ * response is complete, so connections are kept alive between requests.
+ * Requests are handled on a fixed pool of worker threads.
+ */
+public class MessageServer implements Closeable {
+    /** Largest accepted request body, in bytes. */
+    private static final int MAX_BODY = 1 << 20;
+    /** Size of the response write buffer, in bytes. */
+    private static final int WRITE_BUFFER = 16 * 1024;
+    /** Number of boards ranked by the reaction statistics by default. */
+    private static final int DEFAULT_TOP = 10;
+
+    /** The store served. */
+    private final MessageStore store;
+    /** Reaction statistics of the store. */
+    private final ReactionStats stats;
+    /** The underlying HTTP server. */
+    private final HttpServer http;
+    /** The request workers. */
+    private final ExecutorService workers;
+
+    // ======= Lifecycle ======= //
+
+    /**
+     * Starts a server with four workers per processor, at least sixteen.
+     * The JDK server writes the headers and the body of a response separately,
+     * so unless the system property sun.net.httpserver.nodelay is "true" (set
+     * before the first server is created), every keep-alive response waits for
+     * the client's delayed ACK, about 40ms.
+     *
+     * @param store The store to serve.
+     * @param port  The port to listen on (0 for any free port).
+     * @return The started server.
+     * @throws IOException              If the port cannot be bound.
+     * @throws IllegalArgumentException If the store is null.
+     */
+    public static MessageServer start(MessageStore store, int port) throws IOException {
+        return start(store, new InetSocketAddress(port), Math.max(16, 4 * Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Starts a server.
+     *
+     * @param store   The store to serve.
+     * @param address The address to listen on.
+     * @param threads Number of worker threads.
+     * @return The started server.
+     * @throws IOException              If the address cannot be bound.
+     * @throws IllegalArgumentException If the store or address is null or threads
+     *                                  is not positive.
+     */
+    public static MessageServer start(MessageStore store, InetSocketAddress address, int threads)
+            throws IOException {
+        if (store == null || address == null) {
+            throw new IllegalArgumentException("Store and address cannot be null");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive");
+        }
+        return new MessageServer(store, address, threads);
+    }
+
+    private MessageServer(MessageStore store, InetSocketAddress address, int threads) throws IOException {
+        this.store = store;
+        this.http = HttpServer.create(address, 1024);
+        this.stats = new ReactionStats(store);
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "message-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        http.setExecutor(workers);
+        http.createContext("/", this::handle);
+        http.start();
+    }
+
+    /** @return the port the server listens on. */
+    public int getPort() {
+        return http.getAddress().getPort();
+    }
+
+    /** Stops the server, letting the running requests finish for up to a second. */
+    @Override
+    public void close() {
+        http.stop(1);
+        store.removeListener(stats);
+        workers.shutdown();
+        try {
+            workers.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ======= Routing ======= //
+
+    /**
+     * Routes a request and answers errors. A failure after the headers of a
+     * streamed response were sent cannot be answered any more: the exchange is
+     * left open and the exception rethrown, so the server drops the connection
+     * and the client sees a truncated body instead of a complete one.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        int status;
+        String error;
+        Exception failure;
+        try {
+            String[] path = Arrays.stream(exchange.getRequestURI().getPath().split("/"))
+                    .filter(part -> !part.isEmpty()).toArray(String[]::new);
+            String method = exchange.getRequestMethod();
+            Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+            route(exchange, method, path, query);
+            exchange.close();
+            return;
+        } catch (HttpError e) {
+            status = e.status;
+            error = e.getMessage();
+            failure = e;
+        } catch (IllegalArgumentException | ReactionException e) {
+            status = 400;
+            error = e.getMessage();
+            failure = e;
+        } catch (RuntimeException e) {
+            // e.g. the log failed: the change may be applied in memory only
+            status = 500;
+            error = "Internal error: " + e.getMessage();
+            failure = e;
+        }
+        if (exchange.getResponseCode() != -1) {
+            throw new IOException("Response failed after its headers were sent", failure);
+        }
+        try (exchange) {
+            sendError(exchange, status, error);
+        }
+    }
+
+    private void route(HttpExchange exchange, String method, String[] path, Map<String, String> query)
+            throws IOException, HttpError, ReactionException {
+        if (path.length == 1 && path[0].equals("messages")) {
+            switch (method) {
+                case "GET" -> streamMessages(exchange, list(query));
+                case "POST" -> addMessage(exchange);
+                default -> throw new HttpError(405, "Method not allowed");
+            }
+        } else if (path.length >= 2 && path[0].equals("messages")) {
+            long id = id(path[1]);
+            if (path.length == 2) {
+                switch (method) {
+                    case "GET" -> sendJson(exchange, 200, MessageJson.toMap(find(id)));
+                    case "DELETE" -> {
+                        if (store.remove(id) == null) {
+                            throw new HttpError(404, "No message with id " + id);
+                        }
+                        exchange.sendResponseHeaders(204, -1);
+                    }
+                    default -> throw new HttpError(405, "Method not allowed");
+                }
+            } else if (path.length == 3 && path[2].equals("preview")) {
+                requireMethod(method, "GET");
+                LinkedHashMap<String, Object> body = new LinkedHashMap<>();
+                body.put("id", id);
+                body.put("preview", find(id).generatePreview());
+                sendJson(exchange, 200, body);
+            } else if (path.length == 3 && path[2].equals("reactions")) {
+                requireMethod(method, "POST");
+                addReaction(exchange, id);
+            } else {
+                throw new HttpError(404, "Not found");
+            }
+        } else if (path.length == 1 && path[0].equals("search")) {
+            requireMethod(method, "GET");
+            streamMessages(exchange, search(query));
+        } else if (path.length == 1 && path[0].equals("previews")) {
+            requireMethod(method, "GET");
+            int n = limit(query);
+            streamPreviews(exchange, (n < 0) ? store.getAll() : store.getFirst(n));
+        } else if (path.length == 2 && path[0].equals("stats") && path[1].equals("reactions")) {
+            requireMethod(method, "GET");
+            sendJson(exchange, 200, reactionStats(query));
+        } else {
+            throw new HttpError(404, "Not found");
+        }
+    }
+
+    // ======= Endpoints ======= //
+
+    private void addMessage(HttpExchange exchange) throws IOException, ReactionException {
+        Message message = RowMapper.toMessage(readObject(exchange));
+        store.add(message);
+        LinkedHashMap<String, Object> body = new LinkedHashMap<>();
+        body.put("id", message.getId());
+        sendJson(exchange, 201, body);
+    }
+
+    private void addReaction(HttpExchange exchange, long boardId) throws IOException, HttpError, ReactionException {
+        Map<String, Object> fields = readObject(exchange);
+        Object type = fields.get("reaction");
+        ReactionMessage.ReactionType reactionType;
+        try {
+            reactionType = ReactionMessage.ReactionType.valueOf(String.valueOf(type).trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown reaction: " + type);
+        }
+        ReactionMessage reaction = new ReactionMessage(text(fields.get("sender")), text(fields.get("content")),
+                reactionType);
+        BoardMessage board = store.addReaction(boardId, reaction);
+        if (board == null) {
+            throw new HttpError(404, "No board message with id " + boardId);
+        }
+        LinkedHashMap<String, Object> body = new LinkedHashMap<>();
+        body.put("id", reaction.getId());
+        body.put("reactions", board.getTotalReactions());
+        sendJson(exchange, 201, body);
+    }
+
+    /** Ranks the boards by the by parameter, limit (default ten) first. */
+    private List<Map<String, Object>> reactionStats(Map<String, String> query) {
+        int n = DEFAULT_TOP;
+        if (query.get("limit") != null) {
+            try {
+                n = Integer.parseInt(query.get("limit").trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid limit: " + query.get("limit"));
+            }
+        }
+        String by = query.getOrDefault("by", "total").trim().toUpperCase(Locale.ROOT);
+        List<BoardMessage> boards;
+        if (by.equals("TOTAL")) {
+            boards = stats.topBoards(n, null);
+        } else if (by.equals("VELOCITY")) {
+            boards = stats.topBoardsByVelocity(n);
+        } else {
+            try {
+                boards = stats.topBoards(n, ReactionMessage.ReactionType.valueOf(by));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown ranking: " + query.get("by"));
+            }
+        }
+        ArrayList<Map<String, Object>> ranked = new ArrayList<>();
+        for (BoardMessage board : boards) {
+            LinkedHashMap<String, Object> entry = new LinkedHashMap<>();
+            entry.put("id", board.getId());
+            entry.put("sender", board.getSender());
+            entry.put("reactions", board.getTotalReactions());
+            entry.put("velocity", stats.getVelocity(board.getId()));
+            ranked.add(entry);
+        }
+        return ranked;
+    }
+
+    /** Gets the messages selected by the type, sender, priority and limit parameters. */
+    private List<Message> list(Map<String, String> query) {
+        List<Message> messages;
+        if (query.get("sender") != null) {
+            messages = store.getBySender(query.get("sender"));
+        } else if (query.get("priority") != null) {
+            String priority = query.get("priority").trim().toUpperCase(Locale.ROOT);
+            try {
+                messages = store.getByPriority(Priority.valueOf(priority));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown priority: " + priority);
+            }
+        } else if (query.get("type") == null && query.get("limit") != null) {
+            // Only the first messages are listed: copy only those.
+            return store.getFirst(limit(query));
+        } else {
+            messages = store.getAll();
+        }
+        String type = query.get("type");
+        if (type != null) {
+            ArrayList<Message> ofType = new ArrayList<>();
+            for (Message message : messages) {
+                if (message.getMessageType().equalsIgnoreCase(type)) {
+                    ofType.add(message);
+                }
+            }
+            messages = ofType;
+        }
+        return limit(messages, query);
+    }
+
+    /** Runs the search of the q (comma separated words) and mode parameters. */
+    private List<Message> search(Map<String, String> query) {
+        String q = query.get("q");
+        if (q == null || q.isBlank()) {
+            throw new IllegalArgumentException("Missing query parameter: q");
+        }
+        ArrayList<String> words = new ArrayList<>(Arrays.asList(q.split(",")));
+        String mode = query.getOrDefault("mode", "any");
+        List<Message> found = switch (mode) {
+            case "any" -> store.searchAny(words);
+            case "all" -> store.searchAll(words);
+            default -> throw new IllegalArgumentException("Unknown search mode: " + mode);
+        };
+        return limit(found, query);
+    }
+
+    /** Applies the optional limit parameter. */
+    private static List<Message> limit(List<Message> messages, Map<String, String> query) {
+        int n = limit(query);
+        return (n < 0) ? messages : messages.subList(0, Math.min(n, messages.size()));
+    }
+
+    /** Parses the optional limit parameter, -1 if there is none. */
+    private static int limit(Map<String, String> query) {
+        String limit = query.get("limit");
+        if (limit == null) {
+            return -1;
+        }
+        int n;
+        try {
+            n = Integer.parseInt(limit.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid limit: " + limit);
+        }
+        if (n < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative");
+        }
+        return n;
+    }
+
+    private Message find(long id) throws HttpError {
+        Message message = store.get(id);
+        if (message == null) {
+            throw new HttpError(404, "No message with id " + id);
+        }
+        return message;
+    }
+
+    // ======= Requests ======= //
+
+    /** Reads the JSON object of a request body. */
+    private static Map<String, Object> readObject(HttpExchange exchange) throws IOException {
+        InputStream in = exchange.getRequestBody();
+        byte[] body = in.readNBytes(MAX_BODY + 1);
+        if (body.length > MAX_BODY) {
+            throw new IllegalArgumentException("Request body too large");
+        }
+        return Json.parseObject(new String(body, StandardCharsets.UTF_8));
+    }
+
+    /** Decodes the query parameters (the first value of every name). */
+    private static Map<String, String> query(String raw) {
+        HashMap<String, String> params = new HashMap<>();
+        if (raw == null || raw.isEmpty()) {
+            return params;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = (eq < 0) ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.putIfAbsent(name, value);
+        }
+        return params;
+    }
+
+    private static long id(String part) throws HttpError {
+        try {
+            return Long.parseLong(part);
+        } catch (NumberFormatException e) {
+            throw new HttpError(404, "Invalid message id: " + part);
+        }
+    }
+
+    private static String text(Object value) {
+        return (value == null) ? null : value.toString();
+    }
+
+    private static void requireMethod(String method, String allowed) throws HttpError {
+        if (!method.equals(allowed)) {
+            throw new HttpError(405, "Method not allowed");
+        }
+    }
+
+    // ======= Responses ======= //
+
+    /** Sends a small JSON body with a known length. */
+    private static void sendJson(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = Json.toJson(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        LinkedHashMap<String, Object> body = new LinkedHashMap<>();
+        body.put("error", message);
+        sendJson(exchange, status, body);
+    }
+
+    /** Streams a JSON array of messages with chunked encoding. */
+    private static void streamMessages(HttpExchange exchange, List<Message> messages) throws IOException {
+        Writer out = openStream(exchange);
+        out.write('[');
+        for (int i = 0; i < messages.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            Json.write(MessageJson.toMap(messages.get(i)), out);
+        }
+        out.write(']');
+        out.close();
+    }
+
+    /** Streams a JSON array of {id, preview} objects with chunked encoding. */
+    private static void streamPreviews(HttpExchange exchange, List<Message> messages) throws IOException {
+        Writer out = openStream(exchange);
+        out.write('[');
+        for (int i = 0; i < messages.size(); i++) {
+            Message message = messages.get(i);
+            out.write(i > 0 ? ",{\"id\":" : "{\"id\":");
+            out.write(Long.toString(message.getId()));
+            out.write(",\"preview\":");
+            Json.writeString(message.generatePreview(), out);
+            out.write('}');
+        }
+        out.write(']');
+        out.close();
+    }
+
+    /**
+     * Starts a chunked 200 JSON response. The writer is closed only once the
+     * body is complete: closing it ends the chunked body, so after a failure it
+     * is left open for handle to abort the exchange.
+     */
+    private static Writer openStream(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        return new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8),
+                WRITE_BUFFER);
+    }
+
+    /** An error answered with a specific status code. */
+    private static class HttpError extends Exception {
+        private static final long serialVersionUID = 1L;
+        /** The status code. */
+        private final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
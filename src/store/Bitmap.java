@@ -0,0 +1,426 @@
+package store;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed bitmap of non-negative ints, in the style of roaring bitmaps: the
+ * values are split by their high 16 bits into containers, each a sorted array
+ * of the low 16 bits while it holds at most 4096 values, or a 65536-bit set
+ * once it is denser. Sparse and dense sets both stay compact, and AND, OR and
+ * AND NOT work a container (up to 65536 values) at a time.
+ * Bitmaps returned by and, or and andNot may share containers with their
+ * inputs and must not be modified. Not thread-safe.
+ */
+final class Bitmap {
+    /** Largest number of values kept in an array container. */
+    private static final int ARRAY_MAX = 4096;
+    /** Number of 64-bit words of a bit set container. */
+    private static final int WORDS = 1024;
+
+    /** High 16 bits of every container, sorted. */
+    private int[] keys;
+    /** The containers, in key order. */
+    private Container[] containers;
+    /** Number of containers. */
+    private int size;
+
+    /** Constructs an empty bitmap. */
+    Bitmap() {
+        this(4);
+    }
+
+    private Bitmap(int capacity) {
+        keys = new int[Math.max(1, capacity)];
+        containers = new Container[keys.length];
+    }
+
+    // ======= Single Values ======= //
+
+    /**
+     * Adds a value.
+     *
+     * @param value The value (not negative).
+     * @throws IllegalArgumentException If the value is negative.
+     */
+    void add(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Bitmap values cannot be negative");
+        }
+        int at = find(value >>> 16);
+        if (at < 0) {
+            at = -at - 1;
+            insert(at, value >>> 16, new Container(new char[4], null, 0));
+        }
+        containers[at].add((char) value);
+    }
+
+    /**
+     * Removes a value.
+     *
+     * @param value The value.
+     */
+    void remove(int value) {
+        int at = (value < 0) ? -1 : find(value >>> 16);
+        if (at >= 0 && containers[at].remove((char) value) && containers[at].cardinality == 0) {
+            System.arraycopy(keys, at + 1, keys, at, size - at - 1);
+            System.arraycopy(containers, at + 1, containers, at, size - at - 1);
+            containers[--size] = null;
+        }
+    }
+
+    /**
+     * Checks if a value is set.
+     *
+     * @param value The value.
+     * @return Whether it is set.
+     */
+    boolean contains(int value) {
+        int at = (value < 0) ? -1 : find(value >>> 16);
+        return at >= 0 && containers[at].contains((char) value);
+    }
+
+    /** @return the number of values set. */
+    long getCardinality() {
+        long cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality;
+        }
+        return cardinality;
+    }
+
+    /** @return whether no value is set. */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Passes every value to an action, in increasing order.
+     *
+     * @param action The action.
+     */
+    void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            containers[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    /**
+     * Renumbers the values.
+     *
+     * @param mapping New value of every value set, increasing with the value.
+     * @return A new bitmap of the renumbered values.
+     */
+    Bitmap remap(int[] mapping) {
+        Bitmap result = new Bitmap(size);
+        forEach(value -> result.add(mapping[value]));
+        return result;
+    }
+
+    // ======= Boolean Operations ======= //
+
+    /**
+     * Intersects two bitmaps.
+     *
+     * @param other The other bitmap.
+     * @return The values set in both.
+     */
+    Bitmap and(Bitmap other) {
+        Bitmap result = new Bitmap(Math.min(size, other.size));
+        int i = 0, j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.append(keys[i], containers[i++].and(other.containers[j++]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Unites two bitmaps.
+     *
+     * @param other The other bitmap.
+     * @return The values set in either.
+     */
+    Bitmap or(Bitmap other) {
+        Bitmap result = new Bitmap(size + other.size);
+        int i = 0, j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                result.append(keys[i], containers[i++]);
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.append(other.keys[j], other.containers[j++]);
+            } else {
+                result.append(keys[i], containers[i++].or(other.containers[j++]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Subtracts a bitmap from this one.
+     *
+     * @param other The bitmap to subtract.
+     * @return The values set here but not in the other.
+     */
+    Bitmap andNot(Bitmap other) {
+        Bitmap result = new Bitmap(size);
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) {
+                j++;
+            }
+            boolean shared = j < other.size && other.keys[j] == keys[i];
+            result.append(keys[i], shared ? containers[i].andNot(other.containers[j]) : containers[i]);
+        }
+        return result;
+    }
+
+    // ======= Containers ======= //
+
+    /** @return the index of a key, or -(insertion point + 1). */
+    private int find(int key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insert(int at, int key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, at, keys, at + 1, size - at);
+        System.arraycopy(containers, at, containers, at + 1, size - at);
+        keys[at] = key;
+        containers[at] = container;
+        size++;
+    }
+
+    /** Appends a container with the largest key so far, unless it is empty. */
+    private void append(int key, Container container) {
+        if (container.cardinality > 0) {
+            insert(size, key, container);
+        }
+    }
+
+    /** The values sharing their high 16 bits: a sorted array or a bit set. */
+    private static final class Container {
+        /** Sorted low bits, while sparse (null once a bit set). */
+        private char[] values;
+        /** Bit set of the low bits, once dense (null while an array). */
+        private long[] words;
+        /** Number of values. */
+        private int cardinality;
+
+        Container(char[] values, long[] words, int cardinality) {
+            this.values = values;
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        /** Builds the smaller container of a bit set. */
+        static Container of(long[] words) {
+            int cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            Container container = new Container(null, words, cardinality);
+            if (cardinality <= ARRAY_MAX) {
+                container.toArray();
+            }
+            return container;
+        }
+
+        void add(char low) {
+            if (words != null) {
+                long bit = 1L << low;
+                if ((words[low >>> 6] & bit) == 0) {
+                    words[low >>> 6] |= bit;
+                    cardinality++;
+                }
+                return;
+            }
+            int at = Arrays.binarySearch(values, 0, cardinality, low);
+            if (at >= 0) {
+                return;
+            }
+            if (cardinality == ARRAY_MAX) {
+                toBits();
+                add(low);
+                return;
+            }
+            at = -at - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, cardinality * 2));
+            }
+            System.arraycopy(values, at, values, at + 1, cardinality - at);
+            values[at] = low;
+            cardinality++;
+        }
+
+        /** @return whether the value was set. */
+        boolean remove(char low) {
+            if (words != null) {
+                long bit = 1L << low;
+                if ((words[low >>> 6] & bit) == 0) {
+                    return false;
+                }
+                words[low >>> 6] &= ~bit;
+                // Half the threshold, so a set hovering around it does not flip.
+                if (--cardinality <= ARRAY_MAX / 2) {
+                    toArray();
+                }
+                return true;
+            }
+            int at = Arrays.binarySearch(values, 0, cardinality, low);
+            if (at < 0) {
+                return false;
+            }
+            System.arraycopy(values, at + 1, values, at, cardinality - at - 1);
+            cardinality--;
+            return true;
+        }
+
+        boolean contains(char low) {
+            if (words != null) {
+                return (words[low >>> 6] & (1L << low)) != 0;
+            }
+            return Arrays.binarySearch(values, 0, cardinality, low) >= 0;
+        }
+
+        void forEach(int high, IntConsumer action) {
+            if (words == null) {
+                for (int i = 0; i < cardinality; i++) {
+                    action.accept(high | values[i]);
+                }
+                return;
+            }
+            for (int w = 0; w < WORDS; w++) {
+                for (long word = words[w]; word != 0; word &= word - 1) {
+                    action.accept(high | (w << 6) | Long.numberOfTrailingZeros(word));
+                }
+            }
+        }
+
+        Container and(Container other) {
+            if (words != null && other.words != null) {
+                long[] result = new long[WORDS];
+                for (int w = 0; w < WORDS; w++) {
+                    result[w] = words[w] & other.words[w];
+                }
+                return of(result);
+            }
+            if (words != null) {
+                return other.and(this);
+            }
+            char[] result = new char[Math.min(cardinality, other.cardinality)];
+            int n = 0;
+            if (other.words != null) {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(values[i])) {
+                        result[n++] = values[i];
+                    }
+                }
+            } else {
+                for (int i = 0, j = 0; i < cardinality && j < other.cardinality;) {
+                    if (values[i] < other.values[j]) {
+                        i++;
+                    } else if (values[i] > other.values[j]) {
+                        j++;
+                    } else {
+                        result[n++] = values[i++];
+                        j++;
+                    }
+                }
+            }
+            return new Container(result, null, n);
+        }
+
+        Container or(Container other) {
+            if (words == null && other.words == null && cardinality + other.cardinality <= ARRAY_MAX) {
+                char[] result = new char[cardinality + other.cardinality];
+                int n = 0, i = 0, j = 0;
+                while (i < cardinality || j < other.cardinality) {
+                    if (j == other.cardinality || (i < cardinality && values[i] < other.values[j])) {
+                        result[n++] = values[i++];
+                    } else if (i == cardinality || values[i] > other.values[j]) {
+                        result[n++] = other.values[j++];
+                    } else {
+                        result[n++] = values[i++];
+                        j++;
+                    }
+                }
+                return new Container(result, null, n);
+            }
+            long[] result = bits();
+            other.orInto(result);
+            return of(result);
+        }
+
+        Container andNot(Container other) {
+            if (words != null) {
+                long[] result = words.clone();
+                if (other.words != null) {
+                    for (int w = 0; w < WORDS; w++) {
+                        result[w] &= ~other.words[w];
+                    }
+                } else {
+                    for (int i = 0; i < other.cardinality; i++) {
+                        result[other.values[i] >>> 6] &= ~(1L << other.values[i]);
+                    }
+                }
+                return of(result);
+            }
+            char[] result = new char[cardinality];
+            int n = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (!other.contains(values[i])) {
+                    result[n++] = values[i];
+                }
+            }
+            return new Container(result, null, n);
+        }
+
+        /** @return a new bit set of the values. */
+        private long[] bits() {
+            if (words != null) {
+                return words.clone();
+            }
+            long[] result = new long[WORDS];
+            orInto(result);
+            return result;
+        }
+
+        private void orInto(long[] result) {
+            if (words != null) {
+                for (int w = 0; w < WORDS; w++) {
+                    result[w] |= words[w];
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    result[values[i] >>> 6] |= 1L << values[i];
+                }
+            }
+        }
+
+        private void toBits() {
+            words = bits();
+            values = null;
+        }
+
+        private void toArray() {
+            char[] result = new char[Math.max(4, cardinality)];
+            int n = 0;
+            for (int w = 0; w < WORDS; w++) {
+                for (long word = words[w]; word != 0; word &= word - 1) {
+                    result[n++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                }
+            }
+            values = result;
+            words = null;
+        }
+    }
+}
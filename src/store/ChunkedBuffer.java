@@ -0,0 +1,152 @@
+package store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * Growable off-heap byte space made of equally sized chunks, each a direct
+ * buffer or a memory-mapped file, so it grows past the 2GB limit of a single
+ * buffer without ever copying. Positions are global: chunk index times the
+ * chunk size plus the offset in the chunk.
+ * Longs and ints must be aligned to their size so they never straddle two
+ * chunks; byte arrays may.
+ * Not thread-safe: reads only use absolute gets, so they may run together,
+ * but not with a write.
+ */
+final class ChunkedBuffer {
+    /** Name of the buffer, used for its files. */
+    private final String name;
+    /** log2 of the chunk size. */
+    private final int shift;
+    /** Chunk size - 1. */
+    private final int mask;
+    /** Directory of the mapped chunk files, null for direct buffers. */
+    private final Path directory;
+    /** The chunks, in position order. */
+    private final ArrayList<ByteBuffer> chunks = new ArrayList<>();
+
+    /**
+     * Constructs an empty buffer.
+     *
+     * @param name      Name of the buffer, used for its files.
+     * @param shift     log2 of the chunk size (3 to 30).
+     * @param directory Directory of the mapped chunk files, or null for direct
+     *                  buffers.
+     */
+    ChunkedBuffer(String name, int shift, Path directory) {
+        if (shift < 3 || shift > 30) {
+            throw new IllegalArgumentException("Chunk size must be between 2^3 and 2^30 bytes");
+        }
+        this.name = name;
+        this.shift = shift;
+        this.mask = (1 << shift) - 1;
+        this.directory = directory;
+    }
+
+    // ======= Capacity ======= //
+
+    /** @return the number of bytes allocated. */
+    long capacity() {
+        return (long) chunks.size() << shift;
+    }
+
+    /**
+     * Allocates chunks until the buffer holds at least the given number of bytes.
+     *
+     * @param bytes The capacity needed.
+     * @throws UncheckedIOException If a chunk file cannot be mapped.
+     */
+    void ensureCapacity(long bytes) {
+        while (capacity() < bytes) {
+            chunks.add(allocate(chunks.size()));
+        }
+    }
+
+    private ByteBuffer allocate(int index) {
+        int size = 1 << shift;
+        if (directory == null) {
+            return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+        }
+        Path file = directory.resolve(name + "-" + index + ".col");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size).order(ByteOrder.nativeOrder());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not map " + file, e);
+        }
+    }
+
+    /**
+     * Drops all the chunks and deletes their files. The mappings themselves are
+     * released once the buffers are garbage collected.
+     */
+    void release() {
+        if (directory != null) {
+            for (int i = 0; i < chunks.size(); i++) {
+                try {
+                    Files.deleteIfExists(directory.resolve(name + "-" + i + ".col"));
+                } catch (IOException e) {
+                    // Best effort, the files only hold scratch data.
+                }
+            }
+        }
+        chunks.clear();
+    }
+
+    // ======= Access ======= //
+
+    byte get(long pos) {
+        return chunks.get((int) (pos >>> shift)).get((int) pos & mask);
+    }
+
+    void put(long pos, byte value) {
+        chunks.get((int) (pos >>> shift)).put((int) pos & mask, value);
+    }
+
+    int getInt(long pos) {
+        return chunks.get((int) (pos >>> shift)).getInt((int) pos & mask);
+    }
+
+    void putInt(long pos, int value) {
+        chunks.get((int) (pos >>> shift)).putInt((int) pos & mask, value);
+    }
+
+    long getLong(long pos) {
+        return chunks.get((int) (pos >>> shift)).getLong((int) pos & mask);
+    }
+
+    void putLong(long pos, long value) {
+        chunks.get((int) (pos >>> shift)).putLong((int) pos & mask, value);
+    }
+
+    /** Copies bytes out of the buffer, across chunks if needed. */
+    void get(long pos, byte[] dst, int offset, int length) {
+        while (length > 0) {
+            int inChunk = (int) pos & mask;
+            int n = Math.min(length, mask + 1 - inChunk);
+            chunks.get((int) (pos >>> shift)).get(inChunk, dst, offset, n);
+            pos += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /** Copies bytes into the buffer, across chunks if needed. */
+    void put(long pos, byte[] src, int offset, int length) {
+        while (length > 0) {
+            int inChunk = (int) pos & mask;
+            int n = Math.min(length, mask + 1 - inChunk);
+            chunks.get((int) (pos >>> shift)).put(inChunk, src, offset, n);
+            pos += n;
+            offset += n;
+            length -= n;
+        }
+    }
+}
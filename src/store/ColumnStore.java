@@ -0,0 +1,639 @@
+package store;
+
+import model.BoardMessage;
+import model.EmailMessage;
+import model.File;
+import model.Message;
+import model.Priority;
+import model.ReactionException;
+import model.ReactionMessage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Off-heap, column oriented storage engine for very large message corpora.
+ * Every message is a row spread over fixed-width columns kept outside the
+ * heap (direct buffers, or memory-mapped files with mapped): ID, timestamp,
+ * type tag, priority or reaction type ordinal, and the offsets of its sender,
+ * content, subject and attachments in a UTF-8 string arena. The reactions of
+ * a board are rows too, chained from their board through a link column.
+ * An off-heap hash table maps IDs to rows, so the heap does not grow with the
+ * number of messages: Message objects are only built, as detached copies,
+ * when a read asks for them, and column scans (time ranges, priority counts)
+ * only build the rows they return.
+ * Rows are append-only: removing or replacing a message only marks its row
+ * deleted, and its arena space is not reclaimed.
+ * Readers share a read lock while writers take an exclusive write lock.
+ */
+public class ColumnStore implements Closeable {
+    /** log2 of the number of rows per column chunk. */
+    private static final int ROW_SHIFT = 16;
+    /** log2 of the size of a string arena chunk. */
+    private static final int ARENA_SHIFT = 22;
+
+    /** Type tags (low bits of the tag column). */
+    private static final byte BOARD = 0, EMAIL = 1, REACTION = 2, TYPE_MASK = 3;
+    /** Tag flag of the reactions of a board, not messages of their own. */
+    private static final byte NESTED = 0x40;
+    /** Tag flag of removed or replaced rows. */
+    private static final byte DELETED = (byte) 0x80;
+    /** Marks a missing arena offset or link. */
+    private static final int NONE = -1;
+
+    private static final Priority[] PRIORITIES = Priority.values();
+    private static final ReactionMessage.ReactionType[] REACTION_TYPES = ReactionMessage.ReactionType.values();
+
+    /** Message IDs. */
+    private final ChunkedBuffer ids;
+    /** Send timestamps. */
+    private final ChunkedBuffer times;
+    /** Type tags and flags. */
+    private final ChunkedBuffer tags;
+    /** Priority (boards) or reaction type (reactions) ordinals. */
+    private final ChunkedBuffer ordinals;
+    /** Arena offsets of the senders. */
+    private final ChunkedBuffer senders;
+    /** Arena offsets of the contents. */
+    private final ChunkedBuffer contents;
+    /** Arena offsets of the email subjects. */
+    private final ChunkedBuffer subjects;
+    /** Arena offsets of the email attachment lists. */
+    private final ChunkedBuffer attachments;
+    /** Latest reaction row of a board, previous reaction row of a reaction. */
+    private final ChunkedBuffer links;
+    /** The string arena. */
+    private final ChunkedBuffer arena;
+    /** Row of every stored message, by ID. */
+    private final LongIntTable rowsById;
+    /** Lock guarding all the columns. */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /** Number of rows, deleted and nested ones included. */
+    private int rows;
+    /** Number of stored messages. */
+    private int size;
+    /** End of the used part of the arena. */
+    private long arenaEnd;
+    /** Whether the store was closed. */
+    private boolean closed;
+
+    // ======= Construction ======= //
+
+    /** Constructs an empty store in direct (off-heap) buffers. */
+    public ColumnStore() {
+        this(null);
+    }
+
+    /**
+     * Constructs an empty store in memory-mapped files, so the columns are paged
+     * by the operating system instead of held in memory. The files are scratch
+     * space, deleted on close: durability stays the job of the message log.
+     *
+     * @param directory Directory of the column files (created if missing).
+     * @return The store.
+     * @throws IOException              If the directory cannot be created.
+     * @throws IllegalArgumentException If the directory is null.
+     */
+    public static ColumnStore mapped(Path directory) throws IOException {
+        if (directory == null) {
+            throw new IllegalArgumentException("Directory cannot be null");
+        }
+        Files.createDirectories(directory);
+        return new ColumnStore(directory);
+    }
+
+    private ColumnStore(Path directory) {
+        ids = column("ids", 8, directory);
+        times = column("times", 8, directory);
+        tags = column("tags", 1, directory);
+        ordinals = column("ordinals", 1, directory);
+        senders = column("senders", 8, directory);
+        contents = column("contents", 8, directory);
+        subjects = column("subjects", 8, directory);
+        attachments = column("attachments", 8, directory);
+        links = column("links", 4, directory);
+        arena = new ChunkedBuffer("strings", ARENA_SHIFT, directory);
+        rowsById = new LongIntTable("rows", directory);
+    }
+
+    private static ChunkedBuffer column(String name, int width, Path directory) {
+        return new ChunkedBuffer(name, ROW_SHIFT + Integer.numberOfTrailingZeros(width), directory);
+    }
+
+    /** Releases all the columns. Any later use throws IllegalStateException. */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (ChunkedBuffer buffer : columns()) {
+                buffer.release();
+            }
+            arena.release();
+            rowsById.release();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private ChunkedBuffer[] columns() {
+        return new ChunkedBuffer[] { ids, times, tags, ordinals, senders, contents, subjects, attachments, links };
+    }
+
+    // ======= Write Operations ======= //
+
+    /**
+     * Adds a message, with the reactions of a board. A message with the same ID
+     * replaces the stored one. The store keeps a copy: later changes to the
+     * message are not seen.
+     *
+     * @param message The message to add.
+     * @throws IllegalArgumentException If the message is null or of an unknown
+     *                                  type.
+     */
+    public void add(Message message) {
+        if (message == null) {
+            throw new IllegalArgumentException("Message cannot be null");
+        }
+        tag(message);
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            insert(message);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds several messages under a single write lock, in iteration order. Same
+     * rules as add for every message.
+     *
+     * @param messages The messages to add.
+     * @throws IllegalArgumentException If the collection or one of the messages is
+     *                                  null or of an unknown type.
+     */
+    public void addAll(Collection<? extends Message> messages) {
+        if (messages == null) {
+            throw new IllegalArgumentException("Messages cannot be null");
+        }
+        for (Message message : messages) {
+            if (message == null) {
+                throw new IllegalArgumentException("Message cannot be null");
+            }
+            tag(message);
+        }
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            for (Message message : messages) {
+                insert(message);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a message.
+     *
+     * @param id The ID of the message.
+     * @return The removed message, or null if there is none with this ID.
+     */
+    public Message remove(long id) {
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            int row = liveRow(id);
+            if (row < 0) {
+                return null;
+            }
+            Message removed = materialize(row);
+            markDeleted(row);
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a reaction to a stored board message.
+     *
+     * @param boardId  The ID of the board message.
+     * @param reaction The reaction.
+     * @return Whether a board message with this ID exists.
+     * @throws IllegalArgumentException If the reaction is null.
+     */
+    public boolean addReaction(long boardId, ReactionMessage reaction) {
+        if (reaction == null) {
+            throw new IllegalArgumentException("Reaction cannot be null");
+        }
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            int board = liveRow(boardId);
+            if (board < 0 || (tags.get(board) & TYPE_MASK) != BOARD) {
+                return false;
+            }
+            link(board, appendRow(reaction, NESTED));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Appends the rows of a message and points its ID at them. */
+    private void insert(Message message) {
+        int old = rowsById.get(message.getId());
+        if (old >= 0 && (tags.get(old) & DELETED) == 0) {
+            markDeleted(old);
+        }
+        int row = appendRow(message, (byte) 0);
+        if (message instanceof BoardMessage board) {
+            for (ReactionMessage reaction : board.getReactionsView()) {
+                link(row, appendRow(reaction, NESTED));
+            }
+        }
+        rowsById.put(message.getId(), row);
+        size++;
+    }
+
+    /** Writes one row, returning its index. */
+    private int appendRow(Message message, byte flags) {
+        byte type = tag(message);
+        if (rows == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Store is full");
+        }
+        int row = rows;
+        ensureRows(row + 1L);
+        ids.putLong(row * 8L, message.getId());
+        times.putLong(row * 8L, message.getTimestamp());
+        tags.put(row, (byte) (type | flags));
+        senders.putLong(row * 8L, putString(message.getSender()));
+        contents.putLong(row * 8L, putString(message.getContent()));
+        subjects.putLong(row * 8L, NONE);
+        attachments.putLong(row * 8L, NONE);
+        links.putInt(row * 4L, NONE);
+        if (message instanceof BoardMessage board) {
+            ordinals.put(row, (byte) board.getPriority().ordinal());
+        } else if (message instanceof EmailMessage email) {
+            subjects.putLong(row * 8L, putString(email.getSubject()));
+            List<File> files = email.getAttachmentsView();
+            if (!files.isEmpty()) {
+                attachments.putLong(row * 8L, putFiles(files));
+            }
+        } else {
+            ordinals.put(row, (byte) ((ReactionMessage) message).getReactionType().ordinal());
+        }
+        rows++;
+        return row;
+    }
+
+    private void ensureRows(long count) {
+        for (ChunkedBuffer column : new ChunkedBuffer[] { ids, times, senders, contents, subjects, attachments }) {
+            column.ensureCapacity(count * 8);
+        }
+        links.ensureCapacity(count * 4);
+        tags.ensureCapacity(count);
+        ordinals.ensureCapacity(count);
+    }
+
+    /** Chains a reaction row in front of the reactions of a board row. */
+    private void link(int board, int reaction) {
+        links.putInt(reaction * 4L, links.getInt(board * 4L));
+        links.putInt(board * 4L, reaction);
+    }
+
+    private void markDeleted(int row) {
+        tags.put(row, (byte) (tags.get(row) | DELETED));
+        size--;
+    }
+
+    private static byte tag(Message message) {
+        if (message instanceof BoardMessage) {
+            return BOARD;
+        }
+        if (message instanceof EmailMessage) {
+            return EMAIL;
+        }
+        if (message instanceof ReactionMessage) {
+            return REACTION;
+        }
+        throw new IllegalArgumentException("Unsupported message type: " + message.getMessageType());
+    }
+
+    // ======= String Arena ======= //
+
+    /** Appends a string (4-aligned length, -1 for null, then UTF-8 bytes). */
+    private long putString(String s) {
+        long pos = align(arenaEnd);
+        byte[] bytes = (s == null) ? null : s.getBytes(StandardCharsets.UTF_8);
+        int length = (bytes == null) ? 0 : bytes.length;
+        arena.ensureCapacity(pos + 4 + length);
+        arena.putInt(pos, (bytes == null) ? NONE : length);
+        if (bytes != null) {
+            arena.put(pos + 4, bytes, 0, length);
+        }
+        arenaEnd = pos + 4 + length;
+        return pos;
+    }
+
+    private String getString(long pos) {
+        int length = arena.getInt(pos);
+        if (length == NONE) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        arena.get(pos + 4, bytes, 0, length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** @return the position following the string at pos. */
+    private long skipString(long pos) {
+        return align(pos + 4 + Math.max(0, arena.getInt(pos)));
+    }
+
+    /** Appends a file list: its count, then the name and type of every file. */
+    private long putFiles(List<File> files) {
+        long pos = align(arenaEnd);
+        arena.ensureCapacity(pos + 4);
+        arena.putInt(pos, files.size());
+        arenaEnd = pos + 4;
+        for (File file : files) {
+            putString(file.getFileName());
+            putString(file.getFileType());
+        }
+        return pos;
+    }
+
+    private ArrayList<File> getFiles(long pos) {
+        int count = arena.getInt(pos);
+        ArrayList<File> files = new ArrayList<>(count);
+        long next = pos + 4;
+        for (int i = 0; i < count; i++) {
+            String name = getString(next);
+            next = skipString(next);
+            files.add(new File(name, getString(next)));
+            next = skipString(next);
+        }
+        return files;
+    }
+
+    private static long align(long pos) {
+        return (pos + 3) & ~3L;
+    }
+
+    // ======= Read Operations ======= //
+
+    /**
+     * Gets a message, built from its row.
+     *
+     * @param id The ID of the message.
+     * @return A detached copy of the message, or null if there is none with this
+     *         ID.
+     */
+    public Message get(long id) {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            int row = liveRow(id);
+            return (row < 0) ? null : materialize(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Checks whether a message is stored, without building it.
+     *
+     * @param id The ID of the message.
+     * @return Whether a message with this ID is stored.
+     */
+    public boolean contains(long id) {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            return liveRow(id) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the sender of a message, without building the message.
+     *
+     * @param id The ID of the message.
+     * @return The sender, or null if there is no message with this ID.
+     */
+    public String getSender(long id) {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            int row = liveRow(id);
+            return (row < 0) ? null : getString(senders.getLong(row * 8L));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets a page of the messages, in insertion order.
+     *
+     * @param offset Number of messages skipped.
+     * @param limit  Maximal number of messages returned.
+     * @return Detached copies of the messages of the page.
+     * @throws IllegalArgumentException If offset or limit is negative.
+     */
+    public List<Message> getPage(int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Offset and limit cannot be negative");
+        }
+        ArrayList<Message> page = new ArrayList<>(Math.min(limit, 1024));
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            int skipped = 0;
+            for (int row = 0; row < rows && page.size() < limit; row++) {
+                if (isMessage(row) && skipped++ >= offset) {
+                    page.add(materialize(row));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return page;
+    }
+
+    /**
+     * Gets the messages sent between two times, scanning the timestamp column
+     * and only building the matching rows.
+     *
+     * @param from Start of the range (epoch millis, inclusive).
+     * @param to   End of the range (epoch millis, inclusive).
+     * @return Detached copies of the messages, in time order (insertion order for
+     *         equal times).
+     * @throws IllegalArgumentException If from is after to.
+     */
+    public List<Message> getBetween(long from, long to) {
+        if (from > to) {
+            throw new IllegalArgumentException("Range start cannot be after its end");
+        }
+        ArrayList<Message> found = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            for (int row = 0; row < rows; row++) {
+                long time = times.getLong(row * 8L);
+                if (time >= from && time <= to && isMessage(row)) {
+                    found.add(materialize(row));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        found.sort(Comparator.comparingLong(Message::getTimestamp));
+        return found;
+    }
+
+    /**
+     * Counts the board messages of every priority, from the tag and ordinal
+     * columns alone.
+     *
+     * @return The number of board messages by priority (every priority present).
+     */
+    public EnumMap<Priority, Long> countByPriority() {
+        long[] counts = new long[PRIORITIES.length];
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            for (int row = 0; row < rows; row++) {
+                if (tags.get(row) == BOARD) {
+                    counts[ordinals.get(row)]++;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        EnumMap<Priority, Long> byPriority = new EnumMap<>(Priority.class);
+        for (Priority priority : PRIORITIES) {
+            byPriority.put(priority, counts[priority.ordinal()]);
+        }
+        return byPriority;
+    }
+
+    /**
+     * Passes every message to an action, in insertion order, building one at a
+     * time. The action runs under the read lock and must not modify the store.
+     *
+     * @param action The action.
+     * @throws IllegalArgumentException If the action is null.
+     */
+    public void forEach(Consumer<? super Message> action) {
+        if (action == null) {
+            throw new IllegalArgumentException("Action cannot be null");
+        }
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            for (int row = 0; row < rows; row++) {
+                if (isMessage(row)) {
+                    action.accept(materialize(row));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return the number of stored messages. */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return whether the store holds no message. */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /** @return the number of bytes held off the heap (or mapped). */
+    public long getOffHeapBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = arena.capacity() + rowsById.getOffHeapBytes();
+            for (ChunkedBuffer column : columns()) {
+                bytes += column.capacity();
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ======= Rows ======= //
+
+    /** @return the live row of an ID, or -1. */
+    private int liveRow(long id) {
+        int row = rowsById.get(id);
+        return (row >= 0 && (tags.get(row) & DELETED) == 0) ? row : -1;
+    }
+
+    /** @return whether a row is a live message of its own. */
+    private boolean isMessage(int row) {
+        return (tags.get(row) & (DELETED | NESTED)) == 0;
+    }
+
+    /** Builds the message of a row, with the reactions of a board. */
+    private Message materialize(int row) {
+        long id = ids.getLong(row * 8L);
+        long timestamp = times.getLong(row * 8L);
+        String sender = getString(senders.getLong(row * 8L));
+        String content = getString(contents.getLong(row * 8L));
+        switch (tags.get(row) & TYPE_MASK) {
+            case BOARD: {
+                ArrayList<ReactionMessage> reactions = new ArrayList<>();
+                for (int r = links.getInt(row * 4L); r != NONE; r = links.getInt(r * 4L)) {
+                    reactions.add((ReactionMessage) materialize(r));
+                }
+                Collections.reverse(reactions); // chained newest first
+                return new BoardMessage(id, sender, content, timestamp, PRIORITIES[ordinals.get(row)], reactions);
+            }
+            case EMAIL: {
+                long files = attachments.getLong(row * 8L);
+                return new EmailMessage(id, sender, content, getString(subjects.getLong(row * 8L)), timestamp,
+                        (files == NONE) ? new ArrayList<>() : getFiles(files));
+            }
+            default:
+                try {
+                    return new ReactionMessage(id, sender, content, timestamp, REACTION_TYPES[ordinals.get(row)]);
+                } catch (ReactionException e) {
+                    throw new IllegalStateException("Corrupt reaction row " + row, e);
+                }
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Store is closed");
+        }
+    }
+}
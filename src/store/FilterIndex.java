@@ -0,0 +1,218 @@
+package store;
+
+import model.BoardMessage;
+import model.EmailMessage;
+import model.IDigital;
+import model.Message;
+import model.Priority;
+import model.ReactionMessage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Bitmap index of the message attributes used by MessageFilter.
+ * Every message gets a dense slot number, in insertion order, and one bitmap
+ * per attribute value holds the slots of the messages having it: the live
+ * messages, every message type, IDigital, every Priority, every ReactionType
+ * and "has attachments". Slots are kept when a message is replaced and are
+ * not reused after a remove; once most slots are dead the live ones are
+ * renumbered, so the index follows the live size.
+ * Not thread-safe: the MessageStore lock guards it.
+ */
+final class FilterIndex {
+    private static final Priority[] PRIORITIES = Priority.values();
+    private static final ReactionMessage.ReactionType[] REACTION_TYPES = ReactionMessage.ReactionType.values();
+
+    /** Smallest number of slots worth renumbering. */
+    private static final int MIN_SLOTS = 1024;
+
+    /**
+     * Slot of every message ID given one since the last renumbering, removed
+     * ones included (their slot holds no message).
+     */
+    private LongIntTable slotById = new LongIntTable("filter-slots", null);
+    /** Message of every slot (null once removed). */
+    private Message[] bySlot = new Message[MIN_SLOTS];
+    /** Number of slots handed out. */
+    private int slots;
+    /** Number of slots holding a message. */
+    private int count;
+    /** Slots of the stored messages. */
+    private Bitmap live = new Bitmap();
+    /** Slots by message type. */
+    private final HashMap<String, Bitmap> byType = new HashMap<>();
+    /** Slots of the messages implementing IDigital. */
+    private Bitmap digital = new Bitmap();
+    /** Slots of the board messages by priority ordinal. */
+    private final Bitmap[] byPriority = bitmaps(PRIORITIES.length);
+    /** Slots of the reaction messages by reaction type ordinal. */
+    private final Bitmap[] byReaction = bitmaps(REACTION_TYPES.length);
+    /** Slots of the emails with at least one attachment. */
+    private Bitmap withAttachments = new Bitmap();
+
+    private static Bitmap[] bitmaps(int count) {
+        Bitmap[] bitmaps = new Bitmap[count];
+        for (int i = 0; i < count; i++) {
+            bitmaps[i] = new Bitmap();
+        }
+        return bitmaps;
+    }
+
+    // ======= Maintenance ======= //
+
+    /** Indexes a message, replacing the one with the same ID. */
+    void add(Message message) {
+        int slot = slotOf(message.getId());
+        if (slot >= 0) {
+            clear(slot);
+        } else {
+            slot = slots++;
+            if (slot == bySlot.length) {
+                bySlot = Arrays.copyOf(bySlot, slot * 2);
+            }
+            slotById.put(message.getId(), slot);
+            count++;
+        }
+        bySlot[slot] = message;
+        live.add(slot);
+        byType.computeIfAbsent(message.getMessageType(), k -> new Bitmap()).add(slot);
+        if (message instanceof IDigital) {
+            digital.add(slot);
+        }
+        if (message instanceof BoardMessage board && board.getPriority() != null) {
+            byPriority[board.getPriority().ordinal()].add(slot);
+        }
+        if (message instanceof ReactionMessage reaction && reaction.getReactionType() != null) {
+            byReaction[reaction.getReactionType().ordinal()].add(slot);
+        }
+        if (message instanceof EmailMessage email && !email.getAttachmentsView().isEmpty()) {
+            withAttachments.add(slot);
+        }
+    }
+
+    /** Removes a message from the index. */
+    void remove(long id) {
+        int slot = slotOf(id);
+        if (slot < 0) {
+            return;
+        }
+        clear(slot);
+        bySlot[slot] = null;
+        count--;
+        if (slots > MIN_SLOTS && slots > 2 * count) {
+            renumber();
+        }
+    }
+
+    /** Updates the "has attachments" bit of an email after its attachments changed. */
+    void attachmentsChanged(EmailMessage email) {
+        int slot = slotOf(email.getId());
+        if (slot < 0) {
+            return;
+        }
+        if (email.getAttachmentsView().isEmpty()) {
+            withAttachments.remove(slot);
+        } else {
+            withAttachments.add(slot);
+        }
+    }
+
+    /** @return the slot of a stored message, or -1. */
+    private int slotOf(long id) {
+        int slot = slotById.get(id);
+        return (slot >= 0 && bySlot[slot] != null) ? slot : -1;
+    }
+
+    /**
+     * Gives the live slots consecutive numbers, keeping their order, and
+     * rewrites the bitmaps and the slot table.
+     */
+    private void renumber() {
+        int[] mapping = new int[slots];
+        Message[] compact = new Message[Math.max(MIN_SLOTS, Integer.highestOneBit(count) * 2)];
+        LongIntTable table = new LongIntTable("filter-slots", null);
+        int n = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            if (bySlot[slot] != null) {
+                mapping[slot] = n;
+                compact[n] = bySlot[slot];
+                table.put(bySlot[slot].getId(), n);
+                n++;
+            }
+        }
+        live = live.remap(mapping);
+        byType.replaceAll((type, bitmap) -> bitmap.remap(mapping));
+        byType.values().removeIf(Bitmap::isEmpty);
+        digital = digital.remap(mapping);
+        for (int i = 0; i < byPriority.length; i++) {
+            byPriority[i] = byPriority[i].remap(mapping);
+        }
+        for (int i = 0; i < byReaction.length; i++) {
+            byReaction[i] = byReaction[i].remap(mapping);
+        }
+        withAttachments = withAttachments.remap(mapping);
+        slotById.release();
+        slotById = table;
+        bySlot = compact;
+        slots = n;
+    }
+
+    /** Clears a slot from every bitmap (attributes may have changed since). */
+    private void clear(int slot) {
+        live.remove(slot);
+        for (Bitmap bitmap : byType.values()) {
+            bitmap.remove(slot);
+        }
+        digital.remove(slot);
+        for (Bitmap bitmap : byPriority) {
+            bitmap.remove(slot);
+        }
+        for (Bitmap bitmap : byReaction) {
+            bitmap.remove(slot);
+        }
+        withAttachments.remove(slot);
+    }
+
+    // ======= Bitmaps ======= //
+
+    Bitmap live() {
+        return live;
+    }
+
+    Bitmap type(String type) {
+        Bitmap bitmap = byType.get(type);
+        return (bitmap == null) ? new Bitmap() : bitmap;
+    }
+
+    Bitmap digital() {
+        return digital;
+    }
+
+    Bitmap priority(Priority priority) {
+        return byPriority[priority.ordinal()];
+    }
+
+    Bitmap reaction(ReactionMessage.ReactionType type) {
+        return byReaction[type.ordinal()];
+    }
+
+    Bitmap withAttachments() {
+        return withAttachments;
+    }
+
+    /**
+     * Maps the slots of a bitmap to their messages.
+     *
+     * @param bitmap Slots of stored messages.
+     * @return The messages, in insertion order.
+     */
+    ArrayList<Message> resolve(Bitmap bitmap) {
+        long cardinality = bitmap.getCardinality();
+        ArrayList<Message> result = new ArrayList<>((int) cardinality);
+        Message[] messages = bySlot;
+        bitmap.forEach(slot -> result.add(messages[slot]));
+        return result;
+    }
+}
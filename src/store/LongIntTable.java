@@ -0,0 +1,141 @@
+package store;
+
+import java.nio.file.Path;
+
+/**
+ * Off-heap hash table from long keys to non-negative int values, with open
+ * addressing and linear probing. Entries are never removed, only overwritten,
+ * and the table doubles once it is half full.
+ * Same threading rules as ChunkedBuffer.
+ */
+final class LongIntTable {
+    /** Bytes per entry: the key, then the value + 1 (0 marks a free slot). */
+    private static final int ENTRY = 16;
+    /** Initial number of slots. */
+    private static final int INITIAL_SLOTS = 1 << 12;
+    /** log2 of the largest chunk of the table. */
+    private static final int MAX_SHIFT = 24;
+
+    /** Name of the table, used for its files. */
+    private final String name;
+    /** Directory of the mapped files, null for direct buffers. */
+    private final Path directory;
+    /** The slots. */
+    private ChunkedBuffer slots;
+    /** Number of slots (a power of two). */
+    private long capacity;
+    /** Number of keys. */
+    private long size;
+    /** Number of times the table grew, to name its files. */
+    private int generation;
+
+    /**
+     * Constructs an empty table.
+     *
+     * @param name      Name of the table, used for its files.
+     * @param directory Directory of the mapped files, or null for direct buffers.
+     */
+    LongIntTable(String name, Path directory) {
+        this.name = name;
+        this.directory = directory;
+        this.slots = allocate(INITIAL_SLOTS);
+        this.capacity = INITIAL_SLOTS;
+    }
+
+    private ChunkedBuffer allocate(long slotCount) {
+        long bytes = slotCount * ENTRY;
+        int shift = Math.min(MAX_SHIFT, 63 - Long.numberOfLeadingZeros(bytes));
+        ChunkedBuffer buffer = new ChunkedBuffer(name + "-" + generation, shift, directory);
+        buffer.ensureCapacity(bytes);
+        return buffer;
+    }
+
+    /**
+     * Gets the value of a key.
+     *
+     * @param key The key.
+     * @return The value, or -1 if the key is missing.
+     */
+    int get(long key) {
+        long mask = capacity - 1;
+        for (long slot = mix(key) & mask;; slot = (slot + 1) & mask) {
+            long pos = slot * ENTRY;
+            int value = slots.getInt(pos + 8);
+            if (value == 0) {
+                return -1;
+            }
+            if (slots.getLong(pos) == key) {
+                return value - 1;
+            }
+        }
+    }
+
+    /**
+     * Sets the value of a key.
+     *
+     * @param key   The key.
+     * @param value The value (not negative).
+     */
+    void put(long key, int value) {
+        if (insert(slots, capacity, key, value)) {
+            size++;
+            if (size * 2 > capacity) {
+                grow();
+            }
+        }
+    }
+
+    /** @return the number of bytes allocated off heap. */
+    long getOffHeapBytes() {
+        return slots.capacity();
+    }
+
+    /** Drops the table and deletes its files. */
+    void release() {
+        slots.release();
+    }
+
+    /** Inserts or overwrites an entry, returning whether the key is new. */
+    private static boolean insert(ChunkedBuffer slots, long capacity, long key, int value) {
+        long mask = capacity - 1;
+        for (long slot = mix(key) & mask;; slot = (slot + 1) & mask) {
+            long pos = slot * ENTRY;
+            if (slots.getInt(pos + 8) == 0) {
+                slots.putLong(pos, key);
+                slots.putInt(pos + 8, value + 1);
+                return true;
+            }
+            if (slots.getLong(pos) == key) {
+                slots.putInt(pos + 8, value + 1);
+                return false;
+            }
+        }
+    }
+
+    /** Rehashes into a table twice as large. */
+    private void grow() {
+        long newCapacity = capacity * 2;
+        generation++;
+        ChunkedBuffer grown = allocate(newCapacity);
+        for (long slot = 0; slot < capacity; slot++) {
+            long pos = slot * ENTRY;
+            int value = slots.getInt(pos + 8);
+            if (value != 0) {
+                insert(grown, newCapacity, slots.getLong(pos), value - 1);
+            }
+        }
+        slots.release();
+        slots = grown;
+        capacity = newCapacity;
+    }
+
+    /** Spreads the bits of sequential keys over the table (murmur3 finalizer). */
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb93fe53ba4c3L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
@@ -0,0 +1,195 @@
+package store;
+
+import model.Priority;
+import model.ReactionMessage;
+
+/**
+ * Immutable boolean filter over the messages of a store, evaluated on its
+ * bitmap index (see MessageStore.filter and MessageStore.count).
+ * Filters start from an attribute (message type, IDigital, priority, reaction
+ * type, has attachments) and are combined with and, or and not, e.g.
+ * {@code MessageFilter.type("Board").and(MessageFilter.priority(Priority.URGENT).not())}.
+ */
+public final class MessageFilter {
+    /** Kind of a filter node. */
+    private enum Op {
+        ALL, TYPE, DIGITAL, PRIORITY, REACTION, ATTACHMENTS, AND, OR, NOT
+    }
+
+    private static final MessageFilter ALL = new MessageFilter(Op.ALL, null, null, null);
+    private static final MessageFilter DIGITAL = new MessageFilter(Op.DIGITAL, null, null, null);
+    private static final MessageFilter ATTACHMENTS = new MessageFilter(Op.ATTACHMENTS, null, null, null);
+
+    /** Kind of the node. */
+    private final Op op;
+    /** Attribute value of a leaf (type name, Priority or ReactionType). */
+    private final Object value;
+    /** Operand of NOT, first operand of AND and OR. */
+    private final MessageFilter left;
+    /** Second operand of AND and OR. */
+    private final MessageFilter right;
+
+    private MessageFilter(Op op, Object value, MessageFilter left, MessageFilter right) {
+        this.op = op;
+        this.value = value;
+        this.left = left;
+        this.right = right;
+    }
+
+    // ======= Attributes ======= //
+
+    /** @return a filter matching every message. */
+    public static MessageFilter all() {
+        return ALL;
+    }
+
+    /**
+     * Matches the messages of a type.
+     *
+     * @param type The message type as returned by Message.getMessageType().
+     * @return The filter.
+     * @throws IllegalArgumentException If the type is null.
+     */
+    public static MessageFilter type(String type) {
+        if (type == null) {
+            throw new IllegalArgumentException("Type cannot be null");
+        }
+        return new MessageFilter(Op.TYPE, type, null, null);
+    }
+
+    /** @return a filter matching the messages implementing IDigital. */
+    public static MessageFilter digital() {
+        return DIGITAL;
+    }
+
+    /**
+     * Matches the board messages with a priority.
+     *
+     * @param priority The priority.
+     * @return The filter.
+     * @throws IllegalArgumentException If the priority is null.
+     */
+    public static MessageFilter priority(Priority priority) {
+        if (priority == null) {
+            throw new IllegalArgumentException("Priority cannot be null");
+        }
+        return new MessageFilter(Op.PRIORITY, priority, null, null);
+    }
+
+    /**
+     * Matches the reaction messages of a reaction type.
+     *
+     * @param type The reaction type.
+     * @return The filter.
+     * @throws IllegalArgumentException If the type is null.
+     */
+    public static MessageFilter reaction(ReactionMessage.ReactionType type) {
+        if (type == null) {
+            throw new IllegalArgumentException("Reaction type cannot be null");
+        }
+        return new MessageFilter(Op.REACTION, type, null, null);
+    }
+
+    /** @return a filter matching the emails with at least one attachment. */
+    public static MessageFilter withAttachments() {
+        return ATTACHMENTS;
+    }
+
+    // ======= Composition ======= //
+
+    /**
+     * Matches the messages matched by both filters.
+     *
+     * @param other The other filter.
+     * @return The filter.
+     * @throws IllegalArgumentException If the other filter is null.
+     */
+    public MessageFilter and(MessageFilter other) {
+        return new MessageFilter(Op.AND, null, this, check(other));
+    }
+
+    /**
+     * Matches the messages matched by either filter.
+     *
+     * @param other The other filter.
+     * @return The filter.
+     * @throws IllegalArgumentException If the other filter is null.
+     */
+    public MessageFilter or(MessageFilter other) {
+        return new MessageFilter(Op.OR, null, this, check(other));
+    }
+
+    /** @return a filter matching the messages this one does not match. */
+    public MessageFilter not() {
+        return (op == Op.NOT) ? left : new MessageFilter(Op.NOT, null, this, null);
+    }
+
+    private static MessageFilter check(MessageFilter other) {
+        if (other == null) {
+            throw new IllegalArgumentException("Filter cannot be null");
+        }
+        return other;
+    }
+
+    // ======= Evaluation ======= //
+
+    /**
+     * Evaluates the filter. Caller must hold the store's read lock.
+     *
+     * @param index The bitmap index of the store.
+     * @return The slots of the matching messages (not to be modified).
+     */
+    Bitmap evaluate(FilterIndex index) {
+        switch (op) {
+            case ALL:
+                return index.live();
+            case TYPE:
+                return index.type((String) value);
+            case DIGITAL:
+                return index.digital();
+            case PRIORITY:
+                return index.priority((Priority) value);
+            case REACTION:
+                return index.reaction((ReactionMessage.ReactionType) value);
+            case ATTACHMENTS:
+                return index.withAttachments();
+            case AND:
+                // "a AND NOT b" subtracts b instead of building the complement.
+                if (right.op == Op.NOT) {
+                    return left.evaluate(index).andNot(right.left.evaluate(index));
+                }
+                if (left.op == Op.NOT) {
+                    return right.evaluate(index).andNot(left.left.evaluate(index));
+                }
+                return left.evaluate(index).and(right.evaluate(index));
+            case OR:
+                return left.evaluate(index).or(right.evaluate(index));
+            default:
+                return index.live().andNot(left.evaluate(index));
+        }
+    }
+
+    /**
+     * Returns the filter as an expression, e.g. "(Board AND NOT URGENT)".
+     *
+     * @return The expression.
+     */
+    @Override
+    public String toString() {
+        switch (op) {
+            case ALL:
+                return "ALL";
+            case DIGITAL:
+                return "DIGITAL";
+            case ATTACHMENTS:
+                return "ATTACHMENTS";
+            case AND:
+            case OR:
+                return "(" + left + " " + op + " " + right + ")";
+            case NOT:
+                return "NOT " + left;
+            default:
+                return String.valueOf(value);
+        }
+    }
+}
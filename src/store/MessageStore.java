@@ -0,0 +1,830 @@
+package store;
+
+import cache.CacheStats;
+import cache.LruCache;
+import model.*;
+import search.CompiledQuery;
+import search.InvertedIndex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Indexed, thread-safe container for all the messages in the system.
+ * Messages are kept in insertion order and indexed by ID, by type, by sender
+ * (with type and send time), by priority, by email attachment (file and file
+ * type) and by send time so lookups and deletes do not need to scan the whole
+ * store.
+ * Readers share a read lock while writers take an exclusive write lock;
+ * reactions, which boards take concurrently, only need the read lock.
+ * Message contents are also kept in an inverted index for word searches, and
+ * type, priority, reaction type and attachment filters run on bitmaps.
+ * Recent word search results are cached, and a cached result is dropped only
+ * when an added, replaced or removed message matches its query.
+ * Registered StoreListeners are notified of every change.
+ */
+public class MessageStore {
+    /** Default maximal number of cached search results. */
+    public static final int DEFAULT_SEARCH_CACHE_ENTRIES = 256;
+    /** Default maximal size of the cached search results, in bytes. */
+    public static final long DEFAULT_SEARCH_CACHE_BYTES = 16L << 20;
+    /** Largest (cached queries x changed messages) checked before clearing the whole search cache. */
+    private static final long MAX_INVALIDATION_CHECKS = 1 << 20;
+
+    /** All messages by their ID, in insertion order. */
+    private final LinkedHashMap<Long, Message> byId = new LinkedHashMap<>();
+    /** Bitmaps of the messages by type, IDigital, priority, reaction type and attachments. */
+    private final FilterIndex filters = new FilterIndex();
+    /** Message IDs by sender code, type and send time. */
+    private final SenderIndex bySender = new SenderIndex();
+    /** Email IDs by attached file (case-insensitive, as File.equals). */
+    private final HashMap<File, LinkedHashSet<Long>> byAttachment = new HashMap<>();
+    /** Email IDs by attachment file type (lower case). */
+    private final HashMap<String, LinkedHashSet<Long>> byFileType = new HashMap<>();
+    /** Message IDs by send timestamp, in time order. */
+    private final TreeMap<Long, LinkedHashSet<Long>> byTime = new TreeMap<>();
+    /** Lock guarding the messages map and all the indexes. */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /** Full text index over the message contents (has its own lock). */
+    private final InvertedIndex textIndex = new InvertedIndex();
+    /** Recent search results by query (has its own lock). */
+    private final LruCache<SearchKey, CachedSearch> searches;
+    /** Listeners notified of the changes. */
+    private final CopyOnWriteArrayList<StoreListener> listeners = new CopyOnWriteArrayList<>();
+
+    /** Constructs an empty store with the default search cache bounds. */
+    public MessageStore() {
+        this(DEFAULT_SEARCH_CACHE_ENTRIES, DEFAULT_SEARCH_CACHE_BYTES);
+    }
+
+    /**
+     * Constructs an empty store.
+     *
+     * @param searchCacheEntries Maximal number of cached search results (0
+     *                           disables the cache).
+     * @param searchCacheBytes   Maximal size of the cached search results, in
+     *                           bytes.
+     * @throws IllegalArgumentException If a bound is negative.
+     */
+    public MessageStore(int searchCacheEntries, long searchCacheBytes) {
+        this.searches = new LruCache<>(searchCacheEntries, searchCacheBytes, CachedSearch::weight);
+    }
+
+    // ======= Listeners ======= //
+
+    /**
+     * Registers a listener notified of every following change.
+     *
+     * @param listener The listener to add.
+     * @throws IllegalArgumentException If the listener is null.
+     */
+    public void addListener(StoreListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null");
+        }
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener.
+     *
+     * @param listener The listener to remove.
+     */
+    public void removeListener(StoreListener listener) {
+        listeners.remove(listener);
+    }
+
+    /** Tells the listeners a change is complete, once the write lock is released. */
+    private void changed() {
+        for (StoreListener listener : listeners) {
+            listener.afterChange();
+        }
+    }
+
+    // ======= Write Operations ======= //
+
+    /**
+     * Adds a message to the store and all its indexes.
+     * If a message with the same ID already exists it is replaced.
+     *
+     * @param message The message to add.
+     * @throws IllegalArgumentException If the message is null.
+     */
+    public void add(Message message) {
+        if (message == null) {
+            throw new IllegalArgumentException("Message cannot be null");
+        }
+        lock.writeLock().lock();
+        try {
+            Message old = byId.put(message.getId(), message);
+            if (old != null) {
+                unindex(old);
+            }
+            index(message);
+            textIndex.add(message);
+            invalidateSearches((old == null) ? List.of(message) : List.of(message, old));
+            for (StoreListener listener : listeners) {
+                listener.onAdd(message);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        changed();
+    }
+
+    /**
+     * Adds several messages under a single write lock, in iteration order. Same
+     * rules as add for every message.
+     *
+     * @param messages The messages to add.
+     * @throws IllegalArgumentException If the collection or one of the messages is
+     *                                  null (nothing is added then).
+     */
+    public void addAll(Collection<? extends Message> messages) {
+        if (messages == null || messages.contains(null)) {
+            throw new IllegalArgumentException("Messages cannot be null");
+        }
+        lock.writeLock().lock();
+        try {
+            ArrayList<Message> changed = new ArrayList<>(messages);
+            for (Message message : messages) {
+                Message old = byId.put(message.getId(), message);
+                if (old != null) {
+                    unindex(old);
+                    changed.add(old);
+                }
+                index(message);
+            }
+            textIndex.addAll(messages);
+            invalidateSearches(changed);
+            for (Message message : messages) {
+                for (StoreListener listener : listeners) {
+                    listener.onAdd(message);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        changed();
+    }
+
+    /**
+     * Removes the message with the given ID from the store and all its indexes.
+     *
+     * @param id The ID of the message to remove.
+     * @return The removed message, or null if no message has this ID.
+     */
+    public Message remove(long id) {
+        Message removed;
+        lock.writeLock().lock();
+        try {
+            removed = byId.remove(id);
+            if (removed != null) {
+                unindex(removed);
+                filters.remove(id);
+                textIndex.remove(id);
+                invalidateSearches(List.of(removed));
+                for (StoreListener listener : listeners) {
+                    listener.onRemove(removed);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (removed != null) {
+            changed();
+        }
+        return removed;
+    }
+
+    /**
+     * Adds a reaction to a board message of the store.
+     *
+     * @param boardId  The ID of the board message.
+     * @param reaction The reaction to add.
+     * @return The board message, or null if there is no board message with this ID.
+     * @throws IllegalArgumentException If the reaction is null.
+     */
+    public BoardMessage addReaction(long boardId, ReactionMessage reaction) {
+        if (reaction == null) {
+            throw new IllegalArgumentException("Reaction cannot be null");
+        }
+        BoardMessage board;
+        // Boards take reactions concurrently, so only removals are excluded.
+        lock.readLock().lock();
+        try {
+            if (!(byId.get(boardId) instanceof BoardMessage found)) {
+                return null;
+            }
+            board = found;
+            board.addReaction(reaction);
+            for (StoreListener listener : listeners) {
+                listener.onReaction(board, reaction);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        changed();
+        return board;
+    }
+
+    /**
+     * Adds an attachment to an email of the store and indexes it.
+     *
+     * @param emailId The ID of the email message.
+     * @param file    The file to attach.
+     * @return The email message, or null if there is no email with this ID.
+     * @throws IllegalArgumentException If the file is null.
+     */
+    public EmailMessage addAttachment(long emailId, File file) {
+        EmailMessage email;
+        lock.writeLock().lock();
+        try {
+            if (!(byId.get(emailId) instanceof EmailMessage found)) {
+                return null;
+            }
+            email = found;
+            email.addAttachment(file);
+            // Index the immutable interned copy, not the caller's file.
+            List<File> attached = email.getAttachmentsView();
+            File interned = attached.get(attached.size() - 1);
+            indexAttachment(email.getId(), interned);
+            filters.attachmentsChanged(email);
+            for (StoreListener listener : listeners) {
+                listener.onAttachmentAdded(email, interned);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        changed();
+        return email;
+    }
+
+    /**
+     * Removes all the occurrences of an attachment from an email of the store.
+     *
+     * @param emailId The ID of the email message.
+     * @param file    The file to remove.
+     * @return The email message, or null if there is no email with this ID.
+     * @throws AttachmentException If the file is null or not attached to the email.
+     */
+    public EmailMessage removeAttachment(long emailId, File file) throws AttachmentException {
+        EmailMessage email;
+        lock.writeLock().lock();
+        try {
+            if (!(byId.get(emailId) instanceof EmailMessage found)) {
+                return null;
+            }
+            email = found;
+            email.removeAttachment(file);
+            removeFrom(byAttachment, file, emailId);
+            String type = typeKey(file);
+            boolean typeLeft = false;
+            for (File left : email.getAttachmentsView()) {
+                typeLeft |= typeKey(left).equals(type);
+            }
+            if (!typeLeft) {
+                removeFrom(byFileType, type, emailId);
+            }
+            filters.attachmentsChanged(email);
+            for (StoreListener listener : listeners) {
+                listener.onAttachmentRemoved(email, file);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        changed();
+        return email;
+    }
+
+    // ======= Read Operations ======= //
+
+    /**
+     * Gets the message with the given ID.
+     *
+     * @param id The ID of the message.
+     * @return The message, or null if no message has this ID.
+     */
+    public Message get(long id) {
+        lock.readLock().lock();
+        try {
+            return byId.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the board message with the given ID.
+     *
+     * @param id The ID of the board message.
+     * @return The board message, or null if there is no board message with this ID.
+     */
+    public BoardMessage getBoard(long id) {
+        return (get(id) instanceof BoardMessage board) ? board : null;
+    }
+
+    /** @return the number of messages in the store. */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return byId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return true if the store holds no messages. */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Gets a snapshot of all the messages in insertion order.
+     *
+     * @return A new list containing all the messages.
+     */
+    public ArrayList<Message> getAll() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(byId.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the first messages in insertion order, copying only those.
+     *
+     * @param n The maximal number of messages to return.
+     * @return A new list of at most n messages.
+     * @throws IllegalArgumentException If n is negative.
+     */
+    public ArrayList<Message> getFirst(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Number of messages cannot be negative");
+        }
+        lock.readLock().lock();
+        try {
+            ArrayList<Message> result = new ArrayList<>(Math.min(n, byId.size()));
+            for (Message message : byId.values()) {
+                if (result.size() >= n) {
+                    break;
+                }
+                result.add(message);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Runs an action on a read-only view of all the messages in insertion order,
+     * while holding the write lock: the store does not change, not even by a
+     * reaction, and no listener is notified, until the action returns. The
+     * action must be quick and must not modify the store.
+     *
+     * @param action The action.
+     * @throws IllegalArgumentException If the action is null.
+     */
+    public void readAll(Consumer<Collection<Message>> action) {
+        if (action == null) {
+            throw new IllegalArgumentException("Action cannot be null");
+        }
+        lock.writeLock().lock();
+        try {
+            action.accept(Collections.unmodifiableCollection(byId.values()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets a snapshot of all the messages of the given type.
+     *
+     * @param type The message type as returned by Message.getMessageType().
+     * @return A new list of the matching messages (empty if none).
+     */
+    public ArrayList<Message> getByType(String type) {
+        lock.readLock().lock();
+        try {
+            return filters.resolve(filters.type(type));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets a snapshot of all the board messages.
+     *
+     * @return A new list of the board messages.
+     */
+    public ArrayList<Message> getBoardMessages() {
+        return getByType("Board");
+    }
+
+    /**
+     * Checks if the store holds at least one board message.
+     *
+     * @return true if there is a board message in the store.
+     */
+    public boolean hasBoardMessages() {
+        lock.readLock().lock();
+        try {
+            return !filters.type("Board").isEmpty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets a snapshot of all the messages implementing IDigital.
+     *
+     * @return A new list of the digital messages.
+     */
+    public ArrayList<Message> getDigitalMessages() {
+        lock.readLock().lock();
+        try {
+            return filters.resolve(filters.digital());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets a snapshot of all the messages sent by the given sender.
+     *
+     * @param sender The sender name (matched after trimming, like Message.setSender).
+     * @return A new list of the sender's messages in send time order (empty if
+     *         none).
+     */
+    public ArrayList<Message> getBySender(String sender) {
+        return getBySender(sender, null, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Gets a snapshot of the messages of one type sent by the given sender.
+     *
+     * @param sender The sender name (matched after trimming, like Message.setSender).
+     * @param type   The message type ("Board", "Email", "Reaction").
+     * @return A new list of the matching messages in send time order (empty if
+     *         none).
+     */
+    public ArrayList<Message> getBySender(String sender, String type) {
+        if (type == null) {
+            return new ArrayList<>();
+        }
+        return getBySender(sender, type, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Gets a snapshot of the messages sent by the given sender between two times.
+     *
+     * @param sender The sender name (matched after trimming, like Message.setSender).
+     * @param from   Start of the range (epoch millis, inclusive).
+     * @param to     End of the range (epoch millis, inclusive).
+     * @return A new list of the matching messages in send time order (empty if
+     *         none).
+     * @throws IllegalArgumentException If from is after to.
+     */
+    public ArrayList<Message> getBySender(String sender, long from, long to) {
+        if (from > to) {
+            throw new IllegalArgumentException("Range start cannot be after its end");
+        }
+        return getBySender(sender, null, from, to);
+    }
+
+    /** Looks a sender up in the sender index, null type meaning any. */
+    private ArrayList<Message> getBySender(String sender, String type, long from, long to) {
+        int code = (sender == null) ? -1 : SenderDictionary.find(sender.trim());
+        if (code < 0) {
+            return new ArrayList<>();
+        }
+        lock.readLock().lock();
+        try {
+            long[] ids = bySender.find(code, type, from, to);
+            ArrayList<Message> result = new ArrayList<>(ids.length);
+            for (long id : ids) {
+                result.add(byId.get(id));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets a snapshot of all the board messages with the given priority.
+     * The priority is indexed when the message is added to the store.
+     *
+     * @param priority The priority to filter by.
+     * @return A new list of the matching board messages (empty if none).
+     */
+    public ArrayList<Message> getByPriority(Priority priority) {
+        if (priority == null) {
+            return new ArrayList<>();
+        }
+        lock.readLock().lock();
+        try {
+            return filters.resolve(filters.priority(priority));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets a snapshot of the messages matched by a filter, evaluated on the
+     * bitmap index.
+     *
+     * @param filter The filter.
+     * @return A new list of the matching messages, in insertion order.
+     * @throws IllegalArgumentException If the filter is null.
+     */
+    public ArrayList<Message> filter(MessageFilter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("Filter cannot be null");
+        }
+        lock.readLock().lock();
+        try {
+            return filters.resolve(filter.evaluate(filters));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts the messages matched by a filter, without building the list.
+     *
+     * @param filter The filter.
+     * @return The number of matching messages.
+     * @throws IllegalArgumentException If the filter is null.
+     */
+    public long count(MessageFilter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("Filter cannot be null");
+        }
+        lock.readLock().lock();
+        try {
+            return filter.evaluate(filters).getCardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the messages whose content contains any of the given words. Results
+     * are cached by query (same words in any order).
+     *
+     * @param words The words to search for (case insensitive).
+     * @return A new list of the matching messages.
+     */
+    public ArrayList<Message> searchAny(List<String> words) {
+        return search(words, false);
+    }
+
+    /**
+     * Finds the messages whose content contains all of the given words. Results
+     * are cached by query (same words in any order).
+     *
+     * @param words The words to search for (case insensitive).
+     * @return A new list of the matching messages.
+     */
+    public ArrayList<Message> searchAll(List<String> words) {
+        return search(words, true);
+    }
+
+    /** Looks a query up in the search cache, running it on the text index on a miss. */
+    private ArrayList<Message> search(List<String> words, boolean all) {
+        CompiledQuery query = all ? CompiledQuery.allOf(words) : CompiledQuery.anyOf(words);
+        if (query.isEmpty()) {
+            return new ArrayList<>();
+        }
+        SearchKey key = new SearchKey(all, List.copyOf(new TreeSet<>(List.of(query.getWords()))));
+        CachedSearch cached = searches.get(key,
+                k -> new CachedSearch(query, all ? textIndex.findAll(words) : textIndex.findAny(words)));
+        return new ArrayList<>(cached.result());
+    }
+
+    /** @return the hit, miss and eviction counters of the search cache. */
+    public CacheStats getSearchCacheStats() {
+        return searches.getStats();
+    }
+
+    /**
+     * Gets the emails carrying the given attachment (name and type compared
+     * ignoring case, as in File.equals).
+     *
+     * @param file The attachment to look for.
+     * @return A new list of the matching emails (empty if none).
+     */
+    public ArrayList<Message> getEmailsWithAttachment(File file) {
+        if (file == null) {
+            return new ArrayList<>();
+        }
+        lock.readLock().lock();
+        try {
+            return resolve(byAttachment.get(file));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the emails carrying at least one attachment of the given file type
+     * (ignoring case).
+     *
+     * @param fileType The file type, e.g. "pdf".
+     * @return A new list of the matching emails (empty if none).
+     */
+    public ArrayList<Message> getEmailsWithFileType(String fileType) {
+        if (fileType == null) {
+            return new ArrayList<>();
+        }
+        lock.readLock().lock();
+        try {
+            return resolve(byFileType.get(File.foldCase(fileType.trim())));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the messages sent between two instants (both inclusive), oldest first.
+     * Only the matching part of the time index is visited.
+     *
+     * @param from The first instant, in epoch milliseconds.
+     * @param to   The last instant, in epoch milliseconds.
+     * @return A new list of the matching messages (empty if none).
+     * @throws IllegalArgumentException If from is after to.
+     */
+    public ArrayList<Message> getBetween(long from, long to) {
+        if (from > to) {
+            throw new IllegalArgumentException("Range start cannot be after its end");
+        }
+        lock.readLock().lock();
+        try {
+            ArrayList<Message> result = new ArrayList<>();
+            for (LinkedHashSet<Long> ids : byTime.subMap(from, true, to, true).values()) {
+                result.addAll(resolve(ids));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the most recently sent messages, newest first. Messages sent at the
+     * same instant are returned latest added first.
+     *
+     * @param n The maximal number of messages to return.
+     * @return A new list of at most n messages.
+     * @throws IllegalArgumentException If n is negative.
+     */
+    public ArrayList<Message> getLatest(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Number of messages cannot be negative");
+        }
+        lock.readLock().lock();
+        try {
+            ArrayList<Message> result = new ArrayList<>(Math.min(n, byId.size()));
+            NavigableMap<Long, LinkedHashSet<Long>> newest = byTime.descendingMap();
+            for (LinkedHashSet<Long> ids : newest.values()) {
+                ArrayList<Message> same = resolve(ids);
+                for (int i = same.size() - 1; i >= 0 && result.size() < n; i--) {
+                    result.add(same.get(i));
+                }
+                if (result.size() >= n) {
+                    break;
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ======= Index Maintenance ======= //
+
+    /**
+     * Adds the message to all the secondary indexes. Caller must hold the write lock.
+     */
+    private void index(Message message) {
+        long id = message.getId();
+        byTime.computeIfAbsent(message.getTimestamp(), k -> new LinkedHashSet<>()).add(id);
+        filters.add(message);
+        if (message.getSender() != null) {
+            bySender.add(message);
+        }
+        if (message instanceof EmailMessage email) {
+            for (File file : email.getAttachmentsView()) {
+                indexAttachment(id, file);
+            }
+        }
+    }
+
+    /** Adds an attachment of an email to the attachment indexes. Caller must hold the write lock. */
+    private void indexAttachment(long id, File file) {
+        byAttachment.computeIfAbsent(file, k -> new LinkedHashSet<>()).add(id);
+        byFileType.computeIfAbsent(typeKey(file), k -> new LinkedHashSet<>()).add(id);
+    }
+
+    /** Gets the file type index key of a file. */
+    private static String typeKey(File file) {
+        return File.foldCase(file.getFileType());
+    }
+
+    /**
+     * Removes the message from all the secondary indexes. Caller must hold the
+     * write lock.
+     */
+    private void unindex(Message message) {
+        long id = message.getId();
+        removeFrom(byTime, message.getTimestamp(), id);
+        if (message.getSender() != null) {
+            bySender.remove(message);
+        }
+        if (message instanceof EmailMessage email) {
+            for (File file : email.getAttachmentsView()) {
+                removeFrom(byAttachment, file, id);
+                removeFrom(byFileType, typeKey(file), id);
+            }
+        }
+    }
+
+    /** Removes an ID from a keyed index, dropping the bucket once it is empty. */
+    private static <K> void removeFrom(Map<K, LinkedHashSet<Long>> index, K key, long id) {
+        LinkedHashSet<Long> ids = index.get(key);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Drops the cached search results that the changed (added, replaced or
+     * removed) messages are, or were, part of. When there are many messages to
+     * check against many queries the whole cache is cleared instead. Caller must
+     * hold the write lock.
+     */
+    private void invalidateSearches(List<Message> changed) {
+        // Always invalidates, even an empty cache, so searches running meanwhile
+        // do not cache a result computed before the change.
+        if ((long) searches.size() * changed.size() > MAX_INVALIDATION_CHECKS) {
+            searches.clear();
+            return;
+        }
+        // Same rules as the text index answering the searches, so no stale result survives.
+        ArrayList<Predicate<CompiledQuery>> probes = new ArrayList<>(changed.size());
+        for (Message message : changed) {
+            probes.add(InvertedIndex.probe(message));
+        }
+        searches.invalidateIf((key, search) -> {
+            for (Predicate<CompiledQuery> probe : probes) {
+                if (probe.test(search.query())) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    /** Maps a set of IDs to their messages. Caller must hold the read lock. */
+    private ArrayList<Message> resolve(LinkedHashSet<Long> ids) {
+        ArrayList<Message> result = new ArrayList<>();
+        if (ids != null) {
+            for (Long id : ids) {
+                result.add(byId.get(id));
+            }
+        }
+        return result;
+    }
+
+    /** Search cache key: the mode and the distinct, sorted, case folded words. */
+    private record SearchKey(boolean all, List<String> words) {
+    }
+
+    /** A cached search: its compiled query (to test changed messages) and result. */
+    private record CachedSearch(CompiledQuery query, ArrayList<Message> result) {
+        /** @return the approximate size of the result list, in bytes. */
+        long weight() {
+            return 64 + 8L * result.size();
+        }
+    }
+}
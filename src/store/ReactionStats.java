@@ -0,0 +1,220 @@
+package store;
+
+import model.BoardMessage;
+import model.Message;
+import model.ReactionMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Reaction statistics over the board messages of a store.
+ * Answers "top N boards by reactions" from the per-type counters kept by each
+ * BoardMessage, and "top N boards by reaction velocity" from a sliding window
+ * of per-second reaction counts, without copying any reactions list.
+ * Only the boards that received reactions within the window keep a rate
+ * window; idle ones are swept away as the number of windows grows and when
+ * the velocity ranking is asked for.
+ */
+public class ReactionStats implements StoreListener {
+    /** Default length of the velocity window, in seconds. */
+    public static final int DEFAULT_WINDOW_SECONDS = 60;
+    /** Number of rate windows below which idle ones are not swept. */
+    private static final int MIN_SWEEP = 1024;
+
+    /** The board messages of the store, by ID. */
+    private final ConcurrentHashMap<Long, BoardMessage> boards = new ConcurrentHashMap<>();
+    /** Recent reaction rate of the boards that received reactions, by ID. */
+    private final ConcurrentHashMap<Long, RateWindow> rates = new ConcurrentHashMap<>();
+    /** Length of the velocity window, in seconds. */
+    private final int windowSeconds;
+    /** Number of rate windows above which the next reaction sweeps idle ones. */
+    private volatile int sweepAt = MIN_SWEEP;
+
+    /**
+     * Constructs the statistics of a store with the default velocity window and
+     * starts following it.
+     * 
+     * @param store The store to follow.
+     */
+    public ReactionStats(MessageStore store) {
+        this(store, DEFAULT_WINDOW_SECONDS);
+    }
+
+    /**
+     * Constructs the statistics of a store and starts following it.
+     * 
+     * @param store         The store to follow.
+     * @param windowSeconds Length of the velocity window, in seconds.
+     * @throws IllegalArgumentException If store is null or the window is not
+     *                                  positive.
+     */
+    public ReactionStats(MessageStore store, int windowSeconds) {
+        if (store == null) {
+            throw new IllegalArgumentException("Store cannot be null");
+        }
+        if (windowSeconds < 1) {
+            throw new IllegalArgumentException("Window must be at least one second");
+        }
+        this.windowSeconds = windowSeconds;
+        store.addListener(this);
+        for (Message message : store.getBoardMessages()) {
+            boards.put(message.getId(), (BoardMessage) message);
+        }
+    }
+
+    // ======= Store Events ======= //
+
+    @Override
+    public void onAdd(Message message) {
+        if (message instanceof BoardMessage board) {
+            boards.put(board.getId(), board);
+        }
+    }
+
+    @Override
+    public void onRemove(Message message) {
+        boards.remove(message.getId());
+        rates.remove(message.getId());
+    }
+
+    @Override
+    public void onReaction(BoardMessage board, ReactionMessage reaction) {
+        long now = nowSeconds();
+        rates.computeIfAbsent(board.getId(), id -> new RateWindow(windowSeconds)).record(now);
+        if (rates.size() > sweepAt) {
+            sweepIdle(now);
+            sweepAt = Math.max(MIN_SWEEP, 2 * rates.size());
+        }
+    }
+
+    /** Drops the rate windows that counted no reaction within the window. */
+    private void sweepIdle(long now) {
+        // A reaction racing with the removal may be lost from the velocity only.
+        rates.entrySet().removeIf(entry -> entry.getValue().count(now) == 0);
+    }
+
+    // ======= Queries ======= //
+
+    /**
+     * Gets the boards with the most reactions.
+     * 
+     * @param n    The maximal number of boards to return.
+     * @param type The reaction type to rank by, or null for all reactions.
+     * @return The top boards, most reacted first.
+     */
+    public ArrayList<BoardMessage> topBoards(int n, ReactionMessage.ReactionType type) {
+        return top(n, boards.values(),
+                board -> (type == null) ? board.getTotalReactions() : board.getReactionCount(type));
+    }
+
+    /**
+     * Gets the boards receiving reactions at the highest rate over the window.
+     * 
+     * @param n The maximal number of boards to return.
+     * @return The top boards, fastest first.
+     */
+    public ArrayList<BoardMessage> topBoardsByVelocity(int n) {
+        long now = nowSeconds();
+        sweepIdle(now);
+        ArrayList<BoardMessage> active = new ArrayList<>();
+        for (Long id : rates.keySet()) {
+            BoardMessage board = boards.get(id);
+            if (board != null) {
+                active.add(board);
+            }
+        }
+        return top(n, active, board -> velocity(board.getId(), now));
+    }
+
+    /**
+     * Gets the reaction rate of a board over the window.
+     * 
+     * @param boardId The ID of the board message.
+     * @return The number of reactions per second over the window.
+     */
+    public double getVelocity(long boardId) {
+        return velocity(boardId, nowSeconds());
+    }
+
+    private double velocity(long boardId, long now) {
+        RateWindow rate = rates.get(boardId);
+        return (rate == null) ? 0 : (double) rate.count(now) / windowSeconds;
+    }
+
+    /** Selects the n boards with the highest score with a bounded min-heap. */
+    private static ArrayList<BoardMessage> top(int n, Iterable<BoardMessage> candidates,
+            ToDoubleFunction<BoardMessage> score) {
+        ArrayList<BoardMessage> result = new ArrayList<>();
+        if (n < 1) {
+            return result;
+        }
+        PriorityQueue<Scored> heap = new PriorityQueue<>(Comparator.comparingDouble(Scored::score));
+        for (BoardMessage board : candidates) {
+            double s = score.applyAsDouble(board);
+            if (s <= 0) {
+                continue;
+            }
+            if (heap.size() < n) {
+                heap.add(new Scored(s, board));
+            } else if (s > heap.peek().score()) {
+                heap.poll();
+                heap.add(new Scored(s, board));
+            }
+        }
+        while (!heap.isEmpty()) {
+            result.add(heap.poll().board());
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /** A board with its ranking score. */
+    private record Scored(double score, BoardMessage board) {
+    }
+
+    private static long nowSeconds() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    /**
+     * Ring of per-second reaction counters covering the window.
+     * Each slot remembers the second it counts, so stale slots are reset lazily.
+     * Counts are approximate when a slot is reused while reactions race on it.
+     */
+    private static class RateWindow {
+        /** Reaction count of each slot. */
+        private final AtomicLongArray counts;
+        /** Second counted by each slot. */
+        private final AtomicLongArray seconds;
+
+        RateWindow(int windowSeconds) {
+            counts = new AtomicLongArray(windowSeconds);
+            seconds = new AtomicLongArray(windowSeconds);
+        }
+
+        void record(long now) {
+            int slot = (int) (now % counts.length());
+            long second = seconds.get(slot);
+            if (second != now && seconds.compareAndSet(slot, second, now)) {
+                counts.set(slot, 0);
+            }
+            counts.incrementAndGet(slot);
+        }
+
+        long count(long now) {
+            long total = 0;
+            for (int slot = 0; slot < counts.length(); slot++) {
+                if (now - seconds.get(slot) < counts.length()) {
+                    total += counts.get(slot);
+                }
+            }
+            return total;
+        }
+    }
+}
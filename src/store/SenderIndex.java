@@ -0,0 +1,199 @@
+package store;
+
+import model.Message;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Posting index of the messages by sender: for every SenderDictionary code and
+ * message type, the message IDs sorted by send time (then ID) in primitive
+ * arrays. Queries by sender, sender and type, and sender and time range cost
+ * a binary search plus the size of their result.
+ * Not thread-safe: the MessageStore lock guards it.
+ */
+final class SenderIndex {
+    /** Postings of every sender code, one list per type code (null until used). */
+    private Postings[][] bySender = new Postings[256][];
+    /** Codes of the message types, in order of first use. */
+    private final HashMap<String, Integer> typeCodes = new HashMap<>();
+
+    /** Indexes a message. */
+    void add(Message message) {
+        int sender = message.getSenderCode();
+        int type = typeCodes.computeIfAbsent(message.getMessageType(), k -> typeCodes.size());
+        if (sender >= bySender.length) {
+            bySender = Arrays.copyOf(bySender, Math.max(sender + 1, bySender.length * 2));
+        }
+        Postings[] lists = bySender[sender];
+        if (lists == null || type >= lists.length) {
+            lists = (lists == null) ? new Postings[typeCodes.size()] : Arrays.copyOf(lists, typeCodes.size());
+            bySender[sender] = lists;
+        }
+        if (lists[type] == null) {
+            lists[type] = new Postings();
+        }
+        lists[type].add(message.getTimestamp(), message.getId());
+    }
+
+    /** Removes a message from the index. */
+    void remove(Message message) {
+        Postings postings = postings(message.getSenderCode(), typeCodes.get(message.getMessageType()));
+        if (postings != null) {
+            postings.remove(message.getTimestamp(), message.getId());
+        }
+    }
+
+    /**
+     * Finds the messages of a sender.
+     *
+     * @param sender The SenderDictionary code of the sender.
+     * @param type   The message type, or null for all.
+     * @param from   Start of the send time range (inclusive).
+     * @param to     End of the send time range (inclusive).
+     * @return The IDs of the messages, in send time order (ID order for equal
+     *         times).
+     */
+    long[] find(int sender, String type, long from, long to) {
+        if (sender < 0 || sender >= bySender.length || bySender[sender] == null) {
+            return new long[0];
+        }
+        if (type != null) {
+            Postings postings = postings(sender, typeCodes.get(type));
+            if (postings == null) {
+                return new long[0];
+            }
+            int lo = postings.lowerBound(from);
+            int hi = postings.upperBound(to);
+            return Arrays.copyOfRange(postings.ids, lo, Math.max(lo, hi));
+        }
+        // Merge the time ordered ranges of every type.
+        Postings[] lists = bySender[sender];
+        int[] next = new int[lists.length];
+        int[] end = new int[lists.length];
+        int total = 0;
+        for (int t = 0; t < lists.length; t++) {
+            if (lists[t] != null) {
+                next[t] = lists[t].lowerBound(from);
+                end[t] = Math.max(next[t], lists[t].upperBound(to));
+                total += end[t] - next[t];
+            }
+        }
+        long[] ids = new long[total];
+        for (int i = 0; i < total; i++) {
+            int best = -1;
+            for (int t = 0; t < lists.length; t++) {
+                if (next[t] < end[t] && (best < 0 || lists[t].compare(next[t], lists[best], next[best]) < 0)) {
+                    best = t;
+                }
+            }
+            ids[i] = lists[best].ids[next[best]++];
+        }
+        return ids;
+    }
+
+    private Postings postings(int sender, Integer type) {
+        if (type == null || sender < 0 || sender >= bySender.length) {
+            return null;
+        }
+        Postings[] lists = bySender[sender];
+        return (lists == null || type >= lists.length) ? null : lists[type];
+    }
+
+    /** IDs sorted by (timestamp, ID), in parallel arrays. */
+    private static final class Postings {
+        private long[] times = new long[4];
+        private long[] ids = new long[4];
+        private int size;
+
+        void add(long time, long id) {
+            if (size == ids.length) {
+                times = Arrays.copyOf(times, size * 2);
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            // Messages mostly arrive in time order, so appending is the usual case.
+            int at = (size == 0 || compare(size - 1, time, id) < 0) ? size : -(search(time, id) + 1);
+            if (at < 0) {
+                return; // already indexed
+            }
+            System.arraycopy(times, at, times, at + 1, size - at);
+            System.arraycopy(ids, at, ids, at + 1, size - at);
+            times[at] = time;
+            ids[at] = id;
+            size++;
+        }
+
+        void remove(long time, long id) {
+            int at = search(time, id);
+            if (at < 0) {
+                // The timestamp changed since indexing, so look the ID up.
+                at = -1;
+                for (int i = 0; i < size && at < 0; i++) {
+                    if (ids[i] == id) {
+                        at = i;
+                    }
+                }
+                if (at < 0) {
+                    return;
+                }
+            }
+            System.arraycopy(times, at + 1, times, at, size - at - 1);
+            System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+            size--;
+        }
+
+        /** @return the first index with a time of at least from. */
+        int lowerBound(long from) {
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (times[mid] < from) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /** @return the first index with a time after to. */
+        int upperBound(long to) {
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (times[mid] <= to) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /** @return the index of an entry, or -(insertion point + 1). */
+        private int search(long time, long id) {
+            int lo = 0, hi = size - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int c = compare(mid, time, id);
+                if (c < 0) {
+                    lo = mid + 1;
+                } else if (c > 0) {
+                    hi = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(lo + 1);
+        }
+
+        private int compare(int i, long time, long id) {
+            int c = Long.compare(times[i], time);
+            return (c != 0) ? c : Long.compare(ids[i], id);
+        }
+
+        int compare(int i, Postings other, int j) {
+            return compare(i, other.times[j], other.ids[j]);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package store;
+
+import model.BoardMessage;
+import model.EmailMessage;
+import model.File;
+import model.Message;
+import model.ReactionMessage;
+
+/**
+ * Interface for the components that follow the changes made to a MessageStore
+ * (persistence, secondary indexes, caches...).
+ * Listeners are called under the store's write lock, in the order the changes
+ * are applied, so they must be quick and must not call back into the store
+ * (except afterChange, called once the lock is released). The exception is
+ * onReaction, called under the read lock so boards take reactions concurrently:
+ * it may run on several threads at once, so implementations must be
+ * thread-safe, and reactions (of different boards, or added at once to one
+ * board) are not ordered relative to each other.
+ */
+public interface StoreListener {
+    /**
+     * Called after a message was added to the store.
+     * 
+     * @param message The added message.
+     */
+    public void onAdd(Message message);
+
+    /**
+     * Called after a message was removed from the store.
+     * 
+     * @param message The removed message.
+     */
+    public void onRemove(Message message);
+
+    /**
+     * Called after a reaction was added to a board message of the store, under
+     * the store's read lock and possibly concurrently with other reactions.
+     * 
+     * @param board    The board message.
+     * @param reaction The added reaction.
+     */
+    public void onReaction(BoardMessage board, ReactionMessage reaction);
+
+    /**
+     * Called after an attachment was added to an email of the store.
+     * Does nothing by default.
+     * 
+     * @param email The email message.
+     * @param file  The added file.
+     */
+    public default void onAttachmentAdded(EmailMessage email, File file) {
+    }
+
+    /**
+     * Called after an attachment was removed from an email of the store (all its
+     * occurrences). Does nothing by default.
+     * 
+     * @param email The email message.
+     * @param file  The removed file.
+     */
+    public default void onAttachmentRemoved(EmailMessage email, File file) {
+    }
+
+    /**
+     * Called once a change (a single call to a write operation of the store,
+     * which may have notified several events) is complete, outside the store's
+     * lock and on the thread that made the change. Unlike the other callbacks it
+     * may block, e.g. until the change is durable. Does nothing by default.
+     */
+    public default void afterChange() {
+    }
+}
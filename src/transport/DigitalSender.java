@@ -0,0 +1,340 @@
+package transport;
+
+import model.IDigital;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Asynchronous sender of digital messages over pluggable transports.
+ * Every registered Transport gets a lane that groups the submitted messages
+ * into batches (up to the policy's batch size, or whatever arrived within the
+ * linger time), keeps up to the policy's number of batches in flight without
+ * waiting for earlier ones, and retries the batches failed with a retryable
+ * TransportException with exponential backoff and jitter. Submitting never blocks: each message gets a future
+ * completed when its batch was sent or when the batch ran out of attempts.
+ */
+public class DigitalSender implements Closeable {
+    /** Timer used for the linger and backoff delays. */
+    private final ScheduledExecutorService scheduler;
+    /** The lane of every registered transport, by name. */
+    private final ConcurrentHashMap<String, Lane> lanes = new ConcurrentHashMap<>();
+
+    /** Constructs a sender with no transport registered. */
+    public DigitalSender() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "digital-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // ======= Transports ======= //
+
+    /**
+     * Registers a transport with the default policy.
+     *
+     * @param transport The transport.
+     * @throws IllegalArgumentException If the transport is null or its name is
+     *                                  already registered.
+     */
+    public void register(Transport transport) {
+        register(transport, SendPolicy.DEFAULT);
+    }
+
+    /**
+     * Registers a transport.
+     *
+     * @param transport The transport.
+     * @param policy    How to batch, pipeline and retry its sends.
+     * @throws IllegalArgumentException If the transport or policy is null or the
+     *                                  transport name is already registered.
+     */
+    public void register(Transport transport, SendPolicy policy) {
+        if (transport == null || policy == null || transport.getName() == null) {
+            throw new IllegalArgumentException("Transport, its name and policy cannot be null");
+        }
+        if (lanes.putIfAbsent(transport.getName(), new Lane(transport, policy)) != null) {
+            throw new IllegalArgumentException("Transport already registered: " + transport.getName());
+        }
+    }
+
+    // ======= Sending ======= //
+
+    /**
+     * Submits a message to the transport named by its getTransportName.
+     *
+     * @param message The message to send.
+     * @return A future completed once the message was sent; it completes
+     *         exceptionally with a TransportException if no transport is
+     *         registered under that name, a non-retryable failure occurred or
+     *         every attempt failed.
+     * @throws IllegalArgumentException If the message is null.
+     * @throws IllegalStateException    If the sender is closed.
+     */
+    public CompletableFuture<Void> send(IDigital message) {
+        if (message == null) {
+            throw new IllegalArgumentException("Message cannot be null");
+        }
+        if (scheduler.isShutdown()) {
+            throw new IllegalStateException("Sender is closed");
+        }
+        Lane lane = lanes.get(message.getTransportName());
+        if (lane == null) {
+            return CompletableFuture.failedFuture(
+                    new TransportException("No transport registered for " + message.getTransportName()));
+        }
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        lane.submit(new Pending(message, future));
+        return future;
+    }
+
+    /**
+     * Submits several messages.
+     *
+     * @param messages The messages to send.
+     * @return A future completed once all of them were sent, or exceptionally as
+     *         soon as one of them failed.
+     * @throws IllegalArgumentException If the collection or one of the messages is
+     *                                  null.
+     */
+    public CompletableFuture<Void> sendAll(Collection<? extends IDigital> messages) {
+        if (messages == null) {
+            throw new IllegalArgumentException("Messages cannot be null");
+        }
+        ArrayList<CompletableFuture<Void>> futures = new ArrayList<>(messages.size());
+        for (IDigital message : messages) {
+            futures.add(send(message));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /** Sends the partial batches of every transport without waiting for their linger time. */
+    public void flush() {
+        for (Lane lane : lanes.values()) {
+            lane.flush();
+        }
+    }
+
+    /**
+     * Flushes the pending batches and stops the timer. In flight batches are not
+     * awaited; a batch that can no longer be delayed (a linger or a retry
+     * rejected by the stopped timer) fails instead.
+     */
+    @Override
+    public void close() {
+        flush();
+        scheduler.shutdown();
+    }
+
+    // ======= Statistics ======= //
+
+    /**
+     * Gets the number of messages sent by a transport.
+     *
+     * @param transportName The transport name.
+     * @return The number of sent messages (0 for an unknown transport).
+     */
+    public long getSentCount(String transportName) {
+        Lane lane = lanes.get(transportName);
+        return (lane == null) ? 0 : lane.sent.get();
+    }
+
+    /**
+     * Gets the number of messages a transport gave up on.
+     *
+     * @param transportName The transport name.
+     * @return The number of failed messages (0 for an unknown transport).
+     */
+    public long getFailedCount(String transportName) {
+        Lane lane = lanes.get(transportName);
+        return (lane == null) ? 0 : lane.failed.get();
+    }
+
+    /**
+     * Gets the number of batch retries of a transport.
+     *
+     * @param transportName The transport name.
+     * @return The number of retries (0 for an unknown transport).
+     */
+    public long getRetryCount(String transportName) {
+        Lane lane = lanes.get(transportName);
+        return (lane == null) ? 0 : lane.retries.get();
+    }
+
+    // ======= Lanes ======= //
+
+    /** A submitted message and its future. */
+    private record Pending(IDigital message, CompletableFuture<Void> future) {
+    }
+
+    /** A batch and the number of attempts already made. */
+    private record Batch(List<Pending> items, int attempts) {
+    }
+
+    /** Batching, pipelining and retries of one transport. */
+    private class Lane {
+        private final Transport transport;
+        private final SendPolicy policy;
+        /** One permit per batch allowed in flight. */
+        private final Semaphore permits;
+        /** Batches waiting for a permit, oldest first. */
+        private final ConcurrentLinkedQueue<Batch> ready = new ConcurrentLinkedQueue<>();
+        /** The batch being filled (guarded by this lane). */
+        private ArrayList<Pending> filling = new ArrayList<>();
+        /** The linger timer of the batch being filled (guarded by this lane). */
+        private ScheduledFuture<?> lingerTimer;
+        private final AtomicLong sent = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong retries = new AtomicLong();
+
+        Lane(Transport transport, SendPolicy policy) {
+            this.transport = transport;
+            this.policy = policy;
+            this.permits = new Semaphore(policy.getMaxInFlight());
+        }
+
+        /** Adds a message to the batch being filled, closing it once full. */
+        void submit(Pending pending) {
+            Batch full = null;
+            Batch orphaned = null;
+            synchronized (this) {
+                filling.add(pending);
+                if (filling.size() >= policy.getMaxBatchSize() || policy.getLingerMillis() == 0) {
+                    full = takeFilling();
+                } else if (lingerTimer == null) {
+                    try {
+                        lingerTimer = scheduler.schedule(this::flush, policy.getLingerMillis(), TimeUnit.MILLISECONDS);
+                    } catch (RejectedExecutionException e) {
+                        // Closed after send checked: nothing would ever flush this batch.
+                        orphaned = takeFilling();
+                    }
+                }
+            }
+            if (full != null) {
+                enqueue(full);
+            } else if (orphaned != null) {
+                fail(orphaned, new TransportException("Sender is closed", false));
+            }
+        }
+
+        /** Closes the batch being filled, if any. */
+        void flush() {
+            Batch batch;
+            synchronized (this) {
+                batch = filling.isEmpty() ? null : takeFilling();
+            }
+            if (batch != null) {
+                enqueue(batch);
+            }
+        }
+
+        /** Detaches the batch being filled. Caller must hold the lane lock. */
+        private Batch takeFilling() {
+            Batch batch = new Batch(filling, 0);
+            filling = new ArrayList<>(policy.getMaxBatchSize());
+            if (lingerTimer != null) {
+                lingerTimer.cancel(false);
+                lingerTimer = null;
+            }
+            return batch;
+        }
+
+        /** Queues a batch for sending and starts as many batches as permits allow. */
+        void enqueue(Batch batch) {
+            ready.add(batch);
+            pump();
+        }
+
+        /** Starts ready batches while permits are available. */
+        private void pump() {
+            while (!ready.isEmpty() && permits.tryAcquire()) {
+                Batch batch = ready.poll();
+                if (batch == null) {
+                    permits.release();
+                    continue;
+                }
+                start(batch);
+            }
+        }
+
+        /** Sends a batch; the caller holds a permit for it. */
+        private void start(Batch batch) {
+            ArrayList<IDigital> messages = new ArrayList<>(batch.items().size());
+            for (Pending pending : batch.items()) {
+                messages.add(pending.message());
+            }
+            CompletableFuture<Void> attempt;
+            try {
+                attempt = transport.send(messages);
+            } catch (RuntimeException e) {
+                attempt = CompletableFuture.failedFuture(e);
+            }
+            // A transport that completed synchronously would otherwise make pump and
+            // start recurse once per ready batch.
+            BiConsumer<Void, Throwable> done = (ok, error) -> {
+                permits.release();
+                if (error == null) {
+                    sent.addAndGet(batch.items().size());
+                    for (Pending pending : batch.items()) {
+                        pending.future().complete(null);
+                    }
+                } else {
+                    retryOrFail(batch, error);
+                }
+                pump();
+            };
+            if (attempt.isDone()) {
+                attempt.whenCompleteAsync(done);
+            } else {
+                attempt.whenComplete(done);
+            }
+        }
+
+        /** Schedules another attempt after the backoff, or fails the batch. */
+        private void retryOrFail(Batch batch, Throwable error) {
+            int attempts = batch.attempts() + 1;
+            Throwable cause = (error instanceof CompletionException && error.getCause() != null)
+                    ? error.getCause()
+                    : error;
+            boolean retryable = cause instanceof TransportException exception && exception.isRetryable();
+            if (retryable && attempts < policy.getMaxAttempts() && !scheduler.isShutdown()) {
+                long backoff = policy.getBackoffMillis(attempts);
+                long jittered = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+                try {
+                    scheduler.schedule(() -> enqueue(new Batch(batch.items(), attempts)),
+                            jittered, TimeUnit.MILLISECONDS);
+                    retries.incrementAndGet();
+                    return;
+                } catch (RejectedExecutionException e) {
+                    // Closed since the check: give up on the batch like on its last attempt.
+                }
+            }
+            fail(batch, new TransportException(
+                    "Sending over " + transport.getName() + " failed after " + attempts + " attempts", cause));
+        }
+
+        /** Completes every future of a batch with a failure. */
+        private void fail(Batch batch, TransportException failure) {
+            failed.addAndGet(batch.items().size());
+            for (Pending pending : batch.items()) {
+                pending.future().completeExceptionally(failure);
+            }
+        }
+    }
+}
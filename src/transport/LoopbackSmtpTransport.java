@@ -0,0 +1,175 @@
+package transport;
+
+import model.EmailMessage;
+import model.File;
+import model.IDigital;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for an SMTP server, used to test and measure email
+ * delivery without a network.
+ * Every message of a batch is rendered as the DATA section of an SMTP
+ * transaction (headers, dot-stuffed body, terminating dot) and dropped into
+ * an in-memory mailbox. The reply is delayed by a simulated round trip on a
+ * timer thread, so the caller is never blocked, and a share of the batches can
+ * be rejected with a transient 451 reply to exercise the retries.
+ */
+public class LoopbackSmtpTransport implements Transport {
+    /** Timer completing the simulated replies. */
+    private static final ScheduledExecutorService REPLIES = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "loopback-smtp");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Simulated round trip of a batch, in microseconds. */
+    private final long roundTripMicros;
+    /** Share of the batches rejected with a transient failure, between 0 and 1. */
+    private final double failureRate;
+    /** Delivered messages, in SMTP DATA form. */
+    private final ConcurrentLinkedQueue<String> mailbox = new ConcurrentLinkedQueue<>();
+    /** Number of delivered messages. */
+    private final AtomicLong delivered = new AtomicLong();
+    /** Number of accepted batches. */
+    private final AtomicLong batches = new AtomicLong();
+    /** Number of rejected batches. */
+    private final AtomicLong rejected = new AtomicLong();
+
+    /** Constructs a loopback server replying at once and never failing. */
+    public LoopbackSmtpTransport() {
+        this(0, 0);
+    }
+
+    /**
+     * Constructs a loopback server.
+     *
+     * @param roundTripMicros Simulated round trip of a batch, in microseconds.
+     * @param failureRate     Share of the batches rejected with a transient
+     *                        failure, between 0 and 1.
+     * @throws IllegalArgumentException If the round trip is negative or the
+     *                                  failure rate is out of range.
+     */
+    public LoopbackSmtpTransport(long roundTripMicros, double failureRate) {
+        if (roundTripMicros < 0) {
+            throw new IllegalArgumentException("Round trip cannot be negative");
+        }
+        if (!(failureRate >= 0 && failureRate <= 1)) {
+            throw new IllegalArgumentException("Failure rate must be between 0 and 1");
+        }
+        this.roundTripMicros = roundTripMicros;
+        this.failureRate = failureRate;
+    }
+
+    @Override
+    public String getName() {
+        return IDigital.SMTP;
+    }
+
+    @Override
+    public CompletableFuture<Void> send(List<IDigital> batch) {
+        CompletableFuture<Void> reply = new CompletableFuture<>();
+        if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+            rejected.incrementAndGet();
+            return complete(reply, new TransportException("451 Requested action aborted: local error"));
+        }
+        ArrayList<String> transactions = new ArrayList<>(batch.size());
+        for (IDigital message : batch) {
+            if (!(message instanceof EmailMessage email)) {
+                return complete(reply, new TransportException("554 Not an email message", false));
+            }
+            transactions.add(render(email));
+        }
+        mailbox.addAll(transactions);
+        delivered.addAndGet(transactions.size());
+        batches.incrementAndGet();
+        return complete(reply, null);
+    }
+
+    /** Completes a reply after the simulated round trip. */
+    private CompletableFuture<Void> complete(CompletableFuture<Void> reply, Throwable error) {
+        Runnable answer = () -> {
+            if (error == null) {
+                reply.complete(null);
+            } else {
+                reply.completeExceptionally(error);
+            }
+        };
+        if (roundTripMicros == 0) {
+            answer.run();
+        } else {
+            REPLIES.schedule(answer, roundTripMicros, TimeUnit.MICROSECONDS);
+        }
+        return reply;
+    }
+
+    /** Renders an email as the DATA section of an SMTP transaction. */
+    private static String render(EmailMessage email) {
+        StringBuilder sb = new StringBuilder(128 + email.getContent().length());
+        sb.append("Message-ID: <").append(email.getId()).append("@loopback>\r\n")
+                .append("From: ").append(email.getSender()).append("\r\n")
+                .append("Subject: ").append(email.getSubject()).append("\r\n");
+        for (File file : email.getAttachmentsView()) {
+            sb.append("X-Attachment: ").append(file.getFileName()).append('.').append(file.getFileType()).append("\r\n");
+        }
+        sb.append("\r\n");
+        String content = email.getContent();
+        int start = 0;
+        while (start <= content.length()) {
+            int end = content.indexOf('\n', start);
+            if (end < 0) {
+                end = content.length();
+            }
+            if (end > start && content.charAt(start) == '.') {
+                sb.append('.'); // dot-stuffing
+            }
+            sb.append(content, start, end).append("\r\n");
+            start = end + 1;
+        }
+        return sb.append(".\r\n").toString();
+    }
+
+    // ======= Mailbox ======= //
+
+    /**
+     * Removes and returns the delivered messages.
+     *
+     * @return The delivered messages in SMTP DATA form, in delivery order.
+     */
+    public ArrayList<String> drainMailbox() {
+        ArrayList<String> result = new ArrayList<>();
+        String data;
+        while ((data = mailbox.poll()) != null) {
+            result.add(data);
+        }
+        return result;
+    }
+
+    /** @return the number of delivered messages. */
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    /** @return the number of accepted batches. */
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    /** @return the number of batches rejected with a transient failure. */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /** @return the number of messages waiting in the mailbox. */
+    public int getMailboxSize() {
+        return mailbox.size();
+    }
+}
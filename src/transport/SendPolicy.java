@@ -0,0 +1,86 @@
+package transport;
+
+/**
+ * How a DigitalSender batches, pipelines and retries the sends of a transport.
+ * Immutable.
+ */
+public class SendPolicy {
+    /** Default policy: batches of 64, 5 ms linger, 4 batches in flight, 5 attempts, 10 ms to 1 s backoff. */
+    public static final SendPolicy DEFAULT = new SendPolicy(64, 5, 4, 5, 10, 1000);
+
+    /** Maximal number of messages per batch. */
+    private final int maxBatchSize;
+    /** How long a partial batch waits for more messages, in milliseconds. */
+    private final long lingerMillis;
+    /** Maximal number of batches in flight on the transport. */
+    private final int maxInFlight;
+    /** Maximal number of attempts per batch, the first one included. */
+    private final int maxAttempts;
+    /** Backoff before the first retry, in milliseconds. */
+    private final long baseBackoffMillis;
+    /** Upper bound of the backoff, in milliseconds. */
+    private final long maxBackoffMillis;
+
+    /**
+     * Constructs a send policy.
+     *
+     * @param maxBatchSize      Maximal number of messages per batch.
+     * @param lingerMillis      How long a partial batch waits for more messages,
+     *                          in milliseconds (0 sends it right away).
+     * @param maxInFlight       Maximal number of batches in flight.
+     * @param maxAttempts       Maximal number of attempts per batch.
+     * @param baseBackoffMillis Backoff before the first retry, doubled on every
+     *                          retry, in milliseconds.
+     * @param maxBackoffMillis  Upper bound of the backoff, in milliseconds.
+     * @throws IllegalArgumentException If a size or count is not positive, a
+     *                                  delay is negative or the backoff bounds
+     *                                  are inverted.
+     */
+    public SendPolicy(int maxBatchSize, long lingerMillis, int maxInFlight, int maxAttempts,
+            long baseBackoffMillis, long maxBackoffMillis) {
+        if (maxBatchSize < 1 || maxInFlight < 1 || maxAttempts < 1) {
+            throw new IllegalArgumentException("Batch size, in flight limit and attempts must be positive");
+        }
+        if (lingerMillis < 0 || baseBackoffMillis < 0 || maxBackoffMillis < baseBackoffMillis) {
+            throw new IllegalArgumentException("Invalid linger or backoff delays");
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.lingerMillis = lingerMillis;
+        this.maxInFlight = maxInFlight;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /** @return the maximal number of messages per batch. */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /** @return how long a partial batch waits for more messages, in milliseconds. */
+    public long getLingerMillis() {
+        return lingerMillis;
+    }
+
+    /** @return the maximal number of batches in flight. */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /** @return the maximal number of attempts per batch. */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Gets the backoff before a retry: the base backoff doubled for every earlier
+     * retry, capped at the maximal backoff.
+     *
+     * @param retry The retry number, 1 for the first retry.
+     * @return The backoff, in milliseconds.
+     */
+    public long getBackoffMillis(int retry) {
+        int shift = Math.min(Math.max(retry - 1, 0), 30);
+        return Math.min(maxBackoffMillis, baseBackoffMillis << shift);
+    }
+}
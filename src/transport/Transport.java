@@ -0,0 +1,31 @@
+package transport;
+
+import model.IDigital;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Service provider interface of the transports sending digital messages.
+ * A transport sends whole batches and must not block the calling thread: the
+ * returned future completes once the batch was accepted by the other side, or
+ * completes exceptionally if it was not. Only a retryable TransportException
+ * makes the batch be sent again; any other failure fails it at once. Several batches may be in flight at once, up to the limit of
+ * the SendPolicy the transport is registered with.
+ */
+public interface Transport {
+    /**
+     * Gets the name of the transport, matched against IDigital.getTransportName.
+     *
+     * @return The transport name.
+     */
+    public String getName();
+
+    /**
+     * Starts sending a batch of messages.
+     *
+     * @param batch The messages to send, never empty.
+     * @return A future completed when the whole batch was sent.
+     */
+    public CompletableFuture<Void> send(List<IDigital> batch);
+}
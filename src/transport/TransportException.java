@@ -0,0 +1,50 @@
+package transport;
+
+/**
+ * Exception thrown when a digital message cannot be sent.
+ * A retryable exception reports a transient failure that another attempt may
+ * get past; any other exception fails the send at once.
+ */
+public class TransportException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    /** Whether another attempt may succeed. */
+    private final boolean retryable;
+
+    /**
+     * Constructs a new retryable TransportException with the given message.
+     *
+     * @param message The detail message.
+     */
+    public TransportException(String message) {
+        this(message, true);
+    }
+
+    /**
+     * Constructs a new TransportException with the given message.
+     *
+     * @param message   The detail message.
+     * @param retryable Whether another attempt may succeed.
+     */
+    public TransportException(String message, boolean retryable) {
+        super(message);
+        this.retryable = retryable;
+    }
+
+    /**
+     * Constructs a new non-retryable TransportException with the given message
+     * and cause.
+     *
+     * @param message The detail message.
+     * @param cause   The failure that made the send fail.
+     */
+    public TransportException(String message, Throwable cause) {
+        super(message, cause);
+        this.retryable = false;
+    }
+
+    /** @return whether another attempt may succeed. */
+    public boolean isRetryable() {
+        return retryable;
+    }
+}
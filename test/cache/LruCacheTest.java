@@ -0,0 +1,97 @@
+package cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that a value loaded by LruCache.get(key, loader) is cached unless an
+ * invalidation running during the load matches it.
+ */
+class LruCacheTest {
+    @Test
+    void loadRacingAnUnrelatedInvalidationIsCached() {
+        LruCache<String, String> cache = new LruCache<>(16, 1024, String::length);
+
+        String value = cache.get("a", key -> {
+            cache.invalidateIf((k, v) -> k.equals("b"));
+            cache.invalidate("c");
+            return "loaded";
+        });
+
+        assertEquals("loaded", value);
+        assertEquals("loaded", cache.get("a"));
+    }
+
+    @Test
+    void loadRacingAMatchingInvalidationIsNotCached() {
+        LruCache<String, String> cache = new LruCache<>(16, 1024, String::length);
+
+        cache.get("a", key -> {
+            cache.invalidateIf((k, v) -> v.startsWith("stale"));
+            return "stale result";
+        });
+        cache.get("b", key -> {
+            cache.invalidate("b");
+            return "stale result";
+        });
+        cache.get("c", key -> {
+            cache.clear();
+            return "fresh";
+        });
+
+        assertNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNull(cache.get("c"));
+    }
+
+    @Test
+    void nestedLoadsSeeOnlyTheInvalidationsSinceTheyStarted() {
+        LruCache<String, String> cache = new LruCache<>(16, 1024, String::length);
+
+        cache.get("outer", outer -> {
+            cache.invalidate("inner");
+            cache.get("inner", inner -> "inner value");
+            cache.invalidate("later");
+            return "outer value";
+        });
+
+        assertEquals("inner value", cache.get("inner"));
+        assertEquals("outer value", cache.get("outer"));
+    }
+
+    @Test
+    void loadRacingTooManyInvalidationsIsNotCached() {
+        LruCache<String, String> cache = new LruCache<>(16, 1024, String::length);
+
+        cache.get("a", key -> {
+            for (int i = 0; i < 5000; i++) {
+                cache.invalidate("other" + i);
+            }
+            return "value";
+        });
+        assertNull(cache.get("a"));
+
+        // Once no load is in flight the kept invalidations are dropped.
+        cache.invalidate("other");
+        cache.get("a", key -> "value");
+        assertEquals("value", cache.get("a"));
+    }
+
+    @Test
+    void failingLoadDoesNotKeepInvalidations() {
+        LruCache<String, String> cache = new LruCache<>(16, 1024, String::length);
+
+        assertThrows(IllegalStateException.class, () -> cache.get("a", key -> {
+            throw new IllegalStateException("load failed");
+        }));
+        for (int i = 0; i < 5000; i++) {
+            cache.invalidate("other" + i);
+        }
+        cache.get("a", key -> {
+            cache.invalidate("b");
+            return "value";
+        });
+        assertEquals("value", cache.get("a"));
+    }
+}
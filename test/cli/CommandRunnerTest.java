@@ -0,0 +1,124 @@
+package cli;
+
+import json.Json;
+import model.BoardMessage;
+import model.Message;
+import model.Priority;
+import model.ReactionMessage;
+import org.junit.jupiter.api.Test;
+import store.MessageStore;
+import store.StoreListener;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of CommandRunner: every command gets a result and the summary is
+ * written whatever a command throws, and adds are only reported ok once their
+ * bulk insert succeeded.
+ */
+class CommandRunnerTest {
+    @Test
+    void addsAreReportedWithTheirBulkInsert() throws IOException {
+        MessageStore store = new MessageStore();
+        List<Map<String, Object>> results = run(store,
+                add("one"),
+                add("two"),
+                "{\"op\":\"list\"}",
+                "{\"op\":\"nope\"}");
+
+        assertEquals(5, results.size());
+        assertEquals(true, results.get(0).get("ok"));
+        assertNotNull(store.get((Long) results.get(1).get("id")));
+        assertEquals(2L, results.get(2).get("count"));
+        assertEquals(false, results.get(3).get("ok"));
+        assertEquals(1L, results.get(4).get("failed"));
+    }
+
+    @Test
+    void failedBulkInsertFailsItsAdds() throws IOException {
+        MessageStore store = new MessageStore();
+        store.addListener(new Failing("poison", new IllegalStateException("log is closed")));
+        List<Map<String, Object>> results = run(store,
+                add("fine"),
+                add("poison"),
+                "{\"op\":\"list\"}",
+                add("later"));
+
+        for (int i = 0; i < 2; i++) {
+            assertEquals(false, results.get(i).get("ok"), "add " + i);
+            assertNull(results.get(i).get("id"));
+            assertTrue(((String) results.get(i).get("error")).contains("log is closed"));
+        }
+        assertEquals(true, results.get(2).get("ok"));
+        assertEquals(true, results.get(3).get("ok"));
+        assertEquals(Map.of("summary", true, "commands", 4L, "ok", 2L, "failed", 2L), results.get(4));
+    }
+
+    @Test
+    void unexpectedFailuresOnlyFailTheirCommand() throws IOException {
+        MessageStore store = new MessageStore();
+        BoardMessage board = new BoardMessage("owner", "doomed", Priority.REGULAR);
+        store.add(board);
+        store.addListener(new Failing("owner", new UnsupportedOperationException()));
+        List<Map<String, Object>> results = run(store,
+                "{\"op\":\"delete\",\"id\":" + board.getId() + "}",
+                add("after"),
+                "{\"op\":\"search\",\"words\":[\"after\"]}");
+
+        assertEquals(false, results.get(0).get("ok"));
+        assertEquals("java.lang.UnsupportedOperationException", results.get(0).get("error"));
+        assertEquals(true, results.get(1).get("ok"));
+        assertEquals(1L, results.get(2).get("count"));
+        assertEquals(1L, results.get(3).get("failed"));
+    }
+
+    // ======= Helpers ======= //
+
+    /** A listener throwing on the changes of the messages of one sender. */
+    private record Failing(String sender, RuntimeException failure) implements StoreListener {
+        @Override
+        public void onAdd(Message message) {
+            check(message);
+        }
+
+        @Override
+        public void onRemove(Message message) {
+            check(message);
+        }
+
+        @Override
+        public void onReaction(BoardMessage board, ReactionMessage reaction) {
+        }
+
+        private void check(Message message) {
+            if (message.getSender().equals(sender)) {
+                throw failure;
+            }
+        }
+    }
+
+    /** An add command of a board message whose sender and content are a name. */
+    private static String add(String name) {
+        return "{\"op\":\"add\",\"type\":\"board\",\"sender\":\"" + name + "\",\"content\":\"" + name
+                + "\",\"priority\":\"regular\"}";
+    }
+
+    /** Runs a script as one batch and parses its output lines. */
+    private static List<Map<String, Object>> run(MessageStore store, String... lines) throws IOException {
+        StringWriter out = new StringWriter();
+        new CommandRunner(store).run(new BufferedReader(new StringReader(String.join("\n", lines))), out);
+        ArrayList<Map<String, Object>> results = new ArrayList<>();
+        for (String line : out.toString().split("\n")) {
+            results.add(Json.parseObject(line));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,176 @@
+package dispatch;
+
+import model.BoardMessage;
+import model.Priority;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of BoardDispatcher: every accepted message is delivered, on close too
+ * and when submits race the close, failures are counted, and latencies are
+ * reported per priority.
+ */
+class BoardDispatcherTest {
+    @Test
+    void deliversEverySubmittedMessage() throws InterruptedException {
+        Set<Long> delivered = ConcurrentHashMap.newKeySet();
+        BoardDispatcher dispatcher = new BoardDispatcher(message -> delivered.add(message.getId()), 4);
+        ArrayList<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            BoardMessage board = board(Priority.values()[i % 3], i);
+            ids.add(board.getId());
+            if (i % 2 == 0) {
+                dispatcher.submit(board);
+            } else {
+                assertTrue(dispatcher.trySubmit(board, 1, TimeUnit.SECONDS));
+            }
+        }
+        dispatcher.close();
+
+        assertEquals(Set.copyOf(ids), delivered);
+        assertEquals(500, dispatcher.getDeliveredCount());
+        assertEquals(0, dispatcher.getFailedCount());
+    }
+
+    @Test
+    void closeDeliversTheQueuedMessages() throws InterruptedException {
+        AtomicLong delivered = new AtomicLong();
+        BoardDispatcher dispatcher = new BoardDispatcher(message -> {
+            Thread.sleep(1);
+            delivered.incrementAndGet();
+        }, 1);
+        for (int i = 0; i < 100; i++) {
+            dispatcher.submit(board(Priority.REGULAR, i));
+        }
+        assertTrue(dispatcher.getQueue().size() > 0, "nothing left queued to test");
+
+        dispatcher.close();
+
+        assertEquals(100, delivered.get());
+        assertEquals(0, dispatcher.getQueue().size());
+    }
+
+    @Test
+    void submitsRacingCloseAreDeliveredOrRejected() throws InterruptedException {
+        for (int round = 0; round < 20; round++) {
+            AtomicLong delivered = new AtomicLong();
+            AtomicLong accepted = new AtomicLong();
+            BoardDispatcher dispatcher = new BoardDispatcher(message -> delivered.incrementAndGet(), 2);
+            ArrayList<Thread> submitters = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                Thread submitter = new Thread(() -> {
+                    try {
+                        for (int i = 0;; i++) {
+                            dispatcher.submit(board(Priority.values()[i % 3], i));
+                            accepted.incrementAndGet();
+                        }
+                    } catch (IllegalStateException | InterruptedException e) {
+                        // closed
+                    }
+                });
+                submitters.add(submitter);
+                submitter.start();
+            }
+            Thread.sleep(2);
+            dispatcher.close();
+            for (Thread submitter : submitters) {
+                submitter.join();
+            }
+
+            assertEquals(accepted.get(), delivered.get(), "round " + round);
+        }
+    }
+
+    @Test
+    void submitStalledBeforeItsPutIsDeliveredAfterClose() throws InterruptedException {
+        // The put of the submit only lands after close and after the idle workers' poll timed out.
+        PriorityDispatchQueue slowPut = new PriorityDispatchQueue() {
+            @Override
+            public void put(BoardMessage message) throws InterruptedException {
+                Thread.sleep(300);
+                super.put(message);
+            }
+        };
+        AtomicLong delivered = new AtomicLong();
+        BoardDispatcher dispatcher = new BoardDispatcher(slowPut, message -> delivered.incrementAndGet(), 2);
+        Thread submitter = new Thread(() -> {
+            try {
+                dispatcher.submit(board(Priority.URGENT, 0));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        submitter.start();
+        Thread.sleep(50);
+
+        dispatcher.close();
+        submitter.join();
+
+        assertEquals(1, delivered.get());
+    }
+
+    @Test
+    void submitAfterCloseThrows() {
+        BoardDispatcher dispatcher = new BoardDispatcher(message -> { }, 1);
+        dispatcher.close();
+
+        assertThrows(IllegalStateException.class, () -> dispatcher.submit(board(Priority.URGENT, 0)));
+        assertThrows(IllegalStateException.class,
+                () -> dispatcher.trySubmit(board(Priority.URGENT, 0), 1, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void failuresAreCounted() throws InterruptedException {
+        BoardDispatcher dispatcher = new BoardDispatcher(message -> {
+            if (message.getContent().endsWith("3")) {
+                throw new IllegalStateException("cannot deliver");
+            }
+        }, 2);
+        for (int i = 0; i < 40; i++) {
+            dispatcher.submit(board(Priority.SPECIAL, i));
+        }
+        dispatcher.close();
+
+        assertEquals(4, dispatcher.getFailedCount());
+        assertEquals(36, dispatcher.getDeliveredCount());
+        assertEquals(40, dispatcher.getLatencySummary().get(Priority.SPECIAL).count());
+    }
+
+    @Test
+    void latenciesAreReportedPerPriority() throws InterruptedException {
+        BoardDispatcher dispatcher = new BoardDispatcher(message -> {
+            if (message.getPriority() == Priority.REGULAR) {
+                Thread.sleep(5);
+            }
+        }, 4);
+        for (int i = 0; i < 20; i++) {
+            dispatcher.submit(board(Priority.URGENT, i));
+            dispatcher.submit(board(Priority.REGULAR, i));
+        }
+        dispatcher.close();
+
+        EnumMap<Priority, BoardDispatcher.LatencySummary> summary = dispatcher.getLatencySummary();
+        assertEquals(20, summary.get(Priority.URGENT).count());
+        assertEquals(20, summary.get(Priority.REGULAR).count());
+        assertEquals(0, summary.get(Priority.SPECIAL).count());
+        BoardDispatcher.LatencySummary regular = summary.get(Priority.REGULAR);
+        // A delivery sleeping 5 ms, within the histogram's 1/16 resolution.
+        assertTrue(regular.p50Micros() >= 4_000, "p50 " + regular.p50Micros());
+        assertTrue(regular.p99Micros() >= regular.p50Micros());
+        assertEquals(regular.p50Micros(), dispatcher.getLatencyMicros(Priority.REGULAR, 50));
+        assertEquals(regular.p99Micros(), dispatcher.getLatencyMicros(Priority.REGULAR, 99));
+        assertThrows(IllegalArgumentException.class, () -> dispatcher.getLatencyMicros(null, 50));
+    }
+
+    private static BoardMessage board(Priority priority, int number) {
+        return new BoardMessage("poster", "message " + number, priority);
+    }
+}
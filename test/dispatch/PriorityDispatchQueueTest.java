@@ -0,0 +1,134 @@
+package dispatch;
+
+import model.BoardMessage;
+import model.Priority;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of the take order of PriorityDispatchQueue: weighted shares, FIFO
+ * levels, and out of turn takes for overdue messages, which must not starve
+ * URGENT under a REGULAR backlog.
+ */
+class PriorityDispatchQueueTest {
+    /** Maximal wait no test reaches. */
+    private static final long NEVER_MILLIS = TimeUnit.HOURS.toMillis(1);
+    /** Sum of the default weights: the takes of one round. */
+    private static final int ROUND = 8 + 2 + 1;
+
+    @Test
+    void levelsGetTakesInProportionToTheirWeights() throws InterruptedException {
+        PriorityDispatchQueue queue = new PriorityDispatchQueue(4096, NEVER_MILLIS,
+                PriorityDispatchQueue.defaultWeights());
+        for (int i = 0; i < 200; i++) {
+            for (Priority priority : Priority.values()) {
+                queue.put(board(priority, i));
+            }
+        }
+
+        EnumMap<Priority, Integer> taken = take(queue, 10 * ROUND);
+
+        assertEquals(80, taken.get(Priority.URGENT));
+        assertEquals(20, taken.get(Priority.SPECIAL));
+        assertEquals(10, taken.get(Priority.REGULAR));
+        assertEquals(0, queue.getPromotedCount());
+    }
+
+    @Test
+    void everyLevelIsFirstInFirstOut() throws InterruptedException {
+        PriorityDispatchQueue queue = new PriorityDispatchQueue(4096, NEVER_MILLIS,
+                PriorityDispatchQueue.defaultWeights());
+        for (int i = 0; i < 50; i++) {
+            queue.put(board(Priority.values()[i % 3], i));
+        }
+
+        EnumMap<Priority, Integer> last = new EnumMap<>(Priority.class);
+        while (queue.size() > 0) {
+            PriorityDispatchQueue.Entry entry = queue.take();
+            int number = Integer.parseInt(entry.message().getContent());
+            assertTrue(number > last.getOrDefault(entry.priority(), -1), "out of order: " + number);
+            last.put(entry.priority(), number);
+        }
+    }
+
+    @Test
+    void overdueBacklogDoesNotStarveUrgent() throws InterruptedException {
+        PriorityDispatchQueue queue = new PriorityDispatchQueue(4096, 1, PriorityDispatchQueue.defaultWeights());
+        for (int i = 0; i < 1000; i++) {
+            queue.put(board(Priority.REGULAR, i));
+        }
+        Thread.sleep(20); // the whole REGULAR backlog is overdue
+        for (int i = 0; i < 1000; i++) {
+            queue.put(board(Priority.URGENT, i));
+        }
+        Thread.sleep(20); // URGENT is overdue too, but REGULAR is older
+
+        EnumMap<Priority, Integer> taken = take(queue, 10 * ROUND);
+
+        // At most one take out of turn per round, the rest by weight.
+        assertTrue(queue.getPromotedCount() <= 10, "promoted " + queue.getPromotedCount());
+        assertTrue(taken.get(Priority.URGENT) >= 70, "URGENT got " + taken.get(Priority.URGENT));
+    }
+
+    @Test
+    void overdueMessagesAreTakenOutOfTurn() throws InterruptedException {
+        PriorityDispatchQueue queue = new PriorityDispatchQueue(4096, 1, PriorityDispatchQueue.defaultWeights());
+        for (int i = 0; i < 30; i++) {
+            queue.put(board(Priority.REGULAR, i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            queue.put(board(Priority.URGENT, i));
+        }
+        Thread.sleep(20);
+
+        EnumMap<Priority, Integer> taken = take(queue, 10 * ROUND);
+
+        // By weight alone REGULAR would get one take per round.
+        assertTrue(taken.get(Priority.REGULAR) > 10, "REGULAR got " + taken.get(Priority.REGULAR));
+        assertTrue(queue.getPromotedCount() > 0);
+    }
+
+    @Test
+    void fullQueuePushesBack() throws InterruptedException {
+        PriorityDispatchQueue queue = new PriorityDispatchQueue(2, NEVER_MILLIS,
+                PriorityDispatchQueue.defaultWeights());
+        assertTrue(queue.offer(board(Priority.REGULAR, 0), 0, TimeUnit.MILLISECONDS));
+        assertTrue(queue.offer(board(Priority.URGENT, 1), 0, TimeUnit.MILLISECONDS));
+
+        assertFalse(queue.offer(board(Priority.SPECIAL, 2), 10, TimeUnit.MILLISECONDS));
+        assertEquals(Priority.URGENT, queue.take().priority());
+        assertTrue(queue.offer(board(Priority.SPECIAL, 2), 0, TimeUnit.MILLISECONDS));
+        assertNull(new PriorityDispatchQueue().poll(1, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void invalidSettingsAreRejected() {
+        EnumMap<Priority, Integer> weights = PriorityDispatchQueue.defaultWeights();
+        assertThrows(IllegalArgumentException.class, () -> new PriorityDispatchQueue(0, 1, weights));
+        assertThrows(IllegalArgumentException.class, () -> new PriorityDispatchQueue(1, 0, weights));
+        weights.remove(Priority.SPECIAL);
+        assertThrows(IllegalArgumentException.class, () -> new PriorityDispatchQueue(1, 1, weights));
+    }
+
+    /** Creates a board message whose content is its number. */
+    private static BoardMessage board(Priority priority, int number) {
+        return new BoardMessage("poster", Integer.toString(number), priority);
+    }
+
+    /** Takes messages and counts them by priority. */
+    private static EnumMap<Priority, Integer> take(PriorityDispatchQueue queue, int count)
+            throws InterruptedException {
+        EnumMap<Priority, Integer> taken = new EnumMap<>(Priority.class);
+        for (Priority priority : Priority.values()) {
+            taken.put(priority, 0);
+        }
+        for (int i = 0; i < count; i++) {
+            taken.merge(queue.take().priority(), 1, Integer::sum);
+        }
+        return taken;
+    }
+}
@@ -0,0 +1,185 @@
+package id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of the ID generators: unique, per thread increasing IDs under
+ * concurrent nextId and nextIds calls, advanceTo after a restore, and the
+ * snowflake sequence rolling over within one millisecond.
+ */
+class IdGeneratorTest {
+    private static final int THREADS = 8;
+    private static final int IDS_PER_THREAD = 20_000;
+    /** Bits below the snowflake timestamp: 10 of node, 12 of sequence. */
+    private static final int TIME_SHIFT = 22;
+
+    @Test
+    void sequenceIdsAreUniqueAndIncreasingUnderContention() throws InterruptedException {
+        checkConcurrent(SequenceIdGenerator::new);
+    }
+
+    @Test
+    void blockIdsAreUniqueAndIncreasingUnderContention() throws InterruptedException {
+        checkConcurrent(() -> new BlockIdGenerator(new SequenceIdGenerator(), 64));
+    }
+
+    @Test
+    void snowflakeIdsAreUniqueAndIncreasingUnderContention() throws InterruptedException {
+        checkConcurrent(() -> new SnowflakeIdGenerator(7));
+    }
+
+    @Test
+    void sequenceSkipsRestoredIds() {
+        SequenceIdGenerator sequence = new SequenceIdGenerator();
+        sequence.nextId();
+        sequence.advanceTo(1_001);
+
+        assertEquals(1_001, sequence.nextId());
+        assertArrayEquals(new long[] { 1_002, 1_003 }, sequence.nextIds(2));
+        sequence.advanceTo(10); // never moves back
+        assertEquals(1_004, sequence.nextId());
+    }
+
+    @Test
+    void blockGeneratorDropsBlocksBelowTheFloorOnEveryThread() throws InterruptedException {
+        SequenceIdGenerator sequence = new SequenceIdGenerator();
+        BlockIdGenerator blocks = new BlockIdGenerator(sequence, 1_000);
+        CountDownLatch reserved = new CountDownLatch(THREADS);
+        CountDownLatch restored = new CountDownLatch(1);
+        long floor = 50_000;
+        ArrayList<long[]> after = new ArrayList<>();
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            long[] ids = new long[2_000];
+            after.add(ids);
+            Thread thread = new Thread(() -> {
+                blocks.nextId(); // reserves a block far below the floor
+                reserved.countDown();
+                try {
+                    restored.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = blocks.nextId();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        reserved.await();
+        blocks.advanceTo(floor);
+        restored.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        HashSet<Long> seen = new HashSet<>();
+        for (long[] ids : after) {
+            for (long id : ids) {
+                assertTrue(id >= floor, "id " + id + " below the floor");
+                assertTrue(seen.add(id), "duplicate id " + id);
+            }
+        }
+        assertTrue(blocks.nextId() >= floor);
+    }
+
+    @Test
+    void snowflakeSkipsRestoredIds() {
+        SnowflakeIdGenerator other = new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE);
+        long restored = 0;
+        for (int i = 0; i < 10; i++) {
+            restored = other.nextId();
+        }
+        SnowflakeIdGenerator snowflake = new SnowflakeIdGenerator(0);
+        snowflake.advanceTo(restored + 1);
+
+        assertTrue(snowflake.nextId() > restored);
+    }
+
+    @Test
+    void snowflakeSequenceRollsOverToTheNextMillisecond() {
+        // A millisecond an hour ahead: the clock stays behind it, so every ID shares it until the sequence runs out.
+        long future = System.currentTimeMillis() - SnowflakeIdGenerator.EPOCH + 3_600_000;
+        SnowflakeIdGenerator snowflake = new SnowflakeIdGenerator(5);
+        snowflake.advanceTo((future << TIME_SHIFT) + 1);
+
+        long previous = 0;
+        for (int i = 0; i < 2 * 4096 + 1; i++) {
+            long id = snowflake.nextId();
+            assertEquals(future + 1 + i / 4096, id >>> TIME_SHIFT, "time of id " + i);
+            assertEquals(5, (id >>> 12) & SnowflakeIdGenerator.MAX_NODE, "node of id " + i);
+            assertEquals(i % 4096, id & 4095, "sequence of id " + i);
+            assertTrue(id > previous);
+            previous = id;
+        }
+    }
+
+    @Test
+    void rejectsInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new SequenceIdGenerator(0));
+        assertThrows(IllegalArgumentException.class, () -> new SequenceIdGenerator().nextIds(-1));
+        assertThrows(IllegalArgumentException.class, () -> new BlockIdGenerator(new SequenceIdGenerator(), 0));
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE + 1));
+        assertThrows(IllegalArgumentException.class, () -> IdGenerators.set(null));
+    }
+
+    // ======= Helpers ======= //
+
+    /**
+     * Generates IDs on several threads at once, alternating single IDs and
+     * batches, and checks they are unique and increasing within every thread.
+     */
+    private static void checkConcurrent(Supplier<IdGenerator> factory) throws InterruptedException {
+        IdGenerator generator = factory.get();
+        CountDownLatch start = new CountDownLatch(1);
+        ArrayList<List<Long>> perThread = new ArrayList<>();
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            ArrayList<Long> ids = new ArrayList<>(IDS_PER_THREAD);
+            perThread.add(ids);
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                while (ids.size() < IDS_PER_THREAD) {
+                    if (ids.size() % 3 == 0) {
+                        for (long id : generator.nextIds(17)) {
+                            ids.add(id);
+                        }
+                    } else {
+                        ids.add(generator.nextId());
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        HashSet<Long> seen = new HashSet<>();
+        for (List<Long> ids : perThread) {
+            long previous = 0;
+            for (long id : ids) {
+                assertTrue(id > previous, "id " + id + " after " + previous);
+                assertTrue(seen.add(id), "duplicate id " + id);
+                previous = id;
+            }
+        }
+    }
+}
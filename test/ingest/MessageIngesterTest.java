@@ -0,0 +1,133 @@
+package ingest;
+
+import json.Json;
+import model.BoardMessage;
+import model.EmailMessage;
+import model.Message;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import store.MessageStore;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of MessageIngester: RFC 4180 records (quoted line breaks, doubled
+ * quotes, CRLF, byte order mark) whatever the chunk boundaries, line numbers
+ * of rejected rows, and rows that fail in unexpected ways.
+ */
+class MessageIngesterTest {
+    /** Chunk sizes from one byte (a boundary after every record) to one chunk. */
+    private static final int[] CHUNK_SIZES = { 1, 7, 64, MessageIngester.DEFAULT_CHUNK_BYTES };
+
+    /** A CSV file using every quoting rule, with its rows in order. */
+    private static final String CSV = "type,sender,content,priority,subject\r\n"
+            + "board,alice,\"two\r\nlines\",urgent,\r\n"
+            + "email,bob,\"say \"\"hi\"\", then, leave\",,\"sub,ject\"\r\n"
+            + "board,carol,\"\"\"\",regular,\r\n"
+            + "board,dave,\"three\n\nlines\",special,\n"
+            + "board,erin,last without a line feed,regular,";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void quotedFieldsKeepCommasLineBreaksAndQuotes() throws IOException {
+        for (int chunkBytes : CHUNK_SIZES) {
+            MessageStore store = new MessageStore();
+            IngestReport report = ingest(store, CSV, IngestFormat.CSV, chunkBytes);
+
+            assertEquals(5, report.getInserted(), "chunk " + chunkBytes);
+            assertEquals(0, report.getFailed(), "chunk " + chunkBytes + ": " + report.getErrors());
+            List<Message> all = store.getAll();
+            assertEquals(List.of("two\r\nlines", "say \"hi\", then, leave", "\"", "three\n\nlines",
+                    "last without a line feed"), contents(all));
+            assertEquals("sub,ject", ((EmailMessage) all.get(1)).getSubject());
+        }
+    }
+
+    @Test
+    void byteOrderMarkIsSkipped() throws IOException {
+        for (int chunkBytes : CHUNK_SIZES) {
+            MessageStore store = new MessageStore();
+            IngestReport report = ingest(store, "\uFEFF" + CSV, IngestFormat.CSV, chunkBytes);
+
+            assertEquals(5, report.getInserted(), "chunk " + chunkBytes);
+            assertInstanceOf(BoardMessage.class, store.getAll().get(0));
+        }
+    }
+
+    @Test
+    void rejectedRowsReportTheLineTheyStartOn() throws IOException {
+        String csv = "type,sender,content,priority\n"   // line 1
+                + "board,a,\"one\ntwo\nthree\",urgent\n" // lines 2-4
+                + "board,b,no priority,\n"               // line 5
+                + "\n"                                   // line 6
+                + "board,c,\"x\r\ny\",nope\r\n"           // lines 7-8
+                + "board,d,fine,regular\n"               // line 9
+                + "board,e,\"never closed,urgent\n";     // line 10
+        for (int chunkBytes : CHUNK_SIZES) {
+            IngestReport report = ingest(new MessageStore(), csv, IngestFormat.CSV, chunkBytes);
+
+            assertEquals(5, report.getRows(), "chunk " + chunkBytes);
+            assertEquals(2, report.getInserted(), "chunk " + chunkBytes);
+            assertEquals(List.of(5L, 7L, 10L), lines(report.getErrors()), "chunk " + chunkBytes);
+        }
+    }
+
+    @Test
+    void deeplyNestedJsonOnlyRejectsItsRow() throws IOException {
+        String ndjson = "{\"type\":\"board\",\"sender\":\"a\",\"content\":\"before\",\"priority\":\"urgent\"}\n"
+                + "[".repeat(100_000) + "\n"
+                + "{\"type\":\"board\",\"sender\":\"b\",\"content\":\"after\",\"priority\":\"regular\"}\n";
+        MessageStore store = new MessageStore();
+        IngestReport report = ingest(store, ndjson, IngestFormat.NDJSON, MessageIngester.DEFAULT_CHUNK_BYTES);
+
+        assertEquals(List.of("before", "after"), contents(store.getAll()));
+        assertEquals(List.of(2L), lines(report.getErrors()));
+        assertThrows(IllegalArgumentException.class, () -> Json.parse("{\"a\":".repeat(Json.MAX_DEPTH + 1)));
+        assertDoesNotThrow(() -> Json.parse("[".repeat(Json.MAX_DEPTH) + "]".repeat(Json.MAX_DEPTH)));
+    }
+
+    @Test
+    void csvFieldsFollowTheQuotingRules() {
+        assertEquals(List.of("a", "", "b,c", "d\"e", ""), MessageIngester.csvFields("a,,\"b,c\",\"d\"\"e\","));
+        assertEquals(List.of("x\ny"), MessageIngester.csvFields("\"x\ny\""));
+        assertThrows(IllegalArgumentException.class, () -> MessageIngester.csvFields("\"open"));
+        assertThrows(IllegalArgumentException.class, () -> MessageIngester.csvFields("\"a\"b,c"));
+    }
+
+    // ======= Helpers ======= //
+
+    /** Writes a file and ingests it with one parsing thread and a chunk size. */
+    private IngestReport ingest(MessageStore store, String text, IngestFormat format, int chunkBytes)
+            throws IOException {
+        Path file = Files.createTempFile(dir, "rows", format == IngestFormat.CSV ? ".csv" : ".ndjson");
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+        return new MessageIngester(store, 1, chunkBytes, 100).ingest(file, format, null);
+    }
+
+    /** Gets the contents of messages, in order. */
+    private static List<String> contents(List<Message> messages) {
+        ArrayList<String> contents = new ArrayList<>();
+        for (Message message : messages) {
+            contents.add(message.getContent());
+        }
+        return contents;
+    }
+
+    /** Gets the line numbers of rejected rows, in order. */
+    private static List<Long> lines(List<IngestError> errors) {
+        ArrayList<Long> lines = new ArrayList<>();
+        for (IngestError error : errors) {
+            lines.add(error.line());
+        }
+        return lines;
+    }
+}
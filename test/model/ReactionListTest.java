@@ -0,0 +1,185 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of ReactionList and of the reactions of BoardMessage, appended from
+ * several threads at once.
+ */
+class ReactionListTest {
+    /** Number of appending threads. */
+    private static final int THREADS = 8;
+    /** Number of reactions appended by every thread. */
+    private static final int PER_THREAD = 20_000;
+
+    @Test
+    void concurrentAppendsKeepEveryReactionOnce() throws Exception {
+        ReactionList list = new ReactionList();
+        ReactionMessage[][] reactions = newReactions();
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS + 1);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            // Readers only ever see a prefix without holes, never shrinking.
+            Future<?> reader = pool.submit(() -> {
+                int last = 0;
+                while (!done.get()) {
+                    List<ReactionMessage> snapshot = list.snapshot();
+                    assertTrue(snapshot.size() >= last, "published size went back");
+                    for (int i = last; i < snapshot.size(); i++) {
+                        assertNotNull(snapshot.get(i), "hole at " + i);
+                    }
+                    last = snapshot.size();
+                }
+                return null;
+            });
+            Future<?>[] writers = new Future<?>[THREADS];
+            for (int t = 0; t < THREADS; t++) {
+                ReactionMessage[] mine = reactions[t];
+                writers[t] = pool.submit(() -> {
+                    start.await();
+                    for (ReactionMessage reaction : mine) {
+                        list.add(reaction);
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            for (Future<?> writer : writers) {
+                writer.get(1, TimeUnit.MINUTES);
+            }
+            done.set(true);
+            reader.get(1, TimeUnit.MINUTES);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(THREADS * PER_THREAD, list.size());
+        Set<ReactionMessage> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        seen.addAll(list.snapshot());
+        assertEquals(THREADS * PER_THREAD, seen.size());
+        for (ReactionMessage[] mine : reactions) {
+            for (ReactionMessage reaction : mine) {
+                assertTrue(seen.contains(reaction));
+            }
+        }
+    }
+
+    @Test
+    void concurrentAppendsKeepTheOrderOfEveryThread() throws Exception {
+        ReactionList list = new ReactionList();
+        ReactionMessage[][] reactions = newReactions();
+        runWriters(reactions, list::add);
+
+        IdentityHashMap<ReactionMessage, Integer> position = new IdentityHashMap<>();
+        List<ReactionMessage> all = list.snapshot();
+        for (int i = 0; i < all.size(); i++) {
+            position.put(all.get(i), i);
+        }
+        for (ReactionMessage[] mine : reactions) {
+            for (int i = 1; i < mine.length; i++) {
+                assertTrue(position.get(mine[i - 1]) < position.get(mine[i]));
+            }
+        }
+    }
+
+    @Test
+    void snapshotDoesNotChangeWithLaterAppends() throws ReactionException {
+        ReactionList list = new ReactionList();
+        ReactionMessage first = new ReactionMessage("a", "first", ReactionMessage.ReactionType.LIKE);
+        list.add(first);
+        List<ReactionMessage> snapshot = list.snapshot();
+        list.add(new ReactionMessage("b", "second", ReactionMessage.ReactionType.LOVE));
+
+        assertEquals(List.of(first), snapshot);
+        assertEquals(2, list.size());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.add(first));
+    }
+
+    @Test
+    void pagesStopAtTheEnd() throws ReactionException {
+        ReactionList list = new ReactionList();
+        for (int i = 0; i < 100; i++) {
+            list.add(new ReactionMessage("a", "r" + i, ReactionMessage.ReactionType.LIKE));
+        }
+
+        assertEquals("r10", list.page(10, 5).get(0).getContent());
+        assertEquals(5, list.page(95, 50).size());
+        assertTrue(list.page(200, 5).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> list.page(-1, 5));
+    }
+
+    @Test
+    void nullReactionIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new ReactionList().add(null));
+    }
+
+    @Test
+    void boardCountsMatchItsReactionsUnderConcurrentAppends() throws Exception {
+        BoardMessage board = new BoardMessage("owner", "post", Priority.REGULAR);
+        ReactionMessage[][] reactions = newReactions();
+        runWriters(reactions, board::addReaction);
+
+        assertEquals(THREADS * PER_THREAD, board.getReactionsSize());
+        assertEquals(THREADS * PER_THREAD, board.getTotalReactions());
+        for (ReactionMessage.ReactionType type : ReactionMessage.ReactionType.values()) {
+            long expected = board.getReactionsView().stream().filter(r -> r.getReactionType() == type).count();
+            assertEquals(expected, board.getReactionCount(type), type.toString());
+        }
+    }
+
+    /** Appender of one reaction, as a list or a board. */
+    private interface Appender {
+        void add(ReactionMessage reaction) throws Exception;
+    }
+
+    /** Appends the reactions of every thread from its own thread, all starting together. */
+    private static void runWriters(ReactionMessage[][] reactions, Appender appender) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            Future<?>[] writers = new Future<?>[THREADS];
+            for (int t = 0; t < THREADS; t++) {
+                ReactionMessage[] mine = reactions[t];
+                writers[t] = pool.submit(() -> {
+                    start.await();
+                    for (ReactionMessage reaction : mine) {
+                        appender.add(reaction);
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            for (Future<?> writer : writers) {
+                writer.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Creates the distinct reactions of every thread, of every type in turn. */
+    private static ReactionMessage[][] newReactions() throws ReactionException {
+        ReactionMessage.ReactionType[] types = ReactionMessage.ReactionType.values();
+        ReactionMessage[][] reactions = new ReactionMessage[THREADS][PER_THREAD];
+        for (int t = 0; t < THREADS; t++) {
+            for (int i = 0; i < PER_THREAD; i++) {
+                reactions[t][i] = new ReactionMessage("user" + t, t + ":" + i, types[(t + i) % types.length]);
+            }
+        }
+        return reactions;
+    }
+}
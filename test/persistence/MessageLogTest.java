@@ -0,0 +1,244 @@
+package persistence;
+
+import model.BoardMessage;
+import model.EmailMessage;
+import model.File;
+import model.Message;
+import model.Priority;
+import model.ReactionException;
+import model.ReactionMessage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import store.MessageStore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of MessageLog replay: after a clean close, after a crash (the files
+ * as they are while the log is still open), with a torn or corrupted tail,
+ * and across snapshots.
+ */
+class MessageLogTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysEveryKindOfChange() throws Exception {
+        MessageStore store = new MessageStore();
+        try (MessageLog log = MessageLog.open(dir, store)) {
+            fill(store, 50);
+            EmailMessage email = new EmailMessage("mailer", "with files", "subject",
+                    new ArrayList<>(List.of(new File("a", "pdf"))));
+            store.add(email);
+            store.addAttachment(email.getId(), new File("b", "png"));
+            store.removeAttachment(email.getId(), new File("a", "pdf"));
+            store.remove(store.getAll().get(3).getId());
+        }
+
+        assertEquals(dump(store), dump(reopen(dir)));
+    }
+
+    @Test
+    void changesAreDurableOnceTheyReturn() throws Exception {
+        MessageStore store = new MessageStore();
+        Path crashed = dir.resolve("crashed");
+        try (MessageLog log = MessageLog.open(dir.resolve("live"), store)) {
+            fill(store, 200);
+            // What a crash right now would leave on disk.
+            copy(dir.resolve("live"), crashed);
+
+            assertEquals(dump(store), dump(reopen(crashed)));
+        }
+    }
+
+    @Test
+    void tornTailIsDroppedAndTruncated() throws Exception {
+        MessageStore store = new MessageStore();
+        try (MessageLog log = MessageLog.open(dir, store)) {
+            fill(store, 20);
+        }
+        Path segment = lastSegment(dir);
+        long size = Files.size(segment);
+        truncate(segment, size - 3); // the last record was half written
+
+        MessageStore replayed = new MessageStore();
+        try (MessageLog log = MessageLog.open(dir, replayed)) {
+            assertEquals(store.size() - 1, replayed.size());
+            assertTrue(Files.size(segment) < size - 3, "the torn record is cut off");
+            replayed.add(new BoardMessage("after", "written after the crash", Priority.URGENT));
+        }
+
+        MessageStore again = reopen(dir);
+        assertEquals(dump(replayed), dump(again));
+        assertEquals(store.size(), again.size());
+    }
+
+    @Test
+    void garbageTailIsDropped() throws Exception {
+        MessageStore store = new MessageStore();
+        try (MessageLog log = MessageLog.open(dir, store)) {
+            fill(store, 20);
+        }
+        // A record header claiming more bytes than the file holds, then noise.
+        append(lastSegment(dir), ByteBuffer.allocate(12).putInt(1 << 20).putInt(42).putInt(7).array());
+
+        assertEquals(dump(store), dump(reopen(dir)));
+    }
+
+    @Test
+    void corruptionBeforeTheTailFailsTheOpening() throws Exception {
+        MessageStore store = new MessageStore();
+        try (MessageLog log = MessageLog.open(dir, store, 256)) {
+            fill(store, 50);
+        }
+        List<Path> segments = segments(dir);
+        assertTrue(segments.size() > 2);
+        byte[] bytes = Files.readAllBytes(segments.get(0));
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(segments.get(0), bytes);
+
+        assertThrows(IOException.class, () -> MessageLog.open(dir, new MessageStore(), 256));
+    }
+
+    @Test
+    void recordsLargerThanASegmentAreReplayed() throws Exception {
+        MessageStore store = new MessageStore();
+        try (MessageLog log = MessageLog.open(dir, store, 64)) {
+            store.add(new BoardMessage("big", "x".repeat(10_000), Priority.SPECIAL));
+            fill(store, 5);
+        }
+
+        assertEquals(dump(store), dump(reopen(dir, 64)));
+    }
+
+    @Test
+    void replayedIdsAreNeverHandedOutAgain() throws Exception {
+        MessageStore store = new MessageStore();
+        try (MessageLog log = MessageLog.open(dir, store)) {
+            fill(store, 10);
+        }
+        long maxId = store.getAll().stream().mapToLong(Message::getId).max().orElseThrow();
+
+        reopen(dir);
+        assertTrue(new BoardMessage("next", "after replay", Priority.REGULAR).getId() > maxId);
+    }
+
+    @Test
+    void snapshotThenSegmentsReplay() throws Exception {
+        MessageStore store = new MessageStore();
+        try (MessageLog log = MessageLog.open(dir, store)) {
+            fill(store, 100);
+            log.snapshot();
+            fill(store, 30);
+            store.remove(store.getAll().get(0).getId());
+        }
+
+        assertEquals(dump(store), dump(reopen(dir)));
+    }
+
+    @Test
+    void compactIfLargerOnlySnapshotsLargeLogs() throws Exception {
+        MessageStore store = new MessageStore();
+        try (MessageLog log = MessageLog.open(dir, store)) {
+            fill(store, 100);
+            assertNull(log.compactIfLarger(1L << 30));
+            assertNotNull(log.compactIfLarger(0));
+        }
+
+        assertEquals(dump(store), dump(reopen(dir)));
+    }
+
+    // ======= Helpers ======= //
+
+    /** Adds boards with reactions, emails and reactions to a store. */
+    private static void fill(MessageStore store, int count) throws ReactionException {
+        for (int i = 0; i < count; i++) {
+            switch (i % 3) {
+                case 0 -> {
+                    BoardMessage board = new BoardMessage("board" + i % 7, "post " + i, Priority.values()[i % 3]);
+                    store.add(board);
+                    store.addReaction(board.getId(),
+                            new ReactionMessage("fan", "reaction " + i, ReactionMessage.ReactionType.LIKE));
+                }
+                case 1 -> store.add(new EmailMessage("mail" + i % 5, "mail " + i, "subject " + i));
+                default -> store.add(new ReactionMessage("r", "loose " + i, ReactionMessage.ReactionType.LOVE));
+            }
+        }
+    }
+
+    /** Opens a log into a new store and closes it, returning the store. */
+    private static MessageStore reopen(Path dir) throws IOException {
+        return reopen(dir, MessageLog.DEFAULT_SEGMENT_BYTES);
+    }
+
+    /** Opens a log with a segment size into a new store and closes it, returning the store. */
+    private static MessageStore reopen(Path dir, long segmentBytes) throws IOException {
+        MessageStore store = new MessageStore();
+        MessageLog.open(dir, store, segmentBytes).close();
+        return store;
+    }
+
+    /** Describes every message of a store, in store order. */
+    private static List<String> dump(MessageStore store) {
+        ArrayList<String> lines = new ArrayList<>();
+        for (Message message : store.getAll()) {
+            StringBuilder line = new StringBuilder()
+                    .append(message.getClass().getSimpleName()).append(' ').append(message.getId()).append(' ')
+                    .append(message.getSender()).append(' ').append(message.getContent()).append(' ')
+                    .append(message.getTimestamp());
+            if (message instanceof BoardMessage board) {
+                line.append(" reactions=").append(board.getReactionsView().size());
+            }
+            if (message instanceof EmailMessage email) {
+                line.append(" subject=").append(email.getSubject()).append(" files=").append(email.getAttachmentsView());
+            }
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+
+    /** Gets the segment files of a log directory, in order. */
+    private static List<Path> segments(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(".log")).sorted().toList();
+        }
+    }
+
+    /** Gets the last segment file of a log directory. */
+    private static Path lastSegment(Path dir) throws IOException {
+        List<Path> segments = segments(dir);
+        return segments.get(segments.size() - 1);
+    }
+
+    /** Copies the files of a directory into a new one. */
+    private static void copy(Path from, Path to) throws IOException {
+        Files.createDirectories(to);
+        try (Stream<Path> files = Files.list(from)) {
+            for (Path file : files.toList()) {
+                Files.copy(file, to.resolve(file.getFileName()));
+            }
+        }
+    }
+
+    /** Cuts a file to a size. */
+    private static void truncate(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    /** Appends bytes to a file. */
+    private static void append(Path file, byte[] bytes) throws IOException {
+        Files.write(file, bytes, StandardOpenOption.APPEND);
+    }
+}
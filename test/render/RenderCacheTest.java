@@ -0,0 +1,126 @@
+package render;
+
+import cache.CacheStats;
+import model.AttachmentException;
+import model.BoardMessage;
+import model.EmailMessage;
+import model.File;
+import model.Priority;
+import model.ReactionException;
+import model.ReactionMessage;
+import org.junit.jupiter.api.Test;
+import store.MessageStore;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that RenderCache, registered on a store, serves the text of toString
+ * until a reaction, an attachment change or a remove makes it stale, and
+ * counts its hits, misses and invalidations.
+ */
+class RenderCacheTest {
+    @Test
+    void repeatedRendersAreHits() {
+        MessageStore store = new MessageStore();
+        RenderCache cache = listening(store);
+        BoardMessage board = new BoardMessage("poster", "hello", Priority.REGULAR);
+        store.add(board);
+
+        assertEquals(board.toString(), cache.render(board));
+        assertEquals(board.toString(), cache.render(board));
+        assertEquals(board.toString(), cache.render(board));
+
+        assertCounts(cache, 2, 1, 0, 1);
+    }
+
+    @Test
+    void reactionRefreshesTheBoardText() throws ReactionException {
+        MessageStore store = new MessageStore();
+        RenderCache cache = listening(store);
+        BoardMessage board = new BoardMessage("poster", "hello", Priority.URGENT);
+        store.add(board);
+        String before = cache.render(board);
+
+        store.addReaction(board.getId(), new ReactionMessage("fan", "nice", ReactionMessage.ReactionType.LOVE));
+        String after = cache.render(board);
+
+        assertNotEquals(before, after);
+        assertEquals(board.toString(), after);
+        assertCounts(cache, 0, 2, 1, 1);
+        // The preview does not show reactions and stays as it was.
+        assertEquals("[Board] poster: hello", board.generatePreview());
+    }
+
+    @Test
+    void attachmentChangesRefreshTheEmailText() throws AttachmentException {
+        MessageStore store = new MessageStore();
+        RenderCache cache = listening(store);
+        EmailMessage email = new EmailMessage("mailer", "see attached", "report");
+        store.add(email);
+        String plain = cache.render(email);
+
+        store.addAttachment(email.getId(), new File("numbers", "xlsx"));
+        String attached = cache.render(email);
+        assertNotEquals(plain, attached);
+        assertTrue(attached.contains("numbers"), attached);
+        assertEquals(attached, cache.render(email));
+
+        store.removeAttachment(email.getId(), new File("numbers", "xlsx"));
+        String detached = cache.render(email);
+        assertEquals(plain, detached);
+        assertEquals(email.toString(), detached);
+
+        assertCounts(cache, 1, 3, 2, 1);
+    }
+
+    @Test
+    void removeDropsTheText() {
+        MessageStore store = new MessageStore();
+        RenderCache cache = listening(store);
+        BoardMessage kept = new BoardMessage("poster", "kept", Priority.REGULAR);
+        BoardMessage removed = new BoardMessage("poster", "removed", Priority.REGULAR);
+        store.add(kept);
+        store.add(removed);
+        cache.render(kept);
+        cache.render(removed);
+
+        store.remove(removed.getId());
+
+        assertCounts(cache, 0, 2, 1, 1);
+        assertEquals(kept.toString(), cache.render(kept));
+        assertCounts(cache, 1, 2, 1, 1);
+    }
+
+    @Test
+    void unrelatedChangesKeepTheText() throws ReactionException {
+        MessageStore store = new MessageStore();
+        RenderCache cache = listening(store);
+        BoardMessage first = new BoardMessage("poster", "first", Priority.REGULAR);
+        BoardMessage second = new BoardMessage("poster", "second", Priority.REGULAR);
+        store.add(first);
+        store.add(second);
+        cache.render(first);
+
+        store.addReaction(second.getId(), new ReactionMessage("fan", "ok", ReactionMessage.ReactionType.LIKE));
+        store.add(new BoardMessage("poster", "third", Priority.SPECIAL));
+
+        assertEquals(first.toString(), cache.render(first));
+        assertCounts(cache, 1, 1, 0, 1);
+    }
+
+    // ======= Helpers ======= //
+
+    private static RenderCache listening(MessageStore store) {
+        RenderCache cache = new RenderCache();
+        store.addListener(cache);
+        return cache;
+    }
+
+    private static void assertCounts(RenderCache cache, long hits, long misses, long invalidations, int entries) {
+        CacheStats stats = cache.getStats();
+        assertEquals(hits, stats.getHits(), "hits");
+        assertEquals(misses, stats.getMisses(), "misses");
+        assertEquals(invalidations, stats.getInvalidations(), "invalidations");
+        assertEquals(entries, stats.getEntries(), "entries");
+    }
+}
@@ -0,0 +1,70 @@
+package search;
+
+import model.BoardMessage;
+import model.Message;
+import model.Priority;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that CompiledQuery, with and without its multi-pattern matcher,
+ * agrees with Message.find and Message.findAll, on non-ASCII text too.
+ */
+class CompiledQueryTest {
+    /** Contents with case foldings that depend on context or change the length. */
+    private static final String[] CONTENTS = { "ΟΔΟΣ", "ΟΔΟΣ ΚΑΙ ΣΟΦΙΑ", "οδοσ", "İstanbul İŞ", "Straße STRASSE",
+            "Ǆemal ǅ ǆ", "plain ascii Text", "\uD801\uDC00 DESERET \uD801\uDC01", "IRMAK Irmak" };
+    /** Words to combine into queries. */
+    private static final String[] WORDS = { "ΟΔΟΣ", "οδος", "οδοσ", "σοφια", "İ", "i̇stanbul", "istanbul", "ş",
+            "straße", "STRASSE", "ǆ", "ǅemal", "text", "zz", "\uD801\uDC28", "deseret", "ırmak", "irmak" };
+
+    @Test
+    void agreesWithFindOnNonAsciiText() {
+        for (String content : CONTENTS) {
+            Message message = new BoardMessage("poster", content, Priority.REGULAR);
+            for (String word : WORDS) {
+                // One word (direct path) and the same word with fillers (matcher path).
+                check(message, List.of(word));
+                check(message, List.of(word, "zz1", "zz2", "zz3"));
+            }
+            for (int i = 0; i + 4 <= WORDS.length; i++) {
+                check(message, List.of(WORDS).subList(i, i + 4));
+                check(message, List.of(WORDS).subList(i, i + 2));
+            }
+        }
+    }
+
+    @Test
+    void finalSigmaMatchesWithManyWords() {
+        Message message = new BoardMessage("poster", "ΟΔΟΣ", Priority.REGULAR);
+        List<String> words = List.of("ΟΔΟΣ", "zz1", "zz2", "zz3");
+
+        assertTrue(message.find(new ArrayList<>(words)));
+        assertTrue(CompiledQuery.anyOf(words).matches(message));
+        assertTrue(message.find(MultiPatternMatcher.compile(words)));
+    }
+
+    @Test
+    void agreesWithFindInTheTurkishLocale() {
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+        try {
+            agreesWithFindOnNonAsciiText();
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    /** Checks one query in both modes against Message.find and findAll. */
+    private static void check(Message message, List<String> words) {
+        ArrayList<String> list = new ArrayList<>(words);
+        String context = words + " in \"" + message.getContent() + "\"";
+        assertEquals(message.find(list), CompiledQuery.anyOf(words).matches(message), "any of " + context);
+        assertEquals(message.findAll(list), CompiledQuery.allOf(words).matches(message), "all of " + context);
+    }
+}
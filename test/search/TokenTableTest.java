@@ -0,0 +1,53 @@
+package search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of TokenTable against a HashMap, through growth, removals that shift
+ * probe runs back, and shrinking.
+ */
+class TokenTableTest {
+    @Test
+    void behavesLikeAMap() {
+        Random random = new Random(7);
+        TokenTable table = new TokenTable();
+        HashMap<String, Integer> expected = new HashMap<>();
+        for (int step = 0; step < 400_000; step++) {
+            // Many distinct tokens first (growth), then few (removals and shrinking).
+            String token = "t" + random.nextInt(step < 200_000 ? 50_000 : 500);
+            switch (random.nextInt(3)) {
+                case 0 -> {
+                    int id = random.nextInt(1 << 20);
+                    table.put(token, id);
+                    expected.put(token, id);
+                }
+                case 1 -> {
+                    table.remove(token);
+                    expected.remove(token);
+                }
+                default -> assertEquals(expected.getOrDefault(token, -1), table.get(token), token);
+            }
+            assertEquals(expected.size(), table.size());
+        }
+        for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), table.get(entry.getKey()));
+        }
+    }
+
+    @Test
+    void missingTokensAreNotFound() {
+        TokenTable table = new TokenTable();
+        assertEquals(-1, table.get("absent"));
+        table.put("present", 0);
+        table.remove("absent");
+
+        assertEquals(0, table.get("present"));
+        assertEquals(1, table.size());
+    }
+}
@@ -0,0 +1,221 @@
+package server;
+
+import json.Json;
+import model.BoardMessage;
+import model.Message;
+import model.Priority;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import store.MessageStore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of MessageServer over a loopback socket: routing and status codes,
+ * limits, chunked responses on kept-alive connections, and streamed responses
+ * failing after their headers.
+ */
+class MessageServerTest {
+    private MessageStore store;
+    private MessageServer server;
+    private HttpClient client;
+
+    @BeforeEach
+    void start() throws IOException {
+        store = new MessageStore();
+        server = MessageServer.start(store, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2);
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5)).build();
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+    }
+
+    @Test
+    void messagesAreAddedReadAndRemoved() throws Exception {
+        HttpResponse<String> added = send("POST", "/messages",
+                "{\"type\":\"board\",\"sender\":\"poster\",\"content\":\"hello there\",\"priority\":\"URGENT\"}");
+        assertEquals(201, added.statusCode());
+        long id = ((Number) Json.parseObject(added.body()).get("id")).longValue();
+        assertNotNull(store.get(id));
+
+        HttpResponse<String> read = send("GET", "/messages/" + id, null);
+        assertEquals(200, read.statusCode());
+        assertEquals("hello there", Json.parseObject(read.body()).get("content"));
+        assertEquals(200, send("GET", "/messages/" + id + "/preview", null).statusCode());
+
+        assertEquals(204, send("DELETE", "/messages/" + id, null).statusCode());
+        assertNull(store.get(id));
+        assertEquals(404, send("DELETE", "/messages/" + id, null).statusCode());
+        assertEquals(404, send("GET", "/messages/" + id, null).statusCode());
+    }
+
+    @Test
+    void errorsGetTheirStatusCodes() throws Exception {
+        assertEquals(404, send("GET", "/nowhere", null).statusCode());
+        assertEquals(404, send("GET", "/messages/abc", null).statusCode());
+        assertEquals(404, send("GET", "/messages/1/other", null).statusCode());
+        assertEquals(405, send("PUT", "/messages", "{}").statusCode());
+        assertEquals(405, send("POST", "/previews", "{}").statusCode());
+        assertEquals(400, send("POST", "/messages", "{not json").statusCode());
+        assertEquals(400, send("POST", "/messages", "{\"type\":\"fax\"}").statusCode());
+        assertEquals(400, send("GET", "/search", null).statusCode());
+        assertEquals(400, send("GET", "/previews?limit=-1", null).statusCode());
+        assertEquals(400, send("GET", "/messages?limit=x", null).statusCode());
+
+        HttpResponse<String> error = send("GET", "/nowhere", null);
+        assertTrue(Json.parseObject(error.body()).containsKey("error"));
+    }
+
+    @Test
+    void listsAreLimitedToTheFirstMessages() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            store.add(new BoardMessage("poster" + (i % 2), "board number " + i, Priority.REGULAR));
+        }
+        List<Message> all = store.getAll();
+
+        assertEquals(ids(all.subList(0, 2)), ids(array(send("GET", "/previews?limit=2", null))));
+        assertEquals(ids(all), ids(array(send("GET", "/previews", null))));
+        assertEquals(ids(all.subList(0, 3)), ids(array(send("GET", "/messages?limit=3", null))));
+        assertEquals(ids(all), ids(array(send("GET", "/messages?limit=50", null))));
+        assertEquals(List.of(), ids(array(send("GET", "/messages?limit=0", null))));
+        assertEquals(ids(store.getBySender("poster1")), ids(array(send("GET", "/messages?sender=poster1", null))));
+        assertEquals(2, array(send("GET", "/search?q=number&limit=2", null)).size());
+    }
+
+    @Test
+    void chunkedResponsesKeepTheConnectionAlive() throws Exception {
+        store.add(new BoardMessage("poster", "first", Priority.REGULAR));
+        store.add(new BoardMessage("poster", "second", Priority.SPECIAL));
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+            for (String path : List.of("/previews", "/messages", "/messages/" + store.getAll().get(0).getId())) {
+                out.write(("GET " + path + " HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+                String head = readHead(in);
+                assertTrue(head.startsWith("HTTP/1.1 200"), head);
+                if (path.equals("/messages") || path.equals("/previews")) {
+                    assertTrue(head.toLowerCase().contains("transfer-encoding: chunked"), head);
+                    assertTrue(readChunked(in).startsWith("["));
+                } else {
+                    int length = Integer.parseInt(header(head, "content-length"));
+                    assertEquals(length, in.readNBytes(length).length);
+                }
+            }
+        }
+    }
+
+    @Test
+    void failingStreamIsAbortedNotCompleted() throws Exception {
+        store.add(new BoardMessage("poster", "fine", Priority.REGULAR));
+        store.add(new Message("poster", "broken") {
+            @Override
+            public void appendPreview(StringBuilder sb) {
+                throw new IllegalStateException("cannot render");
+            }
+
+            @Override
+            public String getMessageType() {
+                return "Broken";
+            }
+        });
+
+        assertThrows(IOException.class, () -> send("GET", "/previews", null));
+        // The server keeps answering.
+        assertEquals(200, send("GET", "/messages", null).statusCode());
+    }
+
+    // ======= Helpers ======= //
+
+    private HttpResponse<String> send(String method, String path, String body) throws Exception {
+        HttpRequest.BodyPublisher publisher = (body == null)
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofString(body);
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path))
+                .timeout(Duration.ofSeconds(5)).method(method, publisher).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> array(HttpResponse<String> response) {
+        assertEquals(200, response.statusCode(), response.body());
+        return (List<Map<String, Object>>) Json.parse(response.body());
+    }
+
+    private static List<Long> ids(List<?> items) {
+        return items.stream()
+                .map(item -> (item instanceof Message message)
+                        ? message.getId()
+                        : ((Number) ((Map<?, ?>) item).get("id")).longValue())
+                .toList();
+    }
+
+    /** Reads a response head, up to the empty line. */
+    private static String readHead(InputStream in) throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        while (!head.toString(StandardCharsets.US_ASCII).endsWith("\r\n\r\n")) {
+            int b = in.read();
+            assertNotEquals(-1, b, "connection closed");
+            head.write(b);
+        }
+        return head.toString(StandardCharsets.US_ASCII);
+    }
+
+    private static String header(String head, String name) {
+        for (String line : head.split("\r\n")) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase(name)) {
+                return line.substring(colon + 1).trim();
+            }
+        }
+        return fail("No " + name + " header in " + head);
+    }
+
+    /** Reads a chunked body up to its last, empty chunk. */
+    private static String readChunked(InputStream in) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        while (true) {
+            String size = readLine(in);
+            int length = Integer.parseInt(size.trim(), 16);
+            body.write(in.readNBytes(length));
+            assertEquals("", readLine(in));
+            if (length == 0) {
+                return body.toString(StandardCharsets.UTF_8);
+            }
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            assertNotEquals(-1, b, "connection closed");
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return line.toString(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,143 @@
+package store;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of Bitmap against java.util.BitSet on random sparse, dense and mixed
+ * sets, including containers switching between arrays and bit sets.
+ */
+class BitmapTest {
+    /** Values span several containers of 65536. */
+    private static final int RANGE = 4 * 65536;
+
+    @Test
+    void singleValueOperationsAgreeWithBitSet() {
+        Random random = new Random(1);
+        Bitmap bitmap = new Bitmap();
+        BitSet expected = new BitSet();
+        for (int step = 0; step < 200_000; step++) {
+            // Mostly one dense container, so it fills past the array limit and empties again.
+            int value = (random.nextInt(4) == 0) ? random.nextInt(RANGE) : 65536 + random.nextInt(12_000);
+            if (step % 50_000 < 30_000) {
+                bitmap.add(value);
+                expected.set(value);
+            } else {
+                bitmap.remove(value);
+                expected.clear(value);
+            }
+            assertEquals(expected.get(value), bitmap.contains(value), "value " + value);
+            if (step % 5_000 == 0) {
+                assertHolds(expected, bitmap);
+            }
+        }
+        assertHolds(expected, bitmap);
+    }
+
+    @Test
+    void containersSwitchBetweenArraysAndBitSets() {
+        Bitmap bitmap = new Bitmap();
+        BitSet expected = new BitSet();
+        for (int value = 0; value < 10_000; value++) {
+            bitmap.add(value * 3);
+            expected.set(value * 3);
+        }
+        assertHolds(expected, bitmap);
+        for (int value = 0; value < 9_000; value++) {
+            bitmap.remove(value * 3);
+            expected.clear(value * 3);
+        }
+        assertHolds(expected, bitmap);
+        for (int value = 0; value < 10_000; value++) {
+            bitmap.remove(value * 3);
+        }
+        assertTrue(bitmap.isEmpty());
+        assertEquals(0, bitmap.getCardinality());
+    }
+
+    @Test
+    void booleanOperationsAgreeWithBitSet() {
+        Random random = new Random(2);
+        double[] densities = { 0.0005, 0.01, 0.2, 0.9 };
+        for (int round = 0; round < 40; round++) {
+            BitSet a = randomSet(random, densities[random.nextInt(densities.length)]);
+            BitSet b = randomSet(random, densities[random.nextInt(densities.length)]);
+            Bitmap left = bitmap(a);
+            Bitmap right = bitmap(b);
+
+            BitSet and = (BitSet) a.clone();
+            and.and(b);
+            BitSet or = (BitSet) a.clone();
+            or.or(b);
+            BitSet andNot = (BitSet) a.clone();
+            andNot.andNot(b);
+
+            assertHolds(and, left.and(right));
+            assertHolds(or, left.or(right));
+            assertHolds(andNot, left.andNot(right));
+            BitSet reverse = (BitSet) b.clone();
+            reverse.andNot(a);
+            assertHolds(reverse, right.andNot(left));
+            // The operands are left as they were.
+            assertHolds(a, left);
+            assertHolds(b, right);
+        }
+    }
+
+    @Test
+    void remapKeepsTheOrderOfTheValues() {
+        Random random = new Random(3);
+        BitSet set = randomSet(random, 0.05);
+        int[] mapping = new int[RANGE];
+        BitSet expected = new BitSet();
+        for (int value = 0, n = 0; value < RANGE; value++) {
+            if (random.nextBoolean()) {
+                mapping[value] = n;
+                if (set.get(value)) {
+                    expected.set(n);
+                }
+                n++;
+            } else if (set.get(value)) {
+                set.clear(value);
+            }
+        }
+
+        assertHolds(expected, bitmap(set).remap(mapping));
+    }
+
+    // ======= Helpers ======= //
+
+    private static BitSet randomSet(Random random, double density) {
+        BitSet set = new BitSet(RANGE);
+        for (int value = 0; value < RANGE; value++) {
+            if (random.nextDouble() < density) {
+                set.set(value);
+            }
+        }
+        return set;
+    }
+
+    private static Bitmap bitmap(BitSet set) {
+        Bitmap bitmap = new Bitmap();
+        set.stream().forEach(bitmap::add);
+        return bitmap;
+    }
+
+    /** Checks that a bitmap holds exactly the values of a bit set, in order. */
+    private static void assertHolds(BitSet expected, Bitmap actual) {
+        BitSet seen = new BitSet();
+        int[] last = { -1 };
+        actual.forEach(value -> {
+            assertTrue(value > last[0], "out of order: " + value);
+            last[0] = value;
+            seen.set(value);
+        });
+        assertEquals(expected, seen);
+        assertEquals(expected.cardinality(), actual.getCardinality());
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+    }
+}
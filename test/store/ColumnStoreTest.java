@@ -0,0 +1,191 @@
+package store;
+
+import model.BoardMessage;
+import model.EmailMessage;
+import model.File;
+import model.Message;
+import model.Priority;
+import model.ReactionException;
+import model.ReactionMessage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of ColumnStore and its off-heap parts: messages of every type come
+ * back as they went in, replacing and removing rows, time range order, the
+ * growth of the ID table, and the scratch files of a mapped store.
+ */
+class ColumnStoreTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void everyMessageTypeRoundTrips() throws ReactionException {
+        BoardMessage board = new BoardMessage(1, "poster", "héllo ✓", 100, Priority.URGENT, new ArrayList<>(List.of(
+                new ReactionMessage(2, "fan", "first", 101, ReactionMessage.ReactionType.LIKE),
+                new ReactionMessage(3, "critic", "second", 102, ReactionMessage.ReactionType.DISLIKE))));
+        EmailMessage email = new EmailMessage(4, "mailer", "body", "subject", 103, new ArrayList<>(List.of(
+                new File("report", "pdf"), new File("photo", "png"))));
+        EmailMessage bare = new EmailMessage(5, "mailer", "no files", "empty", 104, new ArrayList<>());
+        ReactionMessage reaction = new ReactionMessage(6, "loner", "loose", 105, ReactionMessage.ReactionType.LOVE);
+
+        try (ColumnStore store = new ColumnStore()) {
+            store.addAll(List.of(board, email, bare, reaction));
+            ReactionMessage late = new ReactionMessage(7, "late", "third", 106, ReactionMessage.ReactionType.LAUGH);
+            assertTrue(store.addReaction(1, late));
+            assertFalse(store.addReaction(4, late), "only boards take reactions");
+            board.addReaction(late);
+
+            for (Message message : List.of(board, email, bare, reaction)) {
+                assertEquals(describe(message), describe(store.get(message.getId())));
+            }
+            assertNull(store.get(2), "reactions of a board are not messages of their own");
+            assertEquals(4, store.size());
+            assertEquals("poster", store.getSender(1));
+        }
+    }
+
+    @Test
+    void storedMessagesAreDetachedCopies() {
+        BoardMessage board = new BoardMessage("poster", "original", Priority.REGULAR);
+        try (ColumnStore store = new ColumnStore()) {
+            store.add(board);
+            board.setPriority(Priority.URGENT);
+            Message copy = store.get(board.getId());
+
+            assertEquals(Priority.REGULAR, ((BoardMessage) copy).getPriority());
+            assertNotSame(copy, store.get(board.getId()));
+        }
+    }
+
+    @Test
+    void replaceAndRemoveKeepTheSize() {
+        try (ColumnStore store = new ColumnStore()) {
+            store.add(new BoardMessage(10, "a", "old", 1, Priority.REGULAR, new ArrayList<>()));
+            store.add(new BoardMessage(11, "b", "other", 2, Priority.SPECIAL, new ArrayList<>()));
+            store.add(new BoardMessage(10, "a", "new", 3, Priority.URGENT, new ArrayList<>()));
+
+            assertEquals(2, store.size());
+            assertEquals("new", store.get(10).getContent());
+            assertEquals(List.of("other", "new"), contents(store.getPage(0, 10)));
+            assertEquals(1L, store.countByPriority().get(Priority.URGENT));
+            assertEquals(0L, store.countByPriority().get(Priority.REGULAR), "the replaced row is not counted");
+
+            assertEquals("new", store.remove(10).getContent());
+            assertNull(store.remove(10));
+            assertFalse(store.contains(10));
+            assertEquals(1, store.size());
+            assertEquals(List.of("other"), contents(store.getPage(0, 10)));
+        }
+    }
+
+    @Test
+    void getBetweenIsInTimeOrder() {
+        try (ColumnStore store = new ColumnStore()) {
+            long[] times = { 50, 10, 30, 10, 70, 30 };
+            for (int i = 0; i < times.length; i++) {
+                store.add(new BoardMessage(100 + i, "s", "m" + i, times[i], Priority.REGULAR, new ArrayList<>()));
+            }
+            store.remove(105);
+
+            assertEquals(List.of("m1", "m3", "m2", "m0"), contents(store.getBetween(10, 50)));
+            assertTrue(store.getBetween(71, 1000).isEmpty());
+            assertThrows(IllegalArgumentException.class, () -> store.getBetween(2, 1));
+        }
+    }
+
+    @Test
+    void idTableGrowsPastItsInitialSize() {
+        LongIntTable table = new LongIntTable("ids", null);
+        long initialBytes = table.getOffHeapBytes();
+        for (int i = 0; i < 10_000; i++) {
+            table.put(1_000_000L * i, i);
+        }
+        table.put(0, 42);
+
+        assertTrue(table.getOffHeapBytes() > initialBytes);
+        assertEquals(42, table.get(0));
+        for (int i = 1; i < 10_000; i++) {
+            assertEquals(i, table.get(1_000_000L * i), "key " + i);
+        }
+        assertEquals(-1, table.get(7));
+        table.release();
+
+        try (ColumnStore store = new ColumnStore()) {
+            EnumMap<Priority, Long> expected = new EnumMap<>(Priority.class);
+            for (int i = 0; i < 5000; i++) {
+                Priority priority = Priority.values()[i % 3];
+                store.add(new BoardMessage(i + 1, "s", "m" + i, i, priority, new ArrayList<>()));
+                expected.merge(priority, 1L, Long::sum);
+            }
+            assertEquals(5000, store.size());
+            assertEquals("m2049", store.get(2050).getContent());
+            assertEquals(expected, store.countByPriority());
+        }
+    }
+
+    @Test
+    void mappedStoreDeletesItsFilesOnClose() throws IOException {
+        Path columns = dir.resolve("columns");
+        ColumnStore store = ColumnStore.mapped(columns);
+        for (int i = 0; i < 5000; i++) {
+            store.add(new EmailMessage(i + 1, "s", "m" + i, "subject", i, new ArrayList<>()));
+        }
+        assertEquals("m4999", store.get(5000).getContent());
+        assertFalse(files(columns).isEmpty());
+
+        store.close();
+        assertEquals(List.of(), files(columns));
+        assertThrows(IllegalStateException.class, () -> store.get(1));
+        assertThrows(IllegalStateException.class, store::size);
+        assertThrows(IllegalStateException.class, store::isEmpty);
+        store.close(); // closing twice is harmless
+    }
+
+    // ======= Helpers ======= //
+
+    /** Describes a message with every field, reactions and attachments included. */
+    private static String describe(Message message) {
+        StringBuilder text = new StringBuilder()
+                .append(message.getClass().getSimpleName()).append(' ').append(message.getId()).append(' ')
+                .append(message.getSender()).append(' ').append(message.getContent()).append(' ')
+                .append(message.getTimestamp());
+        if (message instanceof BoardMessage board) {
+            text.append(' ').append(board.getPriority());
+            for (ReactionMessage reaction : board.getReactionsView()) {
+                text.append(" [").append(describe(reaction)).append(']');
+            }
+        } else if (message instanceof EmailMessage email) {
+            text.append(' ').append(email.getSubject()).append(' ').append(email.getAttachmentsView());
+        } else {
+            text.append(' ').append(((ReactionMessage) message).getReactionType());
+        }
+        return text.toString();
+    }
+
+    /** Gets the contents of messages, in order. */
+    private static List<String> contents(List<Message> messages) {
+        ArrayList<String> contents = new ArrayList<>();
+        for (Message message : messages) {
+            contents.add(message.getContent());
+        }
+        return contents;
+    }
+
+    /** Lists the files of a directory. */
+    private static List<Path> files(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.toList();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package store;
+
+import model.BoardMessage;
+import model.EmailMessage;
+import model.File;
+import model.IDigital;
+import model.Message;
+import model.Priority;
+import model.ReactionException;
+import model.ReactionMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that MessageStore.filter and MessageStore.count agree with a scan of
+ * the stored messages through adds, replacements, attachment changes and
+ * enough removes to renumber the bitmap index.
+ */
+class MessageFilterTest {
+    private static final ReactionMessage.ReactionType[] REACTION_TYPES = ReactionMessage.ReactionType.values();
+
+    /** A filter and the predicate it must match. */
+    private record Case(MessageFilter filter, Predicate<Message> expected) {
+    }
+
+    @Test
+    void filtersAgreeWithAScanThroughChanges() throws Exception {
+        Random random = new Random(4);
+        MessageStore store = new MessageStore();
+        for (int step = 0; step < 6_000; step++) {
+            int action = random.nextInt(10);
+            if (action < 4 && store.size() > 0) {
+                // Removes keep up with adds, so most slots die and get renumbered.
+                ArrayList<Message> all = store.getAll();
+                store.remove(all.get(random.nextInt(all.size())).getId());
+            } else if (action == 4 && store.size() > 0) {
+                ArrayList<Message> all = store.getAll();
+                store.add(replacement(random, all.get(random.nextInt(all.size()))));
+            } else if (action == 5 && store.size() > 0) {
+                ArrayList<Message> all = store.getAll();
+                store.addAttachment(all.get(random.nextInt(all.size())).getId(), new File("doc", "pdf"));
+            } else {
+                store.add(message(random));
+            }
+            if (step % 20 == 0) {
+                Case check = randomCase(random, 3);
+                ArrayList<Message> expected = scan(store, check.expected());
+                assertEquals(expected, store.filter(check.filter()), check.filter().toString());
+                assertEquals(expected.size(), store.count(check.filter()), check.filter().toString());
+            }
+        }
+    }
+
+    @Test
+    void notMatchesOnlyStoredMessages() throws Exception {
+        MessageStore store = new MessageStore();
+        ArrayList<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3_000; i++) {
+            BoardMessage board = new BoardMessage("poster", "board " + i, Priority.REGULAR);
+            store.add(board);
+            ids.add(board.getId());
+        }
+        for (int i = 0; i < 2_900; i++) {
+            store.remove(ids.get(i));
+        }
+
+        MessageFilter notUrgent = MessageFilter.priority(Priority.URGENT).not();
+        assertEquals(100, store.count(notUrgent));
+        assertEquals(store.getAll(), store.filter(notUrgent));
+        assertEquals(100, store.count(MessageFilter.type("Board").and(notUrgent)));
+        assertEquals(0, store.count(MessageFilter.all().not()));
+    }
+
+    // ======= Helpers ======= //
+
+    private static Message message(Random random) throws ReactionException {
+        String sender = "sender" + random.nextInt(5);
+        switch (random.nextInt(3)) {
+            case 0:
+                return new BoardMessage(sender, "board", Priority.values()[random.nextInt(Priority.values().length)]);
+            case 1:
+                EmailMessage email = new EmailMessage(sender, "email", "subject");
+                if (random.nextBoolean()) {
+                    email.addAttachment(new File("report", "txt"));
+                }
+                return email;
+            default:
+                return new ReactionMessage(sender, "reaction", REACTION_TYPES[random.nextInt(REACTION_TYPES.length)]);
+        }
+    }
+
+    /** A message of another kind with the same ID. */
+    private static Message replacement(Random random, Message old) throws ReactionException {
+        long time = old.getTimestamp();
+        if (random.nextBoolean()) {
+            return new BoardMessage(old.getId(), old.getSender(), "replaced", time, Priority.URGENT, new ArrayList<>());
+        }
+        return new ReactionMessage(old.getId(), old.getSender(), "replaced", time, ReactionMessage.ReactionType.LOVE);
+    }
+
+    /** A random filter of at most the given depth and its predicate. */
+    private static Case randomCase(Random random, int depth) {
+        int kind = random.nextInt(depth == 0 ? 6 : 9);
+        switch (kind) {
+            case 0:
+                return new Case(MessageFilter.all(), m -> true);
+            case 1: {
+                String type = new String[] { "Board", "Email", "Reaction", "Other" }[random.nextInt(4)];
+                return new Case(MessageFilter.type(type), m -> m.getMessageType().equals(type));
+            }
+            case 2:
+                return new Case(MessageFilter.digital(), m -> m instanceof IDigital);
+            case 3: {
+                Priority priority = Priority.values()[random.nextInt(Priority.values().length)];
+                return new Case(MessageFilter.priority(priority),
+                        m -> m instanceof BoardMessage board && board.getPriority() == priority);
+            }
+            case 4: {
+                ReactionMessage.ReactionType type = REACTION_TYPES[random.nextInt(REACTION_TYPES.length)];
+                return new Case(MessageFilter.reaction(type),
+                        m -> m instanceof ReactionMessage reaction && reaction.getReactionType() == type);
+            }
+            case 5:
+                return new Case(MessageFilter.withAttachments(),
+                        m -> m instanceof EmailMessage email && !email.getAttachmentsView().isEmpty());
+            case 6: {
+                Case left = randomCase(random, depth - 1);
+                Case right = randomCase(random, depth - 1);
+                return new Case(left.filter().and(right.filter()), left.expected().and(right.expected()));
+            }
+            case 7: {
+                Case left = randomCase(random, depth - 1);
+                Case right = randomCase(random, depth - 1);
+                return new Case(left.filter().or(right.filter()), left.expected().or(right.expected()));
+            }
+            default: {
+                Case operand = randomCase(random, depth - 1);
+                return new Case(operand.filter().not(), operand.expected().negate());
+            }
+        }
+    }
+
+    private static ArrayList<Message> scan(MessageStore store, Predicate<Message> predicate) {
+        ArrayList<Message> result = new ArrayList<>();
+        for (Message message : store.getAll()) {
+            if (predicate.test(message)) {
+                result.add(message);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,83 @@
+package store;
+
+import model.BoardMessage;
+import model.Message;
+import model.Priority;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that cached searches of MessageStore see later changes: every cached
+ * result a change affects is dropped, so searches always agree with
+ * Message.find and Message.findAll on the stored messages.
+ */
+class SearchCacheTest {
+    /** Query words: plain tokens, fragments, punctuation and non-ASCII text. */
+    private static final String[] WORDS = { "ΟΔΟΣ", "οδος", "road", "oa", "ro", "a-b", "b c", "!", "İ", "x1", "zz" };
+
+    @Test
+    void cachedQuerySeesALaterMatchingAdd() {
+        MessageStore store = new MessageStore();
+        List<String> many = List.of("ΟΔΟΣ", "zz1", "zz2", "zz3");
+        List<String> few = List.of("ΟΔΟΣ", "zz1", "zz2");
+        assertEquals(0, store.searchAny(many).size());
+        assertEquals(0, store.searchAny(few).size());
+
+        store.add(new BoardMessage("poster", "ΟΔΟΣ", Priority.REGULAR));
+
+        assertEquals(1, store.searchAny(many).size());
+        assertEquals(1, store.searchAny(few).size());
+    }
+
+    @Test
+    void cachedSearchesAgreeWithFindThroughChanges() {
+        Random random = new Random(3);
+        MessageStore store = new MessageStore();
+        ArrayList<List<String>> queries = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            ArrayList<String> words = new ArrayList<>();
+            int count = 1 + random.nextInt(5);
+            for (int w = 0; w < count; w++) {
+                words.add(WORDS[random.nextInt(WORDS.length)]);
+            }
+            queries.add(words);
+        }
+        for (int step = 0; step < 300; step++) {
+            if (step % 5 == 4 && !store.isEmpty()) {
+                ArrayList<Message> all = store.getAll();
+                store.remove(all.get(random.nextInt(all.size())).getId());
+            } else {
+                store.add(new BoardMessage("poster", randomContent(random), Priority.REGULAR));
+            }
+            List<String> words = queries.get(random.nextInt(queries.size()));
+            assertEquals(expected(store, words, false), store.searchAny(words), "any of " + words);
+            assertEquals(expected(store, words, true), store.searchAll(words), "all of " + words);
+        }
+        assertTrue(store.getSearchCacheStats().getHits() > 0);
+    }
+
+    /** Builds a content from query words and noise. */
+    private static String randomContent(Random random) {
+        StringBuilder content = new StringBuilder("msg");
+        for (int i = 0; i < 3; i++) {
+            content.append(random.nextBoolean() ? " " : "").append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return content.toString();
+    }
+
+    /** Finds the matching messages by scanning the store. */
+    private static ArrayList<Message> expected(MessageStore store, List<String> words, boolean all) {
+        ArrayList<Message> found = new ArrayList<>();
+        for (Message message : store.getAll()) {
+            if (all ? message.findAll(new ArrayList<>(words)) : message.find(new ArrayList<>(words))) {
+                found.add(message);
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,126 @@
+package store;
+
+import model.BoardMessage;
+import model.EmailMessage;
+import model.Message;
+import model.Priority;
+import model.ReactionException;
+import model.ReactionMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the sender queries of MessageStore against a scan of the stored
+ * messages sorted by send time, through adds in random time and ID order,
+ * replacements and removes, and the postings of SenderIndex.
+ */
+class SenderIndexTest {
+    private static final String[] SENDERS = { "alice", "bob", "carol", "dave" };
+    private static final String[] TYPES = { "Board", "Email", "Reaction", "Other" };
+    /** Send times are drawn from a small range, so many messages share one. */
+    private static final long TIMES = 200;
+
+    @Test
+    void senderQueriesAgreeWithASortedScan() throws ReactionException {
+        Random random = new Random(5);
+        MessageStore store = new MessageStore();
+        ArrayList<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= 3_000; id++) {
+            ids.add(1_000_000 + id);
+        }
+        Collections.shuffle(ids, random);
+        int nextId = 0;
+        for (int step = 0; step < 3_000; step++) {
+            int action = random.nextInt(10);
+            if (action < 3 && !store.isEmpty()) {
+                ArrayList<Message> all = store.getAll();
+                store.remove(all.get(random.nextInt(all.size())).getId());
+            } else if (action == 3 && !store.isEmpty()) {
+                ArrayList<Message> all = store.getAll();
+                store.add(message(random, all.get(random.nextInt(all.size())).getId()));
+            } else {
+                store.add(message(random, ids.get(nextId++)));
+            }
+            if (step % 10 == 0) {
+                check(random, store);
+            }
+        }
+    }
+
+    @Test
+    void unknownSendersAndTypesFindNothing() {
+        MessageStore store = new MessageStore();
+        store.add(new BoardMessage("alice", "hello", Priority.REGULAR));
+
+        assertEquals(List.of(), store.getBySender("nobody"));
+        assertEquals(List.of(), store.getBySender("alice", "Other"));
+        assertEquals(List.of(), store.getBySender("alice", null));
+        assertEquals(1, store.getBySender("  alice ").size());
+        assertThrows(IllegalArgumentException.class, () -> store.getBySender("alice", 2, 1));
+    }
+
+    @Test
+    void indexingAMessageTwiceKeepsOnePosting() {
+        SenderIndex index = new SenderIndex();
+        BoardMessage late = new BoardMessage(2_000_002, "erin", "late", 50, Priority.REGULAR, new ArrayList<>());
+        BoardMessage early = new BoardMessage(2_000_001, "erin", "early", 10, Priority.REGULAR, new ArrayList<>());
+        index.add(late);
+        index.add(early);
+        index.add(late);
+        index.add(early);
+
+        assertArrayEquals(new long[] { early.getId(), late.getId() },
+                index.find(early.getSenderCode(), null, Long.MIN_VALUE, Long.MAX_VALUE));
+        index.remove(early);
+        assertArrayEquals(new long[] { late.getId() },
+                index.find(late.getSenderCode(), "Board", Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    // ======= Helpers ======= //
+
+    private static void check(Random random, MessageStore store) {
+        String sender = SENDERS[random.nextInt(SENDERS.length)];
+        String type = TYPES[random.nextInt(TYPES.length)];
+        long from = random.nextLong(TIMES + 20) - 10;
+        long to = from + random.nextLong(TIMES / 2);
+
+        assertEquals(scan(store, m -> m.getSender().equals(sender)), store.getBySender(sender), sender);
+        assertEquals(scan(store, m -> m.getSender().equals(sender) && m.getMessageType().equals(type)),
+                store.getBySender(sender, type), sender + " " + type);
+        assertEquals(scan(store, m -> m.getSender().equals(sender) && m.getTimestamp() >= from
+                && m.getTimestamp() <= to), store.getBySender(sender, from, to), sender + " " + from + ".." + to);
+    }
+
+    private static Message message(Random random, long id) throws ReactionException {
+        String sender = SENDERS[random.nextInt(SENDERS.length)];
+        long time = random.nextLong(TIMES);
+        switch (random.nextInt(3)) {
+            case 0:
+                return new BoardMessage(id, sender, "board", time, Priority.REGULAR, new ArrayList<>());
+            case 1:
+                return new EmailMessage(id, sender, "email", "subject", time, new ArrayList<>());
+            default:
+                return new ReactionMessage(id, sender, "reaction", time, ReactionMessage.ReactionType.LIKE);
+        }
+    }
+
+    /** The stored messages matching a predicate, by send time, then ID. */
+    private static ArrayList<Message> scan(MessageStore store, Predicate<Message> predicate) {
+        ArrayList<Message> result = new ArrayList<>();
+        for (Message message : store.getAll()) {
+            if (predicate.test(message)) {
+                result.add(message);
+            }
+        }
+        result.sort(Comparator.comparingLong(Message::getTimestamp).thenComparingLong(Message::getId));
+        return result;
+    }
+}
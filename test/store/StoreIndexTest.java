@@ -0,0 +1,148 @@
+package store;
+
+import model.BoardMessage;
+import model.AttachmentException;
+import model.EmailMessage;
+import model.File;
+import model.Message;
+import model.Priority;
+import model.ReactionException;
+import model.ReactionMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the type, priority and time queries of MessageStore against a scan of
+ * the stored messages, through adds in random time order, replacements (of
+ * another type, priority or time) and removes.
+ */
+class StoreIndexTest {
+    private static final String[] TYPES = { "Board", "Email", "Reaction", "Other" };
+    /** Send times are drawn from a small range, so many messages share one. */
+    private static final long TIMES = 100;
+
+    @Test
+    void indexQueriesAgreeWithAScan() throws ReactionException {
+        Random random = new Random(6);
+        MessageStore store = new MessageStore();
+        // When every stored message was last added, to order equal send times.
+        HashMap<Long, Integer> added = new HashMap<>();
+        long nextId = 3_000_000;
+        for (int step = 0; step < 3_000; step++) {
+            int action = random.nextInt(10);
+            if (action < 3 && !store.isEmpty()) {
+                ArrayList<Message> all = store.getAll();
+                long id = all.get(random.nextInt(all.size())).getId();
+                assertNotNull(store.remove(id));
+                added.remove(id);
+            } else {
+                long id;
+                if (action == 3 && !store.isEmpty()) {
+                    ArrayList<Message> all = store.getAll();
+                    id = all.get(random.nextInt(all.size())).getId();
+                } else {
+                    id = nextId++;
+                }
+                store.add(message(random, id));
+                added.put(id, step);
+            }
+            if (step % 10 == 0) {
+                check(random, store, added);
+            }
+        }
+    }
+
+    @Test
+    void removedMessagesLeaveEveryIndex() {
+        MessageStore store = new MessageStore();
+        BoardMessage board = new BoardMessage(3_900_001, "poster", "gone", 42, Priority.URGENT, new ArrayList<>());
+        store.add(board);
+        store.remove(board.getId());
+
+        assertEquals(List.of(), store.getByType("Board"));
+        assertEquals(List.of(), store.getByPriority(Priority.URGENT));
+        assertEquals(List.of(), store.getBetween(42, 42));
+        assertEquals(List.of(), store.getLatest(5));
+        assertFalse(store.hasBoardMessages());
+        assertThrows(IllegalArgumentException.class, () -> store.getBetween(2, 1));
+        assertThrows(IllegalArgumentException.class, () -> store.getLatest(-1));
+    }
+
+    @Test
+    void fileTypeIndexFoldsCaseLikeFileEquals() throws AttachmentException {
+        MessageStore store = new MessageStore();
+        EmailMessage email = new EmailMessage("mailer", "sheet", "numbers");
+        store.add(email);
+        // The dotless i upper cases to I, so these are the same File.
+        File dotless = new File("sheet", "xls\u0131");
+        File upper = new File("sheet", "XLSI");
+        assertEquals(dotless, upper);
+        assertEquals(dotless.hashCode(), upper.hashCode());
+
+        store.addAttachment(email.getId(), dotless);
+        assertEquals(List.of(email), store.getEmailsWithFileType("XLSI"));
+        assertEquals(List.of(email), store.getEmailsWithAttachment(upper));
+
+        store.removeAttachment(email.getId(), upper);
+        assertEquals(List.of(), store.getEmailsWithFileType("xls\u0131"));
+        assertEquals(List.of(), store.getEmailsWithFileType("xlsi"));
+        assertEquals(List.of(), store.getEmailsWithAttachment(dotless));
+    }
+
+    // ======= Helpers ======= //
+
+    private static void check(Random random, MessageStore store, HashMap<Long, Integer> added) {
+        String type = TYPES[random.nextInt(TYPES.length)];
+        Priority priority = Priority.values()[random.nextInt(Priority.values().length)];
+        long from = random.nextLong(TIMES + 10) - 5;
+        long to = from + random.nextLong(TIMES / 2);
+        int n = random.nextInt(30);
+
+        assertEquals(scan(store, m -> m.getMessageType().equals(type)), store.getByType(type), type);
+        assertEquals(scan(store, m -> m instanceof BoardMessage board && board.getPriority() == priority),
+                store.getByPriority(priority), priority.toString());
+        assertEquals(scan(store, m -> m instanceof BoardMessage), store.getBoardMessages());
+
+        Comparator<Message> byTime = Comparator.comparingLong(Message::getTimestamp)
+                .thenComparing(m -> added.get(m.getId()));
+        ArrayList<Message> between = scan(store, m -> m.getTimestamp() >= from && m.getTimestamp() <= to);
+        between.sort(byTime);
+        assertEquals(between, store.getBetween(from, to), from + ".." + to);
+
+        ArrayList<Message> latest = store.getAll();
+        latest.sort(byTime.reversed());
+        assertEquals(latest.subList(0, Math.min(n, latest.size())), store.getLatest(n), "latest " + n);
+    }
+
+    private static Message message(Random random, long id) throws ReactionException {
+        long time = random.nextLong(TIMES);
+        switch (random.nextInt(3)) {
+            case 0:
+                Priority priority = Priority.values()[random.nextInt(Priority.values().length)];
+                return new BoardMessage(id, "poster", "board", time, priority, new ArrayList<>());
+            case 1:
+                return new EmailMessage(id, "mailer", "email", "subject", time, new ArrayList<>());
+            default:
+                return new ReactionMessage(id, "reactor", "reaction", time, ReactionMessage.ReactionType.LAUGH);
+        }
+    }
+
+    /** The stored messages matching a predicate, in insertion order. */
+    private static ArrayList<Message> scan(MessageStore store, Predicate<Message> predicate) {
+        ArrayList<Message> result = new ArrayList<>();
+        for (Message message : store.getAll()) {
+            if (predicate.test(message)) {
+                result.add(message);
+            }
+        }
+        return result;
+    }
+}
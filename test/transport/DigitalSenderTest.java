@@ -0,0 +1,219 @@
+package transport;
+
+import model.EmailMessage;
+import model.IDigital;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of DigitalSender: batching, linger flushes, the in flight limit, and
+ * retries of transient failures only, over the loopback SMTP server and over a
+ * transport holding its replies until the test completes them.
+ */
+class DigitalSenderTest {
+    /** Linger no test waits for. */
+    private static final long NEVER_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    @Test
+    void batchesAreCappedAtTheBatchSize() {
+        HoldingTransport transport = new HoldingTransport();
+        DigitalSender sender = new DigitalSender();
+        sender.register(transport, new SendPolicy(4, NEVER_MILLIS, 8, 1, 0, 0));
+
+        sender.sendAll(emails(10));
+        assertEquals(List.of(4, 4), transport.batchSizes());
+        sender.flush();
+
+        assertEquals(List.of(4, 4, 2), transport.batchSizes());
+        sender.close();
+    }
+
+    @Test
+    void lingerSendsAPartialBatch() throws Exception {
+        LoopbackSmtpTransport smtp = new LoopbackSmtpTransport();
+        DigitalSender sender = new DigitalSender();
+        sender.register(smtp, new SendPolicy(64, 20, 1, 1, 0, 0));
+
+        sender.sendAll(emails(3)).get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, smtp.getBatchCount());
+        assertEquals(3, smtp.getDeliveredCount());
+        assertEquals(3, smtp.drainMailbox().size());
+        assertEquals(3, sender.getSentCount(IDigital.SMTP));
+        sender.close();
+    }
+
+    @Test
+    void batchesInFlightStayWithinTheLimit() throws Exception {
+        HoldingTransport transport = new HoldingTransport();
+        DigitalSender sender = new DigitalSender();
+        sender.register(transport, new SendPolicy(1, 0, 2, 1, 0, 0));
+
+        ArrayList<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (EmailMessage email : emails(5)) {
+            futures.add(sender.send(email));
+        }
+        assertEquals(2, transport.batchSizes().size());
+
+        for (int i = 0; i < 5; i++) {
+            transport.reply(i).complete(null);
+            futures.get(i).get(5, TimeUnit.SECONDS);
+            assertEquals(Math.min(i + 3, 5), transport.batchSizes().size(), "after reply " + i);
+        }
+        assertEquals(5, sender.getSentCount(IDigital.SMTP));
+        sender.close();
+    }
+
+    @Test
+    void transientFailuresAreRetriedUntilTheAttemptsRunOut() {
+        LoopbackSmtpTransport smtp = new LoopbackSmtpTransport(0, 1);
+        DigitalSender sender = new DigitalSender();
+        sender.register(smtp, new SendPolicy(8, 0, 1, 3, 1, 2));
+
+        CompletableFuture<Void> future = sender.send(emails(1).get(0));
+
+        TransportException failure = failure(future);
+        assertTrue(failure.getCause() instanceof TransportException cause && cause.isRetryable());
+        assertEquals(3, smtp.getRejectedCount());
+        assertEquals(2, sender.getRetryCount(IDigital.SMTP));
+        assertEquals(1, sender.getFailedCount(IDigital.SMTP));
+        assertEquals(0, sender.getSentCount(IDigital.SMTP));
+        sender.close();
+    }
+
+    @Test
+    void partialFailuresAreRetriedUntilEverythingIsSent() throws Exception {
+        LoopbackSmtpTransport smtp = new LoopbackSmtpTransport(0, 0.3);
+        DigitalSender sender = new DigitalSender();
+        sender.register(smtp, new SendPolicy(1, 0, 4, 50, 0, 0));
+
+        sender.sendAll(emails(200)).get(30, TimeUnit.SECONDS);
+
+        assertEquals(200, smtp.getDeliveredCount());
+        assertEquals(200, sender.getSentCount(IDigital.SMTP));
+        assertEquals(smtp.getRejectedCount(), sender.getRetryCount(IDigital.SMTP));
+        assertTrue(sender.getRetryCount(IDigital.SMTP) > 0);
+        assertEquals(0, sender.getFailedCount(IDigital.SMTP));
+        sender.close();
+    }
+
+    @Test
+    void permanentFailuresAreNotRetried() {
+        LoopbackSmtpTransport smtp = new LoopbackSmtpTransport();
+        DigitalSender sender = new DigitalSender();
+        sender.register(smtp, new SendPolicy(8, 0, 1, 5, 1, 2));
+
+        CompletableFuture<Void> future = sender.send(() -> "not an email");
+
+        TransportException failure = failure(future);
+        assertTrue(failure.getCause() instanceof TransportException cause && !cause.isRetryable());
+        assertEquals(0, sender.getRetryCount(IDigital.SMTP));
+        assertEquals(1, sender.getFailedCount(IDigital.SMTP));
+        sender.close();
+    }
+
+    @Test
+    void otherFailuresAreNotRetried() {
+        HoldingTransport transport = new HoldingTransport();
+        DigitalSender sender = new DigitalSender();
+        sender.register(transport, new SendPolicy(1, 0, 1, 5, 1, 2));
+
+        CompletableFuture<Void> future = sender.send(emails(1).get(0));
+        transport.reply(0).completeExceptionally(new IllegalStateException("broken"));
+
+        assertTrue(failure(future).getCause() instanceof IllegalStateException);
+        assertEquals(1, transport.batchSizes().size());
+        assertEquals(0, sender.getRetryCount(IDigital.SMTP));
+        sender.close();
+    }
+
+    @Test
+    void failuresAfterCloseAreNotRetried() {
+        HoldingTransport transport = new HoldingTransport();
+        DigitalSender sender = new DigitalSender();
+        sender.register(transport, new SendPolicy(1, 0, 1, 5, 1, 2));
+
+        CompletableFuture<Void> future = sender.send(emails(1).get(0));
+        sender.close();
+        transport.reply(0).completeExceptionally(new TransportException("451 try again"));
+
+        failure(future);
+        assertEquals(0, sender.getRetryCount(IDigital.SMTP));
+        assertEquals(1, sender.getFailedCount(IDigital.SMTP));
+        assertThrows(IllegalStateException.class, () -> sender.send(emails(1).get(0)));
+    }
+
+    @Test
+    void closeSendsThePartialBatch() throws Exception {
+        LoopbackSmtpTransport smtp = new LoopbackSmtpTransport();
+        DigitalSender sender = new DigitalSender();
+        sender.register(smtp, new SendPolicy(64, NEVER_MILLIS, 1, 1, 0, 0));
+
+        CompletableFuture<Void> done = sender.sendAll(emails(5));
+        sender.close();
+
+        done.get(5, TimeUnit.SECONDS);
+        assertEquals(5, smtp.getDeliveredCount());
+    }
+
+    @Test
+    void unknownTransportFailsAtOnce() {
+        DigitalSender sender = new DigitalSender();
+
+        CompletableFuture<Void> future = sender.send(emails(1).get(0));
+
+        failure(future);
+        sender.close();
+    }
+
+    // ======= Helpers ======= //
+
+    /** Emails with distinct contents. */
+    private static ArrayList<EmailMessage> emails(int count) {
+        ArrayList<EmailMessage> emails = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            emails.add(new EmailMessage("sender" + i, "content " + i, "subject " + i));
+        }
+        return emails;
+    }
+
+    /** Waits for a future that must fail with a TransportException. */
+    private static TransportException failure(CompletableFuture<Void> future) {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        return assertInstanceOf(TransportException.class, e.getCause());
+    }
+
+    /** SMTP transport recording its batches and leaving their replies to the test. */
+    private static class HoldingTransport implements Transport {
+        private final ArrayList<Integer> sizes = new ArrayList<>();
+        private final ArrayList<CompletableFuture<Void>> replies = new ArrayList<>();
+
+        @Override
+        public String getName() {
+            return IDigital.SMTP;
+        }
+
+        @Override
+        public synchronized CompletableFuture<Void> send(List<IDigital> batch) {
+            CompletableFuture<Void> reply = new CompletableFuture<>();
+            sizes.add(batch.size());
+            replies.add(reply);
+            return reply;
+        }
+
+        synchronized List<Integer> batchSizes() {
+            return new ArrayList<>(sizes);
+        }
+
+        synchronized CompletableFuture<Void> reply(int batch) {
+            return replies.get(batch);
+        }
+    }
+}